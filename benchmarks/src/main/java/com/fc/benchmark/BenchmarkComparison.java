@@ -0,0 +1,66 @@
+package com.fc.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Compares two JMH JSON result files (e.g. of two commits) and prints the change of every benchmark.
+ * Exits with 1 when a benchmark is slower than the threshold (percent, default 10).
+ * <p>
+ * Usage: {@code java -cp benchmarks/target/benchmarks.jar com.fc.benchmark.BenchmarkComparison baseline.json current.json [threshold]}
+ */
+public final class BenchmarkComparison {
+
+    private BenchmarkComparison() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: BenchmarkComparison <baseline.json> <current.json> [threshold percent]");
+            System.exit(2);
+        }
+        final double threshold = args.length > 2 ? Double.parseDouble(args[2]) : 10;
+        Map<String, JsonNode> baseline = read(new File(args[0]));
+        Map<String, JsonNode> current = read(new File(args[1]));
+
+        boolean regression = false;
+        System.out.printf("%-90s %14s %14s %9s%n", "Benchmark", "Baseline", "Current", "Change");
+        for (Map.Entry<String, JsonNode> entry : current.entrySet()) {
+            JsonNode baselineResult = baseline.get(entry.getKey());
+            JsonNode currentMetric = entry.getValue().get("primaryMetric");
+            if (baselineResult == null) {
+                System.out.printf("%-90s %14s %14.3f %9s%n", entry.getKey(), "-", currentMetric.get("score").asDouble(), "new");
+                continue;
+            }
+            final double before = baselineResult.get("primaryMetric").get("score").asDouble();
+            final double after = currentMetric.get("score").asDouble();
+            final double change = before == 0 ? 0 : (after - before) * 100 / before;
+            // the throughput modes are better when higher, the time modes when lower
+            final boolean slower = "thrpt".equals(entry.getValue().get("mode").asText()) ? -change > threshold : change > threshold;
+            regression |= slower;
+            System.out.printf("%-90s %14.3f %14.3f %+8.1f%%%s%n", entry.getKey(), before, after, change, slower ? " SLOWER" : "");
+        }
+        System.out.println("Unit: " + current.values().stream().findFirst()
+                .map(result -> result.get("primaryMetric").get("scoreUnit").asText()).orElse("-"));
+        if (regression) {
+            System.exit(1);
+        }
+    }
+
+    private static Map<String, JsonNode> read(File file) throws IOException {
+        Map<String, JsonNode> results = new LinkedHashMap<>();
+        for (JsonNode result : new ObjectMapper().readTree(file)) {
+            Map<String, String> params = new TreeMap<>();
+            result.path("params").fields().forEachRemaining(param -> params.put(param.getKey(), param.getValue().asText()));
+            results.put(result.get("benchmark").asText() + (params.isEmpty() ? "" : " " + params), result);
+        }
+        return results;
+    }
+
+}
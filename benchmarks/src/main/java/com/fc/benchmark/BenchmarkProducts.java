@@ -0,0 +1,54 @@
+package com.fc.benchmark;
+
+import com.fc.model.Product;
+import com.fc.model.ProductType;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates the benchmark products. The values only depend on the seed, so every run measures the same data.
+ */
+final class BenchmarkProducts {
+
+    static final long SEED = 42L;
+
+    private static final ProductType[] PRODUCT_TYPES = ProductType.values();
+
+    private BenchmarkProducts() {
+    }
+
+    static Product product(Random random, String name) {
+        Product product = new Product(
+                null,
+                name,
+                "Benchmark product " + name + " with a description of a typical length",
+                BigDecimal.valueOf(1 + random.nextInt(10_000), 2),
+                PRODUCT_TYPES[random.nextInt(PRODUCT_TYPES.length)],
+                Instant.EPOCH,
+                Instant.EPOCH
+        );
+        product.setCalories(random.nextInt(900) + 0.5);
+        product.setProtein(random.nextInt(40) + 0.1);
+        product.setCarbohydrates(random.nextInt(80) + 0.2);
+        product.setFat(random.nextInt(50) + 0.3);
+        product.setSugar(random.nextInt(30) + 0.4);
+        product.setFiber(random.nextInt(15) + 0.5);
+        return product;
+    }
+
+    static List<Product> products(int count) {
+        Random random = new Random(SEED);
+        List<Product> products = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Product product = product(random, "product-" + i);
+            product.setId((long) i + 1);
+            products.add(product);
+        }
+        return products;
+    }
+
+}
@@ -0,0 +1,69 @@
+package com.fc.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fc.controller.ProductController;
+import com.fc.exception.ProductNotFoundException;
+import com.fc.model.Product;
+import com.fc.service.ProductService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+/**
+ * {@code GET /products/{id}} through Spring MVC, once answered by the controller and once by the
+ * {@link com.fc.exception.GlobalExceptionHandler}. The service is a stub, so only the MVC and the exception path are measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+public class ExceptionHandlerBenchmark {
+
+    private static final long MISSING_ID = -1L;
+
+    private MockMvc mockMvc;
+
+    @Setup
+    public void setUp() {
+        final Product product = BenchmarkProducts.products(1).get(0);
+        ProductService productService = new ProductService(null) {
+            @Override
+            public Product getOneProduct(Long id) {
+                if (id == MISSING_ID) {
+                    throw new ProductNotFoundException(id);
+                }
+                return product;
+            }
+        };
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        mockMvc = MockMvcBuilders.standaloneSetup(new ProductController(productService, objectMapper)).build();
+    }
+
+    @Benchmark
+    public MvcResult found() throws Exception {
+        return mockMvc.perform(get("/products/{id}", 1L)).andReturn();
+    }
+
+    @Benchmark
+    public MvcResult notFound() throws Exception {
+        return mockMvc.perform(get("/products/{id}", MISSING_ID)).andReturn();
+    }
+
+}
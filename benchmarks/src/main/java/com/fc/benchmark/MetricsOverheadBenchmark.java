@@ -0,0 +1,86 @@
+package com.fc.benchmark;
+
+import com.fc.config.ServiceMetricsAspect;
+import com.fc.model.NutritionTotals;
+import com.fc.model.Product;
+import com.fc.model.RecipeDTO;
+import com.fc.model.RecipeItemDTO;
+import com.fc.service.NutritionService;
+import com.fc.service.ProductService;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.config.MeterFilter;
+import io.micrometer.core.instrument.distribution.DistributionStatisticConfig;
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The cost of the service timer: the same cheap service call without and with the {@link ServiceMetricsAspect},
+ * recorded in a Prometheus registry with the percentile histogram enabled like in the application.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+public class MetricsOverheadBenchmark {
+
+    private NutritionService nutritionService;
+
+    private NutritionService timedNutritionService;
+
+    private RecipeDTO recipe;
+
+    @Setup
+    public void setUp() {
+        final Product product = BenchmarkProducts.products(1).get(0);
+        ProductService productService = new ProductService(null) {
+            @Override
+            public Product getOneProduct(Long id) {
+                return product;
+            }
+        };
+        nutritionService = new NutritionService(productService);
+        recipe = new RecipeDTO("benchmark", List.of(new RecipeItemDTO(product.getId(), 100)));
+
+        PrometheusMeterRegistry meterRegistry = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+        meterRegistry.config().meterFilter(new MeterFilter() {
+            @Override
+            public DistributionStatisticConfig configure(Meter.Id id, DistributionStatisticConfig config) {
+                return DistributionStatisticConfig.builder()
+                        .percentilesHistogram(true)
+                        .build()
+                        .merge(config);
+            }
+        });
+        AspectJProxyFactory proxyFactory = new AspectJProxyFactory(nutritionService);
+        proxyFactory.setProxyTargetClass(true);
+        proxyFactory.addAspect(new ServiceMetricsAspect(meterRegistry));
+        timedNutritionService = proxyFactory.getProxy();
+    }
+
+    @Benchmark
+    public NutritionTotals untimed() {
+        return nutritionService.calculate(recipe);
+    }
+
+    @Benchmark
+    public NutritionTotals timed() {
+        return timedNutritionService.calculate(recipe);
+    }
+
+}
@@ -0,0 +1,128 @@
+package com.fc.benchmark;
+
+import com.fc.FoodCalculatorApplication;
+import com.fc.model.Product;
+import com.fc.reactive.ReactiveConfig;
+import com.fc.repository.ProductRepository;
+import com.fc.service.ProductBatchService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
+import org.springframework.security.crypto.password.NoOpPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@code GET /products/{id}} over HTTP under concurrent load, served by the servlet stack (Tomcat / JPA)
+ * and by the `reactive` profile (Netty / R2DBC). Throughput and the latency distribution of the same requests.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Threads(64)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+public class ProductApiStackBenchmark {
+
+    private static final String AUTHORIZATION = "Basic "
+            + Base64.getEncoder().encodeToString("admin:123".getBytes(StandardCharsets.UTF_8));
+
+    @Param({"servlet", "reactive"})
+    String stack;
+
+    @Param({"1000"})
+    int catalogSize;
+
+    private ConfigurableApplicationContext context;
+
+    private HttpClient httpClient;
+
+    private String baseUrl;
+
+    private long[] ids;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        final String database = "benchmark-" + stack;
+        context = new SpringApplicationBuilder(FoodCalculatorApplication.class, PlainPasswords.class)
+                .profiles("reactive".equals(stack) ? new String[]{ReactiveConfig.PROFILE} : new String[0])
+                // arguments, so they override application.properties
+                .run("--server.port=0",
+                        "--spring.datasource.url=jdbc:h2:mem:" + database + ";DB_CLOSE_DELAY=-1",
+                        "--fc.reactive.r2dbc.url=r2dbc:h2:mem:///" + database + ";DB_CLOSE_DELAY=-1",
+                        "--spring.jpa.hibernate.ddl-auto=create-drop",
+                        // both stacks read the database, the product cache would hide the difference
+                        "--spring.cache.type=none",
+                        "--fc.cache.products.warm-up-size=0",
+                        "--spring.main.banner-mode=off",
+                        "--spring.main.allow-bean-definition-overriding=true",
+                        "--logging.level.root=WARN");
+
+        List<Product> products = BenchmarkProducts.products(catalogSize);
+        context.getBean(ProductBatchService.class).createOrUpdateProducts(products);
+        ids = context.getBean(ProductRepository.class).findAll().stream().mapToLong(Product::getId).toArray();
+
+        httpClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        baseUrl = "http://127.0.0.1:" + context.getEnvironment().getProperty("local.server.port") + "/products/";
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public int getOneProduct() throws IOException, InterruptedException {
+        final long id = ids[ThreadLocalRandom.current().nextInt(ids.length)];
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + id))
+                .header("Authorization", AUTHORIZATION)
+                .GET()
+                .build();
+        HttpResponse<byte[]> response = httpClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("GET " + request.uri() + " returned " + response.statusCode());
+        }
+        return response.body().length;
+    }
+
+    /**
+     * Keeps the {noop} passwords. By default the first login upgrades them to BCrypt, which then takes about 100 ms of
+     * CPU per request on both stacks and hides their difference.
+     */
+    static class PlainPasswords {
+
+        @Bean
+        public PasswordEncoder passwordEncoder() {
+            return new DelegatingPasswordEncoder("noop", Map.of("noop", NoOpPasswordEncoder.getInstance()));
+        }
+
+    }
+
+}
@@ -0,0 +1,53 @@
+package com.fc.benchmark;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fc.model.Product;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Prints the size of the product list payloads of {@link ProductSerializationBenchmark} per format, raw and gzip compressed.
+ * <pre>
+ * java -cp benchmarks/target/benchmarks.jar com.fc.benchmark.ProductPayloadSizes
+ * </pre>
+ */
+public final class ProductPayloadSizes {
+
+    private static final int[] SIZES = {1, 100, 10000};
+
+    private static final String[] FORMATS = {"json", "smile", "cbor"};
+
+    private ProductPayloadSizes() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        System.out.printf("%-8s %8s %12s %12s %8s%n", "format", "products", "bytes", "gzip bytes", "vs json");
+        for (int size : SIZES) {
+            List<Product> products = BenchmarkProducts.products(size);
+            long jsonBytes = 0;
+            for (String format : FORMATS) {
+                ObjectWriter writer = ProductSerializationBenchmark.objectMapper(format, false)
+                        .writerFor(new TypeReference<List<Product>>() { });
+                byte[] payload = writer.writeValueAsBytes(products);
+                if (jsonBytes == 0) {
+                    jsonBytes = payload.length;
+                }
+                System.out.printf("%-8s %8d %12d %12d %8.2f%n", format, size, payload.length, gzip(payload).length,
+                        (double) payload.length / jsonBytes);
+            }
+        }
+    }
+
+    private static byte[] gzip(byte[] payload) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(bytes)) {
+            gzip.write(payload);
+        }
+        return bytes.toByteArray();
+    }
+
+}
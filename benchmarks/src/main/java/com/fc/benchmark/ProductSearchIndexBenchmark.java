@@ -0,0 +1,96 @@
+package com.fc.benchmark;
+
+import com.fc.model.Product;
+import com.fc.repository.ProductRepository;
+import com.fc.service.ProductSearchIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * {@link ProductSearchIndex} autocomplete queries over a generated catalog: an exact word, a prefix, a substring,
+ * a typo and two words. The names combine a preparation and a food, so a food word matches 1 / 40 of the catalog.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class ProductSearchIndexBenchmark {
+
+    static final String[] PREPARATIONS = {"smoked", "fresh", "dried", "roasted", "salted", "sweet", "spicy", "frozen",
+            "organic", "grilled", "pickled", "raw", "baked", "aged", "creamy", "crispy", "light", "whole", "sliced", "mild"};
+
+    static final String[] FOODS = {"cheddar", "mozzarella", "salmon", "tuna", "chicken", "turkey", "beef", "pork", "tofu",
+            "lentils", "chickpeas", "beans", "rice", "oats", "quinoa", "pasta", "bread", "bagel", "almonds", "walnuts",
+            "cashews", "peanuts", "apples", "bananas", "cherries", "grapes", "mango", "pineapple", "tomatoes", "peppers",
+            "carrots", "spinach", "broccoli", "potatoes", "yogurt", "butter", "cream", "chocolate", "honey", "olives"};
+
+    @Param({"100000", "1000000"})
+    int catalogSize;
+
+    @Param({"salmon", "ched", "ozzar", "chedar", "smoked sal"})
+    String query;
+
+    private ProductSearchIndex productSearchIndex;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        productSearchIndex = new ProductSearchIndex(repositoryOf(products(catalogSize)));
+        productSearchIndex.rebuild();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        productSearchIndex.destroy();
+    }
+
+    @Benchmark
+    public Object search() {
+        return productSearchIndex.search(query, ProductSearchIndex.DEFAULT_LIMIT);
+    }
+
+    static List<Product> products(int count) {
+        Random random = new Random(BenchmarkProducts.SEED);
+        List<Product> products = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String name = PREPARATIONS[random.nextInt(PREPARATIONS.length)] + " " + FOODS[random.nextInt(FOODS.length)] + " " + i;
+            Product product = BenchmarkProducts.product(random, name);
+            product.setId((long) i + 1);
+            products.add(product);
+        }
+        return products;
+    }
+
+    // the index only reads the whole catalog, so the products are served without a database
+    @SuppressWarnings("unchecked")
+    static ProductRepository repositoryOf(List<Product> products) {
+        return (ProductRepository) Proxy.newProxyInstance(ProductRepository.class.getClassLoader(), new Class<?>[]{ProductRepository.class},
+                (proxy, method, args) -> {
+                    if (method.getName().equals("streamAllOrderedById")) {
+                        products.forEach((Consumer<Product>) args[0]);
+                        return null;
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+}
@@ -0,0 +1,111 @@
+package com.fc.benchmark;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+import com.fc.model.Product;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Jackson serialization of product lists, configured like the application's object mappers:
+ * JSON, Smile and CBOR, with and without the Blackbird module, and the gzip compression of the written bytes.
+ * {@link ProductPayloadSizes} prints the sizes of the payloads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+public class ProductSerializationBenchmark {
+
+    @Param({"1", "100", "10000"})
+    int size;
+
+    @Param({"json", "smile", "cbor"})
+    String format;
+
+    @Param({"true", "false"})
+    boolean blackbird;
+
+    private ObjectWriter writer;
+
+    private ObjectReader reader;
+
+    private List<Product> products;
+
+    private byte[] payload;
+
+    @Setup
+    public void setUp() throws IOException {
+        ObjectMapper objectMapper = objectMapper(format, blackbird);
+        writer = objectMapper.writerFor(new TypeReference<List<Product>>() { });
+        reader = objectMapper.readerFor(new TypeReference<List<Product>>() { });
+        products = BenchmarkProducts.products(size);
+        payload = writer.writeValueAsBytes(products);
+    }
+
+    static ObjectMapper objectMapper(String format, boolean blackbird) {
+        Jackson2ObjectMapperBuilder builder = Jackson2ObjectMapperBuilder.json().factory(factory(format));
+        if (blackbird) {
+            builder.modulesToInstall(new BlackbirdModule());
+        }
+        return builder.build();
+    }
+
+    private static JsonFactory factory(String format) {
+        switch (format) {
+            case "smile":
+                return new SmileFactory();
+            case "cbor":
+                return new CBORFactory();
+            default:
+                return new JsonFactory();
+        }
+    }
+
+    @Benchmark
+    public byte[] serialize() throws IOException {
+        return writer.writeValueAsBytes(products);
+    }
+
+    /**
+     * Serialization and gzip at the default level, the work of a compressed response.
+     */
+    @Benchmark
+    public byte[] serializeGzip() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(payload.length / 4 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(bytes)) {
+            writer.writeValue(gzip, products);
+        }
+        return bytes.toByteArray();
+    }
+
+    @Benchmark
+    public List<Product> deserialize() throws IOException {
+        return reader.readValue(payload);
+    }
+
+}
@@ -0,0 +1,119 @@
+package com.fc.benchmark;
+
+import com.fc.FoodCalculatorApplication;
+import com.fc.model.Product;
+import com.fc.repository.ProductRepository;
+import com.fc.service.ProductBatchService;
+import com.fc.service.ProductService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ProductService} write and read paths against an in-memory H2 database, with and without the product cache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+public class ProductServiceBenchmark {
+
+    private static final int LOAD_CHUNK_SIZE = 1000;
+
+    @Param({"10000"})
+    int catalogSize;
+
+    @Param({"caffeine", "none"})
+    String cacheType;
+
+    private ConfigurableApplicationContext context;
+
+    private ProductService productService;
+
+    private long[] ids;
+
+    private String[] names;
+
+    private Random random;
+
+    private long sequence;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(FoodCalculatorApplication.class)
+                .web(WebApplicationType.NONE)
+                // arguments, so they override application.properties
+                .run("--spring.datasource.url=jdbc:h2:mem:benchmark",
+                        "--spring.jpa.hibernate.ddl-auto=create-drop",
+                        "--spring.cache.type=" + cacheType,
+                        "--fc.cache.products.warm-up-size=0",
+                        "--spring.main.banner-mode=off",
+                        "--logging.level.root=WARN");
+        productService = context.getBean(ProductService.class);
+
+        List<Product> products = BenchmarkProducts.products(catalogSize);
+        ProductBatchService productBatchService = context.getBean(ProductBatchService.class);
+        for (int from = 0; from < products.size(); from += LOAD_CHUNK_SIZE) {
+            productBatchService.createOrUpdateProducts(products.subList(from, Math.min(from + LOAD_CHUNK_SIZE, products.size())));
+        }
+        List<Product> loadedProducts = context.getBean(ProductRepository.class).findAll();
+        ids = loadedProducts.stream().mapToLong(Product::getId).toArray();
+        names = loadedProducts.stream().map(Product::getName).toArray(String[]::new);
+        // the cached variant measures the cache hits
+        for (long id : ids) {
+            productService.getOneProduct(id);
+        }
+        random = new Random(BenchmarkProducts.SEED);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Product createNewProduct() {
+        return productService.createNewProduct(BenchmarkProducts.product(random, "created-" + sequence++));
+    }
+
+    @Benchmark
+    public Product getOneProduct() {
+        return productService.getOneProduct(nextId());
+    }
+
+    @Benchmark
+    public Product updateProduct() {
+        final int index = random.nextInt(ids.length);
+        return productService.updateProduct(BenchmarkProducts.product(random, names[index]), ids[index]);
+    }
+
+    @Benchmark
+    public Product changePrice() {
+        return productService.changePrice(nextId(), BigDecimal.valueOf(1 + random.nextInt(10_000), 2));
+    }
+
+    private long nextId() {
+        return ids[random.nextInt(ids.length)];
+    }
+
+}
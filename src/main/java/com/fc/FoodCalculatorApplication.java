@@ -2,12 +2,22 @@ package com.fc;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcAutoConfiguration;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcTransactionManagerAutoConfiguration;
+import org.springframework.boot.context.metrics.buffering.BufferingApplicationStartup;
 
-@SpringBootApplication
+// the R2DBC connection factory is only created by the reactive profile (see ReactiveConfig); a second, reactive
+// transaction manager would make the @Transactional methods of the JPA repositories ambiguous
+@SpringBootApplication(exclude = {R2dbcAutoConfiguration.class, R2dbcTransactionManagerAutoConfiguration.class})
 public class FoodCalculatorApplication {
 
+	// the startup steps kept for the startup report and /actuator/startup, the later ones are dropped
+	static final int STARTUP_STEPS = 8192;
+
 	public static void main(String[] args) {
-		SpringApplication.run(FoodCalculatorApplication.class, args);
+		SpringApplication application = new SpringApplication(FoodCalculatorApplication.class);
+		application.setApplicationStartup(new BufferingApplicationStartup(STARTUP_STEPS));
+		application.run(args);
 	}
 
 }
@@ -0,0 +1,16 @@
+package com.fc.config;
+
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Class provides configuration for the in-process caches.
+ * The caches are backed by Caffeine, see the `spring.cache.*` properties for size and TTL.
+ */
+@Configuration
+@EnableCaching
+public class CacheConfig {
+
+    public static final String PRODUCT_CACHE = "products";
+
+}
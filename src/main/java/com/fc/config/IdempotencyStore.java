@@ -0,0 +1,141 @@
+package com.fc.config;
+
+import com.fc.exception.IdempotencyKeyInProgressException;
+import com.fc.exception.IdempotencyKeyMismatchException;
+import com.fc.exception.InvalidIdempotencyKeyException;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
+import io.micrometer.core.instrument.Metrics;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Results of the requests sent with an {@value #KEY_HEADER} header, so a retried request gets the result of the first
+ * one instead of running again. The keys are scoped by the caller (principal and operation).
+ * <p>
+ * The first request with a key registers a future and runs; a duplicate which arrives while it runs waits for the
+ * same future (up to the in-flight timeout) instead of running twice, a later one gets the stored result at once.
+ * A failed request is removed after its waiting duplicates got its exception, so the next retry runs again.
+ * A key reused with a different request body is rejected. The entries are bounded and expire after the TTL.
+ */
+public class IdempotencyStore {
+
+    public static final String KEY_HEADER = "Idempotency-Key";
+
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    public static final String METRIC = "fc.idempotency.requests";
+
+    static final int MAX_KEY_LENGTH = 255;
+
+    private final Cache<String, Entry> entries;
+
+    private final long inFlightTimeoutMillis;
+
+    public IdempotencyStore(long maxKeys, Duration ttl, Duration inFlightTimeout) {
+        this(maxKeys, ttl, inFlightTimeout, Ticker.systemTicker());
+    }
+
+    IdempotencyStore(long maxKeys, Duration ttl, Duration inFlightTimeout, Ticker ticker) {
+        this.entries = Caffeine.newBuilder()
+                .maximumSize(maxKeys)
+                .expireAfterWrite(ttl)
+                .ticker(ticker)
+                .build();
+        this.inFlightTimeoutMillis = inFlightTimeout.toMillis();
+    }
+
+    /**
+     * Run the request once per key of the scope.
+     *
+     * @param key         the idempotency key of the client, the request simply runs when it is null
+     * @param fingerprint identifies the request body, a different body with the same key is rejected
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Result<T> execute(String scope, String key, String fingerprint, Supplier<T> request) {
+        if (key == null) {
+            return new Result<>(request.get(), false);
+        }
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            throw new InvalidIdempotencyKeyException(MAX_KEY_LENGTH);
+        }
+
+        final String entryKey = scope + '\n' + key;
+        final Entry entry = new Entry(fingerprint, new CompletableFuture<>());
+        final Entry existing = entries.asMap().putIfAbsent(entryKey, entry);
+        if (existing == null) {
+            count("executed");
+            try {
+                final T result = request.get();
+                entry.result.complete(result);
+                return new Result<>(result, false);
+            } catch (RuntimeException | Error e) {
+                entries.asMap().remove(entryKey, entry);
+                entry.result.completeExceptionally(e);
+                throw e;
+            }
+        }
+
+        if (!existing.fingerprint.equals(fingerprint)) {
+            count("mismatched");
+            throw new IdempotencyKeyMismatchException(key);
+        }
+        count(existing.result.isDone() ? "replayed" : "coalesced");
+        return new Result<>((T) await(existing, key), true);
+    }
+
+    long size() {
+        entries.cleanUp();
+        return entries.estimatedSize();
+    }
+
+    private Object await(Entry entry, String key) {
+        try {
+            return entry.result.get(inFlightTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            // the duplicate fails like the request it waited for
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw (Error) e.getCause();
+        } catch (TimeoutException e) {
+            throw new IdempotencyKeyInProgressException(key);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IdempotencyKeyInProgressException(key);
+        }
+    }
+
+    private static void count(String outcome) {
+        Metrics.counter(METRIC, "outcome", outcome).increment();
+    }
+
+    /**
+     * The result of a request, replayed when it was the result of an earlier request with the same key.
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class Result<T> {
+
+        private final T value;
+        private final boolean replayed;
+
+    }
+
+    @AllArgsConstructor
+    private static class Entry {
+
+        private final String fingerprint;
+        private final CompletableFuture<Object> result;
+
+    }
+
+}
@@ -0,0 +1,52 @@
+package com.fc.config;
+
+import com.fc.model.Product;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.EntityManagerFactory;
+
+/**
+ * Moves the {@value Product#ID_SEQUENCE} sequence above the ids of the product table at startup, before any product
+ * is created. A database created by an older version has ids allocated by another generator, a fresh sequence would
+ * hand them out again and the inserts would fail on the primary key.
+ * <p>
+ * The ids are allocated in blocks: a block ends at the value of the sequence, so the next block has to start above
+ * the max id. The check takes one block, the ids skip it. Depends on the entity manager factory, so the sequence was
+ * created (or updated) by the schema step of Hibernate or by the schema script of the `faststart` profile.
+ */
+@Slf4j
+@Component
+public class ProductSequenceInitializer implements InitializingBean {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final Dialect dialect;
+
+    public ProductSequenceInitializer(JdbcTemplate jdbcTemplate, EntityManagerFactory entityManagerFactory) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.dialect = entityManagerFactory.unwrap(SessionFactoryImplementor.class).getJdbcServices().getDialect();
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        if (!dialect.supportsSequences()) {
+            return;
+        }
+        final Long maxId = jdbcTemplate.queryForObject("select max(id) from product", Long.class);
+        if (maxId == null) {
+            return;
+        }
+        final Long next = jdbcTemplate.queryForObject(dialect.getSequenceNextValString(Product.ID_SEQUENCE), Long.class);
+        if (next == null || next - Product.ID_ALLOCATION_SIZE < maxId) {
+            final long restart = maxId + Product.ID_ALLOCATION_SIZE;
+            jdbcTemplate.execute("alter sequence " + Product.ID_SEQUENCE + " restart with " + restart);
+            log.info("The sequence {} was behind the max product id {}, it is restarted with {}", Product.ID_SEQUENCE, maxId, restart);
+        }
+    }
+
+}
@@ -0,0 +1,90 @@
+package com.fc.config;
+
+import com.fc.exception.RateLimitExceededException;
+import com.fc.util.AuthUtil;
+import io.micrometer.core.instrument.Metrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits the calls of the {@link RateLimited} endpoints per authenticated principal, so one client writing in a tight loop
+ * cannot take all database connections. A throttled call gets 429 with a Retry-After header before the controller is called.
+ * The limits depend on the role of the principal, see {@link AuthUtil}.
+ */
+@Slf4j
+@Configuration
+public class RateLimitConfig implements WebMvcConfigurer, HandlerInterceptor {
+
+    public static final String REJECTED_METRIC = "fc.rate-limit.rejected";
+
+    private final boolean enabled;
+
+    private final RateLimiter.Limit adminLimit;
+
+    private final RateLimiter.Limit userLimit;
+
+    private final RateLimiter rateLimiter = new RateLimiter();
+
+    public RateLimitConfig(@Value("${fc.rate-limit.enabled:true}") boolean enabled,
+                           @Value("${fc.rate-limit.admin.writes-per-second:" + AuthUtil.ADMIN_WRITES_PER_SECOND + "}") int adminWritesPerSecond,
+                           @Value("${fc.rate-limit.admin.burst:" + AuthUtil.ADMIN_WRITE_BURST + "}") int adminBurst,
+                           @Value("${fc.rate-limit.user.writes-per-second:" + AuthUtil.USER_WRITES_PER_SECOND + "}") int userWritesPerSecond,
+                           @Value("${fc.rate-limit.user.burst:" + AuthUtil.USER_WRITE_BURST + "}") int userBurst) {
+        this.enabled = enabled;
+        this.adminLimit = new RateLimiter.Limit(adminWritesPerSecond, adminBurst);
+        this.userLimit = new RateLimiter.Limit(userWritesPerSecond, userBurst);
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        if (enabled) {
+            registry.addInterceptor(this);
+        }
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (!(handler instanceof HandlerMethod) || !((HandlerMethod) handler).hasMethodAnnotation(RateLimited.class)) {
+            return true;
+        }
+
+        // an anonymous call is rejected by the method security anyway
+        final Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !authentication.isAuthenticated() || authentication instanceof AnonymousAuthenticationToken) {
+            return true;
+        }
+
+        final boolean admin = isAdmin(authentication);
+        final long waitNanos = rateLimiter.tryAcquire(authentication.getName(), admin ? adminLimit : userLimit);
+        if (waitNanos > 0) {
+            Metrics.counter(REJECTED_METRIC, "role", admin ? "ADMIN" : "USER").increment();
+            log.debug("The write request {} {} of {} was throttled", request.getMethod(), request.getRequestURI(), authentication.getName());
+            // Retry-After has a resolution of seconds
+            throw new RateLimitExceededException(authentication.getName(), Math.max(1, (waitNanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1)));
+        }
+        return true;
+    }
+
+    private static boolean isAdmin(Authentication authentication) {
+        for (GrantedAuthority authority : authentication.getAuthorities()) {
+            if (AuthUtil.ADMIN_AUTHORITY.equals(authority.getAuthority())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
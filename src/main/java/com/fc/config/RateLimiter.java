@@ -0,0 +1,72 @@
+package com.fc.config;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Token bucket per key, implemented as the generic cell rate algorithm: the whole state of a bucket is the time
+ * at which it will be full again, kept in one {@link AtomicLong} and moved forward with compare-and-set.
+ * The buckets are spread over the bins of a {@link ConcurrentHashMap}, so the callers only contend when they
+ * use the same key, and the existing buckets are read without locking.
+ */
+public class RateLimiter {
+
+    private final ConcurrentMap<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+
+    private final LongSupplier nanoClock;
+
+    public RateLimiter() {
+        this(System::nanoTime);
+    }
+
+    RateLimiter(LongSupplier nanoClock) {
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * Take a token from the bucket of the key.
+     *
+     * @return 0 when a token was taken, otherwise the nanoseconds until the next token is available
+     */
+    public long tryAcquire(String key, Limit limit) {
+        AtomicLong bucket = buckets.get(key);
+        if (bucket == null) {
+            bucket = buckets.computeIfAbsent(key, k -> new AtomicLong(Long.MIN_VALUE));
+        }
+
+        while (true) {
+            final long now = nanoClock.getAsLong();
+            final long fullAt = bucket.get();
+            final long newFullAt = Math.max(fullAt, now) + limit.intervalNanos;
+            final long waitNanos = newFullAt - now - limit.burstNanos;
+            if (waitNanos > 0) {
+                return waitNanos;
+            }
+            if (bucket.compareAndSet(fullAt, newFullAt)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * A rate of tokens per second and the size of the bucket, i.e. the number of calls allowed at once.
+     */
+    public static final class Limit {
+
+        private final long intervalNanos;
+
+        private final long burstNanos;
+
+        public Limit(int perSecond, int burst) {
+            if (perSecond <= 0 || burst <= 0) {
+                throw new IllegalArgumentException("The rate limit and the burst should be positive. Rate: " + perSecond + ", burst: " + burst);
+            }
+            this.intervalNanos = TimeUnit.SECONDS.toNanos(1) / perSecond;
+            this.burstNanos = intervalNanos * burst;
+        }
+    }
+
+}
@@ -0,0 +1,71 @@
+package com.fc.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times every public method of the {@code *Service} classes as {@code fc.service.invocations} with the tags
+ * {@code class}, {@code method}, {@code outcome} (SUCCESS / ERROR) and {@code exception}.
+ * <p>
+ * The aspect wraps the cache proxy, so a cache hit is timed as well. The pointcut only uses the method execution,
+ * so it is matched once per method and not on every call (see {@code MetricsOverheadBenchmark} for the cost).
+ * The timers of the successful calls are looked up once per method; only the failed calls build their timer on each call.
+ */
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class ServiceMetricsAspect {
+
+    public static final String METRIC_NAME = "fc.service.invocations";
+
+    private static final String SUCCESS = "SUCCESS";
+    private static final String ERROR = "ERROR";
+    private static final String NO_EXCEPTION = "none";
+
+    private final MeterRegistry meterRegistry;
+
+    private final Map<Method, Timer> successTimers = new ConcurrentHashMap<>();
+
+    public ServiceMetricsAspect(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Around("execution(public * com.fc.service.*Service.*(..))")
+    public Object time(ProceedingJoinPoint joinPoint) throws Throwable {
+        final long start = System.nanoTime();
+        try {
+            Object result = joinPoint.proceed();
+            final Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+            successTimers.computeIfAbsent(method, key -> timer(joinPoint, SUCCESS, NO_EXCEPTION))
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return result;
+        } catch (Throwable e) {
+            timer(joinPoint, ERROR, e.getClass().getSimpleName())
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            throw e;
+        }
+    }
+
+    private Timer timer(ProceedingJoinPoint joinPoint, String outcome, String exception) {
+        return Timer.builder(METRIC_NAME)
+                .description("The service method invocations")
+                .tag("class", joinPoint.getSignature().getDeclaringType().getSimpleName())
+                .tag("method", joinPoint.getSignature().getName())
+                .tag("outcome", outcome)
+                .tag("exception", exception)
+                .register(meterRegistry);
+    }
+
+}
@@ -0,0 +1,28 @@
+package com.fc.config;
+
+import com.fc.embedded.EmbeddedProductRepository;
+import com.fc.service.ProductService;
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Class provides configuration for the lazy bean initialization of the `faststart` profile
+ * ({@code spring.main.lazy-initialization=true}).
+ * <p>
+ * The product service and its repository are still created at startup, so the first product request does not pay for
+ * them (or for the recovery of the embedded storage). The beans which warm up caches and indexes listen to the
+ * ready event and are created by it. Everything else, e.g. springdoc and the actuator endpoints, is created on its first use.
+ * The product id sequence is checked at startup as well.
+ */
+@Configuration
+public class StartupConfig {
+
+    // static, so the filter is available to the bean factory post-processor without creating this configuration
+    @Bean
+    public static LazyInitializationExcludeFilter eagerProductBeans() {
+        return LazyInitializationExcludeFilter.forBeanTypes(ProductService.class, EmbeddedProductRepository.class,
+                ProductSequenceInitializer.class);
+    }
+
+}
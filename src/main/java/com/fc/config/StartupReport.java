@@ -0,0 +1,175 @@
+package com.fc.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.context.metrics.buffering.BufferingApplicationStartup;
+import org.springframework.boot.context.metrics.buffering.StartupTimeline;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.core.metrics.ApplicationStartup;
+import org.springframework.core.metrics.StartupStep;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Logs where the startup time went when the application is ready: the JVM start before the application, every
+ * top-level startup phase and the slowest beans. The time of a bean is its own instantiation without the beans
+ * it created as its dependencies. The phases are also published as {@code fc.startup.phase} gauges, so the
+ * startup regressions can be followed over the deployments; the full timeline is at {@code /actuator/startup}.
+ * <p>
+ * The steps are recorded by the {@link BufferingApplicationStartup} set in {@code FoodCalculatorApplication}.
+ * With {@code fc.startup.exit-after-ready} the application exits after the report, for the training run which
+ * collects the classes of the class data sharing archive.
+ */
+@Slf4j
+@Component
+public class StartupReport {
+
+    public static final String PHASE_METRIC = "fc.startup.phase";
+
+    static final String BEAN_STEP = "spring.beans.instantiate";
+
+    static final String JVM_PHASE = "jvm";
+
+    static final String TOTAL_PHASE = "total";
+
+    private final MeterRegistry meterRegistry;
+
+    private final boolean enabled;
+
+    private final int topBeans;
+
+    private final boolean exitAfterReady;
+
+    public StartupReport(MeterRegistry meterRegistry,
+                         @Value("${fc.startup.report.enabled:true}") boolean enabled,
+                         @Value("${fc.startup.report.top-beans:20}") int topBeans,
+                         @Value("${fc.startup.exit-after-ready:false}") boolean exitAfterReady) {
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.topBeans = topBeans;
+        this.exitAfterReady = exitAfterReady;
+    }
+
+    // after the other ready listeners, which warm up the caches and indexes
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    @EventListener(ApplicationReadyEvent.class)
+    public void report(ApplicationReadyEvent event) {
+        final ApplicationStartup applicationStartup = event.getApplicationContext().getApplicationStartup();
+        if (enabled && applicationStartup instanceof BufferingApplicationStartup) {
+            final Summary summary = summarize(((BufferingApplicationStartup) applicationStartup).getBufferedTimeline(),
+                    Instant.ofEpochMilli(ManagementFactory.getRuntimeMXBean().getStartTime()), Instant.now(), topBeans);
+            summary.getPhases().forEach(phase -> Gauge.builder(PHASE_METRIC, phase.getDuration(), StartupReport::toMillis)
+                    .tag("phase", phase.getName())
+                    .baseUnit("milliseconds")
+                    .strongReference(true)
+                    .register(meterRegistry));
+            log.info(summary.format());
+        }
+
+        if (exitAfterReady) {
+            log.info("The application exits after the startup (fc.startup.exit-after-ready)");
+            System.exit(SpringApplication.exit(event.getApplicationContext()));
+        }
+    }
+
+    /**
+     * Summarize the recorded startup steps.
+     *
+     * @param jvmStart the start of the JVM, the time before the first step is reported as the {@value #JVM_PHASE} phase
+     * @param ready    the end of the startup, the {@value #TOTAL_PHASE} phase lasts from the JVM start until then
+     */
+    static Summary summarize(StartupTimeline timeline, Instant jvmStart, Instant ready, int topBeans) {
+        final List<Phase> phases = new ArrayList<>();
+        phases.add(new Phase(JVM_PHASE, Duration.between(jvmStart, timeline.getStartTime())));
+
+        final Map<Long, Duration> beanDependencies = new HashMap<>();
+        for (StartupTimeline.TimelineEvent event : timeline.getEvents()) {
+            final StartupStep step = event.getStartupStep();
+            if (step.getParentId() == null) {
+                phases.add(new Phase(step.getName(), event.getDuration()));
+            }
+            if (BEAN_STEP.equals(step.getName()) && step.getParentId() != null) {
+                beanDependencies.merge(step.getParentId(), event.getDuration(), Duration::plus);
+            }
+        }
+        phases.add(new Phase(TOTAL_PHASE, Duration.between(jvmStart, ready)));
+
+        final List<Bean> beans = timeline.getEvents().stream()
+                .filter(event -> BEAN_STEP.equals(event.getStartupStep().getName()))
+                .map(event -> new Bean(beanName(event.getStartupStep()),
+                        event.getDuration().minus(beanDependencies.getOrDefault(event.getStartupStep().getId(), Duration.ZERO)),
+                        event.getDuration()))
+                .sorted(Comparator.comparing(Bean::getSelf).reversed())
+                .limit(topBeans)
+                .collect(Collectors.toList());
+        return new Summary(phases, beans);
+    }
+
+    private static String beanName(StartupStep step) {
+        for (StartupStep.Tag tag : step.getTags()) {
+            if ("beanName".equals(tag.getKey())) {
+                return tag.getValue();
+            }
+        }
+        return "?";
+    }
+
+    private static double toMillis(Duration duration) {
+        return duration.toNanos() / 1_000_000.0;
+    }
+
+    @Getter
+    @AllArgsConstructor
+    static class Summary {
+
+        private final List<Phase> phases;
+        private final List<Bean> beans;
+
+        String format() {
+            final StringBuilder report = new StringBuilder("Startup phases (ms):");
+            phases.forEach(phase -> report.append(String.format("%n  %-50s %8d", phase.getName(), phase.getDuration().toMillis())));
+            report.append(String.format("%nSlowest beans (ms, own time / with dependencies):"));
+            beans.forEach(bean -> report.append(String.format("%n  %-50s %8d / %d", bean.getName(),
+                    bean.getSelf().toMillis(), bean.getTotal().toMillis())));
+            return report.toString();
+        }
+
+    }
+
+    @Getter
+    @AllArgsConstructor
+    static class Phase {
+
+        private final String name;
+        private final Duration duration;
+
+    }
+
+    @Getter
+    @AllArgsConstructor
+    static class Bean {
+
+        private final String name;
+        private final Duration self;
+        private final Duration total;
+
+    }
+
+}
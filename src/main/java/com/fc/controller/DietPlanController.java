@@ -0,0 +1,39 @@
+package com.fc.controller;
+
+import com.fc.exception.GlobalExceptionHandler;
+import com.fc.model.DietPlan;
+import com.fc.model.DietPlanRequestDTO;
+import com.fc.reactive.ReactiveConfig;
+import com.fc.service.DietPlanOptimizer;
+import com.fc.util.AuthUtil;
+import io.swagger.v3.oas.annotations.Operation;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@Slf4j
+@RestController
+@Profile("!" + ReactiveConfig.PROFILE)
+@RequestMapping("/plans")
+public class DietPlanController extends GlobalExceptionHandler {
+
+    private final DietPlanOptimizer dietPlanOptimizer;
+
+    public DietPlanController(DietPlanOptimizer dietPlanOptimizer) {
+        this.dietPlanOptimizer = dietPlanOptimizer;
+    }
+
+    @PostMapping("/optimize")
+    @PreAuthorize(AuthUtil.ANY_ROLE)
+    @Operation(description = "Find the cheapest combination of products and portions which meets the calorie and macro targets")
+    DietPlan optimize(@RequestBody DietPlanRequestDTO request) {
+        log.debug("Receive request to optimize a diet plan: {}", request);
+
+        return dietPlanOptimizer.optimize(request);
+    }
+
+}
@@ -0,0 +1,39 @@
+package com.fc.controller;
+
+import com.fc.exception.GlobalExceptionHandler;
+import com.fc.model.NutritionTotals;
+import com.fc.model.RecipeDTO;
+import com.fc.reactive.ReactiveConfig;
+import com.fc.service.NutritionService;
+import com.fc.util.AuthUtil;
+import io.swagger.v3.oas.annotations.Operation;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@Slf4j
+@RestController
+@Profile("!" + ReactiveConfig.PROFILE)
+@RequestMapping("/calculate")
+public class NutritionController extends GlobalExceptionHandler {
+
+    private final NutritionService nutritionService;
+
+    public NutritionController(NutritionService nutritionService) {
+        this.nutritionService = nutritionService;
+    }
+
+    @PostMapping
+    @PreAuthorize(AuthUtil.ANY_ROLE)
+    @Operation(description = "Calculate the calories, macros and cost of a recipe / meal")
+    NutritionTotals calculate(@RequestBody RecipeDTO recipe) {
+        log.debug("Receive request to calculate the recipe: {}", recipe.getName());
+
+        return nutritionService.calculate(recipe);
+    }
+
+}
@@ -0,0 +1,66 @@
+package com.fc.controller;
+
+import com.fc.config.RateLimited;
+import com.fc.exception.GlobalExceptionHandler;
+import com.fc.model.Product;
+import com.fc.model.ProductBatchResult;
+import com.fc.model.ProductPriceBatchResult;
+import com.fc.model.ProductPriceChangeDTO;
+import com.fc.model.ProductPriceRuleDTO;
+import com.fc.reactive.ReactiveConfig;
+import com.fc.service.ProductBatchService;
+import com.fc.util.AuthUtil;
+import io.swagger.v3.oas.annotations.Operation;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+@Slf4j
+@RestController
+@Profile("!" + ReactiveConfig.PROFILE)
+@RequestMapping("/products")
+public class ProductBatchController extends GlobalExceptionHandler {
+
+    private final ProductBatchService productBatchService;
+
+    public ProductBatchController(ProductBatchService productBatchService) {
+        this.productBatchService = productBatchService;
+    }
+
+    @PostMapping("/batch")
+    @RateLimited
+    @PreAuthorize(AuthUtil.ADMIN_ROLE_ONLY)
+    @Operation(description = "Create or update (matched by name) a list of products. Returns the result per item")
+    List<ProductBatchResult> createOrUpdateProducts(@RequestBody List<Product> products) {
+        log.info("Receive request to create or update a batch of {} products", products.size());
+
+        return productBatchService.createOrUpdateProducts(products);
+    }
+
+    @PostMapping("/priceChange/batch")
+    @RateLimited
+    @PreAuthorize(AuthUtil.ADMIN_ROLE_ONLY)
+    @Operation(description = "Update the price of many products. Returns the updated count and the missing ids")
+    ProductPriceBatchResult changePrices(@RequestBody List<ProductPriceChangeDTO> priceChanges) {
+        log.info("Receive request for a batch price change of {} products", priceChanges.size());
+
+        return productBatchService.changePrices(priceChanges);
+    }
+
+    @PostMapping("/priceChange/rule")
+    @RateLimited
+    @PreAuthorize(AuthUtil.ADMIN_ROLE_ONLY)
+    @Operation(description = "Update the price of all products of a type by a percentage")
+    ProductPriceBatchResult changePrices(@RequestBody ProductPriceRuleDTO priceRule) {
+        log.info("Receive request for a price rule. Product type: {}, percentage: {}", priceRule.getProductType(), priceRule.getPercentage());
+
+        return productBatchService.changePrices(priceRule);
+    }
+
+}
@@ -0,0 +1,43 @@
+package com.fc.controller;
+
+import com.fc.exception.GlobalExceptionHandler;
+import com.fc.reactive.ReactiveConfig;
+import com.fc.service.ProductChangeFeed;
+import com.fc.util.AuthUtil;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.MediaType;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+@Slf4j
+@RestController
+@Profile("!" + ReactiveConfig.PROFILE)
+@RequestMapping("/products/changes")
+public class ProductChangeController extends GlobalExceptionHandler {
+
+    private final ProductChangeFeed productChangeFeed;
+
+    public ProductChangeController(ProductChangeFeed productChangeFeed) {
+        this.productChangeFeed = productChangeFeed;
+    }
+
+    @GetMapping(produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @PreAuthorize(AuthUtil.ANY_ROLE)
+    @Operation(description = "Server-Sent Events of the product creates, updates, deletes and price changes."
+            + " Reconnect with Last-Event-ID to receive the missed changes; a " + ProductChangeFeed.RESET_EVENT
+            + " event means they are gone and the products have to be reloaded")
+    SseEmitter getChanges(@Parameter(description = "The id of the last received event")
+                          @RequestHeader(name = "Last-Event-ID", required = false) String lastEventId) {
+        log.info("Receive request to subscribe to the product changes. Last event id: {}", lastEventId);
+
+        return productChangeFeed.subscribe(lastEventId);
+    }
+
+}
@@ -1,76 +1,192 @@
 package com.fc.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fc.config.IdempotencyStore;
+import com.fc.config.RateLimited;
 import com.fc.exception.GlobalExceptionHandler;
 import com.fc.model.Product;
+import com.fc.model.ProductFilter;
+import com.fc.model.ProductPage;
 import com.fc.model.ProductPriceChangeDTO;
+import com.fc.model.ProductSummaryPage;
+import com.fc.model.ProductType;
+import com.fc.reactive.ReactiveConfig;
 import com.fc.service.ProductService;
 import com.fc.util.AuthUtil;
+import com.fc.util.ETagUtil;
 import io.swagger.v3.oas.annotations.OpenAPIDefinition;
 import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.info.Info;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.util.DigestUtils;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
-
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.security.Principal;
+import java.time.Duration;
 import java.util.List;
 
 @Slf4j
 @RestController
+@Profile("!" + ReactiveConfig.PROFILE)
 @RequestMapping("/products")
 @OpenAPIDefinition(info = @Info(title = "Product API", version = "1.0.0", description = "CRUD product's functions"))
 public class ProductController  extends GlobalExceptionHandler {
 
     private final ProductService productService;
 
-    public ProductController(ProductService productService) {
+    private final ObjectWriter productWriter;
+
+    private final ObjectMapper objectMapper;
+
+    private final IdempotencyStore idempotencyStore;
+
+    public ProductController(ProductService productService, ObjectMapper objectMapper,
+                             @Value("${fc.idempotency.max-keys:10000}") long idempotencyMaxKeys,
+                             @Value("${fc.idempotency.ttl-hours:24}") long idempotencyTtlHours,
+                             @Value("${fc.idempotency.in-flight-timeout-seconds:30}") long idempotencyInFlightTimeoutSeconds) {
         this.productService = productService;
+        this.objectMapper = objectMapper;
+        this.productWriter = objectMapper.writerFor(Product.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        this.idempotencyStore = new IdempotencyStore(idempotencyMaxKeys, Duration.ofHours(idempotencyTtlHours),
+                Duration.ofSeconds(idempotencyInFlightTimeoutSeconds));
     }
 
-    @GetMapping
+    // the listing parameters and a cursor without limit select getProductSummaries, changedSince selects ProductDeltaController
+    @GetMapping(params = {"!limit", "!cursor", "!type", "!minPrice", "!maxPrice", "!sort", "!changedSince"})
     @PreAuthorize(AuthUtil.ANY_ROLE)
-    @Operation(description = "Get all products")
-    List<Product> getAllProducts() {
+    @Operation(description = "Get all products. Supports If-None-Match with the returned ETag")
+    List<Product> getAllProducts(WebRequest request) {
         log.info("Receive request to receive all products");
 
+        // the catalog version is checked first, so a not modified catalog is neither loaded nor serialized
+        if (request.checkNotModified(ETagUtil.of(productService.getCatalogVersion()))) {
+            return null;
+        }
         return productService.getAllProducts();
     }
 
+    @GetMapping(params = {"limit", "!type", "!minPrice", "!maxPrice", "!sort", "!changedSince"})
+    @PreAuthorize(AuthUtil.ANY_ROLE)
+    @Operation(description = "Get one page of products ordered by id. Use the returned nextCursor to get the next page")
+    ProductPage getProductPage(@RequestParam(required = false) String cursor, @RequestParam Integer limit) {
+        log.info("Receive request to receive a page of products. Cursor: {}, limit: {}", cursor, limit);
+
+        return productService.getProductPage(cursor, limit);
+    }
+
+    @GetMapping
+    @PreAuthorize(AuthUtil.ANY_ROLE)
+    @Operation(description = "Get one page of the id, name, price and type of the products filtered by type and price range."
+            + " Use the returned nextCursor with the same filters and sort to get the next page")
+    ProductSummaryPage getProductSummaries(@RequestParam(required = false) ProductType type,
+                                           @RequestParam(required = false) BigDecimal minPrice,
+                                           @RequestParam(required = false) BigDecimal maxPrice,
+                                           @Parameter(description = "id (default), price, price,asc or price,desc")
+                                           @RequestParam(required = false) String sort,
+                                           @RequestParam(required = false) String cursor,
+                                           @RequestParam(required = false) Integer limit) {
+        log.info("Receive request to receive the products. Type: {}, price: {} - {}, sort: {}, limit: {}",
+                type, minPrice, maxPrice, sort, limit);
+
+        return productService.getProductSummaries(new ProductFilter(type, minPrice, maxPrice), sort, cursor, limit);
+    }
+
+    @GetMapping("/stream")
+    @PreAuthorize(AuthUtil.ANY_ROLE)
+    @Operation(description = "Stream all products as a JSON array without loading the whole catalog in memory")
+    ResponseEntity<StreamingResponseBody> streamAllProducts() {
+        log.info("Receive request to stream all products");
+
+        StreamingResponseBody body = outputStream -> {
+            try (JsonGenerator generator = productWriter.getFactory().createGenerator(outputStream)) {
+                generator.writeStartArray();
+                productService.streamAllProducts(product -> {
+                    try {
+                        productWriter.writeValue(generator, product);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                generator.writeEndArray();
+            }
+        };
+
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
     @PostMapping
+    @RateLimited
     @PreAuthorize(AuthUtil.ADMIN_ROLE_ONLY)
-    @Operation(description = "Create a new product")
-    Product createNewProduct(@RequestBody Product newProduct) {
+    @Operation(description = "Create a new product. A retry with the same Idempotency-Key gets the product created by the first request")
+    ResponseEntity<Product> createNewProduct(@RequestBody Product newProduct,
+                                             @RequestHeader(value = IdempotencyStore.KEY_HEADER, required = false) String idempotencyKey,
+                                             Principal principal) {
         log.info("Receive request to receive to save a new product");
 
-        return productService.createNewProduct(newProduct);
+        // the fingerprint is taken before the service sets the id and the dates of the product
+        IdempotencyStore.Result<Product> result = idempotencyStore.execute(scope(principal, "createNewProduct"), idempotencyKey,
+                fingerprint(idempotencyKey, newProduct), () -> productService.createNewProduct(newProduct));
+        return idempotentResponse(result).body(result.getValue());
     }
 
     @GetMapping("/{id}")
     @PreAuthorize(AuthUtil.ANY_ROLE)
-    @Operation(description = "Get the product by id")
+    @Operation(description = "Get the product by id. Supports If-None-Match / If-Modified-Since with the returned ETag / Last-Modified")
     ResponseEntity getOneProduct(@PathVariable Long id) {
         log.info("Receive request to find the product with id: {}", id);
 
-        return ResponseEntity.ok(productService.getOneProduct(id));
+        // a request matching the ETag / Last-Modified gets 304 and the product is not serialized
+        Product product = productService.getOneProduct(id);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok().eTag(ETagUtil.of(product));
+        if (ETagUtil.lastModified(product) != null) {
+            response.lastModified(ETagUtil.lastModified(product));
+        }
+        return response.body(product);
     }
 
     @PutMapping("/{id}")
+    @RateLimited
     @PreAuthorize(AuthUtil.ADMIN_ROLE_ONLY)
-    @Operation(description = "Update the product by id and new product's details")
-    Product updateProduct(@RequestBody Product newProduct, @PathVariable Long id) {
+    @Operation(description = "Update the product by id and new product's details. With If-Match the product is only updated at the given ETag (version)")
+    ResponseEntity<Product> updateProduct(@RequestBody Product newProduct, @PathVariable Long id,
+                                          @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
         log.info("Receive request to update the product with id: {}", id);
 
-        return productService.updateProduct(newProduct, id);
+        final Long expectedVersion = ETagUtil.versionOf(ifMatch);
+        Product product = expectedVersion == null
+                ? productService.updateProduct(newProduct, id)
+                : productService.updateProduct(newProduct, id, expectedVersion);
+        return ResponseEntity.ok().eTag(ETagUtil.of(product)).body(product);
     }
 
     @DeleteMapping("/{id}")
+    @RateLimited
     @PreAuthorize(AuthUtil.ADMIN_ROLE_ONLY)
     @Operation(description = "Delete the product by id")
     void deleteProduct(@PathVariable Long id) {
@@ -80,12 +196,47 @@ public class ProductController  extends GlobalExceptionHandler {
     }
 
     @PostMapping("/priceChange")
+    @RateLimited
     @PreAuthorize(AuthUtil.ADMIN_ROLE_ONLY)
-    @Operation(description = "Update product's price")
-    Product changePrice(@RequestBody ProductPriceChangeDTO productPriceChangeDTO) {
+    @Operation(description = "Update product's price. With If-Match the price is only changed at the given ETag (version)."
+            + " A retry with the same Idempotency-Key gets the result of the first request")
+    ResponseEntity<Product> changePrice(@RequestBody ProductPriceChangeDTO productPriceChangeDTO,
+                                        @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                        @RequestHeader(value = IdempotencyStore.KEY_HEADER, required = false) String idempotencyKey,
+                                        Principal principal) {
         log.info("Receive request for price change. Product id: {}, new price: {}", productPriceChangeDTO.getId(), productPriceChangeDTO.getPrice());
 
-        return productService.changePrice(productPriceChangeDTO.getId(), productPriceChangeDTO.getPrice());
+        final Long expectedVersion = ETagUtil.versionOf(ifMatch);
+        // If-Match is part of the request, a retry with another version is a different request
+        IdempotencyStore.Result<Product> result = idempotencyStore.execute(scope(principal, "changePrice"), idempotencyKey,
+                fingerprint(idempotencyKey, productPriceChangeDTO, ifMatch),
+                () -> expectedVersion == null
+                        ? productService.changePrice(productPriceChangeDTO.getId(), productPriceChangeDTO.getPrice())
+                        : productService.changePrice(productPriceChangeDTO.getId(), productPriceChangeDTO.getPrice(), expectedVersion));
+        return idempotentResponse(result).eTag(ETagUtil.of(result.getValue())).body(result.getValue());
+    }
+
+    private static String scope(Principal principal, String operation) {
+        return (principal == null ? "" : principal.getName()) + ':' + operation;
+    }
+
+    private String fingerprint(String idempotencyKey, Object... request) {
+        if (idempotencyKey == null) {
+            return null;
+        }
+        try {
+            return DigestUtils.md5DigestAsHex(objectMapper.writeValueAsBytes(request));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("The request could not be serialized", e);
+        }
+    }
+
+    private static ResponseEntity.BodyBuilder idempotentResponse(IdempotencyStore.Result<Product> result) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (result.isReplayed()) {
+            response.header(IdempotencyStore.REPLAYED_HEADER, "true");
+        }
+        return response;
     }
 
 }
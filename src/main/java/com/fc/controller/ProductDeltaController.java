@@ -0,0 +1,42 @@
+package com.fc.controller;
+
+import com.fc.exception.GlobalExceptionHandler;
+import com.fc.model.ProductDelta;
+import com.fc.reactive.ReactiveConfig;
+import com.fc.service.ProductDeltaService;
+import com.fc.util.AuthUtil;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+@Slf4j
+@RestController
+@Profile("!" + ReactiveConfig.PROFILE)
+@RequestMapping("/products")
+public class ProductDeltaController extends GlobalExceptionHandler {
+
+    private final ProductDeltaService productDeltaService;
+
+    public ProductDeltaController(ProductDeltaService productDeltaService) {
+        this.productDeltaService = productDeltaService;
+    }
+
+    @GetMapping(params = "changedSince")
+    @PreAuthorize(AuthUtil.ANY_ROLE)
+    @Operation(description = "Get the products changed and the tombstones of the products deleted after the watermark, in change order."
+            + " Start with an empty changedSince, then pass the returned watermark; 410 when it is older than the tombstone retention")
+    ProductDelta getChangesSince(@Parameter(description = "The watermark of the previous sync, empty for the first one")
+                                 @RequestParam String changedSince,
+                                 @RequestParam(required = false) Integer limit) {
+        log.info("Receive request to receive the product changes since: {}, limit: {}", changedSince, limit);
+
+        return productDeltaService.getChangesSince(changedSince, limit);
+    }
+
+}
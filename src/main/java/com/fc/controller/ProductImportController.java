@@ -0,0 +1,63 @@
+package com.fc.controller;
+
+import com.fc.config.RateLimited;
+import com.fc.exception.GlobalExceptionHandler;
+import com.fc.model.ProductImport;
+import com.fc.model.ProductImportRequestDTO;
+import com.fc.reactive.ReactiveConfig;
+import com.fc.service.ProductImportService;
+import com.fc.util.AuthUtil;
+import io.swagger.v3.oas.annotations.Operation;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@Slf4j
+@RestController
+@Profile("!" + ReactiveConfig.PROFILE)
+@RequestMapping("/products/imports")
+public class ProductImportController extends GlobalExceptionHandler {
+
+    private final ProductImportService productImportService;
+
+    public ProductImportController(ProductImportService productImportService) {
+        this.productImportService = productImportService;
+    }
+
+    @PostMapping
+    @RateLimited
+    @PreAuthorize(AuthUtil.ADMIN_ROLE_ONLY)
+    @Operation(description = "Start the import of a CSV / NDJSON file from the import folder")
+    ResponseEntity<ProductImport> startImport(@RequestBody ProductImportRequestDTO importRequest) {
+        log.info("Receive request to import the products of the file: {}", importRequest.getFileName());
+
+        return ResponseEntity.accepted().body(productImportService.startImport(importRequest.getFileName(), importRequest.getFormat()));
+    }
+
+    @GetMapping("/{id}")
+    @PreAuthorize(AuthUtil.ANY_ROLE)
+    @Operation(description = "Get the progress of the product import by id")
+    ProductImport getImport(@PathVariable Long id) {
+        log.info("Receive request to find the product import with id: {}", id);
+
+        return productImportService.getImport(id);
+    }
+
+    @PostMapping("/{id}/resume")
+    @RateLimited
+    @PreAuthorize(AuthUtil.ADMIN_ROLE_ONLY)
+    @Operation(description = "Resume a failed product import from its last committed offset")
+    ResponseEntity<ProductImport> resumeImport(@PathVariable Long id) {
+        log.info("Receive request to resume the product import with id: {}", id);
+
+        return ResponseEntity.accepted().body(productImportService.resumeImport(id));
+    }
+
+}
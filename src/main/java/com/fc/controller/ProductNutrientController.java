@@ -0,0 +1,39 @@
+package com.fc.controller;
+
+import com.fc.exception.GlobalExceptionHandler;
+import com.fc.model.NutrientQuery;
+import com.fc.model.NutrientQueryResult;
+import com.fc.reactive.ReactiveConfig;
+import com.fc.service.ProductNutrientSnapshot;
+import com.fc.util.AuthUtil;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@Slf4j
+@RestController
+@Profile("!" + ReactiveConfig.PROFILE)
+@RequestMapping("/products/nutrients")
+public class ProductNutrientController extends GlobalExceptionHandler {
+
+    private final ProductNutrientSnapshot productNutrientSnapshot;
+
+    public ProductNutrientController(ProductNutrientSnapshot productNutrientSnapshot) {
+        this.productNutrientSnapshot = productNutrientSnapshot;
+    }
+
+    @GetMapping
+    @PreAuthorize(AuthUtil.ANY_ROLE)
+    @Operation(description = "Filter the products by price / nutrient ranges and return the top products by a metric, e.g. protein per price")
+    NutrientQueryResult query(@Parameter(description = "The optional filters, the sort metric and the limit (max 1000)") NutrientQuery query) {
+        log.debug("Receive request to query the product nutrients: {}", query);
+
+        return productNutrientSnapshot.query(query);
+    }
+
+}
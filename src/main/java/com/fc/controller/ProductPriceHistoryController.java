@@ -0,0 +1,66 @@
+package com.fc.controller;
+
+import com.fc.exception.GlobalExceptionHandler;
+import com.fc.model.ProductPriceAsOfDTO;
+import com.fc.model.ProductPriceHistory;
+import com.fc.model.ProductPriceHistoryPage;
+import com.fc.reactive.ReactiveConfig;
+import com.fc.service.ProductPriceHistoryService;
+import com.fc.util.AuthUtil;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.Instant;
+import java.util.List;
+
+@Slf4j
+@RestController
+@Profile("!" + ReactiveConfig.PROFILE)
+@RequestMapping("/products")
+public class ProductPriceHistoryController extends GlobalExceptionHandler {
+
+    private final ProductPriceHistoryService productPriceHistoryService;
+
+    public ProductPriceHistoryController(ProductPriceHistoryService productPriceHistoryService) {
+        this.productPriceHistoryService = productPriceHistoryService;
+    }
+
+    @GetMapping("/{id}/prices")
+    @PreAuthorize(AuthUtil.ANY_ROLE)
+    @Operation(description = "Get the price changes of the product in a time range, oldest first")
+    ProductPriceHistoryPage getPriceHistory(@PathVariable Long id,
+                                            @Parameter(description = "ISO-8601 start of the range (inclusive)")
+                                            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+                                            @Parameter(description = "ISO-8601 end of the range (exclusive)")
+                                            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to,
+                                            @Parameter(description = "The nextCursor of the previous page, with the same range")
+                                            @RequestParam(required = false) String cursor,
+                                            @Parameter(description = "The max number of entries (default 1000, max 10000)")
+                                            @RequestParam(required = false) Integer limit) {
+        log.debug("Receive request to get the price history of the product with id: {}, from: {}, to: {}, cursor: {}", id, from, to, cursor);
+
+        return productPriceHistoryService.getPriceHistory(id, from, to, cursor, limit);
+    }
+
+    @PostMapping("/prices/asOf")
+    @PreAuthorize(AuthUtil.ANY_ROLE)
+    @Operation(description = "Get the prices of many products at a point in time (max 10000 ids)")
+    List<ProductPriceHistory> getPricesAsOf(@RequestBody ProductPriceAsOfDTO request) {
+        log.debug("Receive request to get the prices as of {} of {} products", request.getAt(),
+                request.getIds() == null ? 0 : request.getIds().size());
+
+        return productPriceHistoryService.getPricesAsOf(request);
+    }
+
+}
@@ -0,0 +1,43 @@
+package com.fc.controller;
+
+import com.fc.exception.GlobalExceptionHandler;
+import com.fc.model.ProductSearchHit;
+import com.fc.reactive.ReactiveConfig;
+import com.fc.service.ProductSearchIndex;
+import com.fc.util.AuthUtil;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+@Slf4j
+@RestController
+@Profile("!" + ReactiveConfig.PROFILE)
+@RequestMapping("/products/search")
+public class ProductSearchController extends GlobalExceptionHandler {
+
+    private final ProductSearchIndex productSearchIndex;
+
+    public ProductSearchController(ProductSearchIndex productSearchIndex) {
+        this.productSearchIndex = productSearchIndex;
+    }
+
+    @GetMapping
+    @PreAuthorize(AuthUtil.ANY_ROLE)
+    @Operation(description = "Search the products by name and description with prefix, substring and typo tolerant matching")
+    List<ProductSearchHit> search(@Parameter(description = "The search text") @RequestParam("q") String query,
+                                  @Parameter(description = "The max number of products (max " + ProductSearchIndex.MAX_LIMIT + ")")
+                                  @RequestParam(defaultValue = "" + ProductSearchIndex.DEFAULT_LIMIT) int limit) {
+        log.debug("Receive request to search the products: {}", query);
+
+        return productSearchIndex.search(query, limit);
+    }
+
+}
@@ -0,0 +1,40 @@
+package com.fc.embedded;
+
+import com.fc.repository.ProductPriceHistoryRepository;
+import com.fc.repository.ProductTombstoneRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+
+/**
+ * Class provides configuration for the embedded product storage of the `embedded` profile: the products are served
+ * from memory and persisted in a log and snapshots instead of the product table (see {@link EmbeddedProductRepository}).
+ * <p>
+ * The storage is the primary {@link com.fc.repository.ProductRepository}, so it is injected into the services instead
+ * of the JPA repository. The JPA stack stays in place for the other tables. The batch upsert, the batch price change
+ * and the import write the product table with SQL, they are not served by the embedded storage.
+ */
+@Configuration
+@Profile(EmbeddedConfig.PROFILE)
+public class EmbeddedConfig {
+
+    public static final String PROFILE = "embedded";
+
+    @Bean
+    @Primary
+    public EmbeddedProductRepository embeddedProductRepository(ProductPriceHistoryRepository productPriceHistoryRepository,
+                                                               ProductTombstoneRepository productTombstoneRepository,
+                                                               @Value("${fc.embedded.directory:./data/products}") String directory,
+                                                               @Value("${fc.embedded.log.max-sync-delay-millis:0}") long maxSyncDelayMillis,
+                                                               @Value("${fc.embedded.snapshot.interval-seconds:300}") long snapshotIntervalSeconds,
+                                                               @Value("${fc.embedded.snapshot.max-log-records:100000}") long snapshotMaxLogRecords) throws IOException {
+        return new EmbeddedProductRepository(new EmbeddedProductStore(Paths.get(directory)), productPriceHistoryRepository,
+                productTombstoneRepository, maxSyncDelayMillis, snapshotIntervalSeconds, snapshotMaxLogRecords);
+    }
+
+}
@@ -0,0 +1,933 @@
+package com.fc.embedded;
+
+import com.fc.embedded.EmbeddedProductStore.LogRecord;
+import com.fc.embedded.EmbeddedProductStore.Snapshot;
+import com.fc.model.Product;
+import com.fc.model.ProductCatalogVersion;
+import com.fc.model.ProductFilter;
+import com.fc.model.ProductPriceHistory;
+import com.fc.model.ProductSort;
+import com.fc.model.ProductSummary;
+import com.fc.model.ProductTombstone;
+import com.fc.model.ProductType;
+import com.fc.repository.ProductPriceHistoryRepository;
+import com.fc.repository.ProductRepository;
+import com.fc.repository.ProductTombstoneRepository;
+import com.fc.util.CursorUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.core.convert.support.DefaultConversionService;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.dao.IncorrectResultSizeDataAccessException;
+import org.springframework.data.domain.Example;
+import org.springframework.data.domain.ExampleMatcher;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mapping.PropertyReferenceException;
+import org.springframework.data.projection.ProjectionFactory;
+import org.springframework.data.projection.SpelAwareProxyProjectionFactory;
+import org.springframework.data.repository.query.FluentQuery;
+import org.springframework.data.support.ExampleMatcherAccessor;
+import org.springframework.data.util.ClassTypeInformation;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.util.ReflectionUtils;
+
+import javax.persistence.EntityNotFoundException;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * {@link ProductRepository} of the `embedded` profile which keeps the whole catalog in memory and persists it in the
+ * files of {@link EmbeddedProductStore} instead of the product table.
+ * <p>
+ * The reads are served from a concurrent skip list map by id and a (price, id) index without any lock. The stored
+ * products are never changed, every write replaces them and the callers always get copies, like the detached
+ * entities of JPA. The writes are serialized by one lock: they check the version and the unique name, append the
+ * change to the log and publish it to the maps; the fsync happens after the lock is released, so the concurrent
+ * writers share it. With a max sync delay the writers do not wait for the fsync, the log is forced periodically
+ * and a crash loses at most the writes of the delay.
+ * <p>
+ * The log is compacted into a snapshot periodically and as soon as it has the max number of records, so the startup
+ * loads the snapshot and replays only the short log written after it. The price history and the tombstones are
+ * still written to their tables (see {@link ProductPriceHistoryRepository}, {@link ProductTombstoneRepository}).
+ */
+@Slf4j
+public class EmbeddedProductRepository implements ProductRepository, DisposableBean {
+
+    // the listing by price; only the products with a price are indexed, like the price is not null predicate
+    private static final Comparator<Product> PRICE_ORDER = Comparator.comparing(Product::getPrice).thenComparing(Product::getId);
+
+    // the scale of the price column, which rounds the result of the price rules
+    private static final int PRICE_SCALE = 2;
+
+    // the persistent properties by name, for the sorts and the examples
+    private static final Map<String, Field> PROPERTIES = persistentProperties();
+
+    private static final ProjectionFactory PROJECTIONS = new SpelAwareProxyProjectionFactory();
+
+    private final EmbeddedProductStore store;
+
+    private final ProductPriceHistoryRepository productPriceHistoryRepository;
+
+    private final ProductTombstoneRepository productTombstoneRepository;
+
+    private final long maxSyncDelayMillis;
+
+    private final long snapshotMaxLogRecords;
+
+    private final ConcurrentSkipListMap<Long, Product> products = new ConcurrentSkipListMap<>();
+
+    private final ConcurrentSkipListSet<Product> priceIndex = new ConcurrentSkipListSet<>(PRICE_ORDER);
+
+    private final Map<String, Long> idsByName = new ConcurrentHashMap<>();
+
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    private final ScheduledExecutorService maintenance;
+
+    // guarded by writeLock
+    private long nextId = 1;
+
+    // the records of the write running under the lock
+    private List<LogRecord> pendingRecords;
+
+    private volatile long snapshotSequence;
+
+    public EmbeddedProductRepository(EmbeddedProductStore store,
+                                     ProductPriceHistoryRepository productPriceHistoryRepository,
+                                     ProductTombstoneRepository productTombstoneRepository,
+                                     long maxSyncDelayMillis,
+                                     long snapshotIntervalSeconds,
+                                     long snapshotMaxLogRecords) throws IOException {
+        this.store = store;
+        this.productPriceHistoryRepository = productPriceHistoryRepository;
+        this.productTombstoneRepository = productTombstoneRepository;
+        this.maxSyncDelayMillis = maxSyncDelayMillis;
+        this.snapshotMaxLogRecords = snapshotMaxLogRecords;
+
+        final long start = System.nanoTime();
+        final long replayed = store.recover(this::load, this::replay);
+        log.info("The embedded product storage was recovered in {} ms. Products: {}, replayed log records: {}",
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), products.size(), replayed);
+
+        this.maintenance = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("product-storage-"));
+        this.maintenance.scheduleWithFixedDelay(this::compactIfChanged, snapshotIntervalSeconds, snapshotIntervalSeconds, TimeUnit.SECONDS);
+        if (maxSyncDelayMillis > 0) {
+            this.maintenance.scheduleWithFixedDelay(store::syncAll, maxSyncDelayMillis, maxSyncDelayMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    // --------------------------------------------- reads ---------------------------------------------
+
+    @Override
+    public Optional<Product> findById(Long id) {
+        return Optional.ofNullable(products.get(id)).map(EmbeddedProductRepository::copy);
+    }
+
+    @Override
+    public boolean existsById(Long id) {
+        return products.containsKey(id);
+    }
+
+    @Override
+    public Product findByName(String name) {
+        final Long id = name == null ? null : idsByName.get(name);
+        return id == null ? null : findById(id).orElse(null);
+    }
+
+    @Override
+    public List<Product> findByNameIn(Collection<String> names) {
+        return names.stream()
+                .map(this::findByName)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<Product> findAll() {
+        return copies(products.values().stream());
+    }
+
+    @Override
+    public List<Product> findAll(Sort sort) {
+        return copies(sorted(sort));
+    }
+
+    @Override
+    public Page<Product> findAll(Pageable pageable) {
+        if (pageable.isUnpaged()) {
+            return new PageImpl<>(findAll(pageable.getSort()));
+        }
+        return new PageImpl<>(copies(sorted(pageable.getSort()).skip(pageable.getOffset()).limit(pageable.getPageSize())),
+                pageable, products.size());
+    }
+
+    @Override
+    public List<Product> findAllById(Iterable<Long> ids) {
+        return copies(StreamSupport.stream(ids.spliterator(), false).map(products::get).filter(Objects::nonNull));
+    }
+
+    @Override
+    public long count() {
+        return products.size();
+    }
+
+    @Override
+    public List<Product> findByIdGreaterThanOrderByIdAsc(Long id, Pageable pageable) {
+        return copies(products.tailMap(id, false).values().stream()
+                .skip(pageable.getOffset())
+                .limit(pageable.getPageSize()));
+    }
+
+    @Override
+    public List<Product> findChangedSince(Instant since, Long afterId, Instant until, Pageable pageable) {
+        return copies(products.values().stream()
+                .filter(product -> product.getUpdateDate() != null
+                        && !product.getUpdateDate().isBefore(since)
+                        && !product.getUpdateDate().isAfter(until)
+                        && (product.getUpdateDate().isAfter(since) || product.getId() > afterId))
+                .sorted(Comparator.comparing(Product::getUpdateDate).thenComparing(Product::getId))
+                .limit(pageable.getPageSize()));
+    }
+
+    @Override
+    public Long findMaxId() {
+        final Map.Entry<Long, Product> last = products.lastEntry();
+        return last == null ? null : last.getKey();
+    }
+
+    @Override
+    public ProductCatalogVersion findCatalogVersion() {
+        // the count and the last date of one pass, so they belong to the same state
+        long count = 0;
+        Instant lastModified = null;
+        for (Product product : products.values()) {
+            count++;
+            if (product.getUpdateDate() != null && (lastModified == null || product.getUpdateDate().isAfter(lastModified))) {
+                lastModified = product.getUpdateDate();
+            }
+        }
+        return new ProductCatalogVersion(count, lastModified);
+    }
+
+    @Override
+    public void streamAllOrderedById(Consumer<Product> action) {
+        products.values().forEach(product -> action.accept(copy(product)));
+    }
+
+    @Override
+    public List<ProductSummary> findSummaries(ProductFilter filter, ProductSort sort, Long afterId,
+                                              CursorUtil.PriceKey afterPrice, int limit) {
+        final Predicate<Product> matches = product -> (filter.getProductType() == null || filter.getProductType() == product.getProductType())
+                && (filter.getMinPrice() == null || (product.getPrice() != null && product.getPrice().compareTo(filter.getMinPrice()) >= 0))
+                && (filter.getMaxPrice() == null || (product.getPrice() != null && product.getPrice().compareTo(filter.getMaxPrice()) <= 0));
+
+        final Iterator<Product> candidates;
+        final Predicate<Product> beyondRange;
+        if (sort == ProductSort.ID) {
+            candidates = products.tailMap(afterId, false).values().iterator();
+            beyondRange = product -> false;
+        } else if (sort == ProductSort.PRICE) {
+            NavigableSet<Product> ascending = priceIndex;
+            if (afterPrice != null) {
+                ascending = priceIndex.tailSet(priceKey(afterPrice.getPrice(), afterPrice.getId()), false);
+            } else if (filter.getMinPrice() != null) {
+                ascending = priceIndex.tailSet(priceKey(filter.getMinPrice(), Long.MIN_VALUE), false);
+            }
+            candidates = ascending.iterator();
+            beyondRange = product -> filter.getMaxPrice() != null && product.getPrice().compareTo(filter.getMaxPrice()) > 0;
+        } else {
+            NavigableSet<Product> descending = priceIndex.descendingSet();
+            if (afterPrice != null) {
+                descending = descending.tailSet(priceKey(afterPrice.getPrice(), afterPrice.getId()), false);
+            } else if (filter.getMaxPrice() != null) {
+                descending = descending.tailSet(priceKey(filter.getMaxPrice(), Long.MAX_VALUE), false);
+            }
+            candidates = descending.iterator();
+            beyondRange = product -> filter.getMinPrice() != null && product.getPrice().compareTo(filter.getMinPrice()) < 0;
+        }
+
+        final List<ProductSummary> summaries = new ArrayList<>(limit);
+        while (summaries.size() < limit && candidates.hasNext()) {
+            final Product product = candidates.next();
+            if (beyondRange.test(product)) {
+                break;
+            }
+            if (matches.test(product)) {
+                summaries.add(new ProductSummary(product.getId(), product.getName(), product.getPrice(), product.getProductType()));
+            }
+        }
+        return summaries;
+    }
+
+    // --------------------------------------------- writes ---------------------------------------------
+
+    @Override
+    public <S extends Product> S save(S product) {
+        final Product saved = write(() -> put(product));
+        update(product, saved);
+        return product;
+    }
+
+    @Override
+    public <S extends Product> S saveAndFlush(S product) {
+        return save(product);
+    }
+
+    @Override
+    public <S extends Product> List<S> saveAll(Iterable<S> products) {
+        final List<S> entities = new ArrayList<>();
+        products.forEach(entities::add);
+        final List<Product> saved = write(() -> {
+            List<Product> written = new ArrayList<>(entities.size());
+            for (S product : entities) {
+                written.add(put(product));
+            }
+            return written;
+        });
+        for (int i = 0; i < entities.size(); i++) {
+            update(entities.get(i), saved.get(i));
+        }
+        return entities;
+    }
+
+    @Override
+    public <S extends Product> List<S> saveAllAndFlush(Iterable<S> products) {
+        return saveAll(products);
+    }
+
+    @Override
+    public Product insert(Product product) {
+        product.setId(null);
+        return saveAndRecordPrice(product);
+    }
+
+    @Override
+    public Product saveAndRecordPrice(Product product) {
+        final Product savedProduct = save(product);
+        if (savedProduct.getPrice() != null) {
+            productPriceHistoryRepository.save(new ProductPriceHistory(savedProduct.getId(), savedProduct.getPrice(), savedProduct.getUpdateDate()));
+        }
+        return savedProduct;
+    }
+
+    @Override
+    public int setMissingUpdateDates(Instant updateDate) {
+        return write(() -> {
+            final List<Product> updated = new ArrayList<>();
+            for (Product product : products.values()) {
+                if (product.getUpdateDate() == null) {
+                    Product copy = copy(product);
+                    copy.setUpdateDate(updateDate);
+                    updated.add(copy);
+                }
+            }
+            updated.forEach(this::publish);
+            return updated;
+        }).size();
+    }
+
+    @Override
+    public int multiplyPrices(ProductType productType, BigDecimal factor, Instant updateDate, Long fromId, Long toId) {
+        final List<Product> updated = write(() -> {
+            final List<Product> changed = new ArrayList<>();
+            for (Product product : products.subMap(fromId, false, toId, true).values()) {
+                if (product.getProductType() == productType) {
+                    Product copy = copy(product);
+                    if (copy.getPrice() != null) {
+                        copy.setPrice(copy.getPrice().multiply(factor).setScale(PRICE_SCALE, RoundingMode.HALF_EVEN));
+                    }
+                    copy.setUpdateDate(updateDate);
+                    copy.setVersion(copy.getVersion() + 1);
+                    changed.add(copy);
+                }
+            }
+            changed.forEach(this::publish);
+            return changed;
+        });
+        // the history is written here, the insert ... select of the price rule finds no rows in the product table
+        productPriceHistoryRepository.saveAll(updated.stream()
+                .filter(product -> product.getPrice() != null)
+                .map(product -> new ProductPriceHistory(product.getId(), product.getPrice(), product.getUpdateDate()))
+                .collect(Collectors.toList()));
+        return updated.size();
+    }
+
+    @Override
+    public List<Long> changePrices(Map<Long, BigDecimal> prices, Map<Long, Integer> changeCounts) {
+        final Instant now = Product.currentTimestamp();
+        final List<Long> missingIds = new ArrayList<>();
+        final List<Product> updated = write(() -> {
+            final List<Product> changed = new ArrayList<>(prices.size());
+            prices.forEach((id, price) -> {
+                final Product product = products.get(id);
+                if (product == null) {
+                    missingIds.add(id);
+                    return;
+                }
+                Product copy = copy(product);
+                copy.setPrice(price);
+                copy.setUpdateDate(now);
+                copy.setVersion(copy.getVersion() + changeCounts.getOrDefault(id, 1));
+                changed.add(copy);
+            });
+            changed.forEach(this::publish);
+            return changed;
+        });
+        productPriceHistoryRepository.saveAll(updated.stream()
+                .map(product -> new ProductPriceHistory(product.getId(), product.getPrice(), product.getUpdateDate()))
+                .collect(Collectors.toList()));
+        return missingIds;
+    }
+
+    @Override
+    public void deleteAndRecordTombstone(Long id) {
+        deleteById(id);
+        productTombstoneRepository.save(new ProductTombstone(id, Product.currentTimestamp()));
+    }
+
+    @Override
+    public void deleteById(Long id) {
+        write(() -> {
+            if (!products.containsKey(id)) {
+                throw new EmptyResultDataAccessException(String.format("No %s entity with id %s exists!", Product.class, id), 1);
+            }
+            return List.of(remove(id));
+        });
+    }
+
+    @Override
+    public void delete(Product product) {
+        deleteAllById(List.of(product.getId()));
+    }
+
+    @Override
+    public void deleteAllById(Iterable<? extends Long> ids) {
+        write(() -> {
+            final List<LogRecord> removed = new ArrayList<>();
+            for (Long id : ids) {
+                if (products.containsKey(id)) {
+                    removed.add(remove(id));
+                }
+            }
+            return removed;
+        });
+    }
+
+    @Override
+    public void deleteAll(Iterable<? extends Product> products) {
+        deleteAllById(StreamSupport.stream(products.spliterator(), false).map(Product::getId).collect(Collectors.toList()));
+    }
+
+    @Override
+    public void deleteAll() {
+        deleteAllById(new ArrayList<>(products.keySet()));
+    }
+
+    @Override
+    public void deleteAllInBatch(Iterable<Product> products) {
+        deleteAll(products);
+    }
+
+    @Override
+    public void deleteAllByIdInBatch(Iterable<Long> ids) {
+        deleteAllById(ids);
+    }
+
+    @Override
+    public void deleteAllInBatch() {
+        deleteAll();
+    }
+
+    @Override
+    public void flush() {
+        store.sync(store.getAppendedSequence());
+    }
+
+    @Override
+    @Deprecated
+    public Product getOne(Long id) {
+        return getById(id);
+    }
+
+    @Override
+    public Product getById(Long id) {
+        return findById(id).orElseThrow(() -> new EntityNotFoundException("Unable to find " + Product.class.getName() + " with id " + id));
+    }
+
+    // --------------------------------------------- query by example ---------------------------------------------
+
+    // the probe is matched against the stored products like the predicates of the JPA repository: every persistent
+    // property of the probe which is not null or ignored, primitives included
+
+    @Override
+    public <S extends Product> Optional<S> findOne(Example<S> example) {
+        return Optional.ofNullable(new ExampleQuery<>(example, Sort.unsorted(), converterTo(example.getProbeType())).oneValue());
+    }
+
+    @Override
+    public <S extends Product> List<S> findAll(Example<S> example) {
+        return findAll(example, Sort.unsorted());
+    }
+
+    @Override
+    public <S extends Product> List<S> findAll(Example<S> example, Sort sort) {
+        return new ExampleQuery<>(example, sort, converterTo(example.getProbeType())).all();
+    }
+
+    @Override
+    public <S extends Product> Page<S> findAll(Example<S> example, Pageable pageable) {
+        return new ExampleQuery<>(example, Sort.unsorted(), converterTo(example.getProbeType())).page(pageable);
+    }
+
+    @Override
+    public <S extends Product> long count(Example<S> example) {
+        return matching(example).count();
+    }
+
+    @Override
+    public <S extends Product> boolean exists(Example<S> example) {
+        return matching(example).findAny().isPresent();
+    }
+
+    @Override
+    public <S extends Product, R> R findBy(Example<S> example, Function<FluentQuery.FetchableFluentQuery<S>, R> queryFunction) {
+        return queryFunction.apply(new ExampleQuery<>(example, Sort.unsorted(), converterTo(example.getProbeType())));
+    }
+
+    // --------------------------------------------- storage ---------------------------------------------
+
+    /**
+     * Write the snapshot of the current state and drop the log written before it. The writes are blocked only
+     * while the log generation is switched and the references to the products are collected.
+     */
+    public void compact() {
+        final long generation;
+        final Snapshot snapshot;
+        final long sequence;
+        writeLock.lock();
+        try {
+            sequence = store.getAppendedSequence();
+            generation = store.rotate();
+            snapshot = new Snapshot(nextId, new ArrayList<>(products.values()));
+        } catch (IOException e) {
+            log.error("The product log could not be rotated", e);
+            return;
+        } finally {
+            writeLock.unlock();
+        }
+
+        final long start = System.nanoTime();
+        try {
+            store.writeSnapshot(generation, snapshot);
+            snapshotSequence = sequence;
+            log.info("The product snapshot {} was written in {} ms. Products: {}", generation,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), snapshot.getProducts().size());
+        } catch (IOException e) {
+            // the log generations are only deleted after a complete snapshot, nothing is lost
+            log.error("The product snapshot {} could not be written", generation, e);
+        }
+    }
+
+    @Override
+    public void destroy() throws IOException {
+        maintenance.shutdownNow();
+        compactIfChanged();
+        store.close();
+    }
+
+    private void compactIfChanged() {
+        if (store.getAppendedSequence() > snapshotSequence) {
+            compact();
+        }
+    }
+
+    /**
+     * Run the changes under the write lock and append their records to the log, then wait for the fsync
+     * outside of the lock (unless the log is synced periodically).
+     */
+    private <T> T write(Write<T> changes) {
+        final List<LogRecord> records = new ArrayList<>();
+        final T result;
+        long sequence = 0;
+        writeLock.lock();
+        try {
+            pendingRecords = records;
+            try {
+                result = changes.run();
+            } finally {
+                pendingRecords = null;
+                // the changes published before a failure are kept, like the saves of a batch without a transaction
+                if (!records.isEmpty()) {
+                    sequence = store.append(records);
+                }
+            }
+        } finally {
+            writeLock.unlock();
+        }
+
+        if (sequence > 0) {
+            if (maxSyncDelayMillis <= 0) {
+                store.sync(sequence);
+            }
+            if (sequence - snapshotSequence >= snapshotMaxLogRecords && !maintenance.isShutdown()) {
+                maintenance.execute(this::compactIfChanged);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Save the product with the semantics of a JPA merge: a product with an unknown id is created with a new id,
+     * an existing one has to be at the stored version and gets the next one.
+     */
+    private Product put(Product product) {
+        final Product stored = product.getId() == null ? null : products.get(product.getId());
+        final Product saved = copy(product);
+        final Instant now = Product.currentTimestamp();
+        if (stored == null) {
+            saved.setId(nextId);
+            saved.setVersion(0);
+            saved.setCreateDate(now);
+        } else {
+            if (stored.getVersion() != product.getVersion()) {
+                throw new ObjectOptimisticLockingFailureException(Product.class, product.getId());
+            }
+            saved.setVersion(stored.getVersion() + 1);
+            saved.setCreateDate(stored.getCreateDate());
+        }
+        saved.setUpdateDate(now);
+
+        final Long nameOwner = saved.getName() == null ? null : idsByName.get(saved.getName());
+        if (nameOwner != null && !nameOwner.equals(saved.getId())) {
+            final String message = "Unique index or primary key violation: " + Product.UNIQUE_NAME_CONSTRAINT + " (" + saved.getName() + ")";
+            throw new DataIntegrityViolationException(message, new ConstraintViolationException(message, null, Product.UNIQUE_NAME_CONSTRAINT));
+        }
+        if (stored == null) {
+            nextId++;
+        }
+        publish(saved);
+        return saved;
+    }
+
+    private LogRecord remove(Long id) {
+        final LogRecord record = LogRecord.delete(id);
+        apply(record);
+        pendingRecords.add(record);
+        return record;
+    }
+
+    private void publish(Product product) {
+        final LogRecord record = LogRecord.put(product);
+        apply(record);
+        pendingRecords.add(record);
+    }
+
+    private void load(Snapshot snapshot) {
+        snapshot.getProducts().forEach(product -> apply(LogRecord.put(product)));
+        nextId = Math.max(nextId, snapshot.getNextId());
+    }
+
+    private void replay(LogRecord record) {
+        apply(record);
+        nextId = Math.max(nextId, record.getId() + 1);
+    }
+
+    /**
+     * Replace the stored product and its index entries, used by the writes and the recovery.
+     */
+    private void apply(LogRecord record) {
+        final Product previous = record.getOperation() == EmbeddedProductStore.Operation.PUT
+                ? products.put(record.getId(), record.getProduct())
+                : products.remove(record.getId());
+        if (previous != null) {
+            if (previous.getPrice() != null) {
+                priceIndex.remove(previous);
+            }
+            if (previous.getName() != null) {
+                idsByName.remove(previous.getName(), previous.getId());
+            }
+        }
+        if (record.getOperation() == EmbeddedProductStore.Operation.PUT) {
+            final Product product = record.getProduct();
+            if (product.getPrice() != null) {
+                priceIndex.add(product);
+            }
+            if (product.getName() != null) {
+                idsByName.put(product.getName(), product.getId());
+            }
+        }
+    }
+
+    // the writer keeps its instance like a managed entity: the generated id, the version and the dates are set on it
+    private static void update(Product product, Product saved) {
+        product.setId(saved.getId());
+        product.setVersion(saved.getVersion());
+        product.setCreateDate(saved.getCreateDate());
+        product.setUpdateDate(saved.getUpdateDate());
+    }
+
+    private static Product priceKey(BigDecimal price, Long id) {
+        return new Product(id, null, null, price, null, null, null);
+    }
+
+    private static List<Product> copies(Stream<Product> products) {
+        return products.map(EmbeddedProductRepository::copy).collect(Collectors.toList());
+    }
+
+    private static Product copy(Product product) {
+        final Product copy = new Product(product.getId(), product.getName(), product.getDescription(), product.getPrice(),
+                product.getProductType(), product.getCreateDate(), product.getUpdateDate());
+        copy.setVersion(product.getVersion());
+        copy.copyNutrients(product);
+        return copy;
+    }
+
+    /**
+     * The stored products in the order of the sort; the order by id is the order of the map.
+     */
+    private Stream<Product> sorted(Sort sort) {
+        if (sort.isUnsorted()) {
+            return products.values().stream();
+        }
+        final Sort.Order idOrder = sort.getOrderFor("id");
+        if (idOrder != null && sort.stream().count() == 1) {
+            return (idOrder.isAscending() ? products : products.descendingMap()).values().stream();
+        }
+        return products.values().stream().sorted(comparatorOf(sort));
+    }
+
+    private Stream<Product> matching(Example<? extends Product> example) {
+        return products.values().stream().filter(matcherOf(example));
+    }
+
+    private static Comparator<Product> comparatorOf(Sort sort) {
+        Comparator<Product> comparator = (left, right) -> 0;
+        for (Sort.Order order : sort) {
+            final String property = order.getProperty();
+            checkProperty(property);
+            Comparator<Object> values = (left, right) -> order.isIgnoreCase() && left instanceof String
+                    ? ((String) left).compareToIgnoreCase((String) right)
+                    : compare(left, right);
+            if (order.isDescending()) {
+                values = values.reversed();
+            }
+            // H2 sorts the nulls first, so natively they come before the ascending and after the descending values
+            final boolean nullsFirst = order.getNullHandling() == Sort.NullHandling.NULLS_FIRST
+                    || (order.getNullHandling() == Sort.NullHandling.NATIVE && order.isAscending());
+            comparator = comparator.thenComparing(product -> propertyValue(product, property),
+                    nullsFirst ? Comparator.nullsFirst(values) : Comparator.nullsLast(values));
+        }
+        // the ties keep the order by id
+        return comparator.thenComparing(Product::getId);
+    }
+
+    private static Predicate<Product> matcherOf(Example<? extends Product> example) {
+        final ExampleMatcherAccessor accessor = new ExampleMatcherAccessor(example.getMatcher());
+        final List<Predicate<Product>> predicates = new ArrayList<>();
+        PROPERTIES.forEach((property, field) -> {
+            if (accessor.isIgnoredPath(property)) {
+                return;
+            }
+            final Optional<Object> value = accessor.getValueTransformerForPath(property)
+                    .apply(Optional.ofNullable(ReflectionUtils.getField(field, example.getProbe())));
+            if (value.isEmpty()) {
+                if (accessor.getNullHandler() == ExampleMatcher.NullHandler.INCLUDE) {
+                    predicates.add(product -> propertyValue(product, property) == null);
+                }
+                return;
+            }
+            predicates.add(product -> matches(value.get(), propertyValue(product, property), accessor, property));
+        });
+        return example.getMatcher().isAllMatching()
+                ? product -> predicates.stream().allMatch(predicate -> predicate.test(product))
+                : product -> predicates.isEmpty() || predicates.stream().anyMatch(predicate -> predicate.test(product));
+    }
+
+    private static boolean matches(Object expected, Object actual, ExampleMatcherAccessor accessor, String property) {
+        if (actual == null) {
+            return false;
+        }
+        if (expected instanceof String) {
+            final boolean ignoreCase = accessor.isIgnoreCaseForPath(property);
+            final String expectedText = ignoreCase ? ((String) expected).toLowerCase(Locale.ROOT) : (String) expected;
+            final String actualText = ignoreCase ? ((String) actual).toLowerCase(Locale.ROOT) : (String) actual;
+            switch (accessor.getStringMatcherForPath(property)) {
+                case STARTING:
+                    return actualText.startsWith(expectedText);
+                case ENDING:
+                    return actualText.endsWith(expectedText);
+                case CONTAINING:
+                    return actualText.contains(expectedText);
+                case REGEX:
+                    return Pattern.compile((String) expected, ignoreCase ? Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE : 0)
+                            .matcher((String) actual).matches();
+                default:
+                    return actualText.equals(expectedText);
+            }
+        }
+        // the prices are compared by value like in SQL, 1.0 matches 1.00
+        return expected instanceof BigDecimal ? compare(expected, actual) == 0 : expected.equals(actual);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static int compare(Object left, Object right) {
+        return ((Comparable<Object>) left).compareTo(right);
+    }
+
+    private static Object propertyValue(Product product, String property) {
+        return ReflectionUtils.getField(PROPERTIES.get(property), product);
+    }
+
+    private static void checkProperty(String property) {
+        if (!PROPERTIES.containsKey(property)) {
+            throw new PropertyReferenceException(property, ClassTypeInformation.from(Product.class), List.of());
+        }
+    }
+
+    /**
+     * The conversion of the stored products to the result type of a query, like the fluent queries of the JPA repository.
+     */
+    private static <R> Function<Product, R> converterTo(Class<R> resultType) {
+        if (resultType.isAssignableFrom(Product.class)) {
+            return product -> resultType.cast(copy(product));
+        }
+        if (resultType.isInterface()) {
+            return product -> PROJECTIONS.createProjection(resultType, copy(product));
+        }
+        return product -> DefaultConversionService.getSharedInstance().convert(copy(product), resultType);
+    }
+
+    private static Map<String, Field> persistentProperties() {
+        final Map<String, Field> properties = new LinkedHashMap<>();
+        ReflectionUtils.doWithFields(Product.class, field -> {
+            ReflectionUtils.makeAccessible(field);
+            properties.put(field.getName(), field);
+        }, field -> !Modifier.isStatic(field.getModifiers()) && !Modifier.isTransient(field.getModifiers()));
+        return properties;
+    }
+
+    /**
+     * The query of an example: the stored products which match it, sorted and converted when they are read.
+     */
+    private final class ExampleQuery<T> implements FluentQuery.FetchableFluentQuery<T> {
+
+        private final Example<? extends Product> example;
+
+        private final Sort sort;
+
+        private final Function<Product, T> converter;
+
+        private ExampleQuery(Example<? extends Product> example, Sort sort, Function<Product, T> converter) {
+            this.example = example;
+            this.sort = sort;
+            this.converter = converter;
+        }
+
+        @Override
+        public FluentQuery.FetchableFluentQuery<T> sortBy(Sort sort) {
+            return new ExampleQuery<>(example, this.sort.and(sort), converter);
+        }
+
+        @Override
+        public <R> FluentQuery.FetchableFluentQuery<R> as(Class<R> resultType) {
+            return new ExampleQuery<>(example, sort, converterTo(resultType));
+        }
+
+        @Override
+        public FluentQuery.FetchableFluentQuery<T> project(Collection<String> properties) {
+            // the whole products are in memory, there is nothing to save by reading fewer properties
+            return this;
+        }
+
+        @Override
+        public T oneValue() {
+            final List<T> values = stream().limit(2).collect(Collectors.toList());
+            if (values.size() > 1) {
+                throw new IncorrectResultSizeDataAccessException(1);
+            }
+            return values.isEmpty() ? null : values.get(0);
+        }
+
+        @Override
+        public T firstValue() {
+            return stream().findFirst().orElse(null);
+        }
+
+        @Override
+        public List<T> all() {
+            return stream().collect(Collectors.toList());
+        }
+
+        @Override
+        public Page<T> page(Pageable pageable) {
+            if (pageable.isUnpaged()) {
+                return new PageImpl<>(all());
+            }
+            return new PageImpl<>(stream(sort.and(pageable.getSort())).skip(pageable.getOffset()).limit(pageable.getPageSize())
+                    .collect(Collectors.toList()), pageable, count());
+        }
+
+        @Override
+        public Stream<T> stream() {
+            return stream(sort);
+        }
+
+        @Override
+        public long count() {
+            return matching(example).count();
+        }
+
+        @Override
+        public boolean exists() {
+            return matching(example).findAny().isPresent();
+        }
+
+        private Stream<T> stream(Sort sort) {
+            final Stream<Product> matched = matching(example);
+            return (sort.isSorted() ? matched.sorted(comparatorOf(sort)) : matched).map(converter);
+        }
+    }
+
+    @FunctionalInterface
+    private interface Write<T> {
+
+        T run();
+
+    }
+
+}
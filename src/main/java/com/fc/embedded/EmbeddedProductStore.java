@@ -0,0 +1,327 @@
+package com.fc.embedded;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.fc.model.Product;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * The files of the embedded product storage: an append-only log of the product writes and compacted snapshots.
+ * <p>
+ * The log is split into generations ({@code log-<generation>.ndjson}). A snapshot {@code snapshot-<generation>.json}
+ * holds all products written before its log generation, so the recovery loads the newest snapshot and replays only
+ * the log generations from the snapshot on. Every log line is {@code <crc32> <json>}; a torn or corrupted line at
+ * the end of a generation (a crash during the append) ends its replay.
+ * <p>
+ * The appends are written to the file immediately and made durable by {@link #sync}: the first waiting writer forces
+ * the file for all the records appended until then, the others which arrive in the meantime are covered by the
+ * same fsync (group commit).
+ */
+@Slf4j
+class EmbeddedProductStore implements Closeable {
+
+    private static final Pattern LOG_FILE = Pattern.compile("log-(\\d+)\\.ndjson");
+
+    private static final Pattern SNAPSHOT_FILE = Pattern.compile("snapshot-(\\d+)\\.json");
+
+    private final Path directory;
+
+    private final ObjectReader recordReader;
+
+    private final ObjectWriter recordWriter;
+
+    private final ObjectReader snapshotReader;
+
+    private final ObjectWriter snapshotWriter;
+
+    // the appends are guarded by this, the fsync and the switch of the log channel by syncLock
+    private final Object syncLock = new Object();
+
+    private FileChannel logChannel;
+
+    private long generation;
+
+    private volatile long appendedSequence;
+
+    private volatile long syncedSequence;
+
+    EmbeddedProductStore(Path directory) {
+        this.directory = directory;
+        final ObjectMapper objectMapper = JsonMapper.builder().addModule(new JavaTimeModule()).build();
+        this.recordReader = objectMapper.readerFor(LogRecord.class);
+        this.recordWriter = objectMapper.writerFor(LogRecord.class);
+        this.snapshotReader = objectMapper.readerFor(Snapshot.class);
+        this.snapshotWriter = objectMapper.writerFor(Snapshot.class).without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    }
+
+    /**
+     * Load the newest snapshot and replay the log generations written after it, then start a new log generation.
+     *
+     * @param snapshotLoader receives the snapshot, when there is one
+     * @param replay         receives the log records in the order of the appends
+     * @return the number of replayed log records
+     */
+    synchronized long recover(Consumer<Snapshot> snapshotLoader, Consumer<LogRecord> replay) throws IOException {
+        Files.createDirectories(directory);
+        final long snapshotGeneration = findGenerations(SNAPSHOT_FILE).stream().max(Long::compare).orElse(-1L);
+        if (snapshotGeneration >= 0) {
+            snapshotLoader.accept(snapshotReader.readValue(snapshotFile(snapshotGeneration).toFile()));
+        }
+
+        long replayed = 0;
+        long lastGeneration = snapshotGeneration;
+        for (long logGeneration : findGenerations(LOG_FILE)) {
+            lastGeneration = Math.max(lastGeneration, logGeneration);
+            if (logGeneration >= snapshotGeneration) {
+                replayed += replay(logFile(logGeneration), replay);
+            }
+        }
+
+        generation = lastGeneration + 1;
+        logChannel = openLog(generation);
+        return replayed;
+    }
+
+    /**
+     * Append the records to the log. The caller orders the appends, the records are not durable before {@link #sync}.
+     *
+     * @return the sequence to pass to {@link #sync}
+     */
+    synchronized long append(Collection<LogRecord> records) {
+        final StringBuilder lines = new StringBuilder();
+        try {
+            for (LogRecord record : records) {
+                final String json = recordWriter.writeValueAsString(record);
+                lines.append(Long.toHexString(checksum(json))).append(' ').append(json).append('\n');
+            }
+            final ByteBuffer buffer = ByteBuffer.wrap(lines.toString().getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining()) {
+                logChannel.write(buffer);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("The product log could not be written", e);
+        }
+        appendedSequence += records.size();
+        return appendedSequence;
+    }
+
+    /**
+     * Wait until the records up to the sequence are on the disk.
+     */
+    void sync(long sequence) {
+        if (syncedSequence >= sequence) {
+            return;
+        }
+        synchronized (syncLock) {
+            if (syncedSequence >= sequence) {
+                // forced by the writer which held the lock before
+                return;
+            }
+            forceLog();
+        }
+    }
+
+    /**
+     * Make all appended records durable, used by the periodic sync when the writers do not wait for the fsync.
+     */
+    void syncAll() {
+        sync(appendedSequence);
+    }
+
+    long getAppendedSequence() {
+        return appendedSequence;
+    }
+
+    /**
+     * Start a new log generation. The caller has to block the appends until the state of the snapshot is taken,
+     * so the snapshot written with the returned generation has exactly the records of the older generations.
+     */
+    synchronized long rotate() throws IOException {
+        synchronized (syncLock) {
+            forceLog();
+            final FileChannel previousLog = logChannel;
+            generation++;
+            logChannel = openLog(generation);
+            previousLog.close();
+        }
+        return generation;
+    }
+
+    /**
+     * Write the snapshot of the generation and delete the older snapshots and log generations.
+     * The snapshot is written to a temporary file and renamed, so a crash never leaves a partial snapshot behind.
+     */
+    void writeSnapshot(long snapshotGeneration, Snapshot snapshot) throws IOException {
+        final Path temporaryFile = directory.resolve("snapshot-" + snapshotGeneration + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporaryFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            // the channel has to stay open for the fsync
+            snapshotWriter.writeValue(Channels.newOutputStream(channel), snapshot);
+            channel.force(true);
+        }
+        Files.move(temporaryFile, snapshotFile(snapshotGeneration), StandardCopyOption.ATOMIC_MOVE);
+
+        for (long olderGeneration : findGenerations(SNAPSHOT_FILE)) {
+            if (olderGeneration < snapshotGeneration) {
+                Files.deleteIfExists(snapshotFile(olderGeneration));
+            }
+        }
+        for (long olderGeneration : findGenerations(LOG_FILE)) {
+            if (olderGeneration < snapshotGeneration) {
+                Files.deleteIfExists(logFile(olderGeneration));
+            }
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        synchronized (syncLock) {
+            if (logChannel != null) {
+                forceLog();
+                logChannel.close();
+                logChannel = null;
+            }
+        }
+    }
+
+    private void forceLog() {
+        final long target = appendedSequence;
+        try {
+            logChannel.force(false);
+        } catch (IOException e) {
+            throw new UncheckedIOException("The product log could not be synced", e);
+        }
+        syncedSequence = target;
+    }
+
+    private long replay(Path logFile, Consumer<LogRecord> replay) throws IOException {
+        long replayed = 0;
+        try (BufferedReader reader = Files.newBufferedReader(logFile, StandardCharsets.UTF_8)) {
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                final LogRecord record = parse(line);
+                if (record == null) {
+                    log.warn("The product log {} ends with a torn or corrupted record after {} records, the rest is skipped",
+                            logFile.getFileName(), replayed);
+                    break;
+                }
+                replay.accept(record);
+                replayed++;
+            }
+        }
+        return replayed;
+    }
+
+    private LogRecord parse(String line) {
+        final int separator = line.indexOf(' ');
+        if (separator <= 0) {
+            return null;
+        }
+        final String json = line.substring(separator + 1);
+        try {
+            if (Long.parseLong(line.substring(0, separator), 16) != checksum(json)) {
+                return null;
+            }
+            return recordReader.readValue(json);
+        } catch (NumberFormatException | IOException e) {
+            return null;
+        }
+    }
+
+    private FileChannel openLog(long logGeneration) throws IOException {
+        return FileChannel.open(logFile(logGeneration), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+    }
+
+    private List<Long> findGenerations(Pattern pattern) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(file -> pattern.matcher(file.getFileName().toString()))
+                    .filter(Matcher::matches)
+                    .map(matcher -> Long.valueOf(matcher.group(1)))
+                    .sorted()
+                    .collect(Collectors.toCollection(ArrayList::new));
+        }
+    }
+
+    private Path logFile(long logGeneration) {
+        return directory.resolve("log-" + logGeneration + ".ndjson");
+    }
+
+    private Path snapshotFile(long snapshotGeneration) {
+        return directory.resolve("snapshot-" + snapshotGeneration + ".json");
+    }
+
+    private static long checksum(String json) {
+        final CRC32 crc = new CRC32();
+        crc.update(json.getBytes(StandardCharsets.UTF_8));
+        return crc.getValue();
+    }
+
+    enum Operation {
+        PUT, DELETE
+    }
+
+    /**
+     * One write of the log: the new state of a product, or the id of a deleted product.
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    static class LogRecord {
+
+        private Operation operation;
+        private Long id;
+        private Product product;
+
+        static LogRecord put(Product product) {
+            return new LogRecord(Operation.PUT, product.getId(), product);
+        }
+
+        static LogRecord delete(Long id) {
+            return new LogRecord(Operation.DELETE, id, null);
+        }
+
+    }
+
+    /**
+     * All products and the next id; the deleted ids are never allocated again, like the ids of the sequence.
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    static class Snapshot {
+
+        private long nextId;
+        private List<Product> products;
+
+    }
+
+}
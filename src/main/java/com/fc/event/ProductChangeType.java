@@ -0,0 +1,10 @@
+package com.fc.event;
+
+public enum ProductChangeType {
+
+    CREATED,
+    UPDATED,
+    PRICE_CHANGED,
+    DELETED
+
+}
@@ -0,0 +1,63 @@
+package com.fc.event;
+
+import com.fc.model.Product;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+/**
+ * Published when a product was written. The listeners receive it after the transaction of the write was committed.
+ * <p>
+ * The {@code product} is the written state; it is null for deletes and for the bulk writes which do not load the products.
+ * The {@code productId} is null when the bulk write may have changed any product, or when it changed the {@code prices}
+ * of the given products, one event per transaction instead of one per product.
+ */
+@Getter
+@ToString(exclude = "prices")
+public class ProductChangedEvent {
+
+    private final ProductChangeType changeType;
+
+    private final Long productId;
+
+    private final Product product;
+
+    private final Map<Long, BigDecimal> prices;
+
+    public ProductChangedEvent(ProductChangeType changeType, Long productId, Product product) {
+        this(changeType, productId, product, null);
+    }
+
+    private ProductChangedEvent(ProductChangeType changeType, Long productId, Product product, Map<Long, BigDecimal> prices) {
+        this.changeType = changeType;
+        this.productId = productId;
+        this.product = product;
+        this.prices = prices;
+    }
+
+    public static ProductChangedEvent of(ProductChangeType changeType, Product product) {
+        return new ProductChangedEvent(changeType, product.getId(), product);
+    }
+
+    public static ProductChangedEvent allProducts(ProductChangeType changeType) {
+        return new ProductChangedEvent(changeType, null, null);
+    }
+
+    /**
+     * The new prices of the products written by one bulk price change.
+     */
+    public static ProductChangedEvent prices(Map<Long, BigDecimal> prices) {
+        return new ProductChangedEvent(ProductChangeType.PRICE_CHANGED, null, null, Map.copyOf(prices));
+    }
+
+    public boolean isAllProducts() {
+        return productId == null && prices == null;
+    }
+
+    public boolean isPrices() {
+        return prices != null;
+    }
+
+}
@@ -0,0 +1,12 @@
+package com.fc.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class BatchSizeExceededException extends RuntimeException {
+
+    public BatchSizeExceededException(int size, int maxSize) {
+        super("The batch contains " + size + " items. The max allowed number of items is " + maxSize);
+    }
+}
@@ -0,0 +1,12 @@
+package com.fc.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.UNPROCESSABLE_ENTITY)
+public class DietPlanNotFoundException extends RuntimeException {
+
+    public DietPlanNotFoundException(String message) {
+        super(message);
+    }
+}
@@ -1,5 +1,6 @@
 package com.fc.exception;
 
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
@@ -32,4 +33,96 @@ public class GlobalExceptionHandler {
     public ResponseEntity priceIsNotGreaterThanZeroException(PriceIsNotGreaterThanZeroException priceIsNotGreaterThanZeroException) {
         return new ResponseEntity(priceIsNotGreaterThanZeroException.getMessage(), HttpStatus.BAD_REQUEST);
     }
-}
\ No newline at end of file
+
+    @ExceptionHandler(value = InvalidCursorException.class)
+    public ResponseEntity invalidCursorException(InvalidCursorException invalidCursorException) {
+        return new ResponseEntity(invalidCursorException.getMessage(), HttpStatus.BAD_REQUEST);
+    }
+
+    @ExceptionHandler(value = BatchSizeExceededException.class)
+    public ResponseEntity batchSizeExceededException(BatchSizeExceededException batchSizeExceededException) {
+        return new ResponseEntity(batchSizeExceededException.getMessage(), HttpStatus.BAD_REQUEST);
+    }
+
+    @ExceptionHandler(value = InvalidPriceChangeException.class)
+    public ResponseEntity invalidPriceChangeException(InvalidPriceChangeException invalidPriceChangeException) {
+        return new ResponseEntity(invalidPriceChangeException.getMessage(), HttpStatus.BAD_REQUEST);
+    }
+
+    @ExceptionHandler(value = ProductImportException.class)
+    public ResponseEntity productImportException(ProductImportException productImportException) {
+        return new ResponseEntity(productImportException.getMessage(), HttpStatus.BAD_REQUEST);
+    }
+
+    @ExceptionHandler(value = ProductImportNotFoundException.class)
+    public ResponseEntity productImportNotFoundException(ProductImportNotFoundException productImportNotFoundException) {
+        return new ResponseEntity(productImportNotFoundException.getMessage(), HttpStatus.NOT_FOUND);
+    }
+
+    @ExceptionHandler(value = InvalidRecipeException.class)
+    public ResponseEntity invalidRecipeException(InvalidRecipeException invalidRecipeException) {
+        return new ResponseEntity(invalidRecipeException.getMessage(), HttpStatus.BAD_REQUEST);
+    }
+
+    @ExceptionHandler(value = ProductVersionMismatchException.class)
+    public ResponseEntity productVersionMismatchException(ProductVersionMismatchException productVersionMismatchException) {
+        return new ResponseEntity(productVersionMismatchException.getMessage(), HttpStatus.PRECONDITION_FAILED);
+    }
+
+    @ExceptionHandler(value = ProductUpdateConflictException.class)
+    public ResponseEntity productUpdateConflictException(ProductUpdateConflictException productUpdateConflictException) {
+        return new ResponseEntity(productUpdateConflictException.getMessage(), HttpStatus.CONFLICT);
+    }
+
+    @ExceptionHandler(value = InvalidTimeRangeException.class)
+    public ResponseEntity invalidTimeRangeException(InvalidTimeRangeException invalidTimeRangeException) {
+        return new ResponseEntity(invalidTimeRangeException.getMessage(), HttpStatus.BAD_REQUEST);
+    }
+
+    @ExceptionHandler(value = InvalidProductSortException.class)
+    public ResponseEntity invalidProductSortException(InvalidProductSortException invalidProductSortException) {
+        return new ResponseEntity(invalidProductSortException.getMessage(), HttpStatus.BAD_REQUEST);
+    }
+
+    @ExceptionHandler(value = InvalidPriceRangeException.class)
+    public ResponseEntity invalidPriceRangeException(InvalidPriceRangeException invalidPriceRangeException) {
+        return new ResponseEntity(invalidPriceRangeException.getMessage(), HttpStatus.BAD_REQUEST);
+    }
+
+    @ExceptionHandler(value = WatermarkExpiredException.class)
+    public ResponseEntity watermarkExpiredException(WatermarkExpiredException watermarkExpiredException) {
+        return new ResponseEntity(watermarkExpiredException.getMessage(), HttpStatus.GONE);
+    }
+
+    @ExceptionHandler(value = RateLimitExceededException.class)
+    public ResponseEntity rateLimitExceededException(RateLimitExceededException rateLimitExceededException) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RETRY_AFTER, String.valueOf(rateLimitExceededException.getRetryAfterSeconds()));
+        return new ResponseEntity(rateLimitExceededException.getMessage(), headers, HttpStatus.TOO_MANY_REQUESTS);
+    }
+
+    @ExceptionHandler(value = InvalidIdempotencyKeyException.class)
+    public ResponseEntity invalidIdempotencyKeyException(InvalidIdempotencyKeyException invalidIdempotencyKeyException) {
+        return new ResponseEntity(invalidIdempotencyKeyException.getMessage(), HttpStatus.BAD_REQUEST);
+    }
+
+    @ExceptionHandler(value = IdempotencyKeyMismatchException.class)
+    public ResponseEntity idempotencyKeyMismatchException(IdempotencyKeyMismatchException idempotencyKeyMismatchException) {
+        return new ResponseEntity(idempotencyKeyMismatchException.getMessage(), HttpStatus.UNPROCESSABLE_ENTITY);
+    }
+
+    @ExceptionHandler(value = IdempotencyKeyInProgressException.class)
+    public ResponseEntity idempotencyKeyInProgressException(IdempotencyKeyInProgressException idempotencyKeyInProgressException) {
+        return new ResponseEntity(idempotencyKeyInProgressException.getMessage(), HttpStatus.CONFLICT);
+    }
+
+    @ExceptionHandler(value = InvalidDietPlanException.class)
+    public ResponseEntity invalidDietPlanException(InvalidDietPlanException invalidDietPlanException) {
+        return new ResponseEntity(invalidDietPlanException.getMessage(), HttpStatus.BAD_REQUEST);
+    }
+
+    @ExceptionHandler(value = DietPlanNotFoundException.class)
+    public ResponseEntity dietPlanNotFoundException(DietPlanNotFoundException dietPlanNotFoundException) {
+        return new ResponseEntity(dietPlanNotFoundException.getMessage(), HttpStatus.UNPROCESSABLE_ENTITY);
+    }
+}
@@ -0,0 +1,12 @@
+package com.fc.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.CONFLICT)
+public class IdempotencyKeyInProgressException extends RuntimeException {
+
+    public IdempotencyKeyInProgressException(String key) {
+        super("The request with the Idempotency-Key " + key + " is still in progress. Please retry later.");
+    }
+}
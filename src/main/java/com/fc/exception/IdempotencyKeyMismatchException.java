@@ -0,0 +1,12 @@
+package com.fc.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.UNPROCESSABLE_ENTITY)
+public class IdempotencyKeyMismatchException extends RuntimeException {
+
+    public IdempotencyKeyMismatchException(String key) {
+        super("The Idempotency-Key " + key + " was already used for a different request. Please use a new key for a new request.");
+    }
+}
@@ -0,0 +1,12 @@
+package com.fc.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class InvalidDietPlanException extends RuntimeException {
+
+    public InvalidDietPlanException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,12 @@
+package com.fc.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class InvalidIdempotencyKeyException extends RuntimeException {
+
+    public InvalidIdempotencyKeyException(int maxLength) {
+        super("The Idempotency-Key should not be blank and at most " + maxLength + " characters long.");
+    }
+}
@@ -0,0 +1,12 @@
+package com.fc.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class InvalidPriceChangeException extends RuntimeException {
+
+    public InvalidPriceChangeException(String message) {
+        super(message);
+    }
+}
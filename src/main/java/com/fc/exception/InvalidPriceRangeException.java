@@ -0,0 +1,14 @@
+package com.fc.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import java.math.BigDecimal;
+
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class InvalidPriceRangeException extends RuntimeException {
+
+    public InvalidPriceRangeException(BigDecimal minPrice, BigDecimal maxPrice) {
+        super("The minimum price should not be greater than the maximum price. Min: " + minPrice + ", max: " + maxPrice);
+    }
+}
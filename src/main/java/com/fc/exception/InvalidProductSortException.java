@@ -0,0 +1,12 @@
+package com.fc.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class InvalidProductSortException extends RuntimeException {
+
+    public InvalidProductSortException(String sort) {
+        super("The sort is not supported: " + sort + ". Please use one of: id, price, price,asc, price,desc");
+    }
+}
@@ -0,0 +1,12 @@
+package com.fc.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class InvalidTimeRangeException extends RuntimeException {
+
+    public InvalidTimeRangeException(Object from, Object to) {
+        super("The start of the time range should be before its end. From: " + from + ", to: " + to);
+    }
+}
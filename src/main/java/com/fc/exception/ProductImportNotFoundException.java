@@ -0,0 +1,12 @@
+package com.fc.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.NOT_FOUND)
+public class ProductImportNotFoundException extends RuntimeException {
+
+    public ProductImportNotFoundException(Long id) {
+        super("Could not find the product import with id: " + id);
+    }
+}
@@ -0,0 +1,12 @@
+package com.fc.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.CONFLICT)
+public class ProductUpdateConflictException extends RuntimeException {
+
+    public ProductUpdateConflictException(Long id, int attempts) {
+        super("The product with id: " + id + " was changed concurrently and could not be saved after " + attempts + " attempts.");
+    }
+}
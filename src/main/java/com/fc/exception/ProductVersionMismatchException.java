@@ -0,0 +1,13 @@
+package com.fc.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.PRECONDITION_FAILED)
+public class ProductVersionMismatchException extends RuntimeException {
+
+    public ProductVersionMismatchException(Long id, Long expectedVersion) {
+        super("The product with id: " + id + " is not at the expected version " + expectedVersion
+                + ". Please reload the product and retry the change.");
+    }
+}
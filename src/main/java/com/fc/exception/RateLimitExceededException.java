@@ -0,0 +1,17 @@
+package com.fc.exception;
+
+import lombok.Getter;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@Getter
+@ResponseStatus(HttpStatus.TOO_MANY_REQUESTS)
+public class RateLimitExceededException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public RateLimitExceededException(String principal, long retryAfterSeconds) {
+        super("Too many write requests of " + principal + ". Please retry after " + retryAfterSeconds + " seconds.");
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+}
@@ -0,0 +1,15 @@
+package com.fc.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import java.time.Instant;
+
+@ResponseStatus(HttpStatus.GONE)
+public class WatermarkExpiredException extends RuntimeException {
+
+    public WatermarkExpiredException(Instant watermark, long retentionDays) {
+        super("The watermark " + watermark + " is older than the " + retentionDays
+                + " days the deleted products are kept. Please sync again without changedSince.");
+    }
+}
@@ -0,0 +1,23 @@
+package com.fc.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * The cheapest plan found for the targets. {@code optimalForCandidates} is true when the search finished within the
+ * time budget: the plan is then the cheapest combination of the {@code candidates} products at the portion step. The
+ * candidates are a heuristic selection of the catalog, a cheaper plan with other products is not ruled out.
+ */
+@Data
+@AllArgsConstructor
+public class DietPlan {
+
+    private List<DietPlanItem> items;
+    private NutritionTotals totals;
+    private boolean optimalForCandidates;
+    private int candidates;
+    private long elapsedMillis;
+
+}
@@ -0,0 +1,20 @@
+package com.fc.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.math.BigDecimal;
+
+/**
+ * One product of a diet plan with its quantity in grams and the cost of that quantity.
+ */
+@Data
+@AllArgsConstructor
+public class DietPlanItem {
+
+    private Long productId;
+    private String name;
+    private double quantity;
+    private BigDecimal cost;
+
+}
@@ -0,0 +1,39 @@
+package com.fc.model;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * The targets of a diet plan: the calories and the macros of the whole plan as inclusive ranges (kcal / grams), and the
+ * portion constraints of every product in grams. The min calories are mandatory, the other bounds are optional.
+ */
+@Data
+public class DietPlanRequestDTO {
+
+    private Double minCalories;
+    private Double maxCalories;
+    private Double minProtein;
+    private Double maxProtein;
+    private Double minCarbohydrates;
+    private Double maxCarbohydrates;
+    private Double minFat;
+    private Double maxFat;
+    private Double minSugar;
+    private Double maxSugar;
+    private Double minFiber;
+    private Double maxFiber;
+
+    // only the products of the type, all types when null
+    private ProductType productType;
+    private List<Long> excludedProductIds;
+
+    private double minPortion = 10;
+    private double maxPortion = 300;
+    private double portionStep = 10;
+    private int maxProducts = 5;
+
+    // capped by fc.plan.max-time-budget-millis, the default time budget when null
+    private Long timeBudgetMillis;
+
+}
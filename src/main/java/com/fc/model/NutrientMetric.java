@@ -0,0 +1,21 @@
+package com.fc.model;
+
+/**
+ * The values the nutrient query can sort by. The ratios are per unit of price.
+ */
+public enum NutrientMetric {
+
+    PRICE,
+    CALORIES,
+    PROTEIN,
+    CARBOHYDRATES,
+    FAT,
+    SUGAR,
+    FIBER,
+    PROTEIN_PER_PRICE,
+    CALORIES_PER_PRICE,
+    FIBER_PER_PRICE,
+    CARBOHYDRATES_PER_PRICE,
+    FAT_PER_PRICE
+
+}
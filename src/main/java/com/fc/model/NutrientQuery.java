@@ -0,0 +1,33 @@
+package com.fc.model;
+
+import lombok.Data;
+
+/**
+ * The filters and the order of a nutrient query. All filters are optional and inclusive;
+ * a product with an unknown value does not match a filter on that value.
+ */
+@Data
+public class NutrientQuery {
+
+    private ProductType productType;
+
+    private Double minPrice;
+    private Double maxPrice;
+    private Double minCalories;
+    private Double maxCalories;
+    private Double minProtein;
+    private Double maxProtein;
+    private Double minCarbohydrates;
+    private Double maxCarbohydrates;
+    private Double minFat;
+    private Double maxFat;
+    private Double minSugar;
+    private Double maxSugar;
+    private Double minFiber;
+    private Double maxFiber;
+
+    private NutrientMetric sort = NutrientMetric.PROTEIN;
+    private boolean ascending;
+    private int limit = 20;
+
+}
@@ -0,0 +1,19 @@
+package com.fc.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * The products of a nutrient query: {@code matched} is the number of products which pass the filters,
+ * {@code items} the first of them in the requested order.
+ */
+@Data
+@AllArgsConstructor
+public class NutrientQueryResult {
+
+    private int matched;
+    private List<ProductNutrientRow> items;
+
+}
@@ -0,0 +1,24 @@
+package com.fc.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.math.BigDecimal;
+
+/**
+ * The nutrition totals of a recipe. The quantity is in grams, the calories in kcal and the macros in grams.
+ */
+@Data
+@AllArgsConstructor
+public class NutritionTotals {
+
+    private double quantity;
+    private double calories;
+    private double protein;
+    private double carbohydrates;
+    private double fat;
+    private double sugar;
+    private double fiber;
+    private BigDecimal cost;
+
+}
@@ -6,21 +6,48 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.PrePersist;
+import javax.persistence.PreUpdate;
+import javax.persistence.SequenceGenerator;
+import javax.persistence.Table;
+import javax.persistence.UniqueConstraint;
+import javax.persistence.Version;
 import java.math.BigDecimal;
 import java.time.Instant;
+import java.time.temporal.ChronoUnit;
 
 @Data
 @Entity
 @NoArgsConstructor(access = AccessLevel.PROTECTED)
 @AllArgsConstructor
 @JsonIgnoreProperties(ignoreUnknown = true)
+@Table(uniqueConstraints = @UniqueConstraint(name = Product.UNIQUE_NAME_CONSTRAINT, columnNames = "name"),
+        indexes = {
+                // the catalog version and the delta sync, which pages by (updateDate, id)
+                @Index(name = "idx_product_update_date_id", columnList = "updateDate, id"),
+                // the filtered listing: type and price range, ordered by price and id
+                @Index(name = "idx_product_type_price", columnList = "productType, price, id"),
+                @Index(name = "idx_product_price", columnList = "price, id")
+        })
 public class Product {
 
+    public static final String UNIQUE_NAME_CONSTRAINT = "uk_product_name";
+
+    public static final String ID_SEQUENCE = "product_seq";
+
+    public static final int ID_ALLOCATION_SIZE = 50;
+
+    // the ids are allocated in blocks, so inserting a batch does not fetch the sequence once per row;
+    // the sequence is moved above the existing ids at startup, see ProductSequenceInitializer
     @Id
-    @GeneratedValue
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = ID_SEQUENCE)
+    @SequenceGenerator(name = ID_SEQUENCE, sequenceName = ID_SEQUENCE, allocationSize = ID_ALLOCATION_SIZE)
     private Long id;
 
     private String name;
@@ -35,4 +62,63 @@ public class Product {
 
     private Instant updateDate;
 
+    // incremented by every write; an update of a stale copy fails instead of overwriting the newer state
+    @Version
+    @Column(columnDefinition = "bigint default 0 not null")
+    private long version;
+
+    // nutrient values per 100 g, null when unknown
+
+    private Double calories;
+
+    private Double protein;
+
+    private Double carbohydrates;
+
+    private Double fat;
+
+    private Double sugar;
+
+    private Double fiber;
+
+    public Product(Long id, String name, String description, BigDecimal price, ProductType productType,
+                   Instant createDate, Instant updateDate) {
+        this.id = id;
+        this.name = name;
+        this.description = description;
+        this.price = price;
+        this.productType = productType;
+        this.createDate = createDate;
+        this.updateDate = updateDate;
+    }
+
+    /**
+     * The current time in the precision stored by the database, so a loaded product has the same updateDate
+     * (and ETag) as the instance which was saved.
+     */
+    public static Instant currentTimestamp() {
+        return Instant.now().truncatedTo(ChronoUnit.MILLIS);
+    }
+
+    // the dates are always set by the write, the values sent by the client are ignored
+    @PrePersist
+    void onCreate() {
+        createDate = currentTimestamp();
+        updateDate = createDate;
+    }
+
+    @PreUpdate
+    void onUpdate() {
+        updateDate = currentTimestamp();
+    }
+
+    public void copyNutrients(Product source) {
+        this.calories = source.calories;
+        this.protein = source.protein;
+        this.carbohydrates = source.carbohydrates;
+        this.fat = source.fat;
+        this.sugar = source.sugar;
+        this.fiber = source.fiber;
+    }
+
 }
@@ -0,0 +1,19 @@
+package com.fc.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * The outcome of one item of a product batch. The {@code index} is the position of the item in the request.
+ */
+@Data
+@AllArgsConstructor
+public class ProductBatchResult {
+
+    private int index;
+    private Long id;
+    private String name;
+    private ProductBatchStatus status;
+    private String message;
+
+}
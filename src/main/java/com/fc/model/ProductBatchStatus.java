@@ -0,0 +1,9 @@
+package com.fc.model;
+
+public enum ProductBatchStatus {
+
+    CREATED,
+    UPDATED,
+    FAILED
+
+}
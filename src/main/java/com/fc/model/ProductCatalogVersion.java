@@ -0,0 +1,27 @@
+package com.fc.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.Instant;
+
+/**
+ * The number of products and the last update date of the catalog. Every create, update and delete changes one of them.
+ * The update date is stamped before the commit, so a write which commits after a later one does not move it; the
+ * committed changes ({@code <epoch>-<count>} of the changes committed since the start) change with every commit.
+ * The price changes buffered by the write-behind are only counted, they change the update date with the flush.
+ */
+@Data
+@AllArgsConstructor
+public class ProductCatalogVersion {
+
+    private long count;
+    private Instant lastModified;
+    private String committedChanges;
+    private long bufferedPriceChanges;
+
+    public ProductCatalogVersion(long count, Instant lastModified) {
+        this(count, lastModified, null, 0);
+    }
+
+}
@@ -0,0 +1,25 @@
+package com.fc.model;
+
+import com.fc.event.ProductChangeType;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.Instant;
+
+/**
+ * One event of the product change feed. The sequence is the SSE event id and grows by one with every change.
+ * <p>
+ * The {@code product} is the written state; it is null for deletes and for the bulk writes. The {@code productId}
+ * is null when a bulk write may have changed any product, the clients then have to reload the products.
+ */
+@Data
+@AllArgsConstructor
+public class ProductChange {
+
+    private long sequence;
+    private ProductChangeType changeType;
+    private Long productId;
+    private Product product;
+    private Instant time;
+
+}
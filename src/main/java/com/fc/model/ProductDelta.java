@@ -0,0 +1,22 @@
+package com.fc.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * The product changes after a watermark: the current state of the created / updated products and the tombstones
+ * of the deleted ones, both in change order. The next sync starts from {@code watermark};
+ * with {@code hasMore} it can follow at once.
+ */
+@Data
+@AllArgsConstructor
+public class ProductDelta {
+
+    private List<Product> changed;
+    private List<ProductTombstone> deleted;
+    private String watermark;
+    private boolean hasMore;
+
+}
@@ -0,0 +1,19 @@
+package com.fc.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.math.BigDecimal;
+
+/**
+ * The filters of the product listing. A null value does not filter.
+ */
+@Data
+@AllArgsConstructor
+public class ProductFilter {
+
+    private ProductType productType;
+    private BigDecimal minPrice;
+    private BigDecimal maxPrice;
+
+}
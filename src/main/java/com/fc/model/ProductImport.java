@@ -0,0 +1,57 @@
+package com.fc.model;
+
+import lombok.AccessLevel;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.GeneratedValue;
+import javax.persistence.Id;
+import java.time.Instant;
+
+/**
+ * The state of a product import. The {@code committedOffset} is the number of records of the file which were written,
+ * a resumed import skips them.
+ */
+@Data
+@Entity
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+public class ProductImport {
+
+    @Id
+    @GeneratedValue
+    private Long id;
+
+    private String fileName;
+
+    @Enumerated(EnumType.STRING)
+    private ProductImportFormat format;
+
+    @Enumerated(EnumType.STRING)
+    private ProductImportStatus status;
+
+    private long committedOffset;
+
+    private long createdCount;
+
+    private long updatedCount;
+
+    private long failedCount;
+
+    private String message;
+
+    private Instant createDate;
+
+    private Instant updateDate;
+
+    public ProductImport(String fileName, ProductImportFormat format) {
+        this.fileName = fileName;
+        this.format = format;
+        this.status = ProductImportStatus.RUNNING;
+        this.createDate = Instant.now();
+        this.updateDate = this.createDate;
+    }
+
+}
@@ -0,0 +1,8 @@
+package com.fc.model;
+
+public enum ProductImportFormat {
+
+    CSV,
+    NDJSON
+
+}
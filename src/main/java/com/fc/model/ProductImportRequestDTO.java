@@ -0,0 +1,16 @@
+package com.fc.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Start the import of a file from the import folder. When the format is not provided it is taken from the file extension.
+ */
+@Data
+@AllArgsConstructor
+public class ProductImportRequestDTO {
+
+    private String fileName;
+    private ProductImportFormat format;
+
+}
@@ -0,0 +1,9 @@
+package com.fc.model;
+
+public enum ProductImportStatus {
+
+    RUNNING,
+    COMPLETED,
+    FAILED
+
+}
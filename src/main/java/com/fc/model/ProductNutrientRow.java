@@ -0,0 +1,25 @@
+package com.fc.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * One product of a nutrient query result with the value it was sorted by.
+ */
+@Data
+@AllArgsConstructor
+public class ProductNutrientRow {
+
+    private Long id;
+    private String name;
+    private ProductType productType;
+    private Double price;
+    private Double calories;
+    private Double protein;
+    private Double carbohydrates;
+    private Double fat;
+    private Double sugar;
+    private Double fiber;
+    private Double score;
+
+}
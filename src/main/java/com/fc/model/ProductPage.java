@@ -0,0 +1,19 @@
+package com.fc.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * One page of the keyset paginated product list.
+ * The {@code nextCursor} is null when there are no more products.
+ */
+@Data
+@AllArgsConstructor
+public class ProductPage {
+
+    private List<Product> items;
+    private String nextCursor;
+
+}
@@ -0,0 +1,21 @@
+package com.fc.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * The products whose prices are looked up at a point in time; the current prices when {@code at} is not given.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductPriceAsOfDTO {
+
+    private List<Long> ids;
+    private Instant at;
+
+}
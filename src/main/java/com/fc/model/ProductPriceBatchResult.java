@@ -0,0 +1,20 @@
+package com.fc.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * The outcome of a batch price change: the number of updated rows, the ids which do not exist
+ * and the ids which were rejected because the new price is missing or not greater than zero.
+ */
+@Data
+@AllArgsConstructor
+public class ProductPriceBatchResult {
+
+    private int updatedCount;
+    private List<Long> missingIds;
+    private List<Long> rejectedIds;
+
+}
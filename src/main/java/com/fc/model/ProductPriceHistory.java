@@ -0,0 +1,50 @@
+package com.fc.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.AccessLevel;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+import java.math.BigDecimal;
+import java.time.Instant;
+
+/**
+ * A price of a product, valid from {@code validFrom} until the next entry of the same product.
+ * The rows are only inserted, never updated or deleted (not even with the product), so the cost reports can be repeated.
+ * The (productId, validFrom) index serves the range query of one product and the "price as of" lookup.
+ */
+@Data
+@Entity
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Table(indexes = @Index(name = "idx_product_price_history_product_valid_from", columnList = "productId, validFrom"))
+public class ProductPriceHistory {
+
+    // generated by the database, so the bulk price changes can insert the history with insert ... select
+    @Id
+    @JsonIgnore
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private Long productId;
+
+    @Column(nullable = false)
+    private BigDecimal price;
+
+    @Column(nullable = false)
+    private Instant validFrom;
+
+    public ProductPriceHistory(Long productId, BigDecimal price, Instant validFrom) {
+        this.productId = productId;
+        this.price = price;
+        this.validFrom = validFrom;
+    }
+
+}
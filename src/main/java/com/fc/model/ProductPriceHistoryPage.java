@@ -0,0 +1,19 @@
+package com.fc.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * One page of the price history of a product, oldest first.
+ * The {@code nextCursor} is null when there are no more entries in the time range.
+ */
+@Data
+@AllArgsConstructor
+public class ProductPriceHistoryPage {
+
+    private List<ProductPriceHistory> items;
+    private String nextCursor;
+
+}
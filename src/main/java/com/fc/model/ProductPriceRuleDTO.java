@@ -0,0 +1,18 @@
+package com.fc.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.math.BigDecimal;
+
+/**
+ * Change the price of all products of a type by a percentage, e.g. +5 for all HARD products.
+ */
+@Data
+@AllArgsConstructor
+public class ProductPriceRuleDTO {
+
+    private ProductType productType;
+    private BigDecimal percentage;
+
+}
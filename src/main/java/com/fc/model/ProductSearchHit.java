@@ -0,0 +1,19 @@
+package com.fc.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * One product of a search result. The higher score is the better match.
+ */
+@Data
+@AllArgsConstructor
+public class ProductSearchHit {
+
+    private Long id;
+    private String name;
+    private String description;
+    private ProductType productType;
+    private int score;
+
+}
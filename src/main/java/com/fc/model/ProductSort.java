@@ -0,0 +1,39 @@
+package com.fc.model;
+
+import com.fc.exception.InvalidProductSortException;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.Locale;
+
+/**
+ * The orders of the product listing. Every order ends with the id, so it is total and the keyset cursor is unique.
+ */
+@Getter
+@AllArgsConstructor
+public enum ProductSort {
+
+    ID("id"),
+    PRICE("price"),
+    PRICE_DESC("price,desc")
+    ;
+
+    private final String name;
+
+    public static ProductSort of(String sort) {
+        if (sort == null || sort.isEmpty()) {
+            return ID;
+        }
+        final String name = sort.trim().toLowerCase(Locale.ROOT);
+        if ("price,asc".equals(name)) {
+            return PRICE;
+        }
+        for (ProductSort productSort : values()) {
+            if (productSort.name.equals(name)) {
+                return productSort;
+            }
+        }
+        throw new InvalidProductSortException(sort);
+    }
+
+}
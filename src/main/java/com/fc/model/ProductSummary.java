@@ -0,0 +1,21 @@
+package com.fc.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.math.BigDecimal;
+
+/**
+ * The listing columns of a product. Selected with a constructor expression, so the other columns
+ * (description, nutrients, dates) are neither read nor serialized.
+ */
+@Data
+@AllArgsConstructor
+public class ProductSummary {
+
+    private Long id;
+    private String name;
+    private BigDecimal price;
+    private ProductType productType;
+
+}
@@ -0,0 +1,19 @@
+package com.fc.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * One page of the filtered product listing.
+ * The {@code nextCursor} is null when there are no more products.
+ */
+@Data
+@AllArgsConstructor
+public class ProductSummaryPage {
+
+    private List<ProductSummary> items;
+    private String nextCursor;
+
+}
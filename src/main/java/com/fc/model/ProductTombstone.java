@@ -0,0 +1,35 @@
+package com.fc.model;
+
+import lombok.AccessLevel;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+import java.time.Instant;
+
+/**
+ * Marks a deleted product for the delta sync, written in the transaction of the delete.
+ * The tombstones are purged after the retention, the clients with an older watermark have to reload all products.
+ */
+@Data
+@Entity
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Table(indexes = @Index(name = "idx_product_tombstone_deleted_date", columnList = "deletedDate, productId"))
+public class ProductTombstone {
+
+    @Id
+    private Long productId;
+
+    @Column(nullable = false)
+    private Instant deletedDate;
+
+    public ProductTombstone(Long productId, Instant deletedDate) {
+        this.productId = productId;
+        this.deletedDate = deletedDate;
+    }
+
+}
@@ -0,0 +1,18 @@
+package com.fc.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * A recipe or a meal: a list of products with their quantities.
+ */
+@Data
+@AllArgsConstructor
+public class RecipeDTO {
+
+    private String name;
+    private List<RecipeItemDTO> items;
+
+}
@@ -0,0 +1,16 @@
+package com.fc.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * One ingredient of a recipe: the product and its quantity in grams.
+ */
+@Data
+@AllArgsConstructor
+public class RecipeItemDTO {
+
+    private Long productId;
+    private double quantity;
+
+}
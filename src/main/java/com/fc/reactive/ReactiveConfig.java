@@ -0,0 +1,60 @@
+package com.fc.reactive;
+
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.r2dbc.connection.R2dbcTransactionManager;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.transaction.reactive.TransactionalOperator;
+
+/**
+ * Class provides configuration for the non-blocking product API of the `reactive` profile: WebFlux on Netty
+ * and R2DBC on the database of the blocking stack. The JPA stack stays in place, it creates / updates the schema.
+ * <p>
+ * The connection pool and the R2DBC transaction manager are not beans: a ConnectionFactory bean turns off the JDBC
+ * DataSource auto-configuration, and the @Transactional methods still have to find the only JPA transaction manager.
+ */
+@Configuration
+@Profile(ReactiveConfig.PROFILE)
+public class ReactiveConfig implements DisposableBean {
+
+    public static final String PROFILE = "reactive";
+
+    private ConnectionPool connectionPool;
+
+    @Bean
+    public DatabaseClient reactiveDatabaseClient(@Value("${fc.reactive.r2dbc.url}") String url,
+                                                 @Value("${spring.datasource.username:}") String username,
+                                                 @Value("${spring.datasource.password:}") String password,
+                                                 @Value("${fc.reactive.r2dbc.pool-size:20}") int poolSize) {
+        ConnectionFactory connectionFactory = ConnectionFactories.get(ConnectionFactoryOptions.parse(url).mutate()
+                .option(ConnectionFactoryOptions.USER, username)
+                .option(ConnectionFactoryOptions.PASSWORD, password)
+                .build());
+        connectionPool = new ConnectionPool(ConnectionPoolConfiguration.builder(connectionFactory)
+                .initialSize(Math.min(poolSize, 5))
+                .maxSize(poolSize)
+                .build());
+        return DatabaseClient.create(connectionPool);
+    }
+
+    @Bean
+    public TransactionalOperator reactiveTransactionalOperator(DatabaseClient reactiveDatabaseClient) {
+        return TransactionalOperator.create(new R2dbcTransactionManager(reactiveDatabaseClient.getConnectionFactory()));
+    }
+
+    @Override
+    public void destroy() {
+        if (connectionPool != null) {
+            connectionPool.dispose();
+        }
+    }
+
+}
@@ -0,0 +1,118 @@
+package com.fc.reactive;
+
+import com.fc.exception.GlobalExceptionHandler;
+import com.fc.model.Product;
+import com.fc.model.ProductPage;
+import com.fc.model.ProductPriceChangeDTO;
+import com.fc.util.AuthUtil;
+import com.fc.util.ETagUtil;
+import io.swagger.v3.oas.annotations.Operation;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * The product endpoints of {@link com.fc.controller.ProductController} on the non-blocking stack of the `reactive` profile.
+ * The responses and the error statuses are the same; the list of all products is streamed as it is read.
+ */
+@Slf4j
+@RestController
+@RequestMapping("/products")
+@Profile(ReactiveConfig.PROFILE)
+public class ReactiveProductController extends GlobalExceptionHandler {
+
+    private final ReactiveProductService productService;
+
+    public ReactiveProductController(ReactiveProductService productService) {
+        this.productService = productService;
+    }
+
+    @GetMapping
+    @PreAuthorize(AuthUtil.ANY_ROLE)
+    @Operation(description = "Get all products")
+    Flux<Product> getAllProducts() {
+        log.info("Receive request to receive all products");
+
+        return productService.getAllProducts();
+    }
+
+    @GetMapping(params = "limit")
+    @PreAuthorize(AuthUtil.ANY_ROLE)
+    @Operation(description = "Get one page of products ordered by id. Use the returned nextCursor to get the next page")
+    Mono<ProductPage> getProductPage(@RequestParam(required = false) String cursor, @RequestParam Integer limit) {
+        log.info("Receive request to receive a page of products. Cursor: {}, limit: {}", cursor, limit);
+
+        return productService.getProductPage(cursor, limit);
+    }
+
+    @PostMapping
+    @PreAuthorize(AuthUtil.ADMIN_ROLE_ONLY)
+    @Operation(description = "Create a new product")
+    Mono<Product> createNewProduct(@RequestBody Product newProduct) {
+        log.info("Receive request to receive to save a new product");
+
+        return productService.createNewProduct(newProduct);
+    }
+
+    @GetMapping("/{id}")
+    @PreAuthorize(AuthUtil.ANY_ROLE)
+    @Operation(description = "Get the product by id. Supports If-None-Match / If-Modified-Since with the returned ETag / Last-Modified")
+    Mono<ResponseEntity<Product>> getOneProduct(@PathVariable Long id) {
+        log.info("Receive request to find the product with id: {}", id);
+
+        // a request matching the ETag / Last-Modified gets 304 and the product is not serialized
+        return productService.getOneProduct(id).map(product -> {
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok().eTag(ETagUtil.of(product));
+            if (ETagUtil.lastModified(product) != null) {
+                response.lastModified(ETagUtil.lastModified(product));
+            }
+            return response.body(product);
+        });
+    }
+
+    @PutMapping("/{id}")
+    @PreAuthorize(AuthUtil.ADMIN_ROLE_ONLY)
+    @Operation(description = "Update the product by id and new product's details. With If-Match the product is only updated at the given ETag (version)")
+    Mono<ResponseEntity<Product>> updateProduct(@RequestBody Product newProduct, @PathVariable Long id,
+                                                @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        log.info("Receive request to update the product with id: {}", id);
+
+        return productService.updateProduct(newProduct, id, ETagUtil.versionOf(ifMatch))
+                .map(product -> ResponseEntity.ok().eTag(ETagUtil.of(product)).body(product));
+    }
+
+    @DeleteMapping("/{id}")
+    @PreAuthorize(AuthUtil.ADMIN_ROLE_ONLY)
+    @Operation(description = "Delete the product by id")
+    Mono<Void> deleteProduct(@PathVariable Long id) {
+        log.info("Receive request to delete the product with id: {}", id);
+
+        return productService.deleteProduct(id);
+    }
+
+    @PostMapping("/priceChange")
+    @PreAuthorize(AuthUtil.ADMIN_ROLE_ONLY)
+    @Operation(description = "Update product's price. With If-Match the price is only changed at the given ETag (version)")
+    Mono<ResponseEntity<Product>> changePrice(@RequestBody ProductPriceChangeDTO productPriceChangeDTO,
+                                              @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        log.info("Receive request for price change. Product id: {}, new price: {}", productPriceChangeDTO.getId(), productPriceChangeDTO.getPrice());
+
+        return productService.changePrice(productPriceChangeDTO.getId(), productPriceChangeDTO.getPrice(), ETagUtil.versionOf(ifMatch))
+                .map(product -> ResponseEntity.ok().eTag(ETagUtil.of(product)).body(product));
+    }
+
+}
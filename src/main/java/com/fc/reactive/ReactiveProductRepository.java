@@ -0,0 +1,169 @@
+package com.fc.reactive;
+
+import com.fc.model.Product;
+import com.fc.model.ProductType;
+import io.r2dbc.spi.Row;
+import org.springframework.context.annotation.Profile;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * Non-blocking access to the product table of the JPA entity {@link Product} with plain SQL.
+ * The statements keep the conventions of the JPA mapping: the product type is stored as its ordinal, the dates as
+ * local timestamps of the JVM time zone and every update increments the version.
+ */
+@Repository
+@Profile(ReactiveConfig.PROFILE)
+public class ReactiveProductRepository {
+
+    private static final String COLUMNS = "id, name, description, price, product_type, create_date, update_date, version,"
+            + " calories, protein, carbohydrates, fat, sugar, fiber";
+
+    private final DatabaseClient databaseClient;
+
+    public ReactiveProductRepository(DatabaseClient databaseClient) {
+        this.databaseClient = databaseClient;
+    }
+
+    public Mono<Product> findById(Long id) {
+        return databaseClient.sql("select " + COLUMNS + " from product where id = :id")
+                .bind("id", id)
+                .map((row, metadata) -> toProduct(row))
+                .one();
+    }
+
+    public Flux<Product> findAll() {
+        return databaseClient.sql("select " + COLUMNS + " from product order by id")
+                .map((row, metadata) -> toProduct(row))
+                .all();
+    }
+
+    public Flux<Product> findPage(Long afterId, int limit) {
+        return databaseClient.sql("select " + COLUMNS + " from product where id > :afterId order by id limit :limit")
+                .bind("afterId", afterId)
+                .bind("limit", limit)
+                .map((row, metadata) -> toProduct(row))
+                .all();
+    }
+
+    /**
+     * Insert the product with an id of the sequence of the JPA mapping. The sequence is incremented by its
+     * allocation size, so the id used here is never in a block of ids allocated by Hibernate.
+     */
+    public Mono<Product> insert(Product product) {
+        return databaseClient.sql("select nextval('product_seq')")
+                .map((row, metadata) -> row.get(0, Long.class))
+                .one()
+                .flatMap(id -> {
+                    product.setId(id);
+                    return bindProduct(databaseClient.sql("insert into product (" + COLUMNS + ") values (:id, :name, :description,"
+                            + " :price, :productType, :createDate, :updateDate, :version, :calories, :protein, :carbohydrates, :fat, :sugar, :fiber)"), product)
+                            .fetch().rowsUpdated()
+                            .thenReturn(product);
+                });
+    }
+
+    /**
+     * Write the product if it is still at its version; the version is incremented.
+     *
+     * @return false when the product was changed or deleted since it was read
+     */
+    public Mono<Boolean> update(Product product) {
+        return bindProduct(databaseClient.sql("update product set name = :name, description = :description, price = :price,"
+                + " product_type = :productType, create_date = :createDate, update_date = :updateDate, version = :version + 1,"
+                + " calories = :calories, protein = :protein, carbohydrates = :carbohydrates, fat = :fat, sugar = :sugar, fiber = :fiber"
+                + " where id = :id and version = :version"), product)
+                .fetch().rowsUpdated()
+                .map(count -> {
+                    if (count == 0) {
+                        return false;
+                    }
+                    product.setVersion(product.getVersion() + 1);
+                    return true;
+                });
+    }
+
+    public Mono<Boolean> deleteById(Long id) {
+        return databaseClient.sql("delete from product where id = :id")
+                .bind("id", id)
+                .fetch().rowsUpdated()
+                .map(count -> count > 0);
+    }
+
+    /**
+     * Record the tombstone of a deleted product for the delta sync; replaces the one of an earlier delete.
+     */
+    public Mono<Void> recordTombstone(Long id, Instant deletedDate) {
+        return databaseClient.sql("delete from product_tombstone where product_id = :id")
+                .bind("id", id)
+                .fetch().rowsUpdated()
+                .then(databaseClient.sql("insert into product_tombstone (product_id, deleted_date) values (:id, :deletedDate)")
+                        .bind("id", id)
+                        .bind("deletedDate", toTimestamp(deletedDate))
+                        .fetch().rowsUpdated())
+                .then();
+    }
+
+    public Mono<Void> recordPrice(Product product) {
+        if (product.getPrice() == null) {
+            return Mono.empty();
+        }
+        return databaseClient.sql("insert into product_price_history (product_id, price, valid_from) values (:productId, :price, :validFrom)")
+                .bind("productId", product.getId())
+                .bind("price", product.getPrice())
+                .bind("validFrom", toTimestamp(product.getUpdateDate()))
+                .fetch().rowsUpdated()
+                .then();
+    }
+
+    private static DatabaseClient.GenericExecuteSpec bindProduct(DatabaseClient.GenericExecuteSpec spec, Product product) {
+        spec = spec.bind("id", product.getId()).bind("version", product.getVersion());
+        spec = bindNullable(spec, "name", product.getName(), String.class);
+        spec = bindNullable(spec, "description", product.getDescription(), String.class);
+        spec = bindNullable(spec, "price", product.getPrice(), BigDecimal.class);
+        spec = bindNullable(spec, "productType", product.getProductType() == null ? null : product.getProductType().ordinal(), Integer.class);
+        spec = bindNullable(spec, "createDate", toTimestamp(product.getCreateDate()), LocalDateTime.class);
+        spec = bindNullable(spec, "updateDate", toTimestamp(product.getUpdateDate()), LocalDateTime.class);
+        spec = bindNullable(spec, "calories", product.getCalories(), Double.class);
+        spec = bindNullable(spec, "protein", product.getProtein(), Double.class);
+        spec = bindNullable(spec, "carbohydrates", product.getCarbohydrates(), Double.class);
+        spec = bindNullable(spec, "fat", product.getFat(), Double.class);
+        spec = bindNullable(spec, "sugar", product.getSugar(), Double.class);
+        return bindNullable(spec, "fiber", product.getFiber(), Double.class);
+    }
+
+    private static <T> DatabaseClient.GenericExecuteSpec bindNullable(DatabaseClient.GenericExecuteSpec spec, String name, T value, Class<T> type) {
+        return value == null ? spec.bindNull(name, type) : spec.bind(name, value);
+    }
+
+    private static Product toProduct(Row row) {
+        final Integer productType = row.get("product_type", Integer.class);
+        Product product = new Product(row.get("id", Long.class), row.get("name", String.class), row.get("description", String.class),
+                row.get("price", BigDecimal.class), productType == null ? null : ProductType.values()[productType],
+                toInstant(row.get("create_date", LocalDateTime.class)), toInstant(row.get("update_date", LocalDateTime.class)));
+        product.setVersion(row.get("version", Long.class));
+        product.setCalories(row.get("calories", Double.class));
+        product.setProtein(row.get("protein", Double.class));
+        product.setCarbohydrates(row.get("carbohydrates", Double.class));
+        product.setFat(row.get("fat", Double.class));
+        product.setSugar(row.get("sugar", Double.class));
+        product.setFiber(row.get("fiber", Double.class));
+        return product;
+    }
+
+    private static LocalDateTime toTimestamp(Instant instant) {
+        return instant == null ? null : LocalDateTime.ofInstant(instant, ZoneId.systemDefault());
+    }
+
+    private static Instant toInstant(LocalDateTime timestamp) {
+        return timestamp == null ? null : timestamp.atZone(ZoneId.systemDefault()).toInstant();
+    }
+
+}
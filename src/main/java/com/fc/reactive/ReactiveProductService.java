@@ -0,0 +1,247 @@
+package com.fc.reactive;
+
+import com.fc.config.CacheConfig;
+import com.fc.event.ProductChangeType;
+import com.fc.event.ProductChangedEvent;
+import com.fc.exception.ProductNameAlreadyExistsException;
+import com.fc.exception.ProductNotFoundException;
+import com.fc.exception.ProductUpdateConflictException;
+import com.fc.exception.ProductVersionMismatchException;
+import com.fc.model.Product;
+import com.fc.model.ProductPage;
+import com.fc.service.ProductService;
+import com.fc.util.CursorUtil;
+import com.fc.util.ProductValidationUtil;
+import io.micrometer.core.instrument.Metrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.function.Tuple2;
+import reactor.util.function.Tuples;
+import reactor.util.retry.Retry;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Supplier;
+
+/**
+ * The non-blocking counterpart of {@link ProductService} with the same validation rules, optimistic concurrency,
+ * conflict retries, price history, change events and cache invalidation. Every write is one R2DBC transaction.
+ * <p>
+ * The {@code r2dbc-h2} driver runs the embedded H2 engine on the calling thread, so the queries themselves still run
+ * on the event loop; only a driver with network I/O to its database is truly non-blocking.
+ */
+@Slf4j
+@Service
+@Profile(ReactiveConfig.PROFILE)
+public class ReactiveProductService {
+
+    private final ReactiveProductRepository productRepository;
+
+    private final TransactionalOperator transactionalOperator;
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final CacheManager cacheManager;
+
+    private final int conflictMaxAttempts;
+
+    private final long conflictBackoffMillis;
+
+    public ReactiveProductService(ReactiveProductRepository productRepository,
+                                  TransactionalOperator transactionalOperator,
+                                  ApplicationEventPublisher eventPublisher,
+                                  CacheManager cacheManager,
+                                  @Value("${fc.product.conflict-retry.max-attempts:3}") int conflictMaxAttempts,
+                                  @Value("${fc.product.conflict-retry.backoff-millis:10}") long conflictBackoffMillis) {
+        this.productRepository = productRepository;
+        this.transactionalOperator = transactionalOperator;
+        this.eventPublisher = eventPublisher;
+        this.cacheManager = cacheManager;
+        this.conflictMaxAttempts = conflictMaxAttempts;
+        this.conflictBackoffMillis = conflictBackoffMillis;
+    }
+
+    public Flux<Product> getAllProducts() {
+        return productRepository.findAll();
+    }
+
+    public Mono<ProductPage> getProductPage(String cursor, Integer limit) {
+        final int pageSize = limit == null || limit <= 0 ? ProductService.DEFAULT_PAGE_SIZE : Math.min(limit, ProductService.MAX_PAGE_SIZE);
+
+        // fetch one extra row to know if a next page exists without a count query
+        return Mono.fromCallable(() -> CursorUtil.decode(cursor))
+                .flatMap(afterId -> productRepository.findPage(afterId, pageSize + 1).collectList())
+                .map(products -> {
+                    if (products.size() <= pageSize) {
+                        return new ProductPage(products, null);
+                    }
+                    List<Product> items = products.subList(0, pageSize);
+                    return new ProductPage(items, CursorUtil.encode(items.get(pageSize - 1).getId()));
+                });
+    }
+
+    public Mono<Product> getOneProduct(Long id) {
+        return productRepository.findById(id)
+                .switchIfEmpty(Mono.error(() -> new ProductNotFoundException(id)));
+    }
+
+    public Mono<Product> createNewProduct(Product newProduct) {
+        return Mono.fromRunnable(() -> ProductValidationUtil.validateName(newProduct))
+                .then(Mono.defer(() -> transactionalOperator.transactional(insert(newProduct))))
+                .onErrorMap(ReactiveProductService::isUniqueNameViolation, e -> new ProductNameAlreadyExistsException(newProduct.getName()))
+                .publishOn(Schedulers.boundedElastic())
+                .doOnNext(product -> publish(ProductChangeType.CREATED, product));
+    }
+
+    /**
+     * Update the product, or create it when the id does not exist. With an expected version (If-Match) a stale
+     * product is rejected, otherwise a concurrent change is retried like {@link ProductService#updateProduct(Product, Long)}.
+     */
+    public Mono<Product> updateProduct(Product newProduct, Long id, Long expectedVersion) {
+        Supplier<Mono<Tuple2<ProductChangeType, Product>>> write = () -> productRepository.findById(id)
+                .flatMap(product -> {
+                    checkVersion(product, expectedVersion);
+                    final boolean priceChanged = ProductValidationUtil.isPriceChanged(product.getPrice(), newProduct.getPrice());
+                    product.setName(newProduct.getName());
+                    product.setDescription(newProduct.getDescription());
+                    product.setPrice(newProduct.getPrice());
+                    product.copyNutrients(newProduct);
+                    return update(product, priceChanged).map(updated -> Tuples.of(ProductChangeType.UPDATED, updated));
+                })
+                .switchIfEmpty(Mono.defer(() -> expectedVersion != null
+                        ? Mono.error(new ProductVersionMismatchException(id, expectedVersion))
+                        : insert(newProduct).map(created -> Tuples.of(ProductChangeType.CREATED, created))));
+
+        return onConflict("updateProduct", id, expectedVersion, write)
+                .onErrorMap(ReactiveProductService::isUniqueNameViolation, e -> new ProductNameAlreadyExistsException(newProduct.getName()))
+                .publishOn(Schedulers.boundedElastic())
+                .doOnNext(change -> publish(change.getT1(), change.getT2()))
+                .map(Tuple2::getT2);
+    }
+
+    public Mono<Product> changePrice(Long id, BigDecimal price, Long expectedVersion) {
+        Supplier<Mono<Tuple2<ProductChangeType, Product>>> write = () -> productRepository.findById(id)
+                .switchIfEmpty(Mono.error(() -> new ProductNotFoundException(id)))
+                .flatMap(product -> {
+                    checkVersion(product, expectedVersion);
+                    product.setPrice(price);
+                    return update(product, true).map(updated -> Tuples.of(ProductChangeType.PRICE_CHANGED, updated));
+                });
+
+        return Mono.fromRunnable(() -> ProductValidationUtil.validatePrice(id, price))
+                .then(onConflict("changePrice", id, expectedVersion, write))
+                .publishOn(Schedulers.boundedElastic())
+                .doOnNext(change -> publish(change.getT1(), change.getT2()))
+                .map(Tuple2::getT2);
+    }
+
+    public Mono<Void> deleteProduct(Long id) {
+        return transactionalOperator.transactional(productRepository.deleteById(id)
+                .flatMap(deleted -> deleted
+                        ? productRepository.recordTombstone(id, Product.currentTimestamp())
+                        : Mono.<Void>error(new ProductNotFoundException(id))))
+                .publishOn(Schedulers.boundedElastic())
+                .doOnSuccess(ignored -> {
+                    evict(id);
+                    eventPublisher.publishEvent(new ProductChangedEvent(ProductChangeType.DELETED, id, null));
+                });
+    }
+
+    private Mono<Product> insert(Product newProduct) {
+        final Instant now = Product.currentTimestamp();
+        newProduct.setId(null);
+        newProduct.setVersion(0);
+        newProduct.setCreateDate(now);
+        newProduct.setUpdateDate(now);
+        return productRepository.insert(newProduct)
+                .flatMap(product -> productRepository.recordPrice(product).thenReturn(product));
+    }
+
+    private Mono<Product> update(Product product, boolean priceChanged) {
+        product.setUpdateDate(Product.currentTimestamp());
+        return productRepository.update(product).flatMap(updated -> {
+            if (!updated) {
+                return Mono.error(new OptimisticLockingFailureException("The product " + product.getId() + " was changed concurrently"));
+            }
+            return priceChanged ? productRepository.recordPrice(product).thenReturn(product) : Mono.just(product);
+        });
+    }
+
+    /**
+     * Run the read-modify-write in one transaction. A conflict is rejected when the client expects a version,
+     * otherwise the transaction is retried with the backoff of the blocking API.
+     */
+    private <T> Mono<T> onConflict(String operation, Long id, Long expectedVersion, Supplier<Mono<T>> write) {
+        Mono<T> transaction = Mono.defer(() -> transactionalOperator.transactional(write.get()));
+        if (expectedVersion != null) {
+            return transaction
+                    .doOnError(ProductVersionMismatchException.class, e -> countConflict(operation, "rejected"))
+                    .onErrorMap(OptimisticLockingFailureException.class, e -> {
+                        countConflict(operation, "rejected");
+                        return new ProductVersionMismatchException(id, expectedVersion);
+                    });
+        }
+        return transaction.retryWhen(Retry.backoff(conflictMaxAttempts - 1, Duration.ofMillis(conflictBackoffMillis))
+                .jitter(1.0)
+                .filter(OptimisticLockingFailureException.class::isInstance)
+                .doBeforeRetry(signal -> countConflict(operation, "retried"))
+                .onRetryExhaustedThrow((spec, signal) -> {
+                    countConflict(operation, "exhausted");
+                    log.warn("The product {} could not be saved after {} attempts because of concurrent changes", id, conflictMaxAttempts);
+                    return new ProductUpdateConflictException(id, conflictMaxAttempts);
+                }));
+    }
+
+    private static void checkVersion(Product product, Long expectedVersion) {
+        if (expectedVersion != null && product.getVersion() != expectedVersion) {
+            throw new ProductVersionMismatchException(product.getId(), expectedVersion);
+        }
+    }
+
+    private static void countConflict(String operation, String outcome) {
+        Metrics.counter(ProductService.CONFLICT_METRIC, "operation", operation, "outcome", outcome).increment();
+    }
+
+    /**
+     * The listeners of the change events are synchronous and may block (the locks of the in-memory views, the change
+     * feed), so the writes publish them on {@link Schedulers#boundedElastic()} and never on the event loop.
+     */
+    private void publish(ProductChangeType changeType, Product product) {
+        evict(product.getId());
+        eventPublisher.publishEvent(ProductChangedEvent.of(changeType, product));
+    }
+
+    private void evict(Long id) {
+        Cache cache = cacheManager.getCache(CacheConfig.PRODUCT_CACHE);
+        if (cache != null) {
+            cache.evict(id);
+        }
+    }
+
+    private static boolean isUniqueNameViolation(Throwable e) {
+        if (!(e instanceof DataIntegrityViolationException)) {
+            return false;
+        }
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause.getMessage() != null && cause.getMessage().toLowerCase(Locale.ROOT).contains(Product.UNIQUE_NAME_CONSTRAINT)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
@@ -0,0 +1,40 @@
+package com.fc.reactive;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.security.config.annotation.method.configuration.EnableReactiveMethodSecurity;
+import org.springframework.security.config.annotation.web.reactive.EnableWebFluxSecurity;
+import org.springframework.security.config.web.server.ServerHttpSecurity;
+import org.springframework.security.core.userdetails.MapReactiveUserDetailsService;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.web.server.SecurityWebFilterChain;
+
+/**
+ * The reactive counterpart of {@link com.fc.config.SecurityConfig} with the same users, roles and rules.
+ */
+@Configuration
+@Profile(ReactiveConfig.PROFILE)
+@EnableWebFluxSecurity
+@EnableReactiveMethodSecurity
+public class ReactiveSecurityConfig {
+
+    @Bean
+    public MapReactiveUserDetailsService reactiveUserDetailsService() {
+        return new MapReactiveUserDetailsService(
+                User.withUsername("user").password("{noop}123").roles("USER").build(),
+                User.withUsername("admin").password("{noop}123").roles("ADMIN").build());
+    }
+
+    @Bean
+    public SecurityWebFilterChain reactiveSecurityFilterChain(ServerHttpSecurity http) {
+        return http
+                .httpBasic().and()
+                .authorizeExchange()
+                .pathMatchers("/products", "/products/**")
+                .permitAll().anyExchange().authenticated()
+                .and().csrf().disable()
+                .build();
+    }
+
+}
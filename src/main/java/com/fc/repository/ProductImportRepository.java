@@ -0,0 +1,8 @@
+package com.fc.repository;
+
+import com.fc.model.ProductImport;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface ProductImportRepository extends JpaRepository<ProductImport, Long> {
+
+}
@@ -0,0 +1,48 @@
+package com.fc.repository;
+
+import com.fc.model.ProductPriceHistory;
+import com.fc.model.ProductType;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+public interface ProductPriceHistoryRepository extends JpaRepository<ProductPriceHistory, Long> {
+
+    /**
+     * The entries of the time range after the (validFrom, id) key of the last entry read, in that order.
+     * The id tells apart the entries of the same time, so a page never repeats or skips one of them.
+     */
+    @Query("select h from ProductPriceHistory h where h.productId = :productId"
+            + " and h.validFrom >= :from and h.validFrom < :to"
+            + " and (h.validFrom > :afterTime or (h.validFrom = :afterTime and h.id > :afterId))"
+            + " order by h.validFrom, h.id")
+    List<ProductPriceHistory> findPrices(@Param("productId") final Long productId,
+                                         @Param("from") final Instant from,
+                                         @Param("to") final Instant to,
+                                         @Param("afterTime") final Instant afterTime,
+                                         @Param("afterId") final Long afterId,
+                                         final Pageable pageable);
+
+    /**
+     * The last entry at or before {@code at} of every product. The max is resolved per product on the
+     * (productId, validFrom) index, so the cost does not depend on the length of the history.
+     */
+    @Query("select h from ProductPriceHistory h where h.productId in :productIds and h.validFrom ="
+            + " (select max(l.validFrom) from ProductPriceHistory l where l.productId = h.productId and l.validFrom <= :at)")
+    List<ProductPriceHistory> findPricesAsOf(@Param("productIds") final Collection<Long> productIds,
+                                             @Param("at") final Instant at);
+
+    @Modifying
+    @Query("insert into ProductPriceHistory (productId, price, validFrom) select p.id, p.price, p.updateDate from Product p"
+            + " where p.productType = :productType and p.id > :fromId and p.id <= :toId and p.price is not null")
+    int recordPrices(@Param("productType") final ProductType productType,
+                     @Param("fromId") final Long fromId,
+                     @Param("toId") final Long toId);
+
+}
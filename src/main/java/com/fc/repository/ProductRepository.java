@@ -1,10 +1,56 @@
 package com.fc.repository;
 
 import com.fc.model.Product;
+import com.fc.model.ProductCatalogVersion;
+import com.fc.model.ProductType;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
-public interface ProductRepository extends JpaRepository<Product, Long> {
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+public interface ProductRepository extends JpaRepository<Product, Long>, ProductRepositoryCustom {
 
     Product findByName(final String name);
 
+    List<Product> findByNameIn(final Collection<String> names);
+
+    List<Product> findByIdGreaterThanOrderByIdAsc(final Long id, final Pageable pageable);
+
+    /**
+     * The products changed after the (updateDate, id) key up to {@code until}, in key order.
+     */
+    @Query("select p from Product p where p.updateDate >= :since and p.updateDate <= :until"
+            + " and (p.updateDate > :since or p.id > :afterId) order by p.updateDate, p.id")
+    List<Product> findChangedSince(@Param("since") final Instant since,
+                                   @Param("afterId") final Long afterId,
+                                   @Param("until") final Instant until,
+                                   final Pageable pageable);
+
+    @Modifying
+    @Transactional
+    @Query("update Product p set p.updateDate = :updateDate where p.updateDate is null")
+    int setMissingUpdateDates(@Param("updateDate") final Instant updateDate);
+
+    @Query("select max(p.id) from Product p")
+    Long findMaxId();
+
+    @Query("select new com.fc.model.ProductCatalogVersion(count(p), max(p.updateDate)) from Product p")
+    ProductCatalogVersion findCatalogVersion();
+
+    @Modifying
+    @Query("update Product p set p.price = p.price * :factor, p.updateDate = :updateDate, p.version = p.version + 1"
+            + " where p.productType = :productType and p.id > :fromId and p.id <= :toId")
+    int multiplyPrices(@Param("productType") final ProductType productType,
+                       @Param("factor") final BigDecimal factor,
+                       @Param("updateDate") final Instant updateDate,
+                       @Param("fromId") final Long fromId,
+                       @Param("toId") final Long toId);
+
 }
@@ -0,0 +1,65 @@
+package com.fc.repository;
+
+import com.fc.model.Product;
+import com.fc.model.ProductFilter;
+import com.fc.model.ProductSort;
+import com.fc.model.ProductSummary;
+import com.fc.util.CursorUtil;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Custom repository fragment for the access patterns which cannot be expressed as derived queries.
+ */
+public interface ProductRepositoryCustom {
+
+    /**
+     * Stream all products ordered by id from a JDBC cursor. Every product is detached after it was
+     * consumed, so the memory usage does not depend on the size of the catalog.
+     */
+    void streamAllOrderedById(Consumer<Product> action);
+
+    /**
+     * Insert a new product and flush it, so constraint violations surface immediately.
+     * When the insert fails the persistence context is cleared, otherwise the next flush would repeat the failed insert.
+     * The initial price is recorded in the price history in the same transaction.
+     */
+    Product insert(Product product);
+
+    /**
+     * Save the product and record its price in the price history in the same transaction,
+     * valid from the product's new {@code updateDate}.
+     */
+    Product saveAndRecordPrice(Product product);
+
+    /**
+     * Set the prices of the products in one transaction, sent as one JDBC batch without loading the products.
+     * The version of every product moves on by its number of changes and its price is recorded in the price history.
+     *
+     * @param changeCounts the number of price changes per product which are written at once
+     * @return the ids which do not exist
+     */
+    List<Long> changePrices(Map<Long, BigDecimal> prices, Map<Long, Integer> changeCounts);
+
+    /**
+     * Delete the product and record its tombstone for the delta sync in the same transaction.
+     *
+     * @throws org.springframework.dao.EmptyResultDataAccessException when the product does not exist, like {@code deleteById}
+     */
+    void deleteAndRecordTombstone(Long id);
+
+    /**
+     * Select the listing columns of at most {@code limit} products matching the filter, in the given order and
+     * after the keyset of the previous page. The query only has the predicates of the given filter values,
+     * so it can use the (productType, price, id) or (price, id) index.
+     *
+     * @param afterId    the last id of the previous page, for {@link ProductSort#ID}
+     * @param afterPrice the last price and id of the previous page, for the price orders
+     */
+    List<ProductSummary> findSummaries(ProductFilter filter, ProductSort sort, Long afterId,
+                                       CursorUtil.PriceKey afterPrice, int limit);
+
+}
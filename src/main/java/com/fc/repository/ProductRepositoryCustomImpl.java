@@ -0,0 +1,176 @@
+package com.fc.repository;
+
+import com.fc.model.Product;
+import com.fc.model.ProductFilter;
+import com.fc.model.ProductPriceHistory;
+import com.fc.model.ProductSort;
+import com.fc.model.ProductSummary;
+import com.fc.model.ProductTombstone;
+import com.fc.util.CursorUtil;
+import org.hibernate.jpa.QueryHints;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.PersistenceException;
+import javax.persistence.TypedQuery;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+public class ProductRepositoryCustomImpl implements ProductRepositoryCustom {
+
+    static final int STREAM_FETCH_SIZE = 500;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    // joins the transaction of the entity manager
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Override
+    @Transactional(readOnly = true)
+    public void streamAllOrderedById(Consumer<Product> action) {
+        try (Stream<Product> products = entityManager
+                .createQuery("select p from Product p order by p.id", Product.class)
+                .setHint(QueryHints.HINT_FETCH_SIZE, STREAM_FETCH_SIZE)
+                .setHint(QueryHints.HINT_READONLY, true)
+                .getResultStream()) {
+            products.forEach(product -> {
+                action.accept(product);
+                entityManager.detach(product);
+            });
+        }
+    }
+
+    @Override
+    @Transactional
+    public Product insert(Product product) {
+        try {
+            entityManager.persist(product);
+            entityManager.flush();
+            recordPrice(product);
+            return product;
+        } catch (PersistenceException e) {
+            entityManager.clear();
+            throw e;
+        }
+    }
+
+    @Override
+    @Transactional
+    public Product saveAndRecordPrice(Product product) {
+        Product savedProduct = product;
+        if (product.getId() == null) {
+            entityManager.persist(product);
+        } else {
+            savedProduct = entityManager.merge(product);
+        }
+        // the update date is set by the flush
+        entityManager.flush();
+        recordPrice(savedProduct);
+        return savedProduct;
+    }
+
+    @Override
+    @Transactional
+    public List<Long> changePrices(Map<Long, BigDecimal> prices, Map<Long, Integer> changeCounts) {
+        final Timestamp now = Timestamp.from(Product.currentTimestamp());
+        final List<Long> ids = new ArrayList<>(prices.keySet());
+        final int[] updateCounts = jdbcTemplate.batchUpdate(
+                "update product set price = ?, update_date = ?, version = version + ? where id = ?",
+                ids.stream()
+                        .map(id -> new Object[]{prices.get(id), now, changeCounts.getOrDefault(id, 1), id})
+                        .collect(Collectors.toList()));
+        // the select skips the missing ids
+        jdbcTemplate.batchUpdate(
+                "insert into product_price_history (price, valid_from, product_id) select ?, ?, id from product where id = ?",
+                ids.stream()
+                        .map(id -> new Object[]{prices.get(id), now, id})
+                        .collect(Collectors.toList()));
+
+        final List<Long> missingIds = new ArrayList<>();
+        for (int i = 0; i < updateCounts.length; i++) {
+            if (updateCounts[i] == 0) {
+                missingIds.add(ids.get(i));
+            }
+        }
+        return missingIds;
+    }
+
+    @Override
+    @Transactional
+    public void deleteAndRecordTombstone(Long id) {
+        Product product = entityManager.find(Product.class, id);
+        if (product == null) {
+            throw new EmptyResultDataAccessException(String.format("No %s entity with id %s exists!", Product.class, id), 1);
+        }
+        entityManager.remove(product);
+        entityManager.merge(new ProductTombstone(id, Product.currentTimestamp()));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<ProductSummary> findSummaries(ProductFilter filter, ProductSort sort, Long afterId,
+                                              CursorUtil.PriceKey afterPrice, int limit) {
+        final List<String> predicates = new ArrayList<>();
+        final Map<String, Object> parameters = new HashMap<>();
+        if (filter.getProductType() != null) {
+            predicates.add("p.productType = :productType");
+            parameters.put("productType", filter.getProductType());
+        }
+        if (filter.getMinPrice() != null) {
+            predicates.add("p.price >= :minPrice");
+            parameters.put("minPrice", filter.getMinPrice());
+        }
+        if (filter.getMaxPrice() != null) {
+            predicates.add("p.price <= :maxPrice");
+            parameters.put("maxPrice", filter.getMaxPrice());
+        }
+
+        final String orderBy;
+        if (sort == ProductSort.ID) {
+            predicates.add("p.id > :afterId");
+            parameters.put("afterId", afterId);
+            orderBy = "p.id";
+        } else {
+            // the products without a price have no place in the price order
+            predicates.add("p.price is not null");
+            final boolean ascending = sort == ProductSort.PRICE;
+            if (afterPrice != null) {
+                // the first comparison bounds the index range, the second one skips the ties of the previous page
+                predicates.add(ascending
+                        ? "p.price >= :afterPrice and (p.price > :afterPrice or p.id > :afterId)"
+                        : "p.price <= :afterPrice and (p.price < :afterPrice or p.id < :afterId)");
+                parameters.put("afterPrice", afterPrice.getPrice());
+                parameters.put("afterId", afterPrice.getId());
+            }
+            orderBy = ascending ? "p.price, p.id" : "p.price desc, p.id desc";
+        }
+
+        TypedQuery<ProductSummary> query = entityManager.createQuery(
+                "select new com.fc.model.ProductSummary(p.id, p.name, p.price, p.productType) from Product p"
+                        + " where " + String.join(" and ", predicates)
+                        + " order by " + orderBy, ProductSummary.class)
+                .setMaxResults(limit);
+        parameters.forEach(query::setParameter);
+        return query.getResultList();
+    }
+
+    private void recordPrice(Product product) {
+        if (product.getPrice() != null) {
+            entityManager.persist(new ProductPriceHistory(product.getId(), product.getPrice(), product.getUpdateDate()));
+        }
+    }
+
+}
@@ -0,0 +1,31 @@
+package com.fc.repository;
+
+import com.fc.model.ProductTombstone;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.List;
+
+public interface ProductTombstoneRepository extends JpaRepository<ProductTombstone, Long> {
+
+    /**
+     * The tombstones after the (deletedDate, productId) key up to {@code until}, in key order.
+     */
+    @Query("select t from ProductTombstone t where t.deletedDate >= :since and t.deletedDate <= :until"
+            + " and (t.deletedDate > :since or t.productId > :afterId) order by t.deletedDate, t.productId")
+    List<ProductTombstone> findDeletedSince(@Param("since") final Instant since,
+                                            @Param("afterId") final Long afterId,
+                                            @Param("until") final Instant until,
+                                            final Pageable pageable);
+
+    @Modifying
+    @Transactional
+    @Query("delete from ProductTombstone t where t.deletedDate < :before")
+    int deleteDeletedBefore(@Param("before") final Instant before);
+
+}
@@ -0,0 +1,547 @@
+package com.fc.service;
+
+import com.fc.exception.DietPlanNotFoundException;
+import com.fc.exception.InvalidDietPlanException;
+import com.fc.exception.MissingMandatoryFieldException;
+import com.fc.model.DietPlan;
+import com.fc.model.DietPlanItem;
+import com.fc.model.DietPlanRequestDTO;
+import com.fc.model.NutrientMetric;
+import com.fc.model.NutrientQuery;
+import com.fc.model.ProductNutrientRow;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static com.fc.service.NutritionCalculator.*;
+
+/**
+ * Finds the cheapest combination of products which meets the calorie and macro targets of a diet plan.
+ * <p>
+ * The candidates are pruned first: the nutrient snapshot returns the products with the most calories per price and
+ * the most of every other nutrient with a lower bound per price, so a catalog of any size is reduced to a few hundred
+ * products by parallel scans. The quantities are the portions from the min to the max portion at the portion step.
+ * <p>
+ * The search is a branch and bound over the candidates ordered by the cost of their calories. It is split into a task
+ * per first and second product on a fork-join pool, the tasks share the cheapest plan found so far. A branch is cut when
+ * a max bound is exceeded (the values only grow), when the remaining products cannot reach a min bound, or when even
+ * the cheapest cost per unit of a missing nutrient cannot beat the best plan. A completed search is optimal for the
+ * candidates only: the candidate selection is a heuristic, a product outside of it may give a cheaper plan. When the
+ * time budget ends the search stops and the best plan found so far is returned as not optimal.
+ */
+@Slf4j
+@Service
+public class DietPlanOptimizer implements DisposableBean {
+
+    public static final int MAX_PRODUCTS = 8;
+
+    static final int MAX_PORTIONS = 1000;
+
+    // the packed nutrients precede the cost
+    private static final int NUTRIENT_COUNT = COST;
+
+    // the tasks down to this plan size are forked, the deeper levels run in their task
+    private static final int SPLIT_DEPTH = 2;
+
+    private static final int DEADLINE_CHECK_INTERVAL = 1024;
+
+    private static final double EPSILON = 1e-9;
+
+    private final ProductNutrientSnapshot productNutrientSnapshot;
+
+    private final ForkJoinPool pool;
+
+    private final int candidatesPerNutrient;
+
+    private final long defaultTimeBudgetMillis;
+
+    private final long maxTimeBudgetMillis;
+
+    public DietPlanOptimizer(ProductNutrientSnapshot productNutrientSnapshot,
+                             @Value("${fc.plan.candidates-per-nutrient:50}") int candidatesPerNutrient,
+                             @Value("${fc.plan.default-time-budget-millis:500}") long defaultTimeBudgetMillis,
+                             @Value("${fc.plan.max-time-budget-millis:5000}") long maxTimeBudgetMillis,
+                             @Value("${fc.plan.parallelism:0}") int parallelism) {
+        this.productNutrientSnapshot = productNutrientSnapshot;
+        this.candidatesPerNutrient = Math.min(candidatesPerNutrient, ProductNutrientSnapshot.MAX_LIMIT);
+        this.defaultTimeBudgetMillis = defaultTimeBudgetMillis;
+        this.maxTimeBudgetMillis = maxTimeBudgetMillis;
+        this.pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+    }
+
+    public DietPlan optimize(DietPlanRequestDTO request) {
+        final long start = System.nanoTime();
+        final double[] min = new double[NUTRIENT_COUNT];
+        final double[] max = new double[NUTRIENT_COUNT];
+        final double[] portions = validate(request, min, max);
+        final long timeBudgetMillis = request.getTimeBudgetMillis() == null
+                ? defaultTimeBudgetMillis
+                : Math.max(1, Math.min(request.getTimeBudgetMillis(), maxTimeBudgetMillis));
+
+        final List<ProductNutrientRow> candidates = selectCandidates(request, min, max, portions[0]);
+        final Search search = new Search(candidates, min, max, portions, request.getMaxProducts(),
+                start + TimeUnit.MILLISECONDS.toNanos(timeBudgetMillis));
+        pool.invoke(new SplitTask(search, new State(search.maxProducts), 0));
+
+        final Plan best = search.best.get();
+        final long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        if (best == null) {
+            throw new DietPlanNotFoundException(search.timedOut
+                    ? "No diet plan was found within the time budget of " + timeBudgetMillis + " ms. Please allow more time or relax the targets."
+                    : "No combination of at most " + request.getMaxProducts() + " products meets the targets. Please relax the targets or the portion constraints.");
+        }
+        log.info("The diet plan was optimized in {} ms. Candidates: {}, products: {}, cost: {}, optimal for the candidates: {}",
+                elapsedMillis, candidates.size(), best.candidates.length, best.cost, !search.timedOut);
+        return toDietPlan(search, best, !search.timedOut, elapsedMillis);
+    }
+
+    @Override
+    public void destroy() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * Check the request and collect the bounds of the nutrients.
+     *
+     * @return the portion sizes in ascending order
+     */
+    private static double[] validate(DietPlanRequestDTO request, double[] min, double[] max) {
+        if (request.getMinCalories() == null) {
+            throw new MissingMandatoryFieldException("The field minCalories is mandatory!");
+        }
+        if (!(request.getMinCalories() > 0)) {
+            throw new InvalidDietPlanException("The minCalories should be greater than zero. MinCalories is " + request.getMinCalories());
+        }
+        bound(min, max, CALORIES, "calories", request.getMinCalories(), request.getMaxCalories());
+        bound(min, max, PROTEIN, "protein", request.getMinProtein(), request.getMaxProtein());
+        bound(min, max, CARBOHYDRATES, "carbohydrates", request.getMinCarbohydrates(), request.getMaxCarbohydrates());
+        bound(min, max, FAT, "fat", request.getMinFat(), request.getMaxFat());
+        bound(min, max, SUGAR, "sugar", request.getMinSugar(), request.getMaxSugar());
+        bound(min, max, FIBER, "fiber", request.getMinFiber(), request.getMaxFiber());
+
+        if (request.getMaxProducts() < 1 || request.getMaxProducts() > MAX_PRODUCTS) {
+            throw new InvalidDietPlanException("The maxProducts should be between 1 and " + MAX_PRODUCTS + ". MaxProducts is " + request.getMaxProducts());
+        }
+        if (!(request.getMinPortion() > 0) || !(request.getMaxPortion() >= request.getMinPortion()) || !(request.getPortionStep() > 0)) {
+            throw new InvalidDietPlanException("The portions should be 0 < minPortion <= maxPortion with a portionStep greater than zero."
+                    + " MinPortion is " + request.getMinPortion() + ", maxPortion is " + request.getMaxPortion() + ", portionStep is " + request.getPortionStep());
+        }
+        final long portionCount = (long) Math.floor((request.getMaxPortion() - request.getMinPortion()) / request.getPortionStep() + EPSILON) + 1;
+        if (portionCount > MAX_PORTIONS) {
+            throw new InvalidDietPlanException("The portion range allows " + portionCount + " portion sizes, at most " + MAX_PORTIONS
+                    + " are allowed. Please use a larger portionStep.");
+        }
+        final double[] portions = new double[(int) portionCount];
+        for (int i = 0; i < portions.length; i++) {
+            portions[i] = request.getMinPortion() + i * request.getPortionStep();
+        }
+        return portions;
+    }
+
+    private static void bound(double[] min, double[] max, int nutrient, String name, Double minValue, Double maxValue) {
+        if ((minValue != null && minValue < 0) || (maxValue != null && maxValue < 0)) {
+            throw new InvalidDietPlanException("The " + name + " bounds should not be negative.");
+        }
+        if (minValue != null && maxValue != null && minValue > maxValue) {
+            throw new InvalidDietPlanException("The min " + name + " should not be greater than the max " + name
+                    + ". Min is " + minValue + ", max is " + maxValue);
+        }
+        min[nutrient] = minValue == null ? 0 : minValue;
+        max[nutrient] = maxValue == null ? Double.POSITIVE_INFINITY : maxValue;
+    }
+
+    /**
+     * The products with the most calories per price and the most of every other nutrient with a min bound per price,
+     * ordered by the cost of their calories. A product with an unknown bounded value or without a price is not a
+     * candidate, neither is one whose smallest portion exceeds a max bound.
+     */
+    private List<ProductNutrientRow> selectCandidates(DietPlanRequestDTO request, double[] min, double[] max, double minPortion) {
+        final Set<Long> excludedIds = request.getExcludedProductIds() == null ? Set.of() : new HashSet<>(request.getExcludedProductIds());
+        final Map<Long, ProductNutrientRow> candidates = new LinkedHashMap<>();
+        for (NutrientMetric metric : candidateMetrics(min)) {
+            final NutrientQuery query = new NutrientQuery();
+            query.setProductType(request.getProductType());
+            requireKnownValues(query, request);
+            query.setSort(metric);
+            query.setLimit(candidatesPerNutrient + excludedIds.size());
+            for (ProductNutrientRow row : productNutrientSnapshot.query(query).getItems()) {
+                if (!excludedIds.contains(row.getId())) {
+                    candidates.putIfAbsent(row.getId(), row);
+                }
+            }
+        }
+
+        final double[] values = new double[WIDTH];
+        final List<ProductNutrientRow> usable = new ArrayList<>(candidates.size());
+        for (ProductNutrientRow row : candidates.values()) {
+            pack(row, values, 0);
+            boolean fits = true;
+            for (int nutrient = 0; nutrient < NUTRIENT_COUNT && fits; nutrient++) {
+                fits = values[nutrient] * minPortion <= max[nutrient] + EPSILON;
+            }
+            if (fits) {
+                usable.add(row);
+            }
+        }
+        usable.sort(Comparator.comparingDouble(DietPlanOptimizer::costPerCalorie));
+        return usable;
+    }
+
+    private static List<NutrientMetric> candidateMetrics(double[] min) {
+        final List<NutrientMetric> metrics = new ArrayList<>();
+        metrics.add(NutrientMetric.CALORIES_PER_PRICE);
+        if (min[PROTEIN] > 0) {
+            metrics.add(NutrientMetric.PROTEIN_PER_PRICE);
+        }
+        if (min[CARBOHYDRATES] > 0) {
+            metrics.add(NutrientMetric.CARBOHYDRATES_PER_PRICE);
+        }
+        if (min[FAT] > 0) {
+            metrics.add(NutrientMetric.FAT_PER_PRICE);
+        }
+        if (min[FIBER] > 0) {
+            metrics.add(NutrientMetric.FIBER_PER_PRICE);
+        }
+        return metrics;
+    }
+
+    // a filter on a value does not match the unknown values
+    private static void requireKnownValues(NutrientQuery query, DietPlanRequestDTO request) {
+        query.setMinCalories(0.0);
+        if (request.getMinProtein() != null || request.getMaxProtein() != null) {
+            query.setMinProtein(0.0);
+        }
+        if (request.getMinCarbohydrates() != null || request.getMaxCarbohydrates() != null) {
+            query.setMinCarbohydrates(0.0);
+        }
+        if (request.getMinFat() != null || request.getMaxFat() != null) {
+            query.setMinFat(0.0);
+        }
+        if (request.getMinSugar() != null || request.getMaxSugar() != null) {
+            query.setMinSugar(0.0);
+        }
+        if (request.getMinFiber() != null || request.getMaxFiber() != null) {
+            query.setMinFiber(0.0);
+        }
+    }
+
+    private static double costPerCalorie(ProductNutrientRow row) {
+        return row.getCalories() > 0 ? row.getPrice() / row.getCalories() : Double.POSITIVE_INFINITY;
+    }
+
+    private static DietPlan toDietPlan(Search search, Plan plan, boolean optimalForCandidates, long elapsedMillis) {
+        final int size = plan.candidates.length;
+        final double[] quantities = new double[size];
+        final List<DietPlanItem> items = new ArrayList<>(size);
+        double totalQuantity = 0;
+        for (int i = 0; i < size; i++) {
+            final int candidate = plan.candidates[i];
+            final ProductNutrientRow row = search.rows.get(candidate);
+            quantities[i] = search.portions[plan.portions[i]];
+            totalQuantity += quantities[i];
+            items.add(new DietPlanItem(row.getId(), row.getName(), quantities[i],
+                    BigDecimal.valueOf(search.values[candidate * WIDTH + COST] * quantities[i]).setScale(2, RoundingMode.HALF_UP)));
+        }
+        final double[] totals = new double[WIDTH];
+        sum(search.values, plan.candidates, quantities, size, totals);
+        return new DietPlan(items, toNutritionTotals(totalQuantity, totals), optimalForCandidates, search.count, elapsedMillis);
+    }
+
+    /**
+     * The packed candidates, the bounds and the best plan found so far, shared by the search tasks.
+     */
+    private static final class Search {
+
+        private final List<ProductNutrientRow> rows;
+
+        private final int count;
+
+        private final double[] values;
+
+        private final double[] min;
+
+        private final double[] max;
+
+        private final double[] portions;
+
+        private final int maxProducts;
+
+        private final long deadline;
+
+        // the nutrients with a min bound
+        private final int[] boundedNutrients;
+
+        // per bounded nutrient and candidate i: the lowest cost per unit of the nutrient of the candidates from i on
+        private final double[][] minCostPerUnit;
+
+        // per bounded nutrient and candidate i: the most of the nutrient one portion of the candidates from i on adds
+        private final double[][] maxGain;
+
+        private final AtomicReference<Plan> best = new AtomicReference<>();
+
+        private volatile boolean timedOut;
+
+        private Search(List<ProductNutrientRow> rows, double[] min, double[] max, double[] portions, int maxProducts, long deadline) {
+            this.rows = rows;
+            this.count = rows.size();
+            this.values = new double[count * WIDTH];
+            for (int candidate = 0; candidate < count; candidate++) {
+                pack(rows.get(candidate), values, candidate * WIDTH);
+            }
+            this.min = min;
+            this.max = max;
+            this.portions = portions;
+            this.maxProducts = maxProducts;
+            this.deadline = deadline;
+
+            this.boundedNutrients = Arrays.stream(new int[]{CALORIES, PROTEIN, CARBOHYDRATES, FAT, SUGAR, FIBER})
+                    .filter(nutrient -> min[nutrient] > 0)
+                    .toArray();
+            this.minCostPerUnit = new double[NUTRIENT_COUNT][];
+            this.maxGain = new double[NUTRIENT_COUNT][];
+            final double maxPortion = portions[portions.length - 1];
+            for (int nutrient : boundedNutrients) {
+                final double[] costs = new double[count + 1];
+                final double[] gains = new double[count + 1];
+                costs[count] = Double.POSITIVE_INFINITY;
+                for (int candidate = count - 1; candidate >= 0; candidate--) {
+                    final double value = values[candidate * WIDTH + nutrient];
+                    final double costPerUnit = value > 0 ? values[candidate * WIDTH + COST] / value : Double.POSITIVE_INFINITY;
+                    costs[candidate] = Math.min(costPerUnit, costs[candidate + 1]);
+                    gains[candidate] = Math.max(Math.min(value * maxPortion, max[nutrient]), gains[candidate + 1]);
+                }
+                minCostPerUnit[nutrient] = costs;
+                maxGain[nutrient] = gains;
+            }
+        }
+
+        /**
+         * Whether a plan which adds candidates from {@code from} on can still meet the min bounds and beat the best plan.
+         * The bounds only get worse for a later {@code from}, so the callers stop at the first candidate which fails.
+         */
+        private boolean isPromising(State state, int from) {
+            final int productsLeft = maxProducts - state.size;
+            double lowerBound = 0;
+            for (int nutrient : boundedNutrients) {
+                final double deficit = min[nutrient] - state.totals[nutrient];
+                if (deficit > EPSILON) {
+                    if (maxGain[nutrient][from] * productsLeft < deficit - EPSILON) {
+                        return false;
+                    }
+                    lowerBound = Math.max(lowerBound, deficit * minCostPerUnit[nutrient][from]);
+                }
+            }
+            return state.totals[COST] + lowerBound < bestCost() - EPSILON;
+        }
+
+        /**
+         * Add a portion of the candidate, unless it exceeds a max bound; a larger portion would exceed it as well.
+         */
+        private boolean add(State state, int candidate, int portion) {
+            final double quantity = portions[portion];
+            final int offset = candidate * WIDTH;
+            for (int nutrient = 0; nutrient < NUTRIENT_COUNT; nutrient++) {
+                if (state.totals[nutrient] + values[offset + nutrient] * quantity > max[nutrient] + EPSILON) {
+                    return false;
+                }
+            }
+            for (int n = 0; n < WIDTH; n++) {
+                state.totals[n] += values[offset + n] * quantity;
+            }
+            state.candidates[state.size] = candidate;
+            state.portions[state.size] = portion;
+            state.size++;
+            return true;
+        }
+
+        private void remove(State state) {
+            state.size--;
+            final int offset = state.candidates[state.size] * WIDTH;
+            final double quantity = portions[state.portions[state.size]];
+            for (int n = 0; n < WIDTH; n++) {
+                state.totals[n] -= values[offset + n] * quantity;
+            }
+        }
+
+        private boolean isFeasible(State state) {
+            for (int nutrient : boundedNutrients) {
+                if (state.totals[nutrient] < min[nutrient] - EPSILON) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void offer(State state) {
+            final Plan plan = new Plan(state.totals[COST], Arrays.copyOf(state.candidates, state.size), Arrays.copyOf(state.portions, state.size));
+            best.accumulateAndGet(plan, (current, offered) -> current == null || offered.cost < current.cost ? offered : current);
+        }
+
+        private double bestCost() {
+            final Plan plan = best.get();
+            return plan == null ? Double.POSITIVE_INFINITY : plan.cost;
+        }
+
+        private boolean isStopped(State state) {
+            if (timedOut) {
+                return true;
+            }
+            if (++state.visits % DEADLINE_CHECK_INTERVAL == 0 && System.nanoTime() - deadline > 0) {
+                timedOut = true;
+            }
+            return timedOut;
+        }
+
+        /**
+         * Try the portions of the candidate on top of the plan, then the plans with more candidates after it.
+         */
+        private void extend(State state, int candidate) {
+            for (int portion = 0; portion < portions.length && !isStopped(state); portion++) {
+                if (!add(state, candidate, portion)) {
+                    return;
+                }
+                if (isFeasible(state)) {
+                    // a larger portion or another product only costs more
+                    offer(state);
+                    remove(state);
+                    return;
+                }
+                if (state.size < maxProducts) {
+                    if (state.size < SPLIT_DEPTH) {
+                        new SplitTask(this, state.copy(), candidate + 1).invoke();
+                    } else {
+                        explore(state, candidate + 1);
+                    }
+                }
+                remove(state);
+            }
+        }
+
+        private void explore(State state, int from) {
+            for (int candidate = from; candidate < count && !isStopped(state); candidate++) {
+                if (!isPromising(state, candidate)) {
+                    return;
+                }
+                extend(state, candidate);
+            }
+        }
+
+    }
+
+    /**
+     * Forks a task for every next candidate of the plan.
+     */
+    private static final class SplitTask extends RecursiveAction {
+
+        private final Search search;
+
+        private final State state;
+
+        private final int from;
+
+        private SplitTask(Search search, State state, int from) {
+            this.search = search;
+            this.state = state;
+            this.from = from;
+        }
+
+        @Override
+        protected void compute() {
+            final List<ExtendTask> tasks = new ArrayList<>();
+            for (int candidate = from; candidate < search.count && search.isPromising(state, candidate); candidate++) {
+                tasks.add(new ExtendTask(search, state.copy(), candidate));
+            }
+            invokeAll(tasks);
+        }
+
+    }
+
+    private static final class ExtendTask extends RecursiveAction {
+
+        private final Search search;
+
+        private final State state;
+
+        private final int candidate;
+
+        private ExtendTask(Search search, State state, int candidate) {
+            this.search = search;
+            this.state = state;
+            this.candidate = candidate;
+        }
+
+        @Override
+        protected void compute() {
+            // the best plan may have improved since the task was forked
+            if (search.isPromising(state, candidate)) {
+                search.extend(state, candidate);
+            }
+        }
+
+    }
+
+    /**
+     * The plan of a task: the candidates, their portion indexes and the packed totals.
+     */
+    private static final class State {
+
+        private final double[] totals;
+
+        private final int[] candidates;
+
+        private final int[] portions;
+
+        private int size;
+
+        private int visits;
+
+        private State(int maxProducts) {
+            this(new double[WIDTH], new int[maxProducts], new int[maxProducts], 0);
+        }
+
+        private State(double[] totals, int[] candidates, int[] portions, int size) {
+            this.totals = totals;
+            this.candidates = candidates;
+            this.portions = portions;
+            this.size = size;
+        }
+
+        private State copy() {
+            return new State(totals.clone(), candidates.clone(), portions.clone(), size);
+        }
+
+    }
+
+    private static final class Plan {
+
+        private final double cost;
+
+        private final int[] candidates;
+
+        private final int[] portions;
+
+        private Plan(double cost, int[] candidates, int[] portions) {
+            this.cost = cost;
+            this.candidates = candidates;
+            this.portions = portions;
+        }
+
+    }
+
+}
@@ -0,0 +1,92 @@
+package com.fc.service;
+
+import com.fc.model.NutritionTotals;
+import com.fc.model.Product;
+import com.fc.model.ProductNutrientRow;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Nutrition math over packed primitive arrays, without any allocation in the summing loop.
+ * A product is packed as {@link #WIDTH} consecutive doubles per gram: calories, protein, carbohydrates, fat, sugar, fiber and cost.
+ */
+public final class NutritionCalculator {
+
+    public static final int CALORIES = 0;
+    public static final int PROTEIN = 1;
+    public static final int CARBOHYDRATES = 2;
+    public static final int FAT = 3;
+    public static final int SUGAR = 4;
+    public static final int FIBER = 5;
+    public static final int COST = 6;
+    public static final int WIDTH = 7;
+
+    private NutritionCalculator() {
+    }
+
+    /**
+     * Pack the per 100 g values of the product as per gram values. The unknown values count as zero.
+     */
+    public static void pack(Product product, double[] target, int offset) {
+        target[offset + CALORIES] = perGram(product.getCalories());
+        target[offset + PROTEIN] = perGram(product.getProtein());
+        target[offset + CARBOHYDRATES] = perGram(product.getCarbohydrates());
+        target[offset + FAT] = perGram(product.getFat());
+        target[offset + SUGAR] = perGram(product.getSugar());
+        target[offset + FIBER] = perGram(product.getFiber());
+        final BigDecimal price = product.getPrice();
+        target[offset + COST] = price == null ? 0 : price.doubleValue() / 100;
+    }
+
+    /**
+     * Pack the per 100 g values of a nutrient query row, like {@link #pack(Product, double[], int)}.
+     */
+    public static void pack(ProductNutrientRow row, double[] target, int offset) {
+        target[offset + CALORIES] = perGram(row.getCalories());
+        target[offset + PROTEIN] = perGram(row.getProtein());
+        target[offset + CARBOHYDRATES] = perGram(row.getCarbohydrates());
+        target[offset + FAT] = perGram(row.getFat());
+        target[offset + SUGAR] = perGram(row.getSugar());
+        target[offset + FIBER] = perGram(row.getFiber());
+        target[offset + COST] = perGram(row.getPrice());
+    }
+
+    /**
+     * Add the values of the items to the totals: {@code totals[n] += values[productIndexes[i] * WIDTH + n] * quantities[i]}.
+     */
+    public static void sum(double[] values, int[] productIndexes, double[] quantities, int itemCount, double[] totals) {
+        for (int i = 0; i < itemCount; i++) {
+            final int offset = productIndexes[i] * WIDTH;
+            final double quantity = quantities[i];
+            for (int n = 0; n < WIDTH; n++) {
+                totals[n] += values[offset + n] * quantity;
+            }
+        }
+    }
+
+    /**
+     * The totals rounded to two decimals, the cost to cents.
+     */
+    public static NutritionTotals toNutritionTotals(double quantity, double[] totals) {
+        return new NutritionTotals(
+                quantity,
+                round(totals[CALORIES]),
+                round(totals[PROTEIN]),
+                round(totals[CARBOHYDRATES]),
+                round(totals[FAT]),
+                round(totals[SUGAR]),
+                round(totals[FIBER]),
+                BigDecimal.valueOf(totals[COST]).setScale(2, RoundingMode.HALF_UP)
+        );
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 100) / 100.0;
+    }
+
+    private static double perGram(Double valuePer100g) {
+        return valuePer100g == null ? 0 : valuePer100g / 100;
+    }
+
+}
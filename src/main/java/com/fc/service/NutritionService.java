@@ -0,0 +1,70 @@
+package com.fc.service;
+
+import com.fc.exception.InvalidRecipeException;
+import com.fc.exception.MissingMandatoryFieldException;
+import com.fc.model.NutritionTotals;
+import com.fc.model.RecipeDTO;
+import com.fc.model.RecipeItemDTO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.fc.service.NutritionCalculator.*;
+
+/**
+ * Calculates the nutrition totals and the cost of a recipe. The products are read through the product cache
+ * and packed once per recipe into a primitive array which is summed by {@link NutritionCalculator}.
+ */
+@Slf4j
+@Service
+public class NutritionService {
+
+    private final ProductService productService;
+
+    public NutritionService(ProductService productService) {
+        this.productService = productService;
+    }
+
+    public NutritionTotals calculate(RecipeDTO recipe) {
+        final List<RecipeItemDTO> items = recipe == null ? null : recipe.getItems();
+        if (items == null || items.isEmpty()) {
+            throw new MissingMandatoryFieldException("The field items is mandatory!");
+        }
+
+        final int itemCount = items.size();
+        final double[] values = new double[itemCount * WIDTH];
+        final int[] productIndexes = new int[itemCount];
+        final double[] quantities = new double[itemCount];
+        final Map<Long, Integer> packedProducts = new HashMap<>();
+        double totalQuantity = 0;
+
+        for (int i = 0; i < itemCount; i++) {
+            final RecipeItemDTO item = items.get(i);
+            if (item.getProductId() == null) {
+                throw new MissingMandatoryFieldException("The field productId is mandatory!");
+            }
+            if (!(item.getQuantity() > 0)) {
+                throw new InvalidRecipeException("The quantity should be greater than zero. Product id is " + item.getProductId());
+            }
+
+            Integer productIndex = packedProducts.get(item.getProductId());
+            if (productIndex == null) {
+                productIndex = packedProducts.size();
+                pack(productService.getOneProduct(item.getProductId()), values, productIndex * WIDTH);
+                packedProducts.put(item.getProductId(), productIndex);
+            }
+            productIndexes[i] = productIndex;
+            quantities[i] = item.getQuantity();
+            totalQuantity += item.getQuantity();
+        }
+
+        final double[] totals = new double[WIDTH];
+        sum(values, productIndexes, quantities, itemCount, totals);
+
+        return toNutritionTotals(totalQuantity, totals);
+    }
+
+}
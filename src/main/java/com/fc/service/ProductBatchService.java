@@ -0,0 +1,315 @@
+package com.fc.service;
+
+import com.fc.config.CacheConfig;
+import com.fc.event.ProductChangeType;
+import com.fc.event.ProductChangedEvent;
+import com.fc.exception.BatchSizeExceededException;
+import com.fc.exception.InvalidPriceChangeException;
+import com.fc.exception.MissingMandatoryFieldException;
+import com.fc.exception.ProductNameAlreadyExistsException;
+import com.fc.exception.ProductNameDoesNotProvidedException;
+import com.fc.model.Product;
+import com.fc.model.ProductBatchResult;
+import com.fc.model.ProductBatchStatus;
+import com.fc.model.ProductPriceBatchResult;
+import com.fc.model.ProductPriceChangeDTO;
+import com.fc.model.ProductPriceRuleDTO;
+import com.fc.repository.ProductPriceHistoryRepository;
+import com.fc.repository.ProductRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceException;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Creates or updates (matched by name) many products at once.
+ * The valid items are written in chunks, one transaction per chunk and JDBC batched inserts / updates inside a chunk.
+ * When a chunk fails it is written again item by item, so one bad item does not fail the whole batch.
+ * The batch price changes are set-based updates, also executed in chunks.
+ * Every written price is appended to the price history in the transaction of its chunk.
+ */
+@Slf4j
+@Service
+public class ProductBatchService {
+
+    private final ProductRepository productRepository;
+
+    private final ProductPriceHistoryRepository productPriceHistoryRepository;
+
+    private final EntityManager entityManager;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final CacheManager cacheManager;
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final ProductPriceWriteBehind priceWriteBehind;
+
+    private final int chunkSize;
+
+    private final int maxSize;
+
+    private final int priceRuleChunkSize;
+
+    public ProductBatchService(ProductRepository productRepository,
+                               ProductPriceHistoryRepository productPriceHistoryRepository,
+                               EntityManager entityManager,
+                               PlatformTransactionManager transactionManager,
+                               JdbcTemplate jdbcTemplate,
+                               CacheManager cacheManager,
+                               ApplicationEventPublisher eventPublisher,
+                               @Nullable ProductPriceWriteBehind priceWriteBehind,
+                               @Value("${fc.batch.chunk-size:500}") int chunkSize,
+                               @Value("${fc.batch.max-size:10000}") int maxSize,
+                               @Value("${fc.batch.price-rule-chunk-size:10000}") int priceRuleChunkSize) {
+        this.productRepository = productRepository;
+        this.productPriceHistoryRepository = productPriceHistoryRepository;
+        this.entityManager = entityManager;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.jdbcTemplate = jdbcTemplate;
+        this.cacheManager = cacheManager;
+        this.eventPublisher = eventPublisher;
+        this.priceWriteBehind = priceWriteBehind;
+        this.chunkSize = chunkSize;
+        this.maxSize = maxSize;
+        this.priceRuleChunkSize = priceRuleChunkSize;
+    }
+
+    public List<ProductBatchResult> createOrUpdateProducts(List<Product> products) {
+        if (products.size() > maxSize) {
+            throw new BatchSizeExceededException(products.size(), maxSize);
+        }
+        flushPendingPrices();
+
+        ProductBatchResult[] results = new ProductBatchResult[products.size()];
+        List<Integer> validIndexes = validate(products, results);
+
+        for (int from = 0; from < validIndexes.size(); from += chunkSize) {
+            List<Integer> chunk = validIndexes.subList(from, Math.min(from + chunkSize, validIndexes.size()));
+            try {
+                transactionTemplate.executeWithoutResult(status -> writeChunk(products, chunk, results));
+            } catch (PersistenceException | DataAccessException e) {
+                log.warn("The product batch chunk could not be written, retry it item by item. Cause: {}", e.getMessage());
+                chunk.forEach(index -> writeOne(products, index, results));
+            }
+        }
+
+        evictUpdatedProducts(results);
+        log.info("The product batch was written. Items: {}", products.size());
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Change the price of many products. The prices of a chunk are written by
+     * {@link ProductRepository#changePrices(Map, Map)} in one transaction, which tells the ids that do not exist,
+     * so no product is loaded.
+     */
+    public ProductPriceBatchResult changePrices(List<ProductPriceChangeDTO> priceChanges) {
+        if (priceChanges.size() > maxSize) {
+            throw new BatchSizeExceededException(priceChanges.size(), maxSize);
+        }
+        flushPendingPrices();
+
+        List<ProductPriceChangeDTO> validPriceChanges = new ArrayList<>(priceChanges.size());
+        List<Long> rejectedIds = new ArrayList<>();
+        for (ProductPriceChangeDTO priceChange : priceChanges) {
+            if (priceChange.getId() == null || priceChange.getPrice() == null || priceChange.getPrice().signum() <= 0) {
+                rejectedIds.add(priceChange.getId());
+            } else {
+                validPriceChanges.add(priceChange);
+            }
+        }
+
+        int updatedCount = 0;
+        List<Long> missingIds = new ArrayList<>();
+        for (int from = 0; from < validPriceChanges.size(); from += chunkSize) {
+            List<ProductPriceChangeDTO> chunk = validPriceChanges.subList(from, Math.min(from + chunkSize, validPriceChanges.size()));
+            // the last change of a product in the chunk is its price, every change moves its version on
+            final Map<Long, BigDecimal> prices = new HashMap<>();
+            final Map<Long, Integer> changeCounts = new HashMap<>();
+            for (ProductPriceChangeDTO priceChange : chunk) {
+                prices.put(priceChange.getId(), priceChange.getPrice());
+                changeCounts.merge(priceChange.getId(), 1, Integer::sum);
+            }
+            final Set<Long> missingChunkIds = new HashSet<>(productRepository.changePrices(prices, changeCounts));
+            for (ProductPriceChangeDTO priceChange : chunk) {
+                if (missingChunkIds.contains(priceChange.getId())) {
+                    missingIds.add(priceChange.getId());
+                } else {
+                    updatedCount++;
+                }
+            }
+            // one event per chunk, the listeners apply the prices without loading the products
+            prices.keySet().removeAll(missingChunkIds);
+            if (!prices.isEmpty()) {
+                eventPublisher.publishEvent(ProductChangedEvent.prices(prices));
+            }
+        }
+
+        Cache cache = cacheManager.getCache(CacheConfig.PRODUCT_CACHE);
+        if (cache != null) {
+            validPriceChanges.forEach(priceChange -> cache.evict(priceChange.getId()));
+        }
+        log.info("The batch price change was executed. Updated: {}, missing: {}, rejected: {}", updatedCount, missingIds.size(), rejectedIds.size());
+        return new ProductPriceBatchResult(updatedCount, missingIds, rejectedIds);
+    }
+
+    /**
+     * Change the price of all products of a type by a percentage with bulk updates over id ranges,
+     * one transaction per range, so a large catalog is not updated in one long transaction.
+     */
+    public ProductPriceBatchResult changePrices(ProductPriceRuleDTO priceRule) {
+        if (priceRule.getProductType() == null) {
+            throw new MissingMandatoryFieldException("The field productType is mandatory!");
+        }
+        if (priceRule.getPercentage() == null) {
+            throw new MissingMandatoryFieldException("The field percentage is mandatory!");
+        }
+
+        final BigDecimal factor = BigDecimal.ONE.add(priceRule.getPercentage().movePointLeft(2));
+        if (factor.signum() <= 0) {
+            throw new InvalidPriceChangeException("The percentage should be greater than -100. Percentage is " + priceRule.getPercentage());
+        }
+        flushPendingPrices();
+
+        final Long maxId = productRepository.findMaxId();
+        final Instant now = Product.currentTimestamp();
+        int updatedCount = 0;
+        for (long fromId = 0; maxId != null && fromId < maxId; fromId += priceRuleChunkSize) {
+            final long toId = fromId + priceRuleChunkSize;
+            final long rangeFromId = fromId;
+            updatedCount += transactionTemplate.execute(status -> {
+                int count = productRepository.multiplyPrices(priceRule.getProductType(), factor, now, rangeFromId, toId);
+                productPriceHistoryRepository.recordPrices(priceRule.getProductType(), rangeFromId, toId);
+                return count;
+            });
+        }
+
+        Cache cache = cacheManager.getCache(CacheConfig.PRODUCT_CACHE);
+        if (cache != null) {
+            cache.clear();
+        }
+        eventPublisher.publishEvent(ProductChangedEvent.allProducts(ProductChangeType.PRICE_CHANGED));
+        log.info("The price rule was executed. Product type: {}, percentage: {}, updated: {}",
+                priceRule.getProductType(), priceRule.getPercentage(), updatedCount);
+        return new ProductPriceBatchResult(updatedCount, List.of(), List.of());
+    }
+
+    // the batch writes win over the prices written behind before them
+    private void flushPendingPrices() {
+        if (priceWriteBehind != null) {
+            priceWriteBehind.flush();
+        }
+    }
+
+    private List<Integer> validate(List<Product> products, ProductBatchResult[] results) {
+        List<Integer> validIndexes = new ArrayList<>(products.size());
+        Set<String> names = new HashSet<>();
+        for (int index = 0; index < products.size(); index++) {
+            Product product = products.get(index);
+            String name = product == null ? null : product.getName();
+            if (name == null || name.isEmpty()) {
+                results[index] = failed(index, null, new ProductNameDoesNotProvidedException().getMessage());
+            } else if (!names.add(name)) {
+                results[index] = failed(index, name, "The product name is duplicated in the batch: " + name);
+            } else {
+                validIndexes.add(index);
+            }
+        }
+        return validIndexes;
+    }
+
+    private void writeChunk(List<Product> products, List<Integer> chunk, ProductBatchResult[] results) {
+        List<String> names = chunk.stream().map(index -> products.get(index).getName()).collect(Collectors.toList());
+        List<Product> pricedProducts = new ArrayList<>(chunk.size());
+        Map<String, Product> existingProducts = productRepository.findByNameIn(names).stream()
+                .collect(Collectors.toMap(Product::getName, Function.identity()));
+
+        for (int index : chunk) {
+            Product product = products.get(index);
+            Product existingProduct = existingProducts.get(product.getName());
+            if (existingProduct == null) {
+                product.setId(null);
+                product.setVersion(0);
+                entityManager.persist(product);
+                pricedProducts.add(product);
+                eventPublisher.publishEvent(ProductChangedEvent.of(ProductChangeType.CREATED, product));
+                results[index] = new ProductBatchResult(index, product.getId(), product.getName(), ProductBatchStatus.CREATED, null);
+            } else {
+                if (product.getPrice() != null
+                        && (existingProduct.getPrice() == null || existingProduct.getPrice().compareTo(product.getPrice()) != 0)) {
+                    pricedProducts.add(existingProduct);
+                }
+                existingProduct.setDescription(product.getDescription());
+                existingProduct.setPrice(product.getPrice());
+                existingProduct.copyNutrients(product);
+                eventPublisher.publishEvent(ProductChangedEvent.of(ProductChangeType.UPDATED, existingProduct));
+                results[index] = new ProductBatchResult(index, existingProduct.getId(), existingProduct.getName(), ProductBatchStatus.UPDATED, null);
+            }
+        }
+
+        entityManager.flush();
+        // after the flush, which sets the update dates
+        jdbcTemplate.batchUpdate("insert into product_price_history (product_id, price, valid_from) values (?, ?, ?)",
+                pricedProducts.stream()
+                        .filter(product -> product.getPrice() != null)
+                        .map(product -> new Object[]{product.getId(), product.getPrice(), Timestamp.from(product.getUpdateDate())})
+                        .collect(Collectors.toList()));
+        entityManager.clear();
+    }
+
+    private void writeOne(List<Product> products, int index, ProductBatchResult[] results) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> writeChunk(products, List.of(index), results));
+        } catch (PersistenceException | DataAccessException e) {
+            String name = products.get(index).getName();
+            String message = ProductService.isUniqueNameViolation(e)
+                    ? new ProductNameAlreadyExistsException(name).getMessage()
+                    : "The product could not be saved: " + e.getMessage();
+            log.warn("The product batch item {} could not be written. Cause: {}", index, message);
+            results[index] = failed(index, name, message);
+        }
+    }
+
+    private void evictUpdatedProducts(ProductBatchResult[] results) {
+        Cache cache = cacheManager.getCache(CacheConfig.PRODUCT_CACHE);
+        if (cache == null) {
+            return;
+        }
+        for (ProductBatchResult result : results) {
+            if (result.getStatus() == ProductBatchStatus.UPDATED) {
+                cache.evict(result.getId());
+            }
+        }
+    }
+
+    private static ProductBatchResult failed(int index, String name, String message) {
+        return new ProductBatchResult(index, null, name, ProductBatchStatus.FAILED, message);
+    }
+
+}
@@ -0,0 +1,50 @@
+package com.fc.service;
+
+import com.fc.config.CacheConfig;
+import com.fc.model.Product;
+import com.fc.repository.ProductRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Loads the first products into the product cache when the application is ready,
+ * so the first reads after a (re)start do not all go to the database.
+ */
+@Slf4j
+@Component
+public class ProductCacheWarmer {
+
+    private final ProductRepository productRepository;
+
+    private final CacheManager cacheManager;
+
+    private final int warmUpSize;
+
+    public ProductCacheWarmer(ProductRepository productRepository, CacheManager cacheManager,
+                              @Value("${fc.cache.products.warm-up-size:1000}") int warmUpSize) {
+        this.productRepository = productRepository;
+        this.cacheManager = cacheManager;
+        this.warmUpSize = warmUpSize;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        Cache cache = cacheManager.getCache(CacheConfig.PRODUCT_CACHE);
+        if (cache == null || warmUpSize <= 0) {
+            return;
+        }
+
+        List<Product> products = productRepository.findByIdGreaterThanOrderByIdAsc(0L, PageRequest.of(0, warmUpSize));
+        products.forEach(product -> cache.put(product.getId(), product));
+        log.info("The product cache was warmed up with {} products", products.size());
+    }
+
+}
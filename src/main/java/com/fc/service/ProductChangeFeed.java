@@ -0,0 +1,316 @@
+package com.fc.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fc.event.ProductChangeType;
+import com.fc.event.ProductChangedEvent;
+import com.fc.model.Product;
+import com.fc.model.ProductChange;
+import io.micrometer.core.instrument.Metrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Server-Sent Events feed of the committed product changes.
+ * <p>
+ * Every change gets the next sequence number and is kept in a bounded replay buffer, so a client which reconnects
+ * with {@code Last-Event-ID} receives the changes it missed. The sequence only lives in memory, so the event ids are
+ * {@code <epoch>-<sequence>} with the start time of the feed as the epoch. When the id is not in the buffer any more
+ * or is from another epoch (before a restart, another instance) the client gets a {@value #RESET_EVENT} event with
+ * the current sequence and has to reload the products.
+ * <p>
+ * The write path only appends the change to the bounded queue of every subscriber; the events are sent by the
+ * sender threads. A subscriber whose queue is full is disconnected instead of slowing down the writes,
+ * it resumes from its last event id.
+ */
+@Slf4j
+@Component
+public class ProductChangeFeed implements DisposableBean {
+
+    public static final String RESET_EVENT = "RESET";
+
+    public static final String DROPPED_METRIC = "fc.product.changes.dropped";
+
+    private final ObjectWriter changeWriter;
+
+    private final int replaySize;
+
+    private final int subscriberBuffer;
+
+    private final long timeoutMillis;
+
+    private final ExecutorService sender;
+
+    private final ScheduledExecutorService heartbeat;
+
+    // guarded by itself, also orders the appends to the subscriber queues by sequence
+    private final Deque<Message> replay = new ArrayDeque<>();
+
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+
+    private final String epoch = Long.toString(System.currentTimeMillis(), Character.MAX_RADIX);
+
+    private long sequence;
+
+    public ProductChangeFeed(ObjectMapper objectMapper,
+                             @Value("${fc.product.changes.replay-size:1000}") int replaySize,
+                             @Value("${fc.product.changes.subscriber-buffer:256}") int subscriberBuffer,
+                             @Value("${fc.product.changes.sender-threads:4}") int senderThreads,
+                             @Value("${fc.product.changes.heartbeat-seconds:15}") long heartbeatSeconds,
+                             @Value("${fc.product.changes.timeout-minutes:30}") long timeoutMinutes) {
+        this.changeWriter = objectMapper.writerFor(ProductChange.class);
+        this.replaySize = replaySize;
+        this.subscriberBuffer = subscriberBuffer;
+        this.timeoutMillis = TimeUnit.MINUTES.toMillis(timeoutMinutes);
+        this.sender = Executors.newFixedThreadPool(senderThreads, new CustomizableThreadFactory("product-changes-"));
+        this.heartbeat = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("product-changes-heartbeat-"));
+        this.heartbeat.scheduleWithFixedDelay(this::sendHeartbeat, heartbeatSeconds, heartbeatSeconds, TimeUnit.SECONDS);
+        Metrics.gauge("fc.product.changes.subscribers", subscribers, Set::size);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        synchronized (replay) {
+            if (event.isPrices()) {
+                // the clients still receive one change per product
+                event.getPrices().keySet().forEach(id -> append(event.getChangeType(), id, null));
+            } else {
+                append(event.getChangeType(), event.getProductId(), event.getProduct());
+            }
+        }
+    }
+
+    /**
+     * Subscribe to the changes after the event {@code lastEventId}, or to the future changes when it is null.
+     */
+    public SseEmitter subscribe(String lastEventId) {
+        return subscribe(lastEventId, new SseEmitter(timeoutMillis));
+    }
+
+    SseEmitter subscribe(String lastEventId, SseEmitter emitter) {
+        final Subscriber subscriber;
+        synchronized (replay) {
+            final Deque<Message> missed = new ArrayDeque<>();
+            if (lastEventId != null && !lastEventId.isBlank()) {
+                final long lastSequence = sequenceOf(lastEventId.trim());
+                final long oldest = replay.isEmpty() ? sequence + 1 : replay.getFirst().sequence;
+                if (lastSequence > sequence || lastSequence < oldest - 1) {
+                    missed.add(new Message(eventId(sequence), sequence, RESET_EVENT, Long.toString(sequence)));
+                } else {
+                    replay.stream().filter(message -> message.sequence > lastSequence).forEach(missed::add);
+                }
+            }
+            // the replay does not count against the buffer of the live changes
+            subscriber = new Subscriber(emitter, missed, missed.size() + subscriberBuffer);
+            subscribers.add(subscriber);
+        }
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(() -> subscribers.remove(subscriber));
+        emitter.onError(e -> subscribers.remove(subscriber));
+        log.debug("Subscribed to the product changes after {}, {} subscribers", lastEventId, subscribers.size());
+        subscriber.schedule();
+        return emitter;
+    }
+
+    // called under the lock of the replay buffer
+    private void append(ProductChangeType changeType, Long productId, Product product) {
+        final long changeSequence = ++sequence;
+        // serialized once for all the subscribers
+        Message message = new Message(eventId(changeSequence), changeSequence, changeType.name(),
+                toJson(new ProductChange(changeSequence, changeType, productId, product, Instant.now())));
+        replay.addLast(message);
+        if (replay.size() > replaySize) {
+            replay.removeFirst();
+        }
+        for (Subscriber subscriber : subscribers) {
+            subscriber.offer(message);
+        }
+    }
+
+    int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    String eventId(long changeSequence) {
+        return epoch + "-" + changeSequence;
+    }
+
+    /**
+     * The sequence of an event id of this epoch, or -1 for an unknown id, which always gets a reset.
+     */
+    private long sequenceOf(String eventId) {
+        final int separator = eventId.lastIndexOf('-');
+        if (separator < 0 || !eventId.substring(0, separator).equals(epoch)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(eventId.substring(separator + 1));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private void sendHeartbeat() {
+        for (Subscriber subscriber : subscribers) {
+            subscriber.offerHeartbeat();
+        }
+    }
+
+    private String toJson(ProductChange change) {
+        try {
+            return changeWriter.writeValueAsString(change);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        heartbeat.shutdownNow();
+        sender.shutdownNow();
+        for (Subscriber subscriber : subscribers) {
+            subscriber.emitter.complete();
+        }
+    }
+
+    private static final class Message {
+
+        // a comment keeps idle connections open and detects the closed ones
+        static final Message HEARTBEAT = new Message(null, 0, null, null);
+
+        final String id;
+        final long sequence;
+        final String name;
+        final String data;
+
+        Message(String id, long sequence, String name, String data) {
+            this.id = id;
+            this.sequence = sequence;
+            this.name = name;
+            this.data = data;
+        }
+
+        SseEmitter.SseEventBuilder toEvent() {
+            if (this == HEARTBEAT) {
+                return SseEmitter.event().comment("heartbeat");
+            }
+            return SseEmitter.event().id(id).name(name).data(data);
+        }
+
+    }
+
+    private final class Subscriber {
+
+        final SseEmitter emitter;
+
+        final int capacity;
+
+        // guarded by this
+        final Deque<Message> queue;
+
+        boolean scheduled;
+
+        boolean dropped;
+
+        Subscriber(SseEmitter emitter, Deque<Message> missed, int capacity) {
+            this.emitter = emitter;
+            this.queue = missed;
+            this.capacity = capacity;
+        }
+
+        /**
+         * Called by the write path: never touches the emitter, its methods block while an event is sent.
+         */
+        void offer(Message message) {
+            synchronized (this) {
+                if (dropped) {
+                    return;
+                }
+                if (queue.size() >= capacity) {
+                    dropped = true;
+                    queue.clear();
+                    Metrics.counter(DROPPED_METRIC).increment();
+                    log.warn("Disconnect a slow subscriber of the product changes, {} changes were not sent", capacity);
+                } else {
+                    queue.addLast(message);
+                }
+            }
+            schedule();
+        }
+
+        void offerHeartbeat() {
+            synchronized (this) {
+                if (!queue.isEmpty()) {
+                    return;
+                }
+                queue.addLast(Message.HEARTBEAT);
+            }
+            schedule();
+        }
+
+        void schedule() {
+            synchronized (this) {
+                if (scheduled) {
+                    return;
+                }
+                scheduled = true;
+            }
+            try {
+                sender.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                // shut down
+                subscribers.remove(this);
+            }
+        }
+
+        private void drain() {
+            while (true) {
+                final Message message;
+                synchronized (this) {
+                    message = dropped ? null : queue.pollFirst();
+                    if (message == null) {
+                        scheduled = false;
+                        break;
+                    }
+                }
+                try {
+                    emitter.send(message.toEvent());
+                } catch (IOException | IllegalStateException e) {
+                    // the client went away, the callbacks remove the subscriber
+                    log.debug("Could not send the product change to a subscriber: {}", e.getMessage());
+                    close();
+                    return;
+                }
+            }
+            if (dropped) {
+                close();
+            }
+        }
+
+        private void close() {
+            subscribers.remove(this);
+            emitter.complete();
+        }
+
+    }
+
+}
@@ -0,0 +1,149 @@
+package com.fc.service;
+
+import com.fc.exception.WatermarkExpiredException;
+import com.fc.model.Product;
+import com.fc.model.ProductDelta;
+import com.fc.model.ProductTombstone;
+import com.fc.repository.ProductRepository;
+import com.fc.repository.ProductTombstoneRepository;
+import com.fc.util.CursorUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Delta sync of the catalog: the products changed and deleted after a watermark, read on the
+ * (updateDate, id) and (deletedDate, productId) indexes, so a sync costs the number of changes, not the catalog size.
+ * <p>
+ * The change times are set before the commit, so a change only becomes visible to the sync once it is older
+ * than the commit lag; a slower transaction could otherwise commit behind the watermark of a client.
+ * The tombstones are purged after the retention, an older watermark is rejected.
+ */
+@Slf4j
+@Service
+public class ProductDeltaService implements DisposableBean {
+
+    private final ProductRepository productRepository;
+
+    private final ProductTombstoneRepository productTombstoneRepository;
+
+    private final Duration commitLag;
+
+    private final long retentionDays;
+
+    private final ScheduledExecutorService purger;
+
+    public ProductDeltaService(ProductRepository productRepository,
+                               ProductTombstoneRepository productTombstoneRepository,
+                               @Value("${fc.product.delta.commit-lag-millis:5000}") long commitLagMillis,
+                               @Value("${fc.product.delta.tombstone-retention-days:30}") long retentionDays) {
+        this.productRepository = productRepository;
+        this.productTombstoneRepository = productTombstoneRepository;
+        this.commitLag = Duration.ofMillis(commitLagMillis);
+        this.retentionDays = retentionDays;
+        this.purger = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("product-tombstone-purge-"));
+        this.purger.scheduleWithFixedDelay(this::purgeTombstones, 1, 60, TimeUnit.MINUTES);
+    }
+
+    /**
+     * The changes after the watermark, at most {@code limit} products and tombstones together.
+     * Without a watermark the sync starts with the whole catalog.
+     */
+    public ProductDelta getChangesSince(String watermark, Integer limit) {
+        final int pageSize = limit == null || limit <= 0 ? ProductService.DEFAULT_PAGE_SIZE : Math.min(limit, ProductService.MAX_PAGE_SIZE);
+        final CursorUtil.TimeKey key = CursorUtil.decodeTimeKey(watermark);
+        final Instant now = Product.currentTimestamp();
+        if (key != null && key.getTime().isBefore(retentionHorizon(now))) {
+            throw new WatermarkExpiredException(key.getTime(), retentionDays);
+        }
+        final Instant since = key != null ? key.getTime() : Instant.EPOCH;
+        final long afterId = key != null ? key.getId() : Long.MIN_VALUE;
+        final Instant until = max(now.minus(commitLag), since);
+
+        final PageRequest page = PageRequest.of(0, pageSize + 1);
+        List<Product> products = productRepository.findChangedSince(since, afterId, until, page);
+        List<ProductTombstone> tombstones = productTombstoneRepository.findDeletedSince(since, afterId, until, page);
+
+        // merge both in (time, id) order up to the page size; the ids are never reused, so the keys are unique
+        final List<Product> changed = new ArrayList<>();
+        final List<ProductTombstone> deleted = new ArrayList<>();
+        Instant lastTime = null;
+        Long lastId = null;
+        int p = 0;
+        int t = 0;
+        while (changed.size() + deleted.size() < pageSize && (p < products.size() || t < tombstones.size())) {
+            if (t >= tombstones.size() || (p < products.size() && isBefore(products.get(p), tombstones.get(t)))) {
+                Product product = products.get(p++);
+                changed.add(product);
+                lastTime = product.getUpdateDate();
+                lastId = product.getId();
+            } else {
+                ProductTombstone tombstone = tombstones.get(t++);
+                deleted.add(tombstone);
+                lastTime = tombstone.getDeletedDate();
+                lastId = tombstone.getProductId();
+            }
+        }
+        final boolean hasMore = p < products.size() || t < tombstones.size();
+
+        // when everything up to `until` was returned, the next sync starts there even without any change
+        final String nextWatermark = hasMore
+                ? CursorUtil.encode(lastTime, lastId)
+                : CursorUtil.encode(until, Long.MAX_VALUE);
+        return new ProductDelta(changed, deleted, nextWatermark, hasMore);
+    }
+
+    /**
+     * The products written before the dates were maintained have no update date and would never be synced.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void setMissingUpdateDates() {
+        final int updated = productRepository.setMissingUpdateDates(Product.currentTimestamp());
+        if (updated > 0) {
+            log.info("Set the missing update date of {} products for the delta sync", updated);
+        }
+    }
+
+    void purgeTombstones() {
+        try {
+            final int purged = productTombstoneRepository.deleteDeletedBefore(retentionHorizon(Product.currentTimestamp()));
+            if (purged > 0) {
+                log.info("Purged {} product tombstones older than {} days", purged, retentionDays);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Could not purge the product tombstones", e);
+        }
+    }
+
+    private Instant retentionHorizon(Instant now) {
+        return now.minus(Duration.ofDays(retentionDays));
+    }
+
+    private static boolean isBefore(Product product, ProductTombstone tombstone) {
+        final int byTime = product.getUpdateDate().compareTo(tombstone.getDeletedDate());
+        return byTime < 0 || (byTime == 0 && product.getId() < tombstone.getProductId());
+    }
+
+    private static Instant max(Instant a, Instant b) {
+        return a.isAfter(b) ? a : b;
+    }
+
+    @Override
+    public void destroy() {
+        purger.shutdownNow();
+    }
+
+}
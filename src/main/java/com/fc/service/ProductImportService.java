@@ -0,0 +1,332 @@
+package com.fc.service;
+
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvSchema;
+import com.fc.exception.ProductImportException;
+import com.fc.exception.ProductImportNotFoundException;
+import com.fc.model.Product;
+import com.fc.model.ProductBatchResult;
+import com.fc.model.ProductImport;
+import com.fc.model.ProductImportFormat;
+import com.fc.model.ProductImportStatus;
+import com.fc.repository.ProductImportRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Imports products from large CSV / NDJSON files of the import folder.
+ * <p>
+ * A reader thread parses the file record by record and hands batches to the writer through a bounded queue,
+ * so the reader blocks when the database is slower than the parser and the memory usage is bounded by
+ * {@code queue-capacity * batch-size} products. The writer upserts each batch by name and then stores the committed offset.
+ * A resumed import skips the committed records; replaying the last batch after a crash is harmless because the write is an upsert.
+ */
+@Slf4j
+@Service
+public class ProductImportService {
+
+    private static final ImportBatch END_OF_FILE = new ImportBatch(List.of(), -1);
+
+    private final ProductImportRepository productImportRepository;
+
+    private final ProductBatchService productBatchService;
+
+    private final ObjectReader ndjsonReader;
+
+    private final ObjectReader csvReader;
+
+    private final Path importDirectory;
+
+    private final int batchSize;
+
+    private final int queueCapacity;
+
+    private final Semaphore importPermits;
+
+    private final ExecutorService importExecutor;
+
+    private final Set<Long> runningImports = ConcurrentHashMap.newKeySet();
+
+    public ProductImportService(ProductImportRepository productImportRepository,
+                                ProductBatchService productBatchService,
+                                ObjectMapper objectMapper,
+                                @Value("${fc.import.directory:./import}") String importDirectory,
+                                @Value("${fc.import.batch-size:500}") int batchSize,
+                                @Value("${fc.import.queue-capacity:4}") int queueCapacity,
+                                @Value("${fc.import.max-concurrent-imports:2}") int maxConcurrentImports) {
+        this.productImportRepository = productImportRepository;
+        this.productBatchService = productBatchService;
+        this.ndjsonReader = objectMapper.readerFor(Product.class);
+        CsvMapper csvMapper = new CsvMapper();
+        csvMapper.findAndRegisterModules();
+        csvMapper.enable(MapperFeature.ACCEPT_CASE_INSENSITIVE_PROPERTIES);
+        this.csvReader = csvMapper.readerFor(Product.class).with(CsvSchema.emptySchema().withHeader());
+        this.importDirectory = Paths.get(importDirectory).toAbsolutePath().normalize();
+        this.batchSize = batchSize;
+        this.queueCapacity = queueCapacity;
+        this.importPermits = new Semaphore(maxConcurrentImports);
+        // every import uses one writer and one reader thread
+        this.importExecutor = Executors.newFixedThreadPool(2 * maxConcurrentImports, new CustomizableThreadFactory("product-import-"));
+    }
+
+    public ProductImport startImport(String fileName, ProductImportFormat format) {
+        resolveFile(fileName);
+        final ProductImportFormat importFormat = format != null ? format : formatOf(fileName);
+
+        return submit(productImportRepository.save(new ProductImport(fileName, importFormat)));
+    }
+
+    public ProductImport resumeImport(Long id) {
+        ProductImport productImport = getImport(id);
+        if (productImport.getStatus() == ProductImportStatus.COMPLETED) {
+            throw new ProductImportException("The product import is already completed. Import id: " + id);
+        }
+        if (runningImports.contains(id)) {
+            throw new ProductImportException("The product import is running. Import id: " + id);
+        }
+
+        productImport.setStatus(ProductImportStatus.RUNNING);
+        productImport.setMessage(null);
+        productImport.setUpdateDate(Instant.now());
+        return submit(productImportRepository.save(productImport));
+    }
+
+    public ProductImport getImport(Long id) {
+        return productImportRepository.findById(id)
+                .orElseThrow(() -> new ProductImportNotFoundException(id));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        importExecutor.shutdownNow();
+    }
+
+    private ProductImport submit(ProductImport productImport) {
+        if (!runningImports.add(productImport.getId())) {
+            throw new ProductImportException("The product import is running. Import id: " + productImport.getId());
+        }
+        if (!importPermits.tryAcquire()) {
+            runningImports.remove(productImport.getId());
+            fail(productImport, "Too many imports are running. Please resume the import later.");
+            return productImportRepository.save(productImport);
+        }
+
+        importExecutor.execute(() -> {
+            try {
+                runImport(productImport);
+            } finally {
+                runningImports.remove(productImport.getId());
+                importPermits.release();
+            }
+        });
+        return productImport;
+    }
+
+    private void runImport(ProductImport productImport) {
+        log.info("Start the product import {} of the file {} from offset {}",
+                productImport.getId(), productImport.getFileName(), productImport.getCommittedOffset());
+
+        BlockingQueue<ImportBatch> queue = new ArrayBlockingQueue<>(queueCapacity);
+        ImportReader reader = new ImportReader(productImport, queue);
+        Future<?> readerFuture = importExecutor.submit(reader);
+        try {
+            for (ImportBatch batch = queue.take(); batch != END_OF_FILE; batch = queue.take()) {
+                write(productImport, batch);
+            }
+            if (reader.failure != null) {
+                throw reader.failure;
+            }
+
+            productImport.setStatus(ProductImportStatus.COMPLETED);
+            log.info("The product import {} is completed. Records: {}", productImport.getId(), productImport.getCommittedOffset());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            fail(productImport, "The product import was interrupted");
+        } catch (Exception e) {
+            log.error("The product import {} failed at offset {}", productImport.getId(), productImport.getCommittedOffset(), e);
+            fail(productImport, e.getMessage());
+        } finally {
+            reader.stopped = true;
+            readerFuture.cancel(true);
+            productImport.setUpdateDate(Instant.now());
+            productImportRepository.save(productImport);
+        }
+    }
+
+    private void write(ProductImport productImport, ImportBatch batch) {
+        for (ProductBatchResult result : productBatchService.createOrUpdateProducts(batch.products)) {
+            switch (result.getStatus()) {
+                case CREATED:
+                    productImport.setCreatedCount(productImport.getCreatedCount() + 1);
+                    break;
+                case UPDATED:
+                    productImport.setUpdatedCount(productImport.getUpdatedCount() + 1);
+                    break;
+                default:
+                    productImport.setFailedCount(productImport.getFailedCount() + 1);
+            }
+        }
+        productImport.setFailedCount(productImport.getFailedCount() + batch.unreadableCount);
+        productImport.setCommittedOffset(batch.endOffset);
+        productImport.setUpdateDate(Instant.now());
+        productImportRepository.save(productImport);
+        log.debug("The product import {} committed offset {}", productImport.getId(), batch.endOffset);
+    }
+
+    private void fail(ProductImport productImport, String message) {
+        productImport.setStatus(ProductImportStatus.FAILED);
+        productImport.setMessage(message);
+    }
+
+    private MappingIterator<Product> openIterator(ProductImport productImport) throws IOException {
+        BufferedReader fileReader = Files.newBufferedReader(resolveFile(productImport.getFileName()), StandardCharsets.UTF_8);
+        return productImport.getFormat() == ProductImportFormat.CSV
+                ? csvReader.readValues(fileReader)
+                : ndjsonReader.readValues(fileReader);
+    }
+
+    private Path resolveFile(String fileName) {
+        if (fileName == null || fileName.isEmpty()) {
+            throw new ProductImportException("The file name was not provided.");
+        }
+        Path file = importDirectory.resolve(fileName).normalize();
+        if (!file.startsWith(importDirectory) || !Files.isRegularFile(file)) {
+            throw new ProductImportException("The file does not exist in the import folder: " + fileName);
+        }
+        return file;
+    }
+
+    private static ProductImportFormat formatOf(String fileName) {
+        final String lowerCaseName = fileName.toLowerCase(Locale.ROOT);
+        if (lowerCaseName.endsWith(".csv")) {
+            return ProductImportFormat.CSV;
+        }
+        if (lowerCaseName.endsWith(".ndjson") || lowerCaseName.endsWith(".jsonl")) {
+            return ProductImportFormat.NDJSON;
+        }
+        throw new ProductImportException("The import format could not be detected for the file: " + fileName);
+    }
+
+    private static final class ImportBatch {
+
+        private final List<Product> products;
+
+        private final long endOffset;
+
+        private int unreadableCount;
+
+        private ImportBatch(List<Product> products, long endOffset) {
+            this.products = products;
+            this.endOffset = endOffset;
+        }
+    }
+
+    /**
+     * Parses the file and puts the batches in the queue. A record which cannot be mapped to a product
+     * is counted as failed and skipped.
+     */
+    private final class ImportReader implements Runnable {
+
+        private final ProductImport productImport;
+
+        private final BlockingQueue<ImportBatch> queue;
+
+        private volatile boolean stopped;
+
+        private volatile Exception failure;
+
+        private ImportReader(ProductImport productImport, BlockingQueue<ImportBatch> queue) {
+            this.productImport = productImport;
+            this.queue = queue;
+        }
+
+        @Override
+        public void run() {
+            try (MappingIterator<Product> records = openIterator(productImport)) {
+                long offset = 0;
+                List<Product> products = new ArrayList<>(batchSize);
+                int unreadableCount = 0;
+                while (!stopped && records.hasNextValue()) {
+                    Product product = null;
+                    try {
+                        product = records.nextValue();
+                    } catch (JsonMappingException e) {
+                        if (offset >= productImport.getCommittedOffset()) {
+                            log.warn("The record {} of the product import {} was skipped: {}", offset, productImport.getId(), e.getMessage());
+                            unreadableCount++;
+                        }
+                    }
+                    offset++;
+                    if (offset <= productImport.getCommittedOffset()) {
+                        continue;
+                    }
+                    if (product != null) {
+                        products.add(product);
+                    }
+                    if (products.size() + unreadableCount == batchSize) {
+                        put(batch(products, offset, unreadableCount));
+                        products = new ArrayList<>(batchSize);
+                        unreadableCount = 0;
+                    }
+                }
+                if (!products.isEmpty() || unreadableCount > 0) {
+                    put(batch(products, offset, unreadableCount));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                failure = e;
+            }
+
+            try {
+                put(END_OF_FILE);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private ImportBatch batch(List<Product> products, long endOffset, int unreadableCount) {
+            ImportBatch batch = new ImportBatch(products, endOffset);
+            batch.unreadableCount = unreadableCount;
+            return batch;
+        }
+
+        private void put(ImportBatch batch) throws InterruptedException {
+            while (!queue.offer(batch, 100, TimeUnit.MILLISECONDS)) {
+                if (stopped) {
+                    return;
+                }
+            }
+        }
+    }
+
+}
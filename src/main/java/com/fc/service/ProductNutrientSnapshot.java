@@ -0,0 +1,496 @@
+package com.fc.service;
+
+import com.fc.event.ProductChangeType;
+import com.fc.event.ProductChangedEvent;
+import com.fc.model.NutrientMetric;
+import com.fc.model.NutrientQuery;
+import com.fc.model.NutrientQueryResult;
+import com.fc.model.Product;
+import com.fc.model.ProductNutrientRow;
+import com.fc.model.ProductType;
+import com.fc.repository.ProductRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Columnar in-memory copy of the price and the nutrient values of the whole catalog for the analytical queries.
+ * <p>
+ * Every value is held in its own primitive array (one slot per product, NaN when unknown), so a filter or a sort
+ * scans a few dense arrays instead of loading entities. The scans run in parallel over chunks of slots and keep a
+ * bounded top-N per chunk. The snapshot is built at startup and kept up to date by the product change events;
+ * the bulk changes rebuild it in the background (see {@link ProductViewRebuilder}).
+ */
+@Slf4j
+@Component
+public class ProductNutrientSnapshot implements DisposableBean {
+
+    static final int PRICE = 0;
+    static final int CALORIES = 1;
+    static final int PROTEIN = 2;
+    static final int CARBOHYDRATES = 3;
+    static final int FAT = 4;
+    static final int SUGAR = 5;
+    static final int FIBER = 6;
+    static final int COLUMN_COUNT = 7;
+
+    public static final int MAX_LIMIT = 1000;
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private static final int SCAN_CHUNK_SIZE = 16 * 1024;
+
+    private static final ProductType[] PRODUCT_TYPES = ProductType.values();
+
+    private final ProductRepository productRepository;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final ProductViewRebuilder<Columns> rebuilder;
+
+    private Columns columns = new Columns(INITIAL_CAPACITY);
+
+    public ProductNutrientSnapshot(ProductRepository productRepository) {
+        this.productRepository = productRepository;
+        this.rebuilder = new ProductViewRebuilder<>("product nutrient snapshot", productRepository, lock,
+                () -> new Columns(INITIAL_CAPACITY), rebuiltColumns -> columns = rebuiltColumns);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        rebuilder.rebuild();
+    }
+
+    @Override
+    public void destroy() {
+        rebuilder.shutdown();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        try {
+            if (event.isAllProducts()) {
+                rebuilder.requestRebuild();
+            } else if (event.isPrices()) {
+                changePrices(event.getPrices());
+            } else if (event.getChangeType() == ProductChangeType.DELETED) {
+                remove(event.getProductId());
+            } else if (event.getProduct() != null) {
+                upsert(event.getProduct());
+            } else {
+                productRepository.findById(event.getProductId()).ifPresentOrElse(this::upsert, () -> remove(event.getProductId()));
+            }
+        } catch (RuntimeException e) {
+            log.error("The product nutrient snapshot could not apply the change: {}", event, e);
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return columns.count;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public NutrientQueryResult query(NutrientQuery query) {
+        final Filter filter = new Filter(query);
+        final NutrientMetric metric = query.getSort() == null ? NutrientMetric.PROTEIN : query.getSort();
+        final int limit = Math.max(0, Math.min(query.getLimit(), MAX_LIMIT));
+        final double direction = query.isAscending() ? -1 : 1;
+
+        lock.readLock().lock();
+        try {
+            final Columns scannedColumns = columns;
+            final int chunkCount = (scannedColumns.size + SCAN_CHUNK_SIZE - 1) / SCAN_CHUNK_SIZE;
+            List<TopN> chunkResults = IntStream.range(0, chunkCount).parallel()
+                    .mapToObj(chunk -> scan(scannedColumns, chunk * SCAN_CHUNK_SIZE,
+                            Math.min((chunk + 1) * SCAN_CHUNK_SIZE, scannedColumns.size), filter, metric, direction, limit))
+                    .collect(Collectors.toList());
+
+            TopN result = new TopN(limit);
+            int matched = 0;
+            for (TopN chunkResult : chunkResults) {
+                matched += chunkResult.matched;
+                for (int i = 0; i < chunkResult.size; i++) {
+                    result.offer(chunkResult.scores[i], chunkResult.slots[i]);
+                }
+            }
+
+            List<ProductNutrientRow> items = new ArrayList<>(result.size);
+            for (int slot : result.sortedSlots()) {
+                items.add(scannedColumns.row(slot, direction * score(scannedColumns, slot, metric, direction)));
+            }
+            return new NutrientQueryResult(matched, items);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void upsert(Product product) {
+        lock.writeLock().lock();
+        try {
+            columns.upsert(product);
+            rebuilder.recordUpsert(product);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // only the price column changes, so no product is loaded
+    private void changePrices(Map<Long, BigDecimal> prices) {
+        lock.writeLock().lock();
+        try {
+            columns.changePrices(prices);
+            rebuilder.recordChange(view -> view.changePrices(prices));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void remove(Long id) {
+        lock.writeLock().lock();
+        try {
+            columns.remove(id);
+            rebuilder.recordRemoval(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static TopN scan(Columns columns, int from, int to, Filter filter, NutrientMetric metric, double direction, int limit) {
+        TopN topN = new TopN(limit);
+        for (int slot = from; slot < to; slot++) {
+            if (columns.ids[slot] == Columns.EMPTY_SLOT || !filter.matches(columns, slot)) {
+                continue;
+            }
+            topN.matched++;
+            final double score = score(columns, slot, metric, direction);
+            if (!Double.isNaN(score)) {
+                topN.offer(score, slot);
+            }
+        }
+        return topN;
+    }
+
+    /**
+     * The value to sort by, multiplied by the direction so the top-N always keeps the highest scores.
+     */
+    private static double score(Columns columns, int slot, NutrientMetric metric, double direction) {
+        final double[][] values = columns.values;
+        final double score;
+        switch (metric) {
+            case PRICE:
+                score = values[PRICE][slot];
+                break;
+            case CALORIES:
+                score = values[CALORIES][slot];
+                break;
+            case CARBOHYDRATES:
+                score = values[CARBOHYDRATES][slot];
+                break;
+            case FAT:
+                score = values[FAT][slot];
+                break;
+            case SUGAR:
+                score = values[SUGAR][slot];
+                break;
+            case FIBER:
+                score = values[FIBER][slot];
+                break;
+            case PROTEIN_PER_PRICE:
+                score = perPrice(values[PROTEIN][slot], values[PRICE][slot]);
+                break;
+            case CALORIES_PER_PRICE:
+                score = perPrice(values[CALORIES][slot], values[PRICE][slot]);
+                break;
+            case FIBER_PER_PRICE:
+                score = perPrice(values[FIBER][slot], values[PRICE][slot]);
+                break;
+            case CARBOHYDRATES_PER_PRICE:
+                score = perPrice(values[CARBOHYDRATES][slot], values[PRICE][slot]);
+                break;
+            case FAT_PER_PRICE:
+                score = perPrice(values[FAT][slot], values[PRICE][slot]);
+                break;
+            default:
+                score = values[PROTEIN][slot];
+        }
+        return direction * score;
+    }
+
+    private static double perPrice(double value, double price) {
+        return price > 0 ? value / price : Double.NaN;
+    }
+
+    /**
+     * The filter bounds per column; only the columns with at least one bound are checked.
+     */
+    private static final class Filter {
+
+        private final int productType;
+
+        private final int[] filteredColumns;
+
+        private final double[] min = new double[COLUMN_COUNT];
+
+        private final double[] max = new double[COLUMN_COUNT];
+
+        private Filter(NutrientQuery query) {
+            this.productType = query.getProductType() == null ? -1 : query.getProductType().ordinal();
+            bound(PRICE, query.getMinPrice(), query.getMaxPrice());
+            bound(CALORIES, query.getMinCalories(), query.getMaxCalories());
+            bound(PROTEIN, query.getMinProtein(), query.getMaxProtein());
+            bound(CARBOHYDRATES, query.getMinCarbohydrates(), query.getMaxCarbohydrates());
+            bound(FAT, query.getMinFat(), query.getMaxFat());
+            bound(SUGAR, query.getMinSugar(), query.getMaxSugar());
+            bound(FIBER, query.getMinFiber(), query.getMaxFiber());
+            this.filteredColumns = IntStream.range(0, COLUMN_COUNT)
+                    .filter(column -> min[column] != Double.NEGATIVE_INFINITY || max[column] != Double.POSITIVE_INFINITY)
+                    .toArray();
+        }
+
+        private void bound(int column, Double minValue, Double maxValue) {
+            min[column] = minValue == null ? Double.NEGATIVE_INFINITY : minValue;
+            max[column] = maxValue == null ? Double.POSITIVE_INFINITY : maxValue;
+        }
+
+        private boolean matches(Columns columns, int slot) {
+            if (productType >= 0 && columns.productTypes[slot] != productType) {
+                return false;
+            }
+            for (int column : filteredColumns) {
+                final double value = columns.values[column][slot];
+                // NaN (unknown) fails both comparisons
+                if (!(value >= min[column] && value <= max[column])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Bounded min-heap of (score, slot) pairs which keeps the highest scores.
+     */
+    private static final class TopN {
+
+        private final int capacity;
+
+        private final double[] scores;
+
+        private final int[] slots;
+
+        private int size;
+
+        private int matched;
+
+        private TopN(int capacity) {
+            this.capacity = capacity;
+            this.scores = new double[capacity];
+            this.slots = new int[capacity];
+        }
+
+        private void offer(double score, int slot) {
+            if (size < capacity) {
+                scores[size] = score;
+                slots[size] = slot;
+                siftUp(size++);
+            } else if (capacity > 0 && score > scores[0]) {
+                scores[0] = score;
+                slots[0] = slot;
+                siftDown(0);
+            }
+        }
+
+        private int[] sortedSlots() {
+            Integer[] order = new Integer[size];
+            for (int i = 0; i < size; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (left, right) -> Double.compare(scores[right], scores[left]));
+            int[] sortedSlots = new int[size];
+            for (int i = 0; i < size; i++) {
+                sortedSlots[i] = slots[order[i]];
+            }
+            return sortedSlots;
+        }
+
+        private void siftUp(int index) {
+            while (index > 0) {
+                int parent = (index - 1) / 2;
+                if (scores[parent] <= scores[index]) {
+                    return;
+                }
+                swap(parent, index);
+                index = parent;
+            }
+        }
+
+        private void siftDown(int index) {
+            while (true) {
+                int smallest = index;
+                int left = 2 * index + 1;
+                int right = left + 1;
+                if (left < size && scores[left] < scores[smallest]) {
+                    smallest = left;
+                }
+                if (right < size && scores[right] < scores[smallest]) {
+                    smallest = right;
+                }
+                if (smallest == index) {
+                    return;
+                }
+                swap(smallest, index);
+                index = smallest;
+            }
+        }
+
+        private void swap(int i, int j) {
+            double score = scores[i];
+            scores[i] = scores[j];
+            scores[j] = score;
+            int slot = slots[i];
+            slots[i] = slots[j];
+            slots[j] = slot;
+        }
+    }
+
+    /**
+     * The column arrays. The slots of the deleted products are reused by the next inserts.
+     */
+    private static final class Columns implements ProductViewRebuilder.View {
+
+        private static final long EMPTY_SLOT = Long.MIN_VALUE;
+
+        private long[] ids;
+
+        private String[] names;
+
+        private byte[] productTypes;
+
+        private final double[][] values = new double[COLUMN_COUNT][];
+
+        private final Map<Long, Integer> slotsById = new HashMap<>();
+
+        private int[] freeSlots = new int[16];
+
+        private int freeSlotCount;
+
+        // the slots [0, size) are in use or free
+        private int size;
+
+        private int count;
+
+        private Columns(int capacity) {
+            ids = new long[capacity];
+            names = new String[capacity];
+            productTypes = new byte[capacity];
+            for (int column = 0; column < COLUMN_COUNT; column++) {
+                values[column] = new double[capacity];
+            }
+        }
+
+        @Override
+        public void upsert(Product product) {
+            Integer slot = slotsById.get(product.getId());
+            if (slot == null) {
+                slot = freeSlotCount > 0 ? freeSlots[--freeSlotCount] : nextSlot();
+                slotsById.put(product.getId(), slot);
+                count++;
+            }
+            ids[slot] = product.getId();
+            names[slot] = product.getName();
+            productTypes[slot] = (byte) (product.getProductType() == null ? -1 : product.getProductType().ordinal());
+            values[PRICE][slot] = product.getPrice() == null ? Double.NaN : product.getPrice().doubleValue();
+            values[CALORIES][slot] = valueOf(product.getCalories());
+            values[PROTEIN][slot] = valueOf(product.getProtein());
+            values[CARBOHYDRATES][slot] = valueOf(product.getCarbohydrates());
+            values[FAT][slot] = valueOf(product.getFat());
+            values[SUGAR][slot] = valueOf(product.getSugar());
+            values[FIBER][slot] = valueOf(product.getFiber());
+        }
+
+        @Override
+        public void remove(Long id) {
+            Integer slot = slotsById.remove(id);
+            if (slot == null) {
+                return;
+            }
+            ids[slot] = EMPTY_SLOT;
+            names[slot] = null;
+            if (freeSlotCount == freeSlots.length) {
+                freeSlots = Arrays.copyOf(freeSlots, freeSlotCount * 2);
+            }
+            freeSlots[freeSlotCount++] = slot;
+            count--;
+        }
+
+        @Override
+        public int size() {
+            return count;
+        }
+
+        private void changePrices(Map<Long, BigDecimal> prices) {
+            prices.forEach((id, price) -> {
+                final Integer slot = slotsById.get(id);
+                if (slot != null) {
+                    values[PRICE][slot] = price == null ? Double.NaN : price.doubleValue();
+                }
+            });
+        }
+
+        private ProductNutrientRow row(int slot, double score) {
+            final byte productType = productTypes[slot];
+            return new ProductNutrientRow(
+                    ids[slot],
+                    names[slot],
+                    productType < 0 ? null : PRODUCT_TYPES[productType],
+                    boxed(values[PRICE][slot]),
+                    boxed(values[CALORIES][slot]),
+                    boxed(values[PROTEIN][slot]),
+                    boxed(values[CARBOHYDRATES][slot]),
+                    boxed(values[FAT][slot]),
+                    boxed(values[SUGAR][slot]),
+                    boxed(values[FIBER][slot]),
+                    boxed(score)
+            );
+        }
+
+        private int nextSlot() {
+            if (size == ids.length) {
+                final int capacity = ids.length * 2;
+                ids = Arrays.copyOf(ids, capacity);
+                names = Arrays.copyOf(names, capacity);
+                productTypes = Arrays.copyOf(productTypes, capacity);
+                for (int column = 0; column < COLUMN_COUNT; column++) {
+                    values[column] = Arrays.copyOf(values[column], capacity);
+                }
+            }
+            return size++;
+        }
+
+        private static double valueOf(Double value) {
+            return value == null ? Double.NaN : value;
+        }
+
+        private static Double boxed(double value) {
+            return Double.isNaN(value) ? null : value;
+        }
+    }
+
+}
@@ -0,0 +1,107 @@
+package com.fc.service;
+
+import com.fc.exception.BatchSizeExceededException;
+import com.fc.exception.InvalidTimeRangeException;
+import com.fc.exception.MissingMandatoryFieldException;
+import com.fc.model.Product;
+import com.fc.model.ProductPriceAsOfDTO;
+import com.fc.model.ProductPriceHistory;
+import com.fc.model.ProductPriceHistoryPage;
+import com.fc.repository.ProductPriceHistoryRepository;
+import com.fc.util.CursorUtil;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+/**
+ * Reads the append-only price history, which is written together with the prices by {@link ProductService}
+ * and {@link ProductBatchService}.
+ */
+@Service
+public class ProductPriceHistoryService {
+
+    public static final int DEFAULT_LIMIT = 1000;
+    public static final int MAX_LIMIT = 10000;
+    public static final int MAX_AS_OF_IDS = 10000;
+
+    // ids per "price as of" query, which keeps the in list within the limits of the databases
+    static final int AS_OF_CHUNK_SIZE = 500;
+
+    // the end of an open time range; far in the future, but storable by every database
+    private static final Instant END_OF_TIME = Instant.parse("9999-12-31T00:00:00Z");
+
+    private final ProductPriceHistoryRepository productPriceHistoryRepository;
+
+    public ProductPriceHistoryService(ProductPriceHistoryRepository productPriceHistoryRepository) {
+        this.productPriceHistoryRepository = productPriceHistoryRepository;
+    }
+
+    /**
+     * One page of the price changes of the product from {@code from} (inclusive) to {@code to} (exclusive) in time order.
+     * A longer history is read page by page with the {@code nextCursor} of the page and the same range; the cursor
+     * is the (validFrom, id) key of the last entry, so the entries of the same time are split across the pages.
+     */
+    public ProductPriceHistoryPage getPriceHistory(Long productId, Instant from, Instant to, String cursor, Integer limit) {
+        final Instant rangeFrom = from != null ? from : Instant.EPOCH;
+        final Instant rangeTo = to != null ? to : END_OF_TIME;
+        if (!rangeFrom.isBefore(rangeTo)) {
+            throw new InvalidTimeRangeException(from, to);
+        }
+        final int pageSize = limit == null || limit <= 0 ? DEFAULT_LIMIT : Math.min(limit, MAX_LIMIT);
+        final CursorUtil.TimeKey key = CursorUtil.decodeTimeKey(cursor);
+        final Instant afterTime = key != null ? key.getTime() : rangeFrom;
+        final long afterId = key != null ? key.getId() : Long.MIN_VALUE;
+
+        // fetch one extra row to know if a next page exists without a count query
+        List<ProductPriceHistory> prices = productPriceHistoryRepository.findPrices(productId, rangeFrom, rangeTo,
+                afterTime, afterId, PageRequest.of(0, pageSize + 1));
+        if (prices.size() <= pageSize) {
+            return new ProductPriceHistoryPage(prices, null);
+        }
+
+        List<ProductPriceHistory> items = prices.subList(0, pageSize);
+        ProductPriceHistory last = items.get(pageSize - 1);
+        return new ProductPriceHistoryPage(items, CursorUtil.encode(last.getValidFrom(), last.getId()));
+    }
+
+    /**
+     * The price of every product at the requested time, in the order of the requested ids.
+     * The products without a price at that time are left out.
+     */
+    public List<ProductPriceHistory> getPricesAsOf(ProductPriceAsOfDTO request) {
+        if (request.getIds() == null) {
+            throw new MissingMandatoryFieldException("The field ids is mandatory!");
+        }
+        final List<Long> ids = request.getIds().stream().filter(Objects::nonNull).distinct().collect(Collectors.toList());
+        if (ids.size() > MAX_AS_OF_IDS) {
+            throw new BatchSizeExceededException(ids.size(), MAX_AS_OF_IDS);
+        }
+        final Instant at = request.getAt() != null ? request.getAt() : Product.currentTimestamp();
+
+        Map<Long, ProductPriceHistory> prices = new HashMap<>(ids.size() * 2);
+        for (int from = 0; from < ids.size(); from += AS_OF_CHUNK_SIZE) {
+            List<Long> chunk = ids.subList(from, Math.min(from + AS_OF_CHUNK_SIZE, ids.size()));
+            for (ProductPriceHistory price : productPriceHistoryRepository.findPricesAsOf(chunk, at)) {
+                // two changes in the same millisecond: the later insert wins
+                prices.merge(price.getProductId(), price, (first, second) -> first.getId() > second.getId() ? first : second);
+            }
+        }
+
+        List<ProductPriceHistory> result = new ArrayList<>(prices.size());
+        for (Long id : ids) {
+            ProductPriceHistory price = prices.get(id);
+            if (price != null) {
+                result.add(price);
+            }
+        }
+        return result;
+    }
+
+}
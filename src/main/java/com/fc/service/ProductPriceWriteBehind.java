@@ -0,0 +1,355 @@
+package com.fc.service;
+
+import com.fc.config.CacheConfig;
+import com.fc.event.ProductChangedEvent;
+import com.fc.model.Product;
+import com.fc.model.ProductSummary;
+import com.fc.repository.ProductRepository;
+import io.micrometer.core.instrument.Metrics;
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.stream.Collectors;
+
+/**
+ * Write-behind of the price changes without If-Match, for the products whose price is changed by a feed many times
+ * a second. The latest price of every product is kept in memory and the reads see it at once. A scheduled flush
+ * writes the pending prices of all products in one transaction and one JDBC batch, so a product changed a hundred
+ * times between two flushes is written once: one update, one new version and one price history entry.
+ * <p>
+ * A price is only in memory until the next flush, that is what a crash can lose; the pending prices are flushed at
+ * shutdown. When the flushes fail or cannot keep up (no successful flush for the max staleness, or the max number of
+ * pending products is reached) the price changes are written through again, so the database is never more stale than
+ * that and the clients learn about a failing database. The other writes of a product (update, delete, a price change
+ * with If-Match, the batch writes) flush its pending price first, so they are not overwritten by an older price.
+ * <p>
+ * Every buffered change gives the product the next version and update date, so each one has its own ETag; the flush
+ * adds the number of coalesced changes to the stored version, so the returned ETag is valid for an If-Match afterwards
+ * and an older one is rejected. The change feed and the delta sync see the new price once it was flushed.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "fc.product.price-write-behind.enabled", havingValue = "true")
+public class ProductPriceWriteBehind implements DisposableBean {
+
+    public static final String CHANGE_METRIC = "fc.product.price-write-behind.changes";
+
+    public static final String FLUSH_METRIC = "fc.product.price-write-behind.flushes";
+
+    public static final String PENDING_METRIC = "fc.product.price-write-behind.pending";
+
+    private final ProductRepository productRepository;
+
+    private final CacheManager cacheManager;
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final long maxStalenessNanos;
+
+    private final int maxPending;
+
+    private final LongSupplier nanoClock;
+
+    private final Map<Long, PendingPrice> pending = new ConcurrentHashMap<>();
+
+    // the prices of the running flush, the reads see them until they are committed
+    private final Map<Long, PendingPrice> flushing = new ConcurrentHashMap<>();
+
+    private final Object flushLock = new Object();
+
+    private final ScheduledExecutorService scheduler;
+
+    // every buffered change, part of the catalog version until the flush changes the last update date
+    private final AtomicLong changeCount = new AtomicLong();
+
+    private volatile long lastFlush;
+
+    @Autowired
+    public ProductPriceWriteBehind(ProductRepository productRepository, CacheManager cacheManager,
+                                   ApplicationEventPublisher eventPublisher,
+                                   @Value("${fc.product.price-write-behind.flush-interval-millis:1000}") long flushIntervalMillis,
+                                   @Value("${fc.product.price-write-behind.max-staleness-millis:10000}") long maxStalenessMillis,
+                                   @Value("${fc.product.price-write-behind.max-pending:10000}") int maxPending) {
+        this(productRepository, cacheManager, eventPublisher, flushIntervalMillis, maxStalenessMillis, maxPending, System::nanoTime);
+    }
+
+    ProductPriceWriteBehind(ProductRepository productRepository, CacheManager cacheManager,
+                            ApplicationEventPublisher eventPublisher, long flushIntervalMillis, long maxStalenessMillis,
+                            int maxPending, LongSupplier nanoClock) {
+        if (maxStalenessMillis <= flushIntervalMillis) {
+            throw new IllegalArgumentException("The max staleness of the price write-behind should be greater than the flush interval."
+                    + " Max staleness: " + maxStalenessMillis + " ms, flush interval: " + flushIntervalMillis + " ms");
+        }
+        this.productRepository = productRepository;
+        this.cacheManager = cacheManager;
+        this.eventPublisher = eventPublisher;
+        this.maxStalenessNanos = TimeUnit.MILLISECONDS.toNanos(maxStalenessMillis);
+        this.maxPending = maxPending;
+        this.nanoClock = nanoClock;
+        this.lastFlush = nanoClock.getAsLong();
+
+        Metrics.gauge(PENDING_METRIC, pending, Map::size);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("price-write-behind-"));
+        this.scheduler.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Whether a price change can be buffered. It has to be written through when no flush succeeded for the max
+     * staleness, or when the max number of products have a pending price; a full buffer is flushed early.
+     */
+    public boolean isAccepting() {
+        if (nanoClock.getAsLong() - lastFlush > maxStalenessNanos) {
+            count("written-through");
+            return false;
+        }
+        if (pending.size() >= maxPending) {
+            count("written-through");
+            if (!scheduler.isShutdown()) {
+                scheduler.execute(this::flushQuietly);
+            }
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Buffer the new price of the product.
+     *
+     * @param loader loads the product when it has no pending price and it is not in the product cache
+     * @return the product with the new price and the version it has after the flush
+     */
+    public Product changePrice(Long id, BigDecimal price, Function<Long, Product> loader) {
+        PendingPrice changed = pending.computeIfPresent(id, (key, previous) -> previous.withPrice(price));
+        if (changed == null) {
+            // the first change since the last flush, the product is loaded outside of the map
+            final PendingPrice created = new PendingPrice(storedProduct(id, loader), 0).withPrice(price);
+            changed = pending.merge(id, created, (previous, ignored) -> previous.withPrice(price));
+        }
+        changeCount.incrementAndGet();
+        count(changed.updates > 1 ? "coalesced" : "buffered");
+        return copy(changed.product);
+    }
+
+    /**
+     * The number of buffered price changes since the start, it changes with every change the reads see at once.
+     */
+    public long getChangeCount() {
+        return changeCount.get();
+    }
+
+    /**
+     * The product with its pending price, the product itself when it has none.
+     */
+    public Product withPendingPrice(Product product) {
+        final PendingPrice pendingPrice = pendingPrice(product.getId());
+        if (pendingPrice == null) {
+            return product;
+        }
+        final Product changed = withPrice(product, pendingPrice.product.getPrice());
+        changed.setVersion(pendingPrice.product.getVersion());
+        changed.setUpdateDate(pendingPrice.product.getUpdateDate());
+        return changed;
+    }
+
+    public List<Product> withPendingPrices(List<Product> products) {
+        if (pending.isEmpty() && flushing.isEmpty()) {
+            return products;
+        }
+        return products.stream().map(this::withPendingPrice).collect(Collectors.toList());
+    }
+
+    public List<ProductSummary> withPendingSummaryPrices(List<ProductSummary> summaries) {
+        if (pending.isEmpty() && flushing.isEmpty()) {
+            return summaries;
+        }
+        return summaries.stream().map(summary -> {
+            final PendingPrice pendingPrice = pendingPrice(summary.getId());
+            return pendingPrice == null ? summary
+                    : new ProductSummary(summary.getId(), summary.getName(), pendingPrice.product.getPrice(), summary.getProductType());
+        }).collect(Collectors.toList());
+    }
+
+    public Consumer<Product> withPendingPrices(Consumer<Product> action) {
+        return product -> action.accept(withPendingPrice(product));
+    }
+
+    /**
+     * Write the pending prices of all products.
+     *
+     * @return the number of written products
+     */
+    public int flush() {
+        return flush(new ArrayList<>(pending.keySet()));
+    }
+
+    /**
+     * Write the pending price of the product, before it is written by another operation.
+     */
+    public void flush(Long id) {
+        if (pending.containsKey(id) || flushing.containsKey(id)) {
+            flush(List.of(id));
+        }
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        scheduler.shutdown();
+        scheduler.awaitTermination(10, TimeUnit.SECONDS);
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.error("The pending prices of {} products could not be written at shutdown", pending.size(), e);
+        }
+    }
+
+    private int flush(Collection<Long> ids) {
+        synchronized (flushLock) {
+            final Map<Long, PendingPrice> batch = new LinkedHashMap<>();
+            for (Long id : ids) {
+                // moved to the flushing prices before it leaves the pending ones, so the reads always find it
+                pending.computeIfPresent(id, (key, pendingPrice) -> {
+                    flushing.put(key, pendingPrice);
+                    batch.put(key, pendingPrice);
+                    return null;
+                });
+            }
+            if (batch.isEmpty()) {
+                if (pending.isEmpty()) {
+                    lastFlush = nanoClock.getAsLong();
+                }
+                return 0;
+            }
+
+            final Map<Long, BigDecimal> prices = batch.entrySet().stream()
+                    .collect(Collectors.toMap(Map.Entry::getKey, entry -> entry.getValue().product.getPrice()));
+            final List<Long> missingIds;
+            try {
+                missingIds = productRepository.changePrices(prices,
+                        batch.entrySet().stream().collect(Collectors.toMap(Map.Entry::getKey, entry -> entry.getValue().updates)));
+            } catch (RuntimeException e) {
+                // a newer price keeps waiting, the next flush writes the changes of both
+                batch.forEach((id, pendingPrice) -> pending.merge(id, pendingPrice, PendingPrice::rebase));
+                flushing.keySet().removeAll(batch.keySet());
+                Metrics.counter(FLUSH_METRIC, "outcome", "failed").increment();
+                log.warn("The pending prices of {} products could not be written, they are retried with the next flush", batch.size(), e);
+                throw e;
+            }
+            flushing.keySet().removeAll(batch.keySet());
+            lastFlush = nanoClock.getAsLong();
+
+            final Map<Long, BigDecimal> written = new HashMap<>(prices);
+            written.keySet().removeAll(missingIds);
+            final Cache cache = cacheManager.getCache(CacheConfig.PRODUCT_CACHE);
+            for (Long id : batch.keySet()) {
+                // the cached product of a newer pending price stays, the next flush writes it
+                if (cache != null && !pending.containsKey(id)) {
+                    cache.evict(id);
+                }
+            }
+            // one event with the written prices, the listeners do not load the products
+            if (!written.isEmpty()) {
+                eventPublisher.publishEvent(ProductChangedEvent.prices(written));
+            }
+            if (!missingIds.isEmpty()) {
+                log.info("The pending prices of the deleted products were dropped. Ids: {}", missingIds);
+            }
+
+            final int updates = batch.values().stream().mapToInt(pendingPrice -> pendingPrice.updates).sum();
+            Metrics.counter(FLUSH_METRIC, "outcome", "flushed").increment();
+            log.debug("The pending prices were written. Products: {}, price changes: {}", written.size(), updates);
+            return written.size();
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            // logged by the flush, the prices stay pending
+        }
+    }
+
+    private PendingPrice pendingPrice(Long id) {
+        final PendingPrice pendingPrice = pending.get(id);
+        return pendingPrice != null ? pendingPrice : flushing.get(id);
+    }
+
+    private Product storedProduct(Long id, Function<Long, Product> loader) {
+        // the running flush gives the product its version, a price changed now gets the next one
+        final PendingPrice flushingPrice = flushing.get(id);
+        if (flushingPrice != null) {
+            return flushingPrice.product;
+        }
+        final Cache cache = cacheManager.getCache(CacheConfig.PRODUCT_CACHE);
+        final Product cached = cache == null ? null : cache.get(id, Product.class);
+        return cached != null ? cached : loader.apply(id);
+    }
+
+    private static Product withPrice(Product product, BigDecimal price) {
+        final Product copy = copy(product);
+        copy.setPrice(price);
+        return copy;
+    }
+
+    private static Product copy(Product product) {
+        final Product copy = new Product(product.getId(), product.getName(), product.getDescription(), product.getPrice(),
+                product.getProductType(), product.getCreateDate(), product.getUpdateDate());
+        copy.setVersion(product.getVersion());
+        copy.copyNutrients(product);
+        return copy;
+    }
+
+    private static void count(String outcome) {
+        Metrics.counter(CHANGE_METRIC, "outcome", outcome).increment();
+    }
+
+    /**
+     * The latest price of a product as the product with the version after the flush, and the number of coalesced
+     * changes, which the flush adds to the stored version.
+     */
+    @AllArgsConstructor
+    private static class PendingPrice {
+
+        private final Product product;
+        private final int updates;
+
+        PendingPrice withPrice(BigDecimal price) {
+            final Product changed = ProductPriceWriteBehind.withPrice(product, price);
+            changed.setVersion(product.getVersion() + 1);
+            changed.setUpdateDate(Product.currentTimestamp());
+            return new PendingPrice(changed, updates + 1);
+        }
+
+        // a newer price which arrived during a failed flush: it started from the version of the failed one, which the
+        // database does not have yet, so the next flush adds the changes of both
+        PendingPrice rebase(PendingPrice failed) {
+            return new PendingPrice(product, updates + failed.updates);
+        }
+
+    }
+
+}
@@ -0,0 +1,595 @@
+package com.fc.service;
+
+import com.fc.event.ProductChangeType;
+import com.fc.event.ProductChangedEvent;
+import com.fc.model.Product;
+import com.fc.model.ProductSearchHit;
+import com.fc.model.ProductType;
+import com.fc.repository.ProductRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory search index over the product name and description for the autocomplete.
+ * <p>
+ * The words of the name and the description are the terms of an inverted index. A query word matches the equal term,
+ * the terms starting with it (sorted term dictionary), the terms containing it and the terms within one or two typos
+ * (both found through a trigram index over the terms, so only the vocabulary is scanned and never the products).
+ * Every query word must match; the products are ranked by the kind of the matches, the name matches counting more
+ * than the description matches, and then by a static rank (the shorter name first, then the lower id).
+ * <p>
+ * Every posting list is kept in the static rank order, so a query never scores all the products of a common word:
+ * the rarest query word reads its postings from the best possible score down, merged in the static rank order, and
+ * the other words only score these candidates. The search stops as soon as the hits found cannot be beaten by the
+ * postings left, and after {@value #MAX_CANDIDATES} candidates at most. The index is built at startup and kept up to
+ * date by the product change events; the bulk changes rebuild it in the background (see {@link ProductViewRebuilder}).
+ */
+@Slf4j
+@Component
+public class ProductSearchIndex implements DisposableBean {
+
+    public static final int DEFAULT_LIMIT = 10;
+    public static final int MAX_LIMIT = 100;
+
+    private static final int EXACT = 4;
+    private static final int PREFIX = 3;
+    private static final int SUBSTRING = 2;
+    private static final int FUZZY = 1;
+
+    private static final int NAME_WEIGHT = 3;
+    private static final int DESCRIPTION_WEIGHT = 1;
+
+    // the number of terms one query word may expand to, so a one letter prefix stays as cheap as a full word
+    private static final int MAX_EXPANSIONS = 64;
+
+    // the postings of the rarest query word one search may score; a search of common words which do not occur together
+    // returns the hits found within them
+    private static final int MAX_CANDIDATES = 10_000;
+
+    private static final int SUBSTRING_MIN_LENGTH = 3;
+    private static final int FUZZY_MIN_LENGTH = 4;
+
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    // the order of the posting lists and of the hits with the same score
+    private static final Comparator<Document> STATIC_RANK =
+            Comparator.comparingInt(Document::nameLength).thenComparingLong(document -> document.id);
+
+    // the worst hit first
+    private static final Comparator<Hit> RANKING =
+            Comparator.<Hit>comparingInt(hit -> hit.score).thenComparing((left, right) -> STATIC_RANK.compare(right.document, left.document));
+
+    private final ProductRepository productRepository;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final ProductViewRebuilder<Index> rebuilder;
+
+    private Index index = new Index();
+
+    public ProductSearchIndex(ProductRepository productRepository) {
+        this.productRepository = productRepository;
+        this.rebuilder = new ProductViewRebuilder<>("product search index", productRepository, lock,
+                Index::new, rebuiltIndex -> index = rebuiltIndex);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        rebuilder.rebuild();
+    }
+
+    @Override
+    public void destroy() {
+        rebuilder.shutdown();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        // a price change does not touch the indexed text
+        if (event.getChangeType() == ProductChangeType.PRICE_CHANGED) {
+            return;
+        }
+        try {
+            if (event.isAllProducts()) {
+                rebuilder.requestRebuild();
+            } else if (event.getChangeType() == ProductChangeType.DELETED) {
+                remove(event.getProductId());
+            } else if (event.getProduct() != null) {
+                upsert(event.getProduct());
+            } else {
+                productRepository.findById(event.getProductId()).ifPresentOrElse(this::upsert, () -> remove(event.getProductId()));
+            }
+        } catch (RuntimeException e) {
+            log.error("The product search index could not apply the change: {}", event, e);
+        }
+    }
+
+    public List<ProductSearchHit> search(String query, int limit) {
+        final List<String> queryTerms = tokenize(query);
+        final int resultLimit = Math.min(limit, MAX_LIMIT);
+        if (queryTerms.isEmpty() || resultLimit <= 0) {
+            return List.of();
+        }
+
+        lock.readLock().lock();
+        try {
+            List<TermMatch> matches = new ArrayList<>(queryTerms.size());
+            for (String queryTerm : queryTerms) {
+                TermMatch match = index.match(queryTerm);
+                if (match.postingCount == 0) {
+                    return List.of();
+                }
+                matches.add(match);
+            }
+            TermMatch driver = matches.stream().min(Comparator.comparingLong(match -> match.postingCount)).orElseThrow();
+            matches.remove(driver);
+            final int otherMaxScore = matches.stream().mapToInt(match -> match.maxScore).sum();
+
+            PriorityQueue<Hit> top = new PriorityQueue<>(resultLimit + 1, RANKING);
+            int candidates = 0;
+            for (Map.Entry<Integer, List<NavigableSet<Document>>> scoredPostings : driver.postingsByScore.entrySet()) {
+                final int driverScore = scoredPostings.getKey();
+                final int bound = driverScore + otherMaxScore;
+                MergedPostings postings = new MergedPostings(scoredPostings.getValue());
+                Document previous = null;
+                while (postings.hasNext()) {
+                    if (top.size() == resultLimit && !canEnter(top.peek(), bound, postings.peek())) {
+                        break;
+                    }
+                    Document document = postings.next();
+                    // the lists of one score return a product next to itself; a better score of the driver was seen before
+                    if (document == previous || (driver.postingsByScore.size() > 1 && driver.score(document) != driverScore)) {
+                        continue;
+                    }
+                    previous = document;
+                    if (++candidates > MAX_CANDIDATES) {
+                        return hitsOf(top);
+                    }
+                    int score = driverScore;
+                    for (TermMatch match : matches) {
+                        final int termScore = match.score(document);
+                        if (termScore == 0) {
+                            score = 0;
+                            break;
+                        }
+                        score += termScore;
+                    }
+                    if (score > 0) {
+                        top.offer(new Hit(document, score));
+                        if (top.size() > resultLimit) {
+                            top.poll();
+                        }
+                    }
+                }
+            }
+            return hitsOf(top);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Whether a posting from {@code next} on (in the static rank order) with at most the score {@code bound}
+     * can still beat the worst hit.
+     */
+    private static boolean canEnter(Hit worst, int bound, Document next) {
+        return bound > worst.score || (bound == worst.score && STATIC_RANK.compare(next, worst.document) < 0);
+    }
+
+    private static List<ProductSearchHit> hitsOf(PriorityQueue<Hit> top) {
+        List<ProductSearchHit> hits = new ArrayList<>(top.size());
+        while (!top.isEmpty()) {
+            Hit hit = top.poll();
+            Document document = hit.document;
+            hits.add(0, new ProductSearchHit(document.id, document.name, document.description, document.productType, hit.score));
+        }
+        return hits;
+    }
+
+    private void upsert(Product product) {
+        lock.writeLock().lock();
+        try {
+            index.upsert(product);
+            rebuilder.recordUpsert(product);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void remove(Long id) {
+        lock.writeLock().lock();
+        try {
+            index.remove(id);
+            rebuilder.recordRemoval(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Split the text into lower case words without diacritics.
+     */
+    static List<String> tokenize(String text) {
+        if (text == null || text.isBlank()) {
+            return List.of();
+        }
+        final String normalized = DIACRITICS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD))
+                .replaceAll("")
+                .toLowerCase(Locale.ROOT);
+        Set<String> terms = new LinkedHashSet<>();
+        for (String term : SEPARATORS.split(normalized)) {
+            if (!term.isEmpty()) {
+                terms.add(term);
+            }
+        }
+        return new ArrayList<>(terms);
+    }
+
+    /**
+     * The trigrams of the term padded with '$', so the short terms and the word boundaries have trigrams as well.
+     */
+    static Set<String> trigrams(String term, boolean padded) {
+        final String text = padded ? '$' + term + '$' : term;
+        Set<String> trigrams = new HashSet<>();
+        for (int i = 0; i + 3 <= text.length(); i++) {
+            trigrams.add(text.substring(i, i + 3));
+        }
+        return trigrams;
+    }
+
+    /**
+     * The Levenshtein distance of the two terms, or {@code maxDistance + 1} as soon as it is known to be greater.
+     */
+    static int distance(String left, String right, int maxDistance) {
+        if (Math.abs(left.length() - right.length()) > maxDistance) {
+            return maxDistance + 1;
+        }
+        int[] previous = new int[right.length() + 1];
+        int[] current = new int[right.length() + 1];
+        for (int j = 0; j <= right.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= left.length(); i++) {
+            current[0] = i;
+            int rowMin = current[0];
+            for (int j = 1; j <= right.length(); j++) {
+                final int substitution = previous[j - 1] + (left.charAt(i - 1) == right.charAt(j - 1) ? 0 : 1);
+                current[j] = Math.min(substitution, Math.min(previous[j], current[j - 1]) + 1);
+                rowMin = Math.min(rowMin, current[j]);
+            }
+            if (rowMin > maxDistance) {
+                return maxDistance + 1;
+            }
+            int[] row = previous;
+            previous = current;
+            current = row;
+        }
+        return previous[right.length()];
+    }
+
+    private static final class Document {
+
+        private final long id;
+
+        private final String name;
+
+        private final String description;
+
+        private final ProductType productType;
+
+        // the name terms first
+        private final Postings[] terms;
+
+        // the ids of the terms, so a query scores the product without reading the terms
+        private final int[] termIds;
+
+        private final int nameTermCount;
+
+        private Document(Product product, Postings[] terms, int nameTermCount) {
+            this.id = product.getId();
+            this.name = product.getName();
+            this.description = product.getDescription();
+            this.productType = product.getProductType();
+            this.terms = terms;
+            this.termIds = Arrays.stream(terms).mapToInt(postings -> postings.termId).toArray();
+            this.nameTermCount = nameTermCount;
+        }
+
+        private int nameLength() {
+            return name == null ? 0 : name.length();
+        }
+    }
+
+    private static final class Hit {
+
+        private final Document document;
+
+        private final int score;
+
+        private Hit(Document document, int score) {
+            this.document = document;
+            this.score = score;
+        }
+    }
+
+    private static final class Postings {
+
+        private final String term;
+
+        private final int termId;
+
+        private final NavigableSet<Document> names = new TreeSet<>(STATIC_RANK);
+
+        private final NavigableSet<Document> descriptions = new TreeSet<>(STATIC_RANK);
+
+        private Postings(String term, int termId) {
+            this.term = term;
+            this.termId = termId;
+        }
+
+        private boolean isEmpty() {
+            return names.isEmpty() && descriptions.isEmpty();
+        }
+    }
+
+    /**
+     * The terms matched by one query word (the term and the kind of the match) and their posting lists by score.
+     */
+    private static final class TermMatch {
+
+        // the ids of the matched terms in ascending order and the kinds of their matches
+        private final int[] termIds;
+
+        private final int[] kinds;
+
+        // the best score first
+        private final NavigableMap<Integer, List<NavigableSet<Document>>> postingsByScore = new TreeMap<>(Comparator.reverseOrder());
+
+        private long postingCount;
+
+        private int maxScore;
+
+        private TermMatch(Map<String, Integer> matchedTerms, Map<String, Postings> terms) {
+            Map<Integer, Integer> kindsByTermId = new TreeMap<>();
+            matchedTerms.forEach((term, kind) -> {
+                Postings postings = terms.get(term);
+                kindsByTermId.put(postings.termId, kind);
+                add(kind * NAME_WEIGHT, postings.names);
+                add(kind * DESCRIPTION_WEIGHT, postings.descriptions);
+            });
+            this.termIds = kindsByTermId.keySet().stream().mapToInt(Integer::intValue).toArray();
+            this.kinds = kindsByTermId.values().stream().mapToInt(Integer::intValue).toArray();
+        }
+
+        private void add(int score, NavigableSet<Document> postings) {
+            if (postings.isEmpty()) {
+                return;
+            }
+            postingsByScore.computeIfAbsent(score, key -> new ArrayList<>()).add(postings);
+            postingCount += postings.size();
+            maxScore = Math.max(maxScore, score);
+        }
+
+        /**
+         * The score of the best match of the product, 0 when it does not match; never reads the posting lists.
+         */
+        private int score(Document document) {
+            int score = 0;
+            for (int i = 0; i < document.termIds.length; i++) {
+                final int match = Arrays.binarySearch(termIds, document.termIds[i]);
+                if (match >= 0) {
+                    score = Math.max(score, kinds[match] * (i < document.nameTermCount ? NAME_WEIGHT : DESCRIPTION_WEIGHT));
+                }
+            }
+            return score;
+        }
+    }
+
+    /**
+     * The union of posting lists in the static rank order; a product of several lists is returned once per list.
+     */
+    private static final class MergedPostings {
+
+        private final PriorityQueue<PostingCursor> cursors = new PriorityQueue<>(Comparator.comparing(cursor -> cursor.current, STATIC_RANK));
+
+        private MergedPostings(List<NavigableSet<Document>> postings) {
+            for (NavigableSet<Document> documents : postings) {
+                PostingCursor cursor = new PostingCursor(documents.iterator());
+                if (cursor.advance()) {
+                    cursors.add(cursor);
+                }
+            }
+        }
+
+        private boolean hasNext() {
+            return !cursors.isEmpty();
+        }
+
+        private Document peek() {
+            return cursors.peek().current;
+        }
+
+        private Document next() {
+            PostingCursor cursor = cursors.poll();
+            Document document = cursor.current;
+            if (cursor.advance()) {
+                cursors.add(cursor);
+            }
+            return document;
+        }
+    }
+
+    private static final class PostingCursor {
+
+        private final Iterator<Document> documents;
+
+        private Document current;
+
+        private PostingCursor(Iterator<Document> documents) {
+            this.documents = documents;
+        }
+
+        private boolean advance() {
+            current = documents.hasNext() ? documents.next() : null;
+            return current != null;
+        }
+    }
+
+    private static final class Index implements ProductViewRebuilder.View {
+
+        private final Map<Long, Document> documents = new HashMap<>();
+
+        private final NavigableMap<String, Postings> terms = new TreeMap<>();
+
+        private final Map<String, Set<String>> termsByTrigram = new HashMap<>();
+
+        private int nextTermId;
+
+        @Override
+        public void upsert(Product product) {
+            remove(product.getId());
+
+            List<String> nameTerms = tokenize(product.getName());
+            List<String> descriptionTerms = tokenize(product.getDescription());
+            Set<String> documentTerms = new LinkedHashSet<>(nameTerms);
+            documentTerms.addAll(descriptionTerms);
+            Document document = new Document(product, documentTerms.stream().map(this::postingsOf).toArray(Postings[]::new), nameTerms.size());
+
+            nameTerms.forEach(term -> postingsOf(term).names.add(document));
+            descriptionTerms.forEach(term -> postingsOf(term).descriptions.add(document));
+            documents.put(document.id, document);
+        }
+
+        @Override
+        public void remove(Long id) {
+            Document document = documents.remove(id);
+            if (document == null) {
+                return;
+            }
+            for (Postings postings : document.terms) {
+                postings.names.remove(document);
+                postings.descriptions.remove(document);
+                if (postings.isEmpty()) {
+                    terms.remove(postings.term);
+                    for (String trigram : trigrams(postings.term, true)) {
+                        Set<String> trigramTerms = termsByTrigram.get(trigram);
+                        trigramTerms.remove(postings.term);
+                        if (trigramTerms.isEmpty()) {
+                            termsByTrigram.remove(trigram);
+                        }
+                    }
+                }
+            }
+        }
+
+        @Override
+        public int size() {
+            return documents.size();
+        }
+
+        private Postings postingsOf(String term) {
+            return terms.computeIfAbsent(term, newTerm -> {
+                trigrams(newTerm, true).forEach(trigram -> termsByTrigram.computeIfAbsent(trigram, key -> new HashSet<>()).add(newTerm));
+                return new Postings(newTerm, nextTermId++);
+            });
+        }
+
+        /**
+         * The terms matching the query word and their postings by score.
+         */
+        private TermMatch match(String queryTerm) {
+            Map<String, Integer> matchedTerms = new HashMap<>();
+            if (terms.containsKey(queryTerm)) {
+                matchedTerms.put(queryTerm, EXACT);
+            }
+            matchPrefix(queryTerm, matchedTerms);
+            if (queryTerm.length() >= SUBSTRING_MIN_LENGTH) {
+                matchSubstring(queryTerm, matchedTerms);
+            }
+            if (queryTerm.length() >= FUZZY_MIN_LENGTH) {
+                matchFuzzy(queryTerm, matchedTerms);
+            }
+
+            return new TermMatch(matchedTerms, terms);
+        }
+
+        private void matchPrefix(String queryTerm, Map<String, Integer> matchedTerms) {
+            int expansions = 0;
+            for (String term : terms.subMap(queryTerm, false, queryTerm + Character.MAX_VALUE, false).keySet()) {
+                if (expansions++ == MAX_EXPANSIONS) {
+                    return;
+                }
+                matchedTerms.putIfAbsent(term, PREFIX);
+            }
+        }
+
+        private void matchSubstring(String queryTerm, Map<String, Integer> matchedTerms) {
+            // every term containing the query word has all its trigrams, so the rarest trigram gives the fewest candidates
+            Set<String> candidates = null;
+            for (String trigram : trigrams(queryTerm, false)) {
+                Set<String> trigramTerms = termsByTrigram.getOrDefault(trigram, Set.of());
+                if (candidates == null || trigramTerms.size() < candidates.size()) {
+                    candidates = trigramTerms;
+                }
+            }
+            int expansions = 0;
+            for (String term : candidates) {
+                if (term.contains(queryTerm) && matchedTerms.putIfAbsent(term, SUBSTRING) == null && ++expansions == MAX_EXPANSIONS) {
+                    return;
+                }
+            }
+        }
+
+        private void matchFuzzy(String queryTerm, Map<String, Integer> matchedTerms) {
+            final int maxEdits = queryTerm.length() <= 7 ? 1 : 2;
+            final Set<String> queryTrigrams = trigrams(queryTerm, true);
+            // one edit changes at most three trigrams
+            final int minSharedTrigrams = Math.max(1, queryTrigrams.size() - 3 * maxEdits);
+
+            Map<String, Integer> sharedTrigrams = new HashMap<>();
+            for (String trigram : queryTrigrams) {
+                for (String term : termsByTrigram.getOrDefault(trigram, Set.of())) {
+                    sharedTrigrams.merge(term, 1, Integer::sum);
+                }
+            }
+            int expansions = 0;
+            for (Map.Entry<String, Integer> candidate : sharedTrigrams.entrySet()) {
+                final String term = candidate.getKey();
+                if (candidate.getValue() >= minSharedTrigrams
+                        && !matchedTerms.containsKey(term)
+                        && distance(queryTerm, term, maxEdits) <= maxEdits) {
+                    matchedTerms.put(term, FUZZY);
+                    if (++expansions == MAX_EXPANSIONS) {
+                        return;
+                    }
+                }
+            }
+        }
+    }
+
+}
@@ -1,84 +1,365 @@
 package com.fc.service;
 
+import com.fc.config.CacheConfig;
+import com.fc.event.ProductChangeType;
+import com.fc.event.ProductChangedEvent;
 import com.fc.exception.*;
 import com.fc.model.Product;
+import com.fc.model.ProductCatalogVersion;
+import com.fc.model.ProductFilter;
+import com.fc.model.ProductPage;
+import com.fc.model.ProductSort;
+import com.fc.model.ProductSummary;
+import com.fc.model.ProductSummaryPage;
 import com.fc.repository.ProductRepository;
+import com.fc.util.CursorUtil;
+import com.fc.util.ProductValidationUtil;
+import io.micrometer.core.instrument.Metrics;
 import lombok.extern.slf4j.Slf4j;
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.CachePut;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.ApplicationEventPublisherAware;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
 
 import java.math.BigDecimal;
-import java.time.Instant;
 import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
 
 @Slf4j
 @Service
-public class ProductService {
+public class ProductService implements ApplicationEventPublisherAware {
+
+    public static final int DEFAULT_PAGE_SIZE = 50;
+    public static final int MAX_PAGE_SIZE = 1000;
+
+    public static final String CONFLICT_METRIC = "fc.product.conflicts";
 
     private final ProductRepository productRepository;
 
+    private final int conflictMaxAttempts;
+
+    private final long conflictBackoffMillis;
+
+    // null unless the price changes are written behind (fc.product.price-write-behind.enabled)
+    private final ProductPriceWriteBehind priceWriteBehind;
+
+    private ApplicationEventPublisher eventPublisher = event -> { };
+
+    // the changes committed since the start, the epoch tells a restart (or another instance) apart
+    private final String epoch = Long.toString(System.currentTimeMillis(), Character.MAX_RADIX);
+
+    private final AtomicLong committedChanges = new AtomicLong();
+
     public ProductService(ProductRepository productRepository){
+        this(productRepository, 3, 10);
+    }
+
+    public ProductService(ProductRepository productRepository, int conflictMaxAttempts, long conflictBackoffMillis) {
+        this(productRepository, conflictMaxAttempts, conflictBackoffMillis, null);
+    }
+
+    @Autowired
+    public ProductService(ProductRepository productRepository,
+                          @Value("${fc.product.conflict-retry.max-attempts:3}") int conflictMaxAttempts,
+                          @Value("${fc.product.conflict-retry.backoff-millis:10}") long conflictBackoffMillis,
+                          @Nullable ProductPriceWriteBehind priceWriteBehind) {
         this.productRepository = productRepository;
+        this.conflictMaxAttempts = conflictMaxAttempts;
+        this.conflictBackoffMillis = conflictBackoffMillis;
+        this.priceWriteBehind = priceWriteBehind;
+    }
+
+    @Override
+    public void setApplicationEventPublisher(ApplicationEventPublisher eventPublisher) {
+        this.eventPublisher = eventPublisher;
     }
 
+    @CachePut(cacheNames = CacheConfig.PRODUCT_CACHE, key = "#result.id")
     public Product createNewProduct(Product newProduct) {
-        final String name = newProduct.getName();
-        if(name == null || name.isEmpty()){
-            log.warn("The product name was not provided.");
-            throw new ProductNameDoesNotProvidedException();
+        ProductValidationUtil.validateName(newProduct);
+
+        // the id is always generated, so the product is persisted without a select by id
+        newProduct.setId(null);
+        newProduct.setVersion(0);
+        return publish(ProductChangeType.CREATED, saveWithUniqueName(newProduct, productRepository::insert));
+    }
+
+    public List<Product> getAllProducts() {
+        List<Product> products = productRepository.findAll();
+        return priceWriteBehind == null ? products : priceWriteBehind.withPendingPrices(products);
+    }
+
+    public ProductCatalogVersion getCatalogVersion() {
+        final ProductCatalogVersion catalogVersion = productRepository.findCatalogVersion();
+        catalogVersion.setCommittedChanges(epoch + "-" + Long.toString(committedChanges.get(), Character.MAX_RADIX));
+        if (priceWriteBehind != null) {
+            catalogVersion.setBufferedPriceChanges(priceWriteBehind.getChangeCount());
         }
+        return catalogVersion;
+    }
 
-        if(productRepository.findByName(name) != null) {
-            log.warn("The product name already exists. Name: {}", name);
-            throw new ProductNameAlreadyExistsException(name);
+    /**
+     * Counts the committed changes for the catalog version. The update date of a product is stamped before its commit,
+     * so it cannot tell whether a catalog read before the commit is still current; this count can, and covers deletes.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        committedChanges.incrementAndGet();
+    }
+
+    public ProductPage getProductPage(String cursor, Integer limit) {
+        final int pageSize = limit == null || limit <= 0 ? DEFAULT_PAGE_SIZE : Math.min(limit, MAX_PAGE_SIZE);
+        final Long afterId = CursorUtil.decode(cursor);
+
+        // fetch one extra row to know if a next page exists without a count query
+        List<Product> products = productRepository.findByIdGreaterThanOrderByIdAsc(afterId, PageRequest.of(0, pageSize + 1));
+        if (priceWriteBehind != null) {
+            products = priceWriteBehind.withPendingPrices(products);
+        }
+        if (products.size() <= pageSize) {
+            return new ProductPage(products, null);
         }
 
-        return productRepository.save(newProduct);
+        List<Product> items = products.subList(0, pageSize);
+        return new ProductPage(items, CursorUtil.encode(items.get(pageSize - 1).getId()));
     }
 
-    public List<Product> getAllProducts() {
-        return productRepository.findAll();
+    /**
+     * Get one page of the listing columns of the products matching the filter, ordered by id or price.
+     * Like {@link #getProductPage} the page follows the keyset of the cursor, so its cost does not depend on the page number.
+     */
+    public ProductSummaryPage getProductSummaries(ProductFilter filter, String sort, String cursor, Integer limit) {
+        if (filter.getMinPrice() != null && filter.getMaxPrice() != null
+                && filter.getMinPrice().compareTo(filter.getMaxPrice()) > 0) {
+            throw new InvalidPriceRangeException(filter.getMinPrice(), filter.getMaxPrice());
+        }
+        final ProductSort productSort = ProductSort.of(sort);
+        final int pageSize = limit == null || limit <= 0 ? DEFAULT_PAGE_SIZE : Math.min(limit, MAX_PAGE_SIZE);
+
+        // the filter, the order and the cursor of a page by price use the written prices, so it also shows them
+        final boolean byPrice = productSort != ProductSort.ID || filter.getMinPrice() != null || filter.getMaxPrice() != null;
+
+        List<ProductSummary> products = productSort == ProductSort.ID
+                ? productRepository.findSummaries(filter, productSort, CursorUtil.decode(cursor), null, pageSize + 1)
+                : productRepository.findSummaries(filter, productSort, null, CursorUtil.decodePriceKey(cursor), pageSize + 1);
+        if (products.size() <= pageSize) {
+            return new ProductSummaryPage(byPrice ? products : withPendingSummaryPrices(products), null);
+        }
+
+        List<ProductSummary> items = products.subList(0, pageSize);
+        ProductSummary last = items.get(pageSize - 1);
+        return new ProductSummaryPage(byPrice ? items : withPendingSummaryPrices(items), productSort == ProductSort.ID
+                ? CursorUtil.encode(last.getId())
+                : CursorUtil.encode(last.getPrice(), last.getId()));
+    }
+
+    public void streamAllProducts(Consumer<Product> action) {
+        productRepository.streamAllOrderedById(priceWriteBehind == null ? action : priceWriteBehind.withPendingPrices(action));
     }
 
+    @Cacheable(cacheNames = CacheConfig.PRODUCT_CACHE, key = "#id")
     public Product getOneProduct(Long id){
         Product product = productRepository.findById(id)
                 .orElseThrow(() -> new ProductNotFoundException(id));
-        return product;
+        return priceWriteBehind == null ? product : priceWriteBehind.withPendingPrice(product);
     }
 
+    /**
+     * Update the product, or create it when the id does not exist. A concurrent change of the same product
+     * is retried (see {@link #retryOnConflict}), so the last update wins.
+     */
+    @CachePut(cacheNames = CacheConfig.PRODUCT_CACHE, key = "#result.id")
     public Product updateProduct(Product newProduct, Long id) {
+        flushPendingPrice(id);
+        return retryOnConflict("updateProduct", id, () -> writeProduct(newProduct, id, null));
+    }
+
+    /**
+     * Update the product only if it is still at the expected version (If-Match), otherwise
+     * {@link ProductVersionMismatchException} is thrown and nothing is retried.
+     */
+    @CachePut(cacheNames = CacheConfig.PRODUCT_CACHE, key = "#result.id")
+    public Product updateProduct(Product newProduct, Long id, long expectedVersion) {
+        flushPendingPrice(id);
+        return rejectOnConflict("updateProduct", id, expectedVersion, () -> writeProduct(newProduct, id, expectedVersion));
+    }
+
+    @CacheEvict(cacheNames = CacheConfig.PRODUCT_CACHE, key = "#id")
+    public void deleteProduct(Long id) {
+        flushPendingPrice(id);
+        productRepository.deleteAndRecordTombstone(id);
+        eventPublisher.publishEvent(new ProductChangedEvent(ProductChangeType.DELETED, id, null));
+    }
+
+    /**
+     * Change the price. With the price write-behind the new price is kept in memory and written by the next flush
+     * together with the other price changes (see {@link ProductPriceWriteBehind}), the product is only loaded
+     * for the first change after a flush.
+     */
+    @CachePut(cacheNames = CacheConfig.PRODUCT_CACHE, key = "#id")
+    public Product changePrice(Long id, BigDecimal price) {
+        ProductValidationUtil.validatePrice(id, price);
+
+        if (priceWriteBehind != null && priceWriteBehind.isAccepting()) {
+            return priceWriteBehind.changePrice(id, price, this::findProduct);
+        }
+        flushPendingPrice(id);
+        return retryOnConflict("changePrice", id, () -> writePrice(id, price, null));
+    }
+
+    @CachePut(cacheNames = CacheConfig.PRODUCT_CACHE, key = "#id")
+    public Product changePrice(Long id, BigDecimal price, long expectedVersion) {
+        ProductValidationUtil.validatePrice(id, price);
+
+        flushPendingPrice(id);
+        return rejectOnConflict("changePrice", id, expectedVersion, () -> writePrice(id, price, expectedVersion));
+    }
+
+    private Product writeProduct(Product newProduct, Long id, Long expectedVersion) {
         return productRepository.findById(id)
                 .map(product -> {
+                    checkVersion(product, expectedVersion);
+                    final boolean priceChanged = ProductValidationUtil.isPriceChanged(product.getPrice(), newProduct.getPrice());
                     product.setName(newProduct.getName());
                     product.setDescription(newProduct.getDescription());
                     product.setPrice(newProduct.getPrice());
-                    product.setUpdateDate(Instant.now());
-                    return productRepository.save(product);
+                    product.copyNutrients(newProduct);
+                    return publish(ProductChangeType.UPDATED, saveWithUniqueName(product,
+                            priceChanged ? productRepository::saveAndRecordPrice : productRepository::saveAndFlush));
                 })
                 .orElseGet(() -> {
-                    newProduct.setCreateDate(Instant.now());
-                    return productRepository.save(newProduct);
+                    if (expectedVersion != null) {
+                        throw new ProductVersionMismatchException(id, expectedVersion);
+                    }
+                    newProduct.setVersion(0);
+                    return publish(ProductChangeType.CREATED, saveWithUniqueName(newProduct, productRepository::saveAndRecordPrice));
                 });
     }
 
-    public void deleteProduct(Long id) {
-        productRepository.deleteById(id);
+    private Product writePrice(Long id, BigDecimal price, Long expectedVersion) {
+        return productRepository.findById(id).map(product -> {
+            checkVersion(product, expectedVersion);
+            product.setPrice(price);
+            return publish(ProductChangeType.PRICE_CHANGED, productRepository.saveAndRecordPrice(product));
+        }).orElseGet(() -> {
+            throw new ProductNotFoundException(id);
+        });
     }
 
-    public Product changePrice(Long id, BigDecimal price) {
-        if(price == null) {
-            throw new MissingMandatoryFieldException("The field price is mandatory!");
+    private Product findProduct(Long id) {
+        return productRepository.findById(id).orElseThrow(() -> new ProductNotFoundException(id));
+    }
+
+    // the pending price is written before the other writes of the product, so they are not overwritten by the flush
+    private void flushPendingPrice(Long id) {
+        if (priceWriteBehind != null) {
+            priceWriteBehind.flush(id);
         }
+    }
 
-        if(price.compareTo(BigDecimal.ZERO) == 0){
-            throw new PriceIsNotGreaterThanZeroException(id);
+    private List<ProductSummary> withPendingSummaryPrices(List<ProductSummary> summaries) {
+        return priceWriteBehind == null ? summaries : priceWriteBehind.withPendingSummaryPrices(summaries);
+    }
+
+    private static void checkVersion(Product product, Long expectedVersion) {
+        if (expectedVersion != null && product.getVersion() != expectedVersion) {
+            throw new ProductVersionMismatchException(product.getId(), expectedVersion);
         }
+    }
 
-        return productRepository.findById(id).map(product -> {
-            product.setPrice(price);
-            return productRepository.save(product);
-        }).orElseGet(() -> {
-            throw new ProductNotFoundException(id);
-        });
+    /**
+     * Run the read-modify-write again when the product was changed between the read and the write.
+     * The attempts wait a random time up to an exponentially growing bound (full jitter),
+     * so the competing writers do not retry in lockstep.
+     */
+    private Product retryOnConflict(String operation, Long id, Supplier<Product> write) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return write.get();
+            } catch (OptimisticLockingFailureException e) {
+                if (attempt >= conflictMaxAttempts) {
+                    countConflict(operation, "exhausted");
+                    log.warn("The product {} could not be saved after {} attempts because of concurrent changes", id, attempt);
+                    throw new ProductUpdateConflictException(id, attempt);
+                }
+                countConflict(operation, "retried");
+                backOff(id, attempt);
+            }
+        }
+    }
+
+    private Product rejectOnConflict(String operation, Long id, long expectedVersion, Supplier<Product> write) {
+        try {
+            return write.get();
+        } catch (ProductVersionMismatchException e) {
+            countConflict(operation, "rejected");
+            throw e;
+        } catch (OptimisticLockingFailureException e) {
+            // changed between the version check and the write
+            countConflict(operation, "rejected");
+            throw new ProductVersionMismatchException(id, expectedVersion);
+        }
+    }
+
+    private void backOff(Long id, int attempt) {
+        final long maxDelay = conflictBackoffMillis << Math.min(attempt - 1, 10);
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(maxDelay + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ProductUpdateConflictException(id, attempt);
+        }
+    }
+
+    private static void countConflict(String operation, String outcome) {
+        Metrics.counter(CONFLICT_METRIC, "operation", operation, "outcome", outcome).increment();
+    }
+
+    private Product publish(ProductChangeType changeType, Product product) {
+        eventPublisher.publishEvent(ProductChangedEvent.of(changeType, product));
+        return product;
+    }
+
+    /**
+     * Save the product and rely on the unique name index instead of checking the name up front.
+     * The check and the insert are one statement, so concurrent saves with the same name cannot both succeed.
+     */
+    private Product saveWithUniqueName(Product product, UnaryOperator<Product> save) {
+        try {
+            return save.apply(product);
+        } catch (DataIntegrityViolationException e) {
+            if (isUniqueNameViolation(e)) {
+                log.warn("The product name already exists. Name: {}", product.getName());
+                throw new ProductNameAlreadyExistsException(product.getName());
+            }
+            throw e;
+        }
+    }
+
+    static boolean isUniqueNameViolation(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConstraintViolationException) {
+                final String constraintName = ((ConstraintViolationException) cause).getConstraintName();
+                return constraintName != null
+                        && constraintName.toLowerCase(Locale.ROOT).contains(Product.UNIQUE_NAME_CONSTRAINT);
+            }
+        }
+        return false;
     }
 
 }
@@ -0,0 +1,157 @@
+package com.fc.service;
+
+import com.fc.model.Product;
+import com.fc.repository.ProductRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Rebuilds an in-memory view of the products (the nutrient snapshot, the search index) from the database while the
+ * current view keeps serving the reads and receiving the changes.
+ * <p>
+ * One rebuild runs at a time. The changes applied to the current view while a rebuild reads the database are recorded
+ * and applied again on the rebuilt view before it is installed, under the write lock of the owner. A rebuild which
+ * fails keeps the current view. The rebuilds requested by the bulk changes run on a background thread, the requests
+ * which arrive before it starts are coalesced into it.
+ */
+@Slf4j
+final class ProductViewRebuilder<V extends ProductViewRebuilder.View> {
+
+    private final String name;
+
+    private final ProductRepository productRepository;
+
+    // the lock of the owner, which guards its view and the recorded changes
+    private final ReadWriteLock lock;
+
+    private final Supplier<V> emptyView;
+
+    private final Consumer<V> installer;
+
+    private final ReentrantLock rebuildLock = new ReentrantLock();
+
+    private final AtomicBoolean requested = new AtomicBoolean();
+
+    private final ExecutorService executor;
+
+    // in the order they were applied to the current view
+    private List<Consumer<V>> pendingChanges;
+
+    /**
+     * @param installer replaces the view of the owner, called under the write lock
+     */
+    ProductViewRebuilder(String name, ProductRepository productRepository, ReadWriteLock lock,
+                         Supplier<V> emptyView, Consumer<V> installer) {
+        this.name = name;
+        this.productRepository = productRepository;
+        this.lock = lock;
+        this.emptyView = emptyView;
+        this.installer = installer;
+        this.executor = Executors.newSingleThreadExecutor(new CustomizableThreadFactory(name.replace(' ', '-') + "-rebuild-"));
+    }
+
+    /**
+     * Rebuild the view now, after the rebuild which is running.
+     */
+    void rebuild() {
+        rebuildLock.lock();
+        try {
+            lock.writeLock().lock();
+            try {
+                pendingChanges = new ArrayList<>();
+            } finally {
+                lock.writeLock().unlock();
+            }
+
+            final V rebuiltView = emptyView.get();
+            boolean read = false;
+            try {
+                productRepository.streamAllOrderedById(rebuiltView::upsert);
+                read = true;
+            } finally {
+                lock.writeLock().lock();
+                try {
+                    if (read) {
+                        pendingChanges.forEach(change -> change.accept(rebuiltView));
+                        installer.accept(rebuiltView);
+                    }
+                    pendingChanges = null;
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+            log.info("The {} was built with {} products", name, rebuiltView.size());
+        } finally {
+            rebuildLock.unlock();
+        }
+    }
+
+    /**
+     * Rebuild the view on the background thread; a rebuild which is requested but not started yet covers the request.
+     */
+    void requestRebuild() {
+        if (!requested.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                // a change committed from now on is read by this rebuild or requests the next one
+                requested.set(false);
+                try {
+                    rebuild();
+                } catch (RuntimeException e) {
+                    log.error("The {} could not be rebuilt, the current one is kept", name, e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            requested.set(false);
+            log.warn("The {} is not rebuilt during the shutdown", name);
+        }
+    }
+
+    /**
+     * Record the change applied to the current view for the running rebuild; called under the write lock.
+     */
+    void recordUpsert(Product product) {
+        recordChange(view -> view.upsert(product));
+    }
+
+    void recordRemoval(Long id) {
+        recordChange(view -> view.remove(id));
+    }
+
+    /**
+     * Record a change which is not an upsert or a removal, e.g. the new prices of a bulk price change.
+     */
+    void recordChange(Consumer<V> change) {
+        if (pendingChanges != null) {
+            pendingChanges.add(change);
+        }
+    }
+
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    interface View {
+
+        void upsert(Product product);
+
+        void remove(Long id);
+
+        int size();
+
+    }
+
+}
@@ -8,4 +8,12 @@ public final class AuthUtil {
     public static final String ADMIN_ROLE_ONLY = "hasRole('ADMIN')";
     public static final String ANY_ROLE = "hasAnyRole('USER', 'ADMIN')";
 
+    public static final String ADMIN_AUTHORITY = "ROLE_ADMIN";
+
+    // default write rate limits of one principal by role, see RateLimitConfig; overridden by the fc.rate-limit.* properties
+    public static final int ADMIN_WRITES_PER_SECOND = 50;
+    public static final int ADMIN_WRITE_BURST = 100;
+    public static final int USER_WRITES_PER_SECOND = 5;
+    public static final int USER_WRITE_BURST = 10;
+
 }
@@ -0,0 +1,108 @@
+package com.fc.util;
+
+import com.fc.exception.InvalidCursorException;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Utility class which encodes / decodes the opaque cursor tokens used by the keyset pagination.
+ * The token wraps the last id of the previous page, or its last price and id when the page is ordered by price.
+ * The delta sync watermark wraps the last change time and id.
+ */
+public final class CursorUtil {
+
+    private static final char KEY_SEPARATOR = ':';
+
+    private CursorUtil() {
+    }
+
+    public static String encode(Long lastId) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(lastId.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static Long decode(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return 0L;
+        }
+        try {
+            return Long.valueOf(new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8));
+        } catch (IllegalArgumentException e) {
+            throw new InvalidCursorException(cursor);
+        }
+    }
+
+    public static String encode(BigDecimal lastPrice, Long lastId) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((lastPrice.toPlainString() + KEY_SEPARATOR + lastId).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decode the cursor of a page ordered by price, null when there is no cursor (the first page).
+     */
+    public static PriceKey decodePriceKey(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return null;
+        }
+        try {
+            final String key = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            final int separator = key.indexOf(KEY_SEPARATOR);
+            if (separator < 0) {
+                throw new InvalidCursorException(cursor);
+            }
+            return new PriceKey(new BigDecimal(key.substring(0, separator)), Long.valueOf(key.substring(separator + 1)));
+        } catch (IllegalArgumentException e) {
+            throw new InvalidCursorException(cursor);
+        }
+    }
+
+    public static String encode(Instant lastTime, Long lastId) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((lastTime.toString() + KEY_SEPARATOR + lastId).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decode a delta sync watermark, null when there is no watermark (the first sync).
+     */
+    public static TimeKey decodeTimeKey(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return null;
+        }
+        try {
+            final String key = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            // the ISO time contains the separator, the id follows the last one
+            final int separator = key.lastIndexOf(KEY_SEPARATOR);
+            if (separator < 0) {
+                throw new InvalidCursorException(cursor);
+            }
+            return new TimeKey(Instant.parse(key.substring(0, separator)), Long.valueOf(key.substring(separator + 1)));
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new InvalidCursorException(cursor);
+        }
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class TimeKey {
+
+        private final Instant time;
+        private final Long id;
+
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class PriceKey {
+
+        private final BigDecimal price;
+        private final Long id;
+
+    }
+
+}
@@ -0,0 +1,68 @@
+package com.fc.util;
+
+import com.fc.model.Product;
+import com.fc.model.ProductCatalogVersion;
+
+import java.time.Instant;
+
+/**
+ * Utility class which builds the ETags of the product responses, so a conditional request can be answered
+ * without serializing the products. A product has a strong ETag from its version, which is also used by If-Match;
+ * the catalog has a weak ETag from the number of products, the last update date, the committed changes and the
+ * buffered price changes.
+ */
+public final class ETagUtil {
+
+    private ETagUtil() {
+    }
+
+    private static final long NO_VERSION = -1;
+
+    public static String of(Product product) {
+        return "\"" + product.getVersion() + "\"";
+    }
+
+    /**
+     * The product version expected by an If-Match header, null when the header is absent or {@code *}.
+     * A weak or unknown ETag never matches (-1), as If-Match uses the strong comparison.
+     */
+    public static Long versionOf(String ifMatch) {
+        if (ifMatch == null || ifMatch.isBlank() || "*".equals(ifMatch.trim())) {
+            return null;
+        }
+        final String eTag = ifMatch.trim();
+        if (eTag.length() < 3 || !eTag.startsWith("\"") || !eTag.endsWith("\"")) {
+            return NO_VERSION;
+        }
+        try {
+            return Long.valueOf(eTag.substring(1, eTag.length() - 1));
+        } catch (NumberFormatException e) {
+            return NO_VERSION;
+        }
+    }
+
+    public static String of(ProductCatalogVersion catalogVersion) {
+        if (catalogVersion == null) {
+            return null;
+        }
+        final long lastModified = catalogVersion.getLastModified() == null ? 0 : catalogVersion.getLastModified().toEpochMilli();
+        String version = Long.toHexString(catalogVersion.getCount()) + "-" + Long.toHexString(lastModified);
+        if (catalogVersion.getCommittedChanges() != null) {
+            version += "-" + catalogVersion.getCommittedChanges();
+        }
+        return weak(catalogVersion.getBufferedPriceChanges() == 0 ? version
+                : version + "-" + Long.toHexString(catalogVersion.getBufferedPriceChanges()));
+    }
+
+    /**
+     * The update date, or the create date for the products which were never updated by an older version.
+     */
+    public static Instant lastModified(Product product) {
+        return product.getUpdateDate() != null ? product.getUpdateDate() : product.getCreateDate();
+    }
+
+    private static String weak(String version) {
+        return "W/\"" + version + "\"";
+    }
+
+}
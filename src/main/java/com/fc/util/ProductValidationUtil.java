@@ -0,0 +1,39 @@
+package com.fc.util;
+
+import com.fc.exception.MissingMandatoryFieldException;
+import com.fc.exception.PriceIsNotGreaterThanZeroException;
+import com.fc.exception.ProductNameDoesNotProvidedException;
+import com.fc.model.Product;
+
+import java.math.BigDecimal;
+
+/**
+ * Utility class with the validation rules of the product writes, shared by the blocking and the reactive product API.
+ */
+public final class ProductValidationUtil {
+
+    private ProductValidationUtil() {
+    }
+
+    public static void validateName(Product product) {
+        final String name = product.getName();
+        if (name == null || name.isEmpty()) {
+            throw new ProductNameDoesNotProvidedException();
+        }
+    }
+
+    public static void validatePrice(Long id, BigDecimal price) {
+        if (price == null) {
+            throw new MissingMandatoryFieldException("The field price is mandatory!");
+        }
+
+        if (price.compareTo(BigDecimal.ZERO) == 0) {
+            throw new PriceIsNotGreaterThanZeroException(id);
+        }
+    }
+
+    public static boolean isPriceChanged(BigDecimal price, BigDecimal newPrice) {
+        return newPrice != null && (price == null || price.compareTo(newPrice) != 0);
+    }
+
+}
@@ -0,0 +1,59 @@
+-- The schema of the `faststart` profile, which does not let Hibernate create or update it (see
+-- application-faststart.properties). Every statement is idempotent, the script runs at every start of the profile.
+-- Keep it in line with the entities: FastStartSchemaTests validates the mapping against it.
+
+create sequence if not exists product_seq start with 1 increment by 50;
+create sequence if not exists hibernate_sequence start with 1 increment by 1;
+
+create table if not exists product (
+    id bigint not null,
+    name varchar(255),
+    description varchar(255),
+    price decimal(19,2),
+    product_type integer,
+    calories double,
+    protein double,
+    carbohydrates double,
+    fat double,
+    sugar double,
+    fiber double,
+    create_date timestamp,
+    update_date timestamp,
+    version bigint default 0 not null,
+    primary key (id),
+    constraint uk_product_name unique (name)
+);
+create index if not exists idx_product_update_date_id on product (update_date, id);
+create index if not exists idx_product_type_price on product (product_type, price, id);
+create index if not exists idx_product_price on product (price, id);
+
+create table if not exists product_price_history (
+    id bigint generated by default as identity,
+    product_id bigint not null,
+    price decimal(19,2) not null,
+    valid_from timestamp not null,
+    primary key (id)
+);
+create index if not exists idx_product_price_history_product_valid_from on product_price_history (product_id, valid_from);
+
+create table if not exists product_tombstone (
+    product_id bigint not null,
+    deleted_date timestamp not null,
+    primary key (product_id)
+);
+create index if not exists idx_product_tombstone_deleted_date on product_tombstone (deleted_date, product_id);
+
+create table if not exists product_import (
+    id bigint not null,
+    file_name varchar(255),
+    format varchar(255),
+    status varchar(255),
+    committed_offset bigint not null,
+    created_count bigint not null,
+    updated_count bigint not null,
+    failed_count bigint not null,
+    message varchar(255),
+    create_date timestamp,
+    update_date timestamp,
+    primary key (id)
+);
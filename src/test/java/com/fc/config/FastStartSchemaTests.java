@@ -0,0 +1,41 @@
+package com.fc.config;
+
+import com.fc.model.Product;
+import com.fc.service.ProductPriceHistoryService;
+import com.fc.service.ProductService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+
+import static com.fc.utils.ProductTestUtils.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The `faststart` profile on an empty database: the shipped schema script creates the schema, and Hibernate
+ * validates the mapping against it.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE, properties = {
+        "spring.datasource.url=jdbc:h2:mem:faststart;DB_CLOSE_DELAY=-1",
+        "spring.jpa.hibernate.ddl-auto=validate"
+})
+@ActiveProfiles("faststart")
+public class FastStartSchemaTests {
+
+    @Autowired
+    ProductService productService;
+
+    @Autowired
+    ProductPriceHistoryService productPriceHistoryService;
+
+    @Test
+    void shouldCreateTheSchemaMatchingTheMapping() {
+        Product product = productService.createNewProduct(createDummyProduct(null, "apple", "apple", BigDecimal.ONE));
+
+        assertEquals("apple", productService.getOneProduct(product.getId()).getName());
+        assertEquals(1, productPriceHistoryService.getPriceHistory(product.getId(), null, null, null, null).getItems().size());
+    }
+
+}
@@ -0,0 +1,154 @@
+package com.fc.config;
+
+import com.fc.exception.IdempotencyKeyInProgressException;
+import com.fc.exception.IdempotencyKeyMismatchException;
+import com.fc.exception.InvalidIdempotencyKeyException;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IdempotencyStoreTests {
+
+    private final AtomicLong now = new AtomicLong();
+
+    private final IdempotencyStore store = new IdempotencyStore(100, Duration.ofHours(1), Duration.ofSeconds(5), now::get);
+
+    private final AtomicInteger executions = new AtomicInteger();
+
+    @Test
+    void shouldReplayTheResultOfTheFirstRequest() {
+        IdempotencyStore.Result<Integer> first = store.execute("admin:create", "key", "body", executions::incrementAndGet);
+        IdempotencyStore.Result<Integer> retry = store.execute("admin:create", "key", "body", executions::incrementAndGet);
+
+        assertEquals(1, first.getValue());
+        assertFalse(first.isReplayed());
+        assertEquals(1, retry.getValue());
+        assertTrue(retry.isReplayed());
+        assertEquals(1, executions.get());
+    }
+
+    @Test
+    void shouldRunEveryRequestWithoutKey() {
+        store.execute("admin:create", null, null, executions::incrementAndGet);
+        store.execute("admin:create", null, null, executions::incrementAndGet);
+
+        assertEquals(2, executions.get());
+    }
+
+    @Test
+    void shouldKeepTheKeysOfEveryScopeSeparately() {
+        store.execute("admin:create", "key", "body", executions::incrementAndGet);
+        IdempotencyStore.Result<Integer> other = store.execute("user:create", "key", "body", executions::incrementAndGet);
+
+        assertEquals(2, other.getValue());
+        assertFalse(other.isReplayed());
+    }
+
+    @Test
+    void shouldRejectTheKeyOfADifferentRequest() {
+        store.execute("admin:create", "key", "body", executions::incrementAndGet);
+
+        assertThrows(IdempotencyKeyMismatchException.class,
+                () -> store.execute("admin:create", "key", "other body", executions::incrementAndGet));
+        assertEquals(1, executions.get());
+    }
+
+    @Test
+    void shouldRejectInvalidKeys() {
+        assertThrows(InvalidIdempotencyKeyException.class, () -> store.execute("admin:create", " ", "body", executions::incrementAndGet));
+        assertThrows(InvalidIdempotencyKeyException.class,
+                () -> store.execute("admin:create", "k".repeat(IdempotencyStore.MAX_KEY_LENGTH + 1), "body", executions::incrementAndGet));
+        assertEquals(0, executions.get());
+    }
+
+    @Test
+    void shouldRunTheRequestAgainAfterAFailure() {
+        assertThrows(IllegalStateException.class, () -> store.execute("admin:create", "key", "body", () -> {
+            throw new IllegalStateException("failed");
+        }));
+
+        IdempotencyStore.Result<Integer> retry = store.execute("admin:create", "key", "body", executions::incrementAndGet);
+
+        assertEquals(1, retry.getValue());
+        assertFalse(retry.isReplayed());
+    }
+
+    @Test
+    void shouldRunTheRequestAgainAfterTheTtl() {
+        store.execute("admin:create", "key", "body", executions::incrementAndGet);
+
+        now.addAndGet(TimeUnit.HOURS.toNanos(1) + 1);
+
+        assertFalse(store.execute("admin:create", "key", "body", executions::incrementAndGet).isReplayed());
+        assertEquals(2, executions.get());
+    }
+
+    @Test
+    void shouldCoalesceTheDuplicatesOntoTheRunningRequest() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<IdempotencyStore.Result<Integer>> first = CompletableFuture.supplyAsync(
+                () -> store.execute("admin:create", "key", "body", () -> {
+                    started.countDown();
+                    await(release);
+                    return executions.incrementAndGet();
+                }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        CompletableFuture<IdempotencyStore.Result<Integer>> duplicate = CompletableFuture.supplyAsync(
+                () -> store.execute("admin:create", "key", "body", executions::incrementAndGet));
+        release.countDown();
+
+        assertEquals(1, first.get(5, TimeUnit.SECONDS).getValue());
+        assertEquals(1, duplicate.get(5, TimeUnit.SECONDS).getValue());
+        assertTrue(duplicate.get().isReplayed());
+        assertEquals(1, executions.get());
+    }
+
+    @Test
+    void shouldRejectTheDuplicateWhichWaitedLongerThanTheTimeout() throws Exception {
+        IdempotencyStore store = new IdempotencyStore(100, Duration.ofHours(1), Duration.ofMillis(50), now::get);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<IdempotencyStore.Result<Integer>> first = CompletableFuture.supplyAsync(
+                () -> store.execute("admin:create", "key", "body", () -> {
+                    started.countDown();
+                    await(release);
+                    return executions.incrementAndGet();
+                }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        assertThrows(IdempotencyKeyInProgressException.class,
+                () -> store.execute("admin:create", "key", "body", executions::incrementAndGet));
+
+        release.countDown();
+        assertEquals(1, first.get(5, TimeUnit.SECONDS).getValue());
+    }
+
+    @Test
+    void shouldEvictTheKeysAboveTheMaxSize() {
+        IdempotencyStore store = new IdempotencyStore(10, Duration.ofHours(1), Duration.ofSeconds(5), now::get);
+
+        for (int i = 0; i < 100; i++) {
+            store.execute("admin:create", "key-" + i, "body", executions::incrementAndGet);
+        }
+
+        assertTrue(store.size() <= 10);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+}
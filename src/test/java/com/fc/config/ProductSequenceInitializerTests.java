@@ -0,0 +1,52 @@
+package com.fc.config;
+
+import com.fc.model.Product;
+import com.fc.repository.ProductRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.math.BigDecimal;
+
+import static com.fc.utils.ProductTestUtils.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@Import(ProductSequenceInitializer.class)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+public class ProductSequenceInitializerTests {
+
+    @Autowired
+    ProductSequenceInitializer productSequenceInitializer;
+
+    @Autowired
+    ProductRepository productRepository;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Test
+    void shouldAllocateTheIdsAboveTheExistingProducts() {
+        // a product of an older version, its id was not allocated from the sequence
+        jdbcTemplate.update("insert into product (id, name, price, version) values (1000, 'old', 1.00, 0)");
+
+        productSequenceInitializer.afterPropertiesSet();
+
+        Product saved = productRepository.saveAndFlush(createDummyProduct("new", "desc", BigDecimal.ONE));
+        assertTrue(saved.getId() > 1000);
+    }
+
+    @Test
+    void shouldKeepTheSequenceAboveTheExistingProducts() {
+        Long first = productRepository.saveAndFlush(createDummyProduct("first", "desc", BigDecimal.ONE)).getId();
+
+        productSequenceInitializer.afterPropertiesSet();
+
+        Long second = productRepository.saveAndFlush(createDummyProduct("second", "desc", BigDecimal.ONE)).getId();
+        assertTrue(second > first);
+    }
+
+}
@@ -0,0 +1,51 @@
+package com.fc.config;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RateLimiterTests {
+
+    private final AtomicLong now = new AtomicLong(TimeUnit.SECONDS.toNanos(100));
+
+    private final RateLimiter rateLimiter = new RateLimiter(now::get);
+
+    @Test
+    void shouldAllowTheBurstAndThenOneCallPerInterval() {
+        RateLimiter.Limit limit = new RateLimiter.Limit(10, 3);
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, rateLimiter.tryAcquire("admin", limit));
+        }
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(100), rateLimiter.tryAcquire("admin", limit));
+
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(100));
+        assertEquals(0, rateLimiter.tryAcquire("admin", limit));
+        assertTrue(rateLimiter.tryAcquire("admin", limit) > 0);
+    }
+
+    @Test
+    void shouldLimitEveryKeySeparately() {
+        RateLimiter.Limit limit = new RateLimiter.Limit(1, 1);
+
+        assertEquals(0, rateLimiter.tryAcquire("admin", limit));
+        assertTrue(rateLimiter.tryAcquire("admin", limit) > 0);
+        assertEquals(0, rateLimiter.tryAcquire("other", limit));
+    }
+
+    @Test
+    void shouldNotSaveUnusedTokensBeyondTheBurst() {
+        RateLimiter.Limit limit = new RateLimiter.Limit(10, 2);
+        assertEquals(0, rateLimiter.tryAcquire("admin", limit));
+
+        now.addAndGet(TimeUnit.HOURS.toNanos(1));
+
+        assertEquals(0, rateLimiter.tryAcquire("admin", limit));
+        assertEquals(0, rateLimiter.tryAcquire("admin", limit));
+        assertTrue(rateLimiter.tryAcquire("admin", limit) > 0);
+    }
+
+}
@@ -0,0 +1,57 @@
+package com.fc.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.context.metrics.buffering.BufferingApplicationStartup;
+import org.springframework.boot.context.metrics.buffering.StartupTimeline;
+import org.springframework.core.metrics.StartupStep;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StartupReportTests {
+
+    @Test
+    void shouldReportThePhasesAndTheOwnTimeOfTheBeans() throws InterruptedException {
+        BufferingApplicationStartup startup = new BufferingApplicationStartup(100);
+        StartupStep refresh = startup.start("spring.context.refresh");
+        StartupStep service = startup.start(StartupReport.BEAN_STEP).tag("beanName", "productService");
+        StartupStep repository = startup.start(StartupReport.BEAN_STEP).tag("beanName", "productRepository");
+        Thread.sleep(50);
+        repository.end();
+        service.end();
+        refresh.end();
+        StartupTimeline timeline = startup.getBufferedTimeline();
+
+        StartupReport.Summary summary = StartupReport.summarize(timeline, timeline.getStartTime().minusMillis(100), Instant.now(), 10);
+
+        assertEquals(List.of(StartupReport.JVM_PHASE, "spring.context.refresh", StartupReport.TOTAL_PHASE),
+                summary.getPhases().stream().map(StartupReport.Phase::getName).collect(Collectors.toList()));
+        assertEquals(Duration.ofMillis(100), summary.getPhases().get(0).getDuration());
+        assertEquals(List.of("productRepository", "productService"),
+                summary.getBeans().stream().map(StartupReport.Bean::getName).collect(Collectors.toList()));
+        StartupReport.Bean serviceBean = summary.getBeans().get(1);
+        // the repository was created as a dependency of the service
+        assertTrue(serviceBean.getTotal().toMillis() >= 50);
+        assertTrue(serviceBean.getSelf().compareTo(summary.getBeans().get(0).getSelf()) < 0);
+        assertThat(summary.format()).contains("spring.context.refresh", "productRepository");
+    }
+
+    @Test
+    void shouldReportOnlyTheSlowestBeans() {
+        BufferingApplicationStartup startup = new BufferingApplicationStartup(100);
+        for (int i = 0; i < 5; i++) {
+            startup.start(StartupReport.BEAN_STEP).tag("beanName", "bean" + i).end();
+        }
+        StartupTimeline timeline = startup.getBufferedTimeline();
+
+        StartupReport.Summary summary = StartupReport.summarize(timeline, timeline.getStartTime(), Instant.now(), 2);
+
+        assertEquals(2, summary.getBeans().size());
+    }
+
+}
@@ -0,0 +1,76 @@
+package com.fc.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fc.model.Product;
+import com.fc.model.ProductBatchResult;
+import com.fc.model.ProductBatchStatus;
+import com.fc.service.ProductBatchService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static com.fc.utils.ProductTestUtils.*;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(ProductBatchController.class)
+public class ProductBatchControllerTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    ProductBatchService productBatchService;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @Test
+    @WithMockUser(username = "user")
+    public void shouldForbiddenBatchRequestForUserRole() throws Exception {
+        String json = objectMapper.writeValueAsString(List.of(createDummyProduct("apple", "apple", new BigDecimal(10))));
+
+        mockMvc.perform(
+                post("/products/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(json)
+                        .with(SecurityMockMvcRequestPostProcessors.csrf())
+        )
+                .andExpect(status().isForbidden());
+    }
+
+    @Test
+    @WithMockUser(username = "admin", roles = {"ADMIN"})
+    public void shouldReturnResultPerItemWhenCreateTheProducts() throws Exception {
+        List<Product> products = List.of(
+                createDummyProduct("apple", "apple", new BigDecimal(10)),
+                createDummyProduct(null, "pear", new BigDecimal(12))
+        );
+        when(productBatchService.createOrUpdateProducts(anyList())).thenReturn(List.of(
+                new ProductBatchResult(0, 1L, "apple", ProductBatchStatus.CREATED, null),
+                new ProductBatchResult(1, null, null, ProductBatchStatus.FAILED, "The product name was not provided.")
+        ));
+
+        mockMvc.perform(
+                post("/products/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(products))
+                        .with(SecurityMockMvcRequestPostProcessors.csrf())
+        )
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].status", is("CREATED")))
+                .andExpect(jsonPath("$[1].status", is("FAILED")));
+    }
+
+}
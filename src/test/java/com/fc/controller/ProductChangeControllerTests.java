@@ -0,0 +1,58 @@
+package com.fc.controller;
+
+import com.fc.service.ProductChangeFeed;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest(ProductChangeController.class)
+public class ProductChangeControllerTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    ProductChangeFeed productChangeFeed;
+
+    @Test
+    public void shouldRejectSubscribingWhenUserIsAnonymous() throws Exception {
+        mockMvc.perform(get("/products/changes").accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    @WithMockUser(username = "user")
+    public void shouldResumeTheChangesAfterTheLastEventId() throws Exception {
+        when(productChangeFeed.subscribe("l9x0k2a1-41")).thenReturn(new SseEmitter());
+
+        mockMvc.perform(get("/products/changes")
+                .header("Last-Event-ID", "l9x0k2a1-41")
+                .accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(request().asyncStarted());
+
+        verify(productChangeFeed).subscribe("l9x0k2a1-41");
+    }
+
+    @Test
+    @WithMockUser(username = "user")
+    public void shouldSubscribeToTheFutureChangesWithoutLastEventId() throws Exception {
+        when(productChangeFeed.subscribe(null)).thenReturn(new SseEmitter());
+
+        mockMvc.perform(get("/products/changes").accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(request().asyncStarted());
+
+        verify(productChangeFeed).subscribe(null);
+    }
+
+}
@@ -1,9 +1,19 @@
 package com.fc.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import com.fc.exception.PriceIsNotGreaterThanZeroException;
+import com.fc.exception.ProductVersionMismatchException;
 import com.fc.model.Product;
+import com.fc.model.ProductCatalogVersion;
+import com.fc.model.ProductFilter;
+import com.fc.model.ProductPage;
 import com.fc.model.ProductPriceChangeDTO;
+import com.fc.model.ProductSummary;
+import com.fc.model.ProductSummaryPage;
+import com.fc.model.ProductType;
 import com.fc.service.ProductService;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -13,12 +23,24 @@ import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
 import java.math.BigDecimal;
+import java.time.Instant;
 import java.util.List;
+import java.util.function.Consumer;
 
 import static com.fc.utils.ProductTestUtils.*;
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -72,6 +94,28 @@ public class ProductControllerTests {
                 .andExpect(jsonPath("name", is("apple")));
     }
 
+    @Test
+    @WithMockUser(username = "user")
+    public void shouldReturnTheProductsInTheBinaryFormatOfTheAcceptHeader() throws Exception {
+        when(productService.getAllProducts()).thenReturn(List.of(createDummyProduct("apple", "apple", new BigDecimal("10.50"))));
+        ObjectMapper cborMapper = new ObjectMapper(new CBORFactory()).registerModule(new JavaTimeModule());
+
+        for (MediaType mediaType : List.of(MediaType.APPLICATION_CBOR, new MediaType("application", "x-jackson-smile"))) {
+            MvcResult result = mockMvc.perform(get("/products").accept(mediaType))
+                    .andExpect(status().isOk())
+                    .andExpect(content().contentTypeCompatibleWith(mediaType))
+                    .andExpect(header().string("Vary", containsString("Accept")))
+                    .andReturn();
+
+            ObjectMapper mapper = mediaType.equals(MediaType.APPLICATION_CBOR)
+                    ? cborMapper
+                    : new ObjectMapper(new SmileFactory()).registerModule(new JavaTimeModule());
+            Product[] products = mapper.readValue(result.getResponse().getContentAsByteArray(), Product[].class);
+            assertEquals("apple", products[0].getName());
+            assertEquals(new BigDecimal("10.50"), products[0].getPrice());
+        }
+    }
+
     @Test
     @WithMockUser(username = "user")
     public void shouldForbiddenRequestForPostEndPointForUserRole() throws Exception {
@@ -215,4 +259,217 @@ public class ProductControllerTests {
         ;
     }
 
+    @Test
+    @WithMockUser(username = "user")
+    public void shouldReturnProductPageWhenCallGetAllProductsWithLimit() throws Exception {
+        ProductPage page = new ProductPage(List.of(createDummyProduct("apple", "apple", new BigDecimal(10))), null);
+        when(productService.getProductPage(null, 1)).thenReturn(page);
+
+        mockMvc.perform(
+                get("/products")
+                        .param("limit", "1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .with(SecurityMockMvcRequestPostProcessors.csrf())
+        )
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("items[0].name", is("apple")))
+                .andExpect(jsonPath("nextCursor", is(nullValue())));
+    }
+
+    @Test
+    @WithMockUser(username = "user")
+    public void shouldFollowTheCursorWhenCallGetProductsWithCursorOnly() throws Exception {
+        when(productService.getProductSummaries(eq(new ProductFilter(null, null, null)), isNull(), eq("next"), isNull()))
+                .thenReturn(new ProductSummaryPage(List.of(new ProductSummary(8L, "pear", BigDecimal.ONE, ProductType.SOFT)), null));
+
+        mockMvc.perform(
+                get("/products")
+                        .param("cursor", "next")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .with(SecurityMockMvcRequestPostProcessors.csrf())
+        )
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("items[0].name", is("pear")))
+                .andExpect(jsonPath("nextCursor", is(nullValue())));
+        verify(productService, times(0)).getAllProducts();
+    }
+
+    @Test
+    @WithMockUser(username = "user")
+    public void shouldReturnTheProductSummariesWhenCallGetProductsWithFilters() throws Exception {
+        ProductFilter filter = new ProductFilter(ProductType.SOFT, BigDecimal.ONE, new BigDecimal("5.50"));
+        when(productService.getProductSummaries(eq(filter), eq("price,desc"), isNull(), eq(10))).thenReturn(new ProductSummaryPage(
+                List.of(new ProductSummary(7L, "apple", new BigDecimal("5.50"), ProductType.SOFT)), "next"));
+
+        mockMvc.perform(
+                get("/products")
+                        .param("type", "SOFT")
+                        .param("minPrice", "1")
+                        .param("maxPrice", "5.50")
+                        .param("sort", "price,desc")
+                        .param("limit", "10")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .with(SecurityMockMvcRequestPostProcessors.csrf())
+        )
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("items[0].name", is("apple")))
+                .andExpect(jsonPath("items[0].productType", is("SOFT")))
+                .andExpect(jsonPath("items[0].description").doesNotExist())
+                .andExpect(jsonPath("nextCursor", is("next")));
+        verify(productService, times(0)).getProductPage(any(), any());
+    }
+
+    @Test
+    @WithMockUser(username = "user")
+    @SuppressWarnings("unchecked")
+    public void shouldStreamAllProductsAsJsonArray() throws Exception {
+        doAnswer(invocation -> {
+            Consumer<Product> action = invocation.getArgument(0);
+            action.accept(createDummyProduct("apple", "apple", new BigDecimal(10)));
+            action.accept(createDummyProduct("pear", "pear", new BigDecimal(12)));
+            return null;
+        }).when(productService).streamAllProducts(any(Consumer.class));
+
+        MvcResult result = mockMvc.perform(
+                get("/products/stream")
+                        .with(SecurityMockMvcRequestPostProcessors.csrf())
+        )
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$[0].name", is("apple")))
+                .andExpect(jsonPath("$[1].name", is("pear")));
+    }
+
+    @Test
+    @WithMockUser(username = "user")
+    public void shouldReturnNotModifiedWhenTheProductETagMatches() throws Exception {
+        Product product = createDummyProduct(1L, "apple", "apple", new BigDecimal(10));
+        product.setUpdateDate(Instant.parse("2023-01-02T03:04:05.678Z"));
+        when(productService.getOneProduct(1L)).thenReturn(product);
+
+        String eTag = mockMvc.perform(get("/products/1"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Last-Modified", "Mon, 02 Jan 2023 03:04:05 GMT"))
+                .andReturn().getResponse().getHeader("ETag");
+
+        mockMvc.perform(get("/products/1").header("If-None-Match", eTag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+
+        mockMvc.perform(get("/products/1").header("If-Modified-Since", "Mon, 02 Jan 2023 03:04:05 GMT"))
+                .andExpect(status().isNotModified());
+
+        product.setVersion(1);
+        mockMvc.perform(get("/products/1").header("If-None-Match", eTag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("name", is("apple")));
+    }
+
+    @Test
+    @WithMockUser(username = "admin", roles = {"ADMIN"})
+    public void shouldUpdateTheProductAtTheVersionOfTheIfMatchHeader() throws Exception {
+        Product product = createDummyProduct("apple", "apple desc", new BigDecimal(100));
+        Product updatedProduct = createDummyProduct(1L, "apple", "apple desc", new BigDecimal(100));
+        updatedProduct.setVersion(4);
+        when(productService.updateProduct(product, 1L, 3L)).thenReturn(updatedProduct);
+
+        mockMvc.perform(
+                put("/products/1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(product))
+                        .header("If-Match", "\"3\"")
+                        .with(SecurityMockMvcRequestPostProcessors.csrf())
+        )
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"4\""))
+                .andExpect(jsonPath("version", is(4)));
+    }
+
+    @Test
+    @WithMockUser(username = "admin", roles = {"ADMIN"})
+    public void shouldRejectPriceChangeWhenTheIfMatchVersionIsStale() throws Exception {
+        ProductPriceChangeDTO priceChange = new ProductPriceChangeDTO(1L, BigDecimal.TEN);
+        when(productService.changePrice(1L, BigDecimal.TEN, 3L)).thenThrow(new ProductVersionMismatchException(1L, 3L));
+
+        mockMvc.perform(
+                post("/products/priceChange")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(priceChange))
+                        .header("If-Match", "\"3\"")
+                        .with(SecurityMockMvcRequestPostProcessors.csrf())
+        )
+                .andExpect(status().isPreconditionFailed());
+    }
+
+    @Test
+    @WithMockUser(username = "admin", roles = {"ADMIN"})
+    public void shouldReplayThePriceChangeWhenTheIdempotencyKeyIsRepeated() throws Exception {
+        ProductPriceChangeDTO priceChange = new ProductPriceChangeDTO(1L, BigDecimal.TEN);
+        Product product = createDummyProduct("apple", "apple desc", new BigDecimal(10));
+        product.setVersion(4);
+        when(productService.changePrice(1L, BigDecimal.TEN)).thenReturn(product);
+
+        for (int i = 0; i < 2; i++) {
+            mockMvc.perform(
+                    post("/products/priceChange")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsString(priceChange))
+                            .header("Idempotency-Key", "price-change-replay")
+                            .with(SecurityMockMvcRequestPostProcessors.csrf())
+            )
+                    .andExpect(status().isOk())
+                    .andExpect(header().string("ETag", "\"4\""))
+                    .andExpect(jsonPath("price", is(10)));
+        }
+
+        verify(productService, times(1)).changePrice(1L, BigDecimal.TEN);
+    }
+
+    @Test
+    @WithMockUser(username = "admin", roles = {"ADMIN"})
+    public void shouldRejectTheIdempotencyKeyOfAnotherRequest() throws Exception {
+        when(productService.changePrice(any(), any())).thenReturn(createDummyProduct("apple", "apple desc", new BigDecimal(10)));
+
+        mockMvc.perform(
+                post("/products/priceChange")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new ProductPriceChangeDTO(1L, BigDecimal.TEN)))
+                        .header("Idempotency-Key", "price-change-mismatch")
+                        .with(SecurityMockMvcRequestPostProcessors.csrf())
+        )
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("Idempotent-Replayed"));
+
+        mockMvc.perform(
+                post("/products/priceChange")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new ProductPriceChangeDTO(1L, BigDecimal.ONE)))
+                        .header("Idempotency-Key", "price-change-mismatch")
+                        .with(SecurityMockMvcRequestPostProcessors.csrf())
+        )
+                .andExpect(status().isUnprocessableEntity());
+    }
+
+    @Test
+    @WithMockUser(username = "user")
+    public void shouldNotLoadTheProductsWhenTheCatalogETagMatches() throws Exception {
+        when(productService.getCatalogVersion()).thenReturn(new ProductCatalogVersion(1, Instant.parse("2023-01-02T03:04:05Z")));
+        when(productService.getAllProducts()).thenReturn(List.of(createDummyProduct("apple", "apple", new BigDecimal(10))));
+
+        String eTag = mockMvc.perform(get("/products"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].name", is("apple")))
+                .andReturn().getResponse().getHeader("ETag");
+
+        mockMvc.perform(get("/products").header("If-None-Match", eTag))
+                .andExpect(status().isNotModified());
+
+        verify(productService, times(1)).getAllProducts();
+    }
+
 }
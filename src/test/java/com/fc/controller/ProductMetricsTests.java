@@ -0,0 +1,39 @@
+package com.fc.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.metrics.AutoConfigureMetrics;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:metrics")
+@AutoConfigureMockMvc
+@AutoConfigureMetrics
+public class ProductMetricsTests {
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Test
+    @WithMockUser(roles = "ADMIN")
+    void shouldPublishTheRequestServiceAndRepositoryTimers() throws Exception {
+        mockMvc.perform(get("/products/{id}", 404L))
+                .andExpect(status().isNotFound());
+
+        mockMvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString(
+                        "http_server_requests_seconds_bucket{exception=\"ProductNotFoundException\",method=\"GET\",outcome=\"CLIENT_ERROR\",status=\"404\",uri=\"/products/{id}\"")))
+                .andExpect(content().string(containsString(
+                        "fc_service_invocations_seconds_bucket{class=\"ProductService\",exception=\"ProductNotFoundException\",method=\"getOneProduct\",outcome=\"ERROR\"")))
+                .andExpect(content().string(containsString(
+                        "spring_data_repository_invocations_seconds_bucket{exception=\"None\",method=\"findById\",repository=\"ProductRepository\",state=\"SUCCESS\"")));
+    }
+
+}
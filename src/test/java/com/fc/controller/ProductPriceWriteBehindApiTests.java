@@ -0,0 +1,136 @@
+package com.fc.controller;
+
+import com.fc.model.Product;
+import com.fc.repository.ProductPriceHistoryRepository;
+import com.fc.repository.ProductRepository;
+import com.fc.service.ProductPriceWriteBehind;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.math.BigDecimal;
+
+import static com.fc.utils.ProductTestUtils.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * The conditional requests while the price changes are buffered by the write-behind.
+ */
+@SpringBootTest(properties = {"spring.datasource.url=jdbc:h2:mem:write-behind",
+        "fc.product.price-write-behind.enabled=true",
+        // the tests flush explicitly
+        "fc.product.price-write-behind.flush-interval-millis=3600000",
+        "fc.product.price-write-behind.max-staleness-millis=7200000"})
+@AutoConfigureMockMvc
+@WithMockUser(roles = "ADMIN")
+public class ProductPriceWriteBehindApiTests {
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Autowired
+    ProductRepository productRepository;
+
+    @Autowired
+    ProductPriceHistoryRepository productPriceHistoryRepository;
+
+    @Autowired
+    ProductPriceWriteBehind priceWriteBehind;
+
+    Long productId;
+
+    @BeforeEach
+    void init() {
+        productId = productRepository.save(createDummyProduct(null, "apple", "desc", BigDecimal.ONE)).getId();
+    }
+
+    @AfterEach
+    void destroyAll() {
+        priceWriteBehind.flush();
+        productRepository.deleteAll();
+        productPriceHistoryRepository.deleteAll();
+    }
+
+    @Test
+    void shouldChangeTheETagOfTheProductWithEveryBufferedPrice() throws Exception {
+        String eTag = getProduct(null, "1.00");
+
+        changePrice("2.00", null);
+        String firstChange = getProduct(eTag, "2.00");
+        changePrice("3.00", null);
+        String secondChange = getProduct(firstChange, "3.00");
+
+        mockMvc.perform(get("/products/{id}", productId).header(HttpHeaders.IF_NONE_MATCH, secondChange))
+                .andExpect(status().isNotModified());
+        assertNotEquals(eTag, firstChange);
+        assertNotEquals(firstChange, secondChange);
+    }
+
+    @Test
+    void shouldChangeTheETagOfTheCatalogWithEveryBufferedPrice() throws Exception {
+        String eTag = getCatalog(null);
+
+        changePrice("2.00", null);
+        String firstChange = getCatalog(eTag);
+        changePrice("3.00", null);
+        String secondChange = getCatalog(firstChange);
+
+        mockMvc.perform(get("/products").header(HttpHeaders.IF_NONE_MATCH, secondChange))
+                .andExpect(status().isNotModified());
+    }
+
+    @Test
+    void shouldRejectTheETagOfAnOlderBufferedPrice() throws Exception {
+        String older = changePrice("2.00", null);
+        String latest = changePrice("3.00", null);
+
+        // the update flushes the pending price, the older ETag does not match the written version
+        mockMvc.perform(put("/products/{id}", productId)
+                        .header(HttpHeaders.IF_MATCH, older)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"name\":\"apple\",\"description\":\"desc\",\"price\":5}"))
+                .andExpect(status().isPreconditionFailed());
+        assertEquals(0, new BigDecimal("3.00").compareTo(productRepository.findById(productId).orElseThrow().getPrice()));
+
+        changePrice("4.00", latest);
+        Product written = productRepository.findById(productId).orElseThrow();
+        assertEquals(0, new BigDecimal("4.00").compareTo(written.getPrice()));
+    }
+
+    private String getProduct(String ifNoneMatch, String expectedPrice) throws Exception {
+        return mockMvc.perform(ifNoneMatch == null ? get("/products/{id}", productId)
+                        : get("/products/{id}", productId).header(HttpHeaders.IF_NONE_MATCH, ifNoneMatch))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.price").value(Double.parseDouble(expectedPrice)))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+    }
+
+    private String getCatalog(String ifNoneMatch) throws Exception {
+        return mockMvc.perform(ifNoneMatch == null ? get("/products") : get("/products").header(HttpHeaders.IF_NONE_MATCH, ifNoneMatch))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+    }
+
+    private String changePrice(String price, String ifMatch) throws Exception {
+        return mockMvc.perform(ifMatch == null ? priceChange(price) : priceChange(price).header(HttpHeaders.IF_MATCH, ifMatch))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+    }
+
+    private MockHttpServletRequestBuilder priceChange(String price) {
+        return post("/products/priceChange")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"id\":" + productId + ",\"price\":" + price + "}");
+    }
+
+}
@@ -0,0 +1,47 @@
+package com.fc.controller;
+
+import com.fc.service.ProductService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.math.BigDecimal;
+
+import static com.fc.utils.ProductTestUtils.*;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(ProductController.class)
+@TestPropertySource(properties = {"fc.rate-limit.admin.writes-per-second=1", "fc.rate-limit.admin.burst=2"})
+public class ProductRateLimitTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    ProductService productService;
+
+    @Test
+    @WithMockUser(username = "admin", roles = {"ADMIN"})
+    public void shouldThrottleTheWritesOfAPrincipalAboveTheLimitOfItsRole() throws Exception {
+        mockMvc.perform(delete("/products/1")).andExpect(status().isOk());
+        mockMvc.perform(delete("/products/1")).andExpect(status().isOk());
+
+        mockMvc.perform(delete("/products/1"))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string("Retry-After", "1"));
+        verify(productService, times(2)).deleteProduct(1L);
+
+        // the reads are not limited
+        when(productService.getOneProduct(1L)).thenReturn(createDummyProduct(1L, "apple", "apple", BigDecimal.ONE));
+        mockMvc.perform(get("/products/1")).andExpect(status().isOk());
+    }
+
+}
@@ -0,0 +1,217 @@
+package com.fc.embedded;
+
+import com.fc.model.Product;
+import com.fc.model.ProductType;
+import com.fc.repository.ProductPriceHistoryRepository;
+import com.fc.repository.ProductTombstoneRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.IncorrectResultSizeDataAccessException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Example;
+import org.springframework.data.domain.ExampleMatcher;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mapping.PropertyReferenceException;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static com.fc.utils.ProductTestUtils.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+public class EmbeddedProductRepositoryTests {
+
+    @TempDir
+    Path directory;
+
+    private EmbeddedProductRepository repository;
+
+    @AfterEach
+    void close() throws IOException {
+        if (repository != null) {
+            repository.destroy();
+        }
+    }
+
+    @Test
+    void shouldRecoverTheProductsFromTheSnapshotAndTheLog() throws IOException {
+        repository = open();
+        Product apple = repository.insert(createDummyProduct(null, "apple", "desc", BigDecimal.ONE));
+        Product pear = repository.insert(createDummyProduct(null, "pear", "desc", BigDecimal.TEN));
+        repository.compact();
+
+        // written after the snapshot, only in the log
+        apple.setPrice(new BigDecimal("2.50"));
+        repository.saveAndRecordPrice(apple);
+        repository.deleteById(pear.getId());
+        repository.insert(createDummyProduct(null, "plum", "desc", BigDecimal.ONE));
+        recoverAfterCrash();
+
+        assertEquals(List.of("apple", "plum"), names(repository.findAll()));
+        Product recovered = repository.findById(apple.getId()).orElseThrow();
+        assertEquals(new BigDecimal("2.50"), recovered.getPrice());
+        assertEquals(1, recovered.getVersion());
+        assertEquals(apple.getUpdateDate(), recovered.getUpdateDate());
+        // the id of the deleted product is not allocated again
+        assertEquals(pear.getId() + 2, repository.insert(createDummyProduct(null, "fig", "desc", null)).getId());
+    }
+
+    @Test
+    void shouldSkipTheTornRecordAtTheEndOfTheLog() throws IOException {
+        repository = open();
+        repository.insert(createDummyProduct(null, "apple", "desc", BigDecimal.ONE));
+        repository.destroy();
+        repository = null;
+        try (Stream<Path> files = Files.list(storage())) {
+            Path log = files.filter(file -> file.getFileName().toString().startsWith("log-")).max(Path::compareTo).orElseThrow();
+            Files.write(log, "1a2b3c {\"operation\":\"PUT\",\"id\":7,\"prod".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        }
+
+        repository = open();
+
+        assertEquals(List.of("apple"), names(repository.findAll()));
+    }
+
+    @Test
+    void shouldRejectTheStaleVersionAndTheDuplicatedName() throws IOException {
+        repository = open();
+        Product apple = repository.insert(createDummyProduct(null, "apple", "desc", BigDecimal.ONE));
+        Product stale = repository.findById(apple.getId()).orElseThrow();
+        apple.setDescription("green apple");
+        repository.save(apple);
+
+        stale.setDescription("red apple");
+        assertThrows(OptimisticLockingFailureException.class, () -> repository.save(stale));
+        assertThrows(DataIntegrityViolationException.class, () ->
+                repository.insert(createDummyProduct(null, "apple", "desc", BigDecimal.ONE)));
+        assertEquals("green apple", repository.findByName("apple").getDescription());
+        assertEquals(1, repository.count());
+    }
+
+    @Test
+    void shouldMultiplyThePricesOfTheType() throws IOException {
+        repository = open();
+        repository.insert(createDummyProduct(null, "apple", "desc", new BigDecimal(3)));
+        repository.insert(createDummyProduct(null, "pear", "desc", BigDecimal.ONE));
+        Product milk = createDummyProduct(null, "milk", "desc", new BigDecimal(2));
+        milk.setProductType(ProductType.SOFT);
+        repository.insert(milk);
+
+        assertEquals(2, repository.multiplyPrices(ProductType.HARD, new BigDecimal("1.5"), Product.currentTimestamp(), 0L, 10L));
+
+        assertEquals(new BigDecimal("4.50"), repository.findByName("apple").getPrice());
+        assertEquals(new BigDecimal(2), repository.findByName("milk").getPrice());
+    }
+
+    @Test
+    void shouldChangeThePricesAndReportTheMissingIds() throws IOException {
+        repository = open();
+        Product apple = repository.insert(createDummyProduct(null, "apple", "desc", BigDecimal.ONE));
+
+        assertEquals(List.of(404L), repository.changePrices(Map.of(apple.getId(), new BigDecimal("2.50"), 404L, BigDecimal.TEN),
+                Map.of(apple.getId(), 3, 404L, 1)));
+
+        Product changed = repository.findById(apple.getId()).orElseThrow();
+        assertEquals(new BigDecimal("2.50"), changed.getPrice());
+        assertEquals(apple.getVersion() + 3, changed.getVersion());
+    }
+
+    @Test
+    void shouldSortAndPageTheProducts() throws IOException {
+        repository = open();
+        repository.insert(createDummyProduct(null, "apple", "desc", new BigDecimal(3)));
+        repository.insert(createDummyProduct(null, "Pear", "desc", BigDecimal.ONE));
+        repository.insert(createDummyProduct(null, "fig", "desc", null));
+
+        assertEquals(List.of("fig", "Pear", "apple"), names(repository.findAll(Sort.by(Sort.Direction.DESC, "id"))));
+        assertEquals(List.of("fig", "Pear", "apple"), names(repository.findAll(Sort.by("price"))));
+        assertEquals(List.of("apple", "Pear", "fig"), names(repository.findAll(Sort.by(Sort.Order.desc("price").nullsLast()))));
+        assertEquals(List.of("apple", "fig", "Pear"), names(repository.findAll(Sort.by(Sort.Order.asc("name").ignoreCase()))));
+
+        Page<Product> page = repository.findAll(PageRequest.of(1, 2, Sort.by("name")));
+        assertEquals(List.of("fig"), names(page.getContent()));
+        assertEquals(3, page.getTotalElements());
+        assertThrows(PropertyReferenceException.class, () -> repository.findAll(Sort.by("color")));
+    }
+
+    @Test
+    void shouldFindTheProductsMatchingTheExample() throws IOException {
+        repository = open();
+        repository.insert(createDummyProduct(null, "green apple", "desc", new BigDecimal("3.00")));
+        Product redApple = repository.insert(createDummyProduct(null, "red apple", "other", BigDecimal.ONE));
+        repository.insert(createDummyProduct(null, "pear", "desc", BigDecimal.ONE));
+        repository.saveAndRecordPrice(redApple);
+
+        Product probe = probe();
+        probe.setDescription("desc");
+        ExampleMatcher ignoreVersion = ExampleMatcher.matching().withIgnorePaths("version");
+        assertEquals(List.of("green apple", "pear"), names(repository.findAll(Example.of(probe, ignoreVersion))));
+
+        probe.setPrice(new BigDecimal(3));
+        assertEquals("green apple", repository.findOne(Example.of(probe, ignoreVersion)).orElseThrow().getName());
+
+        Product apples = probe();
+        apples.setName("APPLE");
+        Example<Product> containing = Example.of(apples, ignoreVersion.withIgnoreCase().withStringMatcher(ExampleMatcher.StringMatcher.ENDING));
+        assertEquals(2, repository.count(containing));
+        assertEquals(List.of("red apple", "green apple"), names(repository.findAll(containing, Sort.by("price", "id"))));
+        assertEquals("red apple", repository.findBy(containing, query -> query.sortBy(Sort.by("name").descending()).firstValue()).getName());
+        assertThrows(IncorrectResultSizeDataAccessException.class, () -> repository.findOne(containing));
+        // the primitive version of the probe is matched like in the JPA repository
+        assertEquals(List.of("green apple"), names(repository.findAll(Example.of(apples,
+                ExampleMatcher.matching().withIgnoreCase().withStringMatcher(ExampleMatcher.StringMatcher.ENDING)))));
+    }
+
+    // the files as they are after the writes; a regular shutdown would compact the log into a snapshot
+    private void recoverAfterCrash() throws IOException {
+        final Path crashed = directory.resolve("crashed");
+        Files.createDirectories(crashed);
+        try (Stream<Path> files = Files.list(storage())) {
+            for (Path file : files.collect(Collectors.toList())) {
+                Files.copy(file, crashed.resolve(file.getFileName()));
+            }
+        }
+        repository.destroy();
+        repository = open(crashed);
+    }
+
+    private EmbeddedProductRepository open() throws IOException {
+        return open(storage());
+    }
+
+    private EmbeddedProductRepository open(Path storage) throws IOException {
+        return new EmbeddedProductRepository(new EmbeddedProductStore(storage), mock(ProductPriceHistoryRepository.class),
+                mock(ProductTombstoneRepository.class), 0, 300, 100000);
+    }
+
+    private Path storage() {
+        return directory.resolve("storage");
+    }
+
+    // a product without any value but the primitive version
+    private static Product probe() {
+        Product probe = createDummyProduct(null, null, null, null);
+        probe.setProductType(null);
+        probe.setCreateDate(null);
+        probe.setUpdateDate(null);
+        return probe;
+    }
+
+    private static List<String> names(List<Product> products) {
+        return products.stream().map(Product::getName).collect(Collectors.toList());
+    }
+
+}
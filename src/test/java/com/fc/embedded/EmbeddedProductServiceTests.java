@@ -0,0 +1,16 @@
+package com.fc.embedded;
+
+import com.fc.service.ProductServiceTests;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+
+/**
+ * The product service tests with the embedded storage instead of the JPA product repository.
+ */
+@DataJpaTest(properties = "fc.embedded.directory=target/embedded-tests/${random.uuid}")
+@ActiveProfiles(EmbeddedConfig.PROFILE)
+@Import(EmbeddedConfig.class)
+public class EmbeddedProductServiceTests extends ProductServiceTests {
+
+}
@@ -0,0 +1,115 @@
+package com.fc.reactive;
+
+import com.fc.model.Product;
+import com.fc.model.ProductPriceChangeDTO;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.math.BigDecimal;
+
+import static com.fc.utils.ProductTestUtils.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "spring.main.web-application-type=reactive",
+        "spring.datasource.url=jdbc:h2:mem:reactive;DB_CLOSE_DELAY=-1",
+        "fc.reactive.r2dbc.url=r2dbc:h2:mem:///reactive;DB_CLOSE_DELAY=-1"})
+@ActiveProfiles(ReactiveConfig.PROFILE)
+@AutoConfigureWebTestClient
+public class ReactiveProductApiTests {
+
+    @Autowired
+    WebTestClient webTestClient;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void init() {
+        jdbcTemplate.update("delete from product_price_history");
+        jdbcTemplate.update("delete from product_tombstone");
+        jdbcTemplate.update("delete from product");
+    }
+
+    @Test
+    void shouldCreateReadAndUpdateTheProductWithOptimisticConcurrency() {
+        Product product = admin().post().uri("/products")
+                .bodyValue(createDummyProduct("apple", "apple", BigDecimal.ONE))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(Product.class).returnResult().getResponseBody();
+        assertNotNull(product.getId());
+        assertEquals(0, product.getVersion());
+
+        user().get().uri("/products/{id}", product.getId())
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals("ETag", "\"0\"")
+                .expectBody().jsonPath("$.name").isEqualTo("apple");
+
+        admin().put().uri("/products/{id}", product.getId())
+                .header("If-Match", "\"0\"")
+                .bodyValue(createDummyProduct("apple", "green apple", BigDecimal.TEN))
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals("ETag", "\"1\"");
+
+        admin().post().uri("/products/priceChange")
+                .header("If-Match", "\"0\"")
+                .bodyValue(new ProductPriceChangeDTO(product.getId(), new BigDecimal(5)))
+                .exchange()
+                .expectStatus().isEqualTo(412);
+
+        admin().post().uri("/products/priceChange")
+                .bodyValue(new ProductPriceChangeDTO(product.getId(), new BigDecimal(5)))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody().jsonPath("$.version").isEqualTo(2);
+
+        // the initial price, the update and the price change
+        assertEquals(3, jdbcTemplate.queryForObject("select count(*) from product_price_history where product_id = ?", Integer.class, product.getId()));
+
+        admin().delete().uri("/products/{id}", product.getId())
+                .exchange()
+                .expectStatus().isOk();
+        assertEquals(1, jdbcTemplate.queryForObject("select count(*) from product_tombstone where product_id = ?", Integer.class, product.getId()));
+    }
+
+    @Test
+    void shouldApplyTheValidationRulesOfTheBlockingApi() {
+        admin().post().uri("/products")
+                .bodyValue(createDummyProduct(null, "no name", BigDecimal.ONE))
+                .exchange()
+                .expectStatus().isBadRequest();
+
+        admin().post().uri("/products").bodyValue(createDummyProduct("pear", "pear", BigDecimal.ONE)).exchange().expectStatus().isOk();
+        admin().post().uri("/products")
+                .bodyValue(createDummyProduct("pear", "another pear", BigDecimal.ONE))
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody(String.class).isEqualTo("The product name already exists. Please change the name: pear");
+
+        admin().post().uri("/products/priceChange")
+                .bodyValue(new ProductPriceChangeDTO(1L, BigDecimal.ZERO))
+                .exchange()
+                .expectStatus().isBadRequest();
+
+        user().get().uri("/products/{id}", 404L).exchange().expectStatus().isNotFound();
+        user().post().uri("/products").bodyValue(createDummyProduct("plum", "plum", BigDecimal.ONE)).exchange().expectStatus().isForbidden();
+    }
+
+    private WebTestClient admin() {
+        return webTestClient.mutate().defaultHeaders(headers -> headers.setBasicAuth("admin", "123")).build();
+    }
+
+    private WebTestClient user() {
+        return webTestClient.mutate().defaultHeaders(headers -> headers.setBasicAuth("user", "123")).build();
+    }
+
+}
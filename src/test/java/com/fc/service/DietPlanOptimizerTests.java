@@ -0,0 +1,154 @@
+package com.fc.service;
+
+import com.fc.exception.DietPlanNotFoundException;
+import com.fc.exception.InvalidDietPlanException;
+import com.fc.exception.MissingMandatoryFieldException;
+import com.fc.model.DietPlan;
+import com.fc.model.DietPlanRequestDTO;
+import com.fc.model.Product;
+import com.fc.repository.ProductRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import static com.fc.utils.ProductTestUtils.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+
+@ExtendWith(MockitoExtension.class)
+public class DietPlanOptimizerTests {
+
+    @Mock
+    ProductRepository productRepository;
+
+    DietPlanOptimizer dietPlanOptimizer;
+
+    @BeforeEach
+    void init() {
+        dietPlanOptimizer = optimizer(consumer -> {
+            consumer.accept(createDummyProduct(1L, "rice", "0.20", 360.0, 7.0, 0.6));
+            consumer.accept(createDummyProduct(2L, "chicken", "1.00", 165.0, 31.0, 3.6));
+            consumer.accept(createDummyProduct(3L, "cheese", "1.50", 400.0, 25.0, 33.0));
+            // without a price, never a candidate
+            consumer.accept(createDummyProduct(4L, "sample", null, 500.0, 50.0, 0.0));
+        });
+    }
+
+    @AfterEach
+    void destroy() {
+        dietPlanOptimizer.destroy();
+    }
+
+    @Test
+    void shouldFindTheCheapestCombination() {
+        DietPlan plan = dietPlanOptimizer.optimize(request(500.0, 900.0, 40.0));
+
+        assertTrue(plan.isOptimalForCandidates());
+        assertEquals("rice:200.0,chicken:100.0", itemsOf(plan));
+        assertEquals(0, new BigDecimal("1.40").compareTo(plan.getTotals().getCost()));
+        assertEquals(885.0, plan.getTotals().getCalories());
+        assertEquals(45.0, plan.getTotals().getProtein());
+        assertEquals(3, plan.getCandidates());
+    }
+
+    @Test
+    void shouldSkipTheExcludedProducts() {
+        DietPlanRequestDTO request = request(500.0, 900.0, 40.0);
+        request.setExcludedProductIds(List.of(2L));
+
+        DietPlan plan = dietPlanOptimizer.optimize(request);
+
+        assertEquals("cheese:200.0", itemsOf(plan));
+        assertEquals(0, new BigDecimal("3.00").compareTo(plan.getItems().get(0).getCost()));
+    }
+
+    @Test
+    void shouldRejectTheTargetsWithoutASolution() {
+        DietPlanRequestDTO fatLimited = request(500.0, 900.0, 40.0);
+        fatLimited.setMaxFat(4.0);
+        assertThrows(DietPlanNotFoundException.class, () -> dietPlanOptimizer.optimize(fatLimited));
+
+        DietPlanRequestDTO singleProduct = request(500.0, 900.0, 500.0);
+        singleProduct.setMaxProducts(1);
+        assertThrows(DietPlanNotFoundException.class, () -> dietPlanOptimizer.optimize(singleProduct));
+    }
+
+    @Test
+    void shouldValidateTheRequest() {
+        assertThrows(MissingMandatoryFieldException.class, () -> dietPlanOptimizer.optimize(new DietPlanRequestDTO()));
+        assertThrows(InvalidDietPlanException.class, () -> dietPlanOptimizer.optimize(request(900.0, 500.0, null)));
+
+        DietPlanRequestDTO portions = request(500.0, 900.0, null);
+        portions.setMinPortion(200);
+        portions.setMaxPortion(100);
+        assertThrows(InvalidDietPlanException.class, () -> dietPlanOptimizer.optimize(portions));
+
+        DietPlanRequestDTO products = request(500.0, 900.0, null);
+        products.setMaxProducts(DietPlanOptimizer.MAX_PRODUCTS + 1);
+        assertThrows(InvalidDietPlanException.class, () -> dietPlanOptimizer.optimize(products));
+    }
+
+    @Test
+    void shouldReturnAPlanOfALargeCatalogWithinTheTimeBudget() {
+        dietPlanOptimizer.destroy();
+        Random random = new Random(42);
+        dietPlanOptimizer = optimizer(consumer -> {
+            for (long id = 1; id <= 100_000; id++) {
+                consumer.accept(createDummyProduct(id, "product" + id, BigDecimal.valueOf(10 + random.nextInt(2000), 2).toPlainString(),
+                        20.0 + random.nextInt(600), (double) random.nextInt(40), (double) random.nextInt(50)));
+            }
+        });
+        DietPlanRequestDTO request = request(1800.0, 2200.0, 120.0);
+        request.setMaxFat(70.0);
+        request.setMinPortion(50);
+        request.setMaxPortion(400);
+        request.setPortionStep(50);
+        request.setTimeBudgetMillis(300L);
+
+        DietPlan plan = dietPlanOptimizer.optimize(request);
+
+        assertTrue(plan.getTotals().getCalories() >= 1800 && plan.getTotals().getCalories() <= 2200);
+        assertTrue(plan.getTotals().getProtein() >= 120);
+        assertTrue(plan.getTotals().getFat() <= 70);
+        assertTrue(plan.getItems().size() <= request.getMaxProducts());
+        assertTrue(plan.getElapsedMillis() < 5_000);
+    }
+
+    private DietPlanOptimizer optimizer(Consumer<Consumer<Product>> products) {
+        doAnswer(invocation -> {
+            products.accept(invocation.getArgument(0));
+            return null;
+        }).when(productRepository).streamAllOrderedById(any());
+
+        ProductNutrientSnapshot productNutrientSnapshot = new ProductNutrientSnapshot(productRepository);
+        productNutrientSnapshot.rebuild();
+        return new DietPlanOptimizer(productNutrientSnapshot, 50, 500, 5000, 0);
+    }
+
+    private static DietPlanRequestDTO request(Double minCalories, Double maxCalories, Double minProtein) {
+        DietPlanRequestDTO request = new DietPlanRequestDTO();
+        request.setMinCalories(minCalories);
+        request.setMaxCalories(maxCalories);
+        request.setMinProtein(minProtein);
+        request.setMinPortion(100);
+        request.setMaxPortion(300);
+        request.setPortionStep(100);
+        request.setMaxProducts(2);
+        return request;
+    }
+
+    private static String itemsOf(DietPlan plan) {
+        return plan.getItems().stream().map(item -> item.getName() + ":" + item.getQuantity()).collect(Collectors.joining(","));
+    }
+
+}
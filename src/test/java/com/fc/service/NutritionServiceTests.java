@@ -0,0 +1,86 @@
+package com.fc.service;
+
+import com.fc.exception.InvalidRecipeException;
+import com.fc.exception.MissingMandatoryFieldException;
+import com.fc.model.NutritionTotals;
+import com.fc.model.Product;
+import com.fc.model.RecipeDTO;
+import com.fc.model.RecipeItemDTO;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static com.fc.utils.ProductTestUtils.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class NutritionServiceTests {
+
+    @Mock
+    ProductService productService;
+
+    NutritionService nutritionService;
+
+    @BeforeEach
+    void init() {
+        nutritionService = new NutritionService(productService);
+    }
+
+    @Test
+    void shouldReturnTheTotalsOfTheRecipe() {
+        Product oats = createDummyProduct(1L, "oats", "oats", new BigDecimal("0.50"));
+        oats.setCalories(380.0);
+        oats.setProtein(13.0);
+        oats.setCarbohydrates(60.0);
+        oats.setFat(7.0);
+        Product milk = createDummyProduct(2L, "milk", "milk", new BigDecimal("0.10"));
+        milk.setCalories(64.0);
+        milk.setProtein(3.4);
+        milk.setSugar(4.8);
+        when(productService.getOneProduct(1L)).thenReturn(oats);
+        when(productService.getOneProduct(2L)).thenReturn(milk);
+
+        NutritionTotals totals = nutritionService.calculate(new RecipeDTO("porridge", List.of(
+                new RecipeItemDTO(1L, 50),
+                new RecipeItemDTO(2L, 200),
+                new RecipeItemDTO(1L, 10)
+        )));
+
+        assertEquals(260, totals.getQuantity());
+        assertEquals(356, totals.getCalories());
+        assertEquals(14.6, totals.getProtein());
+        assertEquals(36, totals.getCarbohydrates());
+        assertEquals(4.2, totals.getFat());
+        assertEquals(9.6, totals.getSugar());
+        assertEquals(0, totals.getFiber());
+        assertEquals(new BigDecimal("0.50"), totals.getCost());
+        verify(productService, times(1)).getOneProduct(1L);
+    }
+
+    @Test
+    void shouldReturnMissingMandatoryFieldExceptionWhenTheRecipeHasNoItems() {
+        MissingMandatoryFieldException exception = assertThrows(MissingMandatoryFieldException.class, () -> {
+            nutritionService.calculate(new RecipeDTO("empty", List.of()));
+        });
+
+        assertEquals(MissingMandatoryFieldException.class, exception.getClass());
+    }
+
+    @Test
+    void shouldReturnInvalidRecipeExceptionWhenTheQuantityIsNotGreaterThanZero() {
+        InvalidRecipeException exception = assertThrows(InvalidRecipeException.class, () -> {
+            nutritionService.calculate(new RecipeDTO("invalid", List.of(new RecipeItemDTO(1L, 0))));
+        });
+
+        assertEquals(InvalidRecipeException.class, exception.getClass());
+    }
+
+}
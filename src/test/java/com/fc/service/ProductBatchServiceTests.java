@@ -0,0 +1,149 @@
+package com.fc.service;
+
+import com.fc.config.CacheConfig;
+import com.fc.exception.BatchSizeExceededException;
+import com.fc.exception.InvalidPriceChangeException;
+import com.fc.model.Product;
+import com.fc.model.ProductBatchResult;
+import com.fc.model.ProductBatchStatus;
+import com.fc.model.ProductPriceBatchResult;
+import com.fc.model.ProductPriceChangeDTO;
+import com.fc.model.ProductPriceHistory;
+import com.fc.model.ProductPriceRuleDTO;
+import com.fc.model.ProductType;
+import com.fc.repository.ProductPriceHistoryRepository;
+import com.fc.repository.ProductRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static com.fc.utils.ProductTestUtils.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@Import({CacheConfig.class, ProductBatchService.class})
+@TestPropertySource(properties = {"fc.batch.chunk-size=2", "fc.batch.max-size=5"})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class ProductBatchServiceTests {
+
+    @Autowired
+    ProductBatchService productBatchService;
+
+    @Autowired
+    ProductRepository productRepository;
+
+    @Autowired
+    ProductPriceHistoryRepository productPriceHistoryRepository;
+
+    @BeforeEach
+    void init() {
+        productRepository.save(createDummyProduct(null, "name1", "desc1", BigDecimal.ONE));
+    }
+
+    @AfterEach
+    void destroyAll() {
+        productRepository.deleteAll();
+        productPriceHistoryRepository.deleteAll();
+    }
+
+    @Test
+    void shouldCreateAndUpdateProductsAndReportInvalidItems() {
+        List<ProductBatchResult> results = productBatchService.createOrUpdateProducts(Arrays.asList(
+                createDummyProduct("name1", "updatedDesc", BigDecimal.TEN),
+                createDummyProduct("name2", "desc2", BigDecimal.ONE),
+                createDummyProduct(null, "desc", BigDecimal.ONE),
+                createDummyProduct("name2", "duplicated", BigDecimal.ONE)
+        ));
+
+        assertEquals(ProductBatchStatus.UPDATED, results.get(0).getStatus());
+        assertEquals(ProductBatchStatus.CREATED, results.get(1).getStatus());
+        assertNotNull(results.get(1).getId());
+        assertEquals(ProductBatchStatus.FAILED, results.get(2).getStatus());
+        assertEquals(ProductBatchStatus.FAILED, results.get(3).getStatus());
+
+        assertEquals(2, productRepository.count());
+        Product updatedProduct = productRepository.findByName("name1");
+        assertEquals("updatedDesc", updatedProduct.getDescription());
+        assertEquals(0, BigDecimal.TEN.compareTo(updatedProduct.getPrice()));
+        // the new price of name1 and the initial price of name2
+        assertEquals(2, productPriceHistoryRepository.count());
+    }
+
+    @Test
+    void shouldWriteTheOtherItemsOfTheChunkWhenOneItemFails() {
+        String tooLongName = String.join("", Collections.nCopies(300, "a"));
+
+        List<ProductBatchResult> results = productBatchService.createOrUpdateProducts(Arrays.asList(
+                createDummyProduct("name2", "desc2", BigDecimal.ONE),
+                createDummyProduct(tooLongName, "desc", BigDecimal.ONE),
+                createDummyProduct("name3", "desc3", BigDecimal.ONE)
+        ));
+
+        assertEquals(ProductBatchStatus.CREATED, results.get(0).getStatus());
+        assertEquals(ProductBatchStatus.FAILED, results.get(1).getStatus());
+        assertEquals(ProductBatchStatus.CREATED, results.get(2).getStatus());
+        assertEquals(3, productRepository.count());
+    }
+
+    @Test
+    void shouldReturnBatchSizeExceededExceptionWhenTheBatchIsTooLarge() {
+        BatchSizeExceededException exception = assertThrows(BatchSizeExceededException.class, () -> {
+            productBatchService.createOrUpdateProducts(Collections.nCopies(6, createDummyProduct("name", "desc", BigDecimal.ONE)));
+        });
+
+        assertEquals(BatchSizeExceededException.class, exception.getClass());
+    }
+
+    @Test
+    void shouldChangePricesAndReportMissingAndRejectedIds() {
+        Long id = productRepository.findByName("name1").getId();
+
+        ProductPriceBatchResult result = productBatchService.changePrices(Arrays.asList(
+                new ProductPriceChangeDTO(id, BigDecimal.TEN),
+                new ProductPriceChangeDTO(2000000000L, BigDecimal.TEN),
+                new ProductPriceChangeDTO(id, BigDecimal.ZERO)
+        ));
+
+        assertEquals(1, result.getUpdatedCount());
+        assertEquals(List.of(2000000000L), result.getMissingIds());
+        assertEquals(List.of(id), result.getRejectedIds());
+        assertEquals(0, BigDecimal.TEN.compareTo(productRepository.findByName("name1").getPrice()));
+        List<ProductPriceHistory> history = productPriceHistoryRepository.findAll();
+        assertEquals(1, history.size());
+        assertEquals(id, history.get(0).getProductId());
+        assertEquals(0, BigDecimal.TEN.compareTo(history.get(0).getPrice()));
+    }
+
+    @Test
+    void shouldChangePricesOfTheProductTypeByPercentage() {
+        productRepository.save(createDummyProduct(null, "name2", "desc2", BigDecimal.TEN));
+
+        ProductPriceBatchResult result = productBatchService.changePrices(new ProductPriceRuleDTO(ProductType.HARD, new BigDecimal(5)));
+
+        assertEquals(2, result.getUpdatedCount());
+        assertEquals(0, new BigDecimal("1.05").compareTo(productRepository.findByName("name1").getPrice()));
+        assertEquals(0, new BigDecimal("10.50").compareTo(productRepository.findByName("name2").getPrice()));
+        assertEquals(2, productPriceHistoryRepository.count());
+    }
+
+    @Test
+    void shouldReturnInvalidPriceChangeExceptionWhenThePercentageRemovesThePrice() {
+        InvalidPriceChangeException exception = assertThrows(InvalidPriceChangeException.class, () -> {
+            productBatchService.changePrices(new ProductPriceRuleDTO(ProductType.HARD, new BigDecimal(-100)));
+        });
+
+        assertEquals(InvalidPriceChangeException.class, exception.getClass());
+    }
+
+}
@@ -0,0 +1,75 @@
+package com.fc.service;
+
+import com.fc.config.CacheConfig;
+import com.fc.model.Product;
+import com.fc.repository.ProductRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.cache.CacheType;
+import org.springframework.boot.test.autoconfigure.core.AutoConfigureCache;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.math.BigDecimal;
+
+import static com.fc.utils.ProductTestUtils.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@Import({CacheConfig.class, ProductService.class})
+@AutoConfigureCache(cacheProvider = CacheType.CAFFEINE)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+public class ProductCacheTests {
+
+    @Autowired
+    ProductService productService;
+
+    @Autowired
+    ProductRepository productRepository;
+
+    @Autowired
+    CacheManager cacheManager;
+
+    Long productId;
+
+    @BeforeEach
+    void init() {
+        productId = productRepository.save(createDummyProduct(null, "name1", "desc1", BigDecimal.ONE)).getId();
+    }
+
+    @Test
+    void shouldServeTheSecondReadFromTheCache() {
+        Product first = productService.getOneProduct(productId);
+        Product second = productService.getOneProduct(productId);
+
+        assertSame(first, second);
+        assertNotNull(productCache().get(productId));
+    }
+
+    @Test
+    void shouldRefreshTheCachedProductWhenChangePrice() {
+        productService.getOneProduct(productId);
+
+        productService.changePrice(productId, BigDecimal.TEN);
+
+        assertEquals(BigDecimal.TEN, productService.getOneProduct(productId).getPrice());
+    }
+
+    @Test
+    void shouldEvictTheCachedProductWhenDeleteProduct() {
+        productService.getOneProduct(productId);
+
+        productService.deleteProduct(productId);
+
+        assertNull(productCache().get(productId));
+    }
+
+    private Cache productCache() {
+        return cacheManager.getCache(CacheConfig.PRODUCT_CACHE);
+    }
+
+}
@@ -0,0 +1,172 @@
+package com.fc.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.fc.event.ProductChangeType;
+import com.fc.event.ProductChangedEvent;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+
+import static com.fc.utils.ProductTestUtils.createDummyProduct;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ProductChangeFeedTests {
+
+    ProductChangeFeed productChangeFeed;
+
+    SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void init() {
+        meterRegistry = new SimpleMeterRegistry();
+        Metrics.addRegistry(meterRegistry);
+        productChangeFeed = new ProductChangeFeed(new ObjectMapper().registerModule(new JavaTimeModule()), 3, 2, 2, 60, 1);
+    }
+
+    @AfterEach
+    void tearDown() {
+        productChangeFeed.destroy();
+        Metrics.removeRegistry(meterRegistry);
+    }
+
+    @Test
+    void shouldReplayTheMissedChangesAndThenSendTheLiveChanges() {
+        publish(4);
+        RecordingEmitter emitter = new RecordingEmitter(null);
+
+        productChangeFeed.subscribe(eventId(2), emitter);
+        publish(1);
+
+        await(() -> emitter.events.size() == 3);
+        assertEquals(List.of(eventId(3) + ":UPDATED", eventId(4) + ":UPDATED", eventId(5) + ":UPDATED"), emitter.idsAndNames());
+        assertTrue(emitter.events.get(0).contains("\"sequence\":3"));
+        assertTrue(emitter.events.get(0).contains("\"productId\":3"));
+    }
+
+    @Test
+    void shouldSendAResetWhenTheLastEventIdIsNotInTheReplayBuffer() {
+        publish(5);
+        RecordingEmitter tooOld = new RecordingEmitter(null);
+        RecordingEmitter unknown = new RecordingEmitter(null);
+
+        productChangeFeed.subscribe(eventId(1), tooOld);
+        productChangeFeed.subscribe(eventId(42), unknown);
+
+        await(() -> tooOld.events.size() == 1 && unknown.events.size() == 1);
+        assertEquals(List.of(eventId(5) + ":" + ProductChangeFeed.RESET_EVENT), tooOld.idsAndNames());
+        assertEquals(List.of(eventId(5) + ":" + ProductChangeFeed.RESET_EVENT), unknown.idsAndNames());
+    }
+
+    @Test
+    void shouldSendAResetWhenTheLastEventIdIsFromAnotherEpoch() {
+        publish(3);
+        RecordingEmitter beforeRestart = new RecordingEmitter(null);
+        RecordingEmitter withoutEpoch = new RecordingEmitter(null);
+        RecordingEmitter invalid = new RecordingEmitter(null);
+
+        // the sequence 2 is still buffered, but it was sent by an earlier start of the feed
+        productChangeFeed.subscribe("0-2", beforeRestart);
+        productChangeFeed.subscribe("2", withoutEpoch);
+        productChangeFeed.subscribe(eventId(2) + "x", invalid);
+
+        await(() -> beforeRestart.events.size() == 1 && withoutEpoch.events.size() == 1 && invalid.events.size() == 1);
+        assertEquals(List.of(eventId(3) + ":" + ProductChangeFeed.RESET_EVENT), beforeRestart.idsAndNames());
+        assertEquals(List.of(eventId(3) + ":" + ProductChangeFeed.RESET_EVENT), withoutEpoch.idsAndNames());
+        assertEquals(List.of(eventId(3) + ":" + ProductChangeFeed.RESET_EVENT), invalid.idsAndNames());
+    }
+
+    @Test
+    void shouldDisconnectASlowSubscriberWithoutBlockingTheWrites() {
+        CountDownLatch blocked = new CountDownLatch(1);
+        RecordingEmitter slow = new RecordingEmitter(blocked);
+        RecordingEmitter fast = new RecordingEmitter(null);
+        productChangeFeed.subscribe(null, slow);
+        productChangeFeed.subscribe(null, fast);
+
+        // the writes go on while the slow subscriber is stuck in its first send
+        for (int i = 1; i <= 10; i++) {
+            publish(1);
+            final int sent = i;
+            await(() -> fast.events.size() == sent);
+        }
+        blocked.countDown();
+        await(() -> slow.completed);
+        assertTrue(slow.events.size() < 10);
+        assertEquals(1, productChangeFeed.getSubscriberCount());
+        assertEquals(1, meterRegistry.get(ProductChangeFeed.DROPPED_METRIC).counter().count());
+    }
+
+    private String eventId(long sequence) {
+        return productChangeFeed.eventId(sequence);
+    }
+
+    private void publish(int count) {
+        for (int i = 0; i < count; i++) {
+            final long id = i + 1;
+            productChangeFeed.onProductChanged(ProductChangedEvent.of(ProductChangeType.UPDATED,
+                    createDummyProduct(id, "name" + id, "desc", BigDecimal.ONE)));
+        }
+    }
+
+    private static void await(BooleanSupplier condition) {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "timed out");
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * Records the sent events; with a latch the first send blocks like the write to a client which does not read.
+     */
+    static class RecordingEmitter extends SseEmitter {
+
+        final List<String> events = new CopyOnWriteArrayList<>();
+
+        final CountDownLatch blocked;
+
+        volatile boolean completed;
+
+        RecordingEmitter(CountDownLatch blocked) {
+            this.blocked = blocked;
+        }
+
+        @Override
+        public void send(SseEventBuilder builder) {
+            if (blocked != null) {
+                try {
+                    blocked.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            events.add(builder.build().stream().map(data -> data.getData().toString()).collect(Collectors.joining()));
+        }
+
+        @Override
+        public synchronized void complete() {
+            completed = true;
+        }
+
+        List<String> idsAndNames() {
+            return events.stream()
+                    .map(event -> event.substring(3, event.indexOf('\n')) + ":"
+                            + event.substring(event.indexOf("event:") + 6, event.indexOf('\n', event.indexOf("event:"))))
+                    .collect(Collectors.toList());
+        }
+
+    }
+
+}
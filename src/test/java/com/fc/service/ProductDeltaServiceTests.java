@@ -0,0 +1,117 @@
+package com.fc.service;
+
+import com.fc.exception.InvalidCursorException;
+import com.fc.exception.WatermarkExpiredException;
+import com.fc.model.Product;
+import com.fc.model.ProductDelta;
+import com.fc.model.ProductTombstone;
+import com.fc.repository.ProductRepository;
+import com.fc.repository.ProductTombstoneRepository;
+import com.fc.util.CursorUtil;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static com.fc.utils.ProductTestUtils.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+public class ProductDeltaServiceTests {
+
+    @Autowired
+    ProductRepository productRepository;
+
+    @Autowired
+    ProductTombstoneRepository productTombstoneRepository;
+
+    ProductService productService;
+
+    ProductDeltaService productDeltaService;
+
+    @BeforeEach
+    void init() {
+        productService = new ProductService(productRepository);
+        productDeltaService = new ProductDeltaService(productRepository, productTombstoneRepository, 0, 30);
+    }
+
+    @AfterEach
+    void tearDown() {
+        productDeltaService.destroy();
+    }
+
+    @Test
+    void shouldReturnTheChangesAndTheDeletesSinceTheWatermark() throws InterruptedException {
+        Long appleId = productService.createNewProduct(createDummyProduct(null, "apple", "apple", BigDecimal.ONE)).getId();
+        Long pearId = productService.createNewProduct(createDummyProduct(null, "pear", "pear", BigDecimal.ONE)).getId();
+        productService.createNewProduct(createDummyProduct(null, "plum", "plum", BigDecimal.ONE));
+
+        ProductDelta firstPage = productDeltaService.getChangesSince("", 2);
+        assertEquals(List.of("apple", "pear"), namesOf(firstPage));
+        assertTrue(firstPage.isHasMore());
+        ProductDelta lastPage = productDeltaService.getChangesSince(firstPage.getWatermark(), 2);
+        assertEquals(List.of("plum"), namesOf(lastPage));
+        assertFalse(lastPage.isHasMore());
+
+        // the dates are stored in milliseconds
+        Thread.sleep(2);
+        productService.changePrice(pearId, BigDecimal.TEN);
+        productService.deleteProduct(appleId);
+        Thread.sleep(2);
+
+        ProductDelta delta = productDeltaService.getChangesSince(lastPage.getWatermark(), null);
+        assertEquals(List.of("pear"), namesOf(delta));
+        assertEquals(List.of(appleId), delta.getDeleted().stream().map(ProductTombstone::getProductId).collect(Collectors.toList()));
+        assertFalse(delta.isHasMore());
+
+        ProductDelta noChanges = productDeltaService.getChangesSince(delta.getWatermark(), null);
+        assertTrue(noChanges.getChanged().isEmpty());
+        assertTrue(noChanges.getDeleted().isEmpty());
+    }
+
+    @Test
+    void shouldHoldBackTheChangesWithinTheCommitLag() {
+        productService.createNewProduct(createDummyProduct(null, "apple", "apple", BigDecimal.ONE));
+        ProductDeltaService laggingDeltaService = new ProductDeltaService(productRepository, productTombstoneRepository, 60_000, 30);
+
+        try {
+            ProductDelta delta = laggingDeltaService.getChangesSince("", null);
+
+            assertTrue(delta.getChanged().isEmpty());
+            assertEquals(List.of("apple"), namesOf(productDeltaService.getChangesSince(delta.getWatermark(), null)));
+        } finally {
+            laggingDeltaService.destroy();
+        }
+    }
+
+    @Test
+    void shouldRejectAWatermarkOlderThanTheTombstoneRetention() {
+        String expired = CursorUtil.encode(Instant.now().minus(Duration.ofDays(31)), 1L);
+
+        assertThrows(WatermarkExpiredException.class, () -> productDeltaService.getChangesSince(expired, null));
+        assertThrows(InvalidCursorException.class, () -> productDeltaService.getChangesSince("not a watermark", null));
+    }
+
+    @Test
+    void shouldPurgeTheTombstonesAfterTheRetention() {
+        productTombstoneRepository.save(new ProductTombstone(1L, Instant.now().minus(Duration.ofDays(31))));
+        productTombstoneRepository.save(new ProductTombstone(2L, Instant.now()));
+
+        productDeltaService.purgeTombstones();
+
+        assertEquals(List.of(2L), productTombstoneRepository.findAll().stream()
+                .map(ProductTombstone::getProductId).collect(Collectors.toList()));
+    }
+
+    private static List<String> namesOf(ProductDelta delta) {
+        return delta.getChanged().stream().map(Product::getName).collect(Collectors.toList());
+    }
+
+}
@@ -0,0 +1,119 @@
+package com.fc.service;
+
+import com.fc.config.CacheConfig;
+import com.fc.exception.ProductImportException;
+import com.fc.model.ProductImport;
+import com.fc.model.ProductImportFormat;
+import com.fc.model.ProductImportStatus;
+import com.fc.repository.ProductImportRepository;
+import com.fc.repository.ProductRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@Import({CacheConfig.class, ProductBatchService.class, ProductImportService.class})
+@ImportAutoConfiguration(JacksonAutoConfiguration.class)
+@TestPropertySource(properties = {"fc.import.directory=target/test-import", "fc.import.batch-size=2", "fc.import.queue-capacity=1"})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class ProductImportServiceTests {
+
+    @Autowired
+    ProductImportService productImportService;
+
+    @Autowired
+    ProductImportRepository productImportRepository;
+
+    @Autowired
+    ProductRepository productRepository;
+
+    Path importDirectory = Paths.get("target/test-import");
+
+    @BeforeEach
+    void init() throws IOException {
+        Files.createDirectories(importDirectory);
+        Files.writeString(importDirectory.resolve("products.csv"), "Name,Description,Price,ProductType\n"
+                + "apple,apple desc,10,HARD\n"
+                + "pear,pear desc,not a price,HARD\n"
+                + "plum,plum desc,12,SOFT\n"
+                + "kiwi,kiwi desc,3,SOFT\n");
+        Files.writeString(importDirectory.resolve("products.ndjson"),
+                "{\"name\": \"apple\", \"price\": 10}\n"
+                        + "{\"name\": \"pear\", \"price\": 11}\n"
+                        + "{\"name\": \"plum\", \"price\": 12}\n");
+    }
+
+    @AfterEach
+    void destroyAll() {
+        productRepository.deleteAll();
+        productImportRepository.deleteAll();
+    }
+
+    @Test
+    void shouldImportTheCsvFileAndCountTheUnreadableRecords() throws InterruptedException {
+        ProductImport productImport = productImportService.startImport("products.csv", null);
+
+        ProductImport completedImport = awaitCompletion(productImport.getId());
+
+        assertEquals(ProductImportStatus.COMPLETED, completedImport.getStatus());
+        assertEquals(ProductImportFormat.CSV, completedImport.getFormat());
+        assertEquals(4, completedImport.getCommittedOffset());
+        assertEquals(3, completedImport.getCreatedCount());
+        assertEquals(1, completedImport.getFailedCount());
+        assertEquals(0, new BigDecimal(12).compareTo(productRepository.findByName("plum").getPrice()));
+    }
+
+    @Test
+    void shouldResumeTheImportFromTheCommittedOffset() throws InterruptedException {
+        ProductImport failedImport = new ProductImport("products.ndjson", ProductImportFormat.NDJSON);
+        failedImport.setStatus(ProductImportStatus.FAILED);
+        failedImport.setCommittedOffset(2);
+        failedImport = productImportRepository.save(failedImport);
+
+        productImportService.resumeImport(failedImport.getId());
+        ProductImport completedImport = awaitCompletion(failedImport.getId());
+
+        assertEquals(ProductImportStatus.COMPLETED, completedImport.getStatus());
+        assertEquals(3, completedImport.getCommittedOffset());
+        assertEquals(1, completedImport.getCreatedCount());
+        assertEquals(1, productRepository.count());
+        assertNotNull(productRepository.findByName("plum"));
+    }
+
+    @Test
+    void shouldReturnProductImportExceptionWhenTheFileIsOutsideOfTheImportFolder() {
+        ProductImportException exception = assertThrows(ProductImportException.class, () -> {
+            productImportService.startImport("../../pom.xml", ProductImportFormat.CSV);
+        });
+
+        assertEquals(ProductImportException.class, exception.getClass());
+    }
+
+    private ProductImport awaitCompletion(Long id) throws InterruptedException {
+        for (int i = 0; i < 100; i++) {
+            ProductImport productImport = productImportService.getImport(id);
+            if (productImport.getStatus() != ProductImportStatus.RUNNING) {
+                return productImport;
+            }
+            Thread.sleep(100);
+        }
+        return fail("The product import was not completed in time");
+    }
+
+}
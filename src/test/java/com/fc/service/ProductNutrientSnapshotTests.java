@@ -0,0 +1,194 @@
+package com.fc.service;
+
+import com.fc.event.ProductChangeType;
+import com.fc.event.ProductChangedEvent;
+import com.fc.model.NutrientMetric;
+import com.fc.model.NutrientQuery;
+import com.fc.model.NutrientQueryResult;
+import com.fc.model.Product;
+import com.fc.model.ProductNutrientRow;
+import com.fc.model.ProductType;
+import com.fc.repository.ProductRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import static com.fc.utils.ProductTestUtils.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class ProductNutrientSnapshotTests {
+
+    @Mock
+    ProductRepository productRepository;
+
+    ProductNutrientSnapshot productNutrientSnapshot;
+
+    @BeforeEach
+    void init() {
+        doAnswer(invocation -> {
+            Consumer<Product> consumer = invocation.getArgument(0);
+            consumer.accept(createDummyProduct(1L, "chicken", "8.00", 165.0, 31.0, 3.6));
+            consumer.accept(createDummyProduct(2L, "lentils", "2.00", 116.0, 9.0, 0.4));
+            consumer.accept(createDummyProduct(3L, "cheese", "10.00", 402.0, 25.0, 33.0));
+            return null;
+        }).when(productRepository).streamAllOrderedById(any());
+
+        productNutrientSnapshot = new ProductNutrientSnapshot(productRepository);
+        productNutrientSnapshot.rebuild();
+    }
+
+    @AfterEach
+    void destroy() {
+        productNutrientSnapshot.destroy();
+    }
+
+    @Test
+    void shouldReturnTheTopProductsByTheMetric() {
+        NutrientQuery query = new NutrientQuery();
+        query.setSort(NutrientMetric.PROTEIN);
+        query.setLimit(2);
+
+        NutrientQueryResult result = productNutrientSnapshot.query(query);
+
+        assertEquals(3, result.getMatched());
+        assertEquals("chicken,cheese", namesOf(result));
+        assertEquals(31.0, result.getItems().get(0).getScore());
+    }
+
+    @Test
+    void shouldSortByTheRatioToThePrice() {
+        NutrientQuery query = new NutrientQuery();
+        query.setSort(NutrientMetric.PROTEIN_PER_PRICE);
+
+        assertEquals("lentils,chicken,cheese", namesOf(productNutrientSnapshot.query(query)));
+        assertEquals(4.5, productNutrientSnapshot.query(query).getItems().get(0).getScore());
+    }
+
+    @Test
+    void shouldFilterByTheRangesAndSortAscending() {
+        NutrientQuery query = new NutrientQuery();
+        query.setMaxFat(5.0);
+        query.setMinCalories(100.0);
+        query.setSort(NutrientMetric.PRICE);
+        query.setAscending(true);
+
+        NutrientQueryResult result = productNutrientSnapshot.query(query);
+
+        assertEquals(2, result.getMatched());
+        assertEquals("lentils,chicken", namesOf(result));
+    }
+
+    @Test
+    void shouldNotMatchTheUnknownValuesAndNotRankThem() {
+        Product water = createDummyProduct(4L, "water", "0.50", null, null, null);
+        productNutrientSnapshot.onProductChanged(ProductChangedEvent.of(ProductChangeType.CREATED, water));
+
+        NutrientQuery filtered = new NutrientQuery();
+        filtered.setMinProtein(0.0);
+        assertEquals(3, productNutrientSnapshot.query(filtered).getMatched());
+
+        NutrientQueryResult all = productNutrientSnapshot.query(new NutrientQuery());
+        assertEquals(4, all.getMatched());
+        assertEquals("chicken,cheese,lentils", namesOf(all));
+    }
+
+    @Test
+    void shouldApplyTheProductChanges() {
+        productNutrientSnapshot.onProductChanged(ProductChangedEvent.of(ProductChangeType.UPDATED,
+                createDummyProduct(2L, "lentils", "2.00", 116.0, 40.0, 0.4)));
+        productNutrientSnapshot.onProductChanged(new ProductChangedEvent(ProductChangeType.DELETED, 1L, null));
+        when(productRepository.findById(3L)).thenReturn(Optional.of(createDummyProduct(3L, "cheese", "10.00", 402.0, 5.0, 33.0)));
+        productNutrientSnapshot.onProductChanged(new ProductChangedEvent(ProductChangeType.PRICE_CHANGED, 3L, null));
+
+        NutrientQueryResult result = productNutrientSnapshot.query(new NutrientQuery());
+
+        assertEquals(2, productNutrientSnapshot.size());
+        assertEquals("lentils,cheese", namesOf(result));
+        assertEquals(5.0, result.getItems().get(1).getProtein());
+    }
+
+    @Test
+    void shouldApplyTheBulkPriceChangesWithoutLoadingTheProducts() {
+        productNutrientSnapshot.onProductChanged(ProductChangedEvent.prices(Map.of(1L, new BigDecimal("1.00"), 2L, new BigDecimal("20.00"))));
+
+        NutrientQuery cheap = new NutrientQuery();
+        cheap.setMaxPrice(5.0);
+        NutrientQueryResult result = productNutrientSnapshot.query(cheap);
+
+        assertEquals("chicken", namesOf(result));
+        assertEquals(1.0, result.getItems().get(0).getPrice());
+        verify(productRepository, never()).findById(any());
+    }
+
+    @Test
+    void shouldFilterByTheProductType() {
+        Product soft = createDummyProduct(5L, "tofu", "3.00", 76.0, 8.0, 4.8);
+        soft.setProductType(ProductType.SOFT);
+        productNutrientSnapshot.onProductChanged(ProductChangedEvent.of(ProductChangeType.CREATED, soft));
+
+        NutrientQuery query = new NutrientQuery();
+        query.setProductType(ProductType.SOFT);
+
+        assertEquals("tofu", namesOf(productNutrientSnapshot.query(query)));
+    }
+
+    @Test
+    void shouldKeepTheSnapshotWhenTheRebuildFails() {
+        doThrow(new IllegalStateException("connection lost")).when(productRepository).streamAllOrderedById(any());
+
+        assertThrows(IllegalStateException.class, () -> productNutrientSnapshot.rebuild());
+
+        assertEquals(3, productNutrientSnapshot.size());
+    }
+
+    @Test
+    void shouldRebuildInTheBackgroundAndKeepTheChangesReceivedMeanwhile() throws Exception {
+        CountDownLatch reading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            Consumer<Product> consumer = invocation.getArgument(0);
+            reading.countDown();
+            assertTrue(release.await(5, TimeUnit.SECONDS));
+            // the cheese was deleted by the bulk change
+            consumer.accept(createDummyProduct(1L, "chicken", "8.00", 165.0, 31.0, 3.6));
+            consumer.accept(createDummyProduct(2L, "lentils", "2.00", 116.0, 9.0, 0.4));
+            return null;
+        }).when(productRepository).streamAllOrderedById(any());
+
+        productNutrientSnapshot.onProductChanged(ProductChangedEvent.allProducts(ProductChangeType.PRICE_CHANGED));
+        assertTrue(reading.await(5, TimeUnit.SECONDS));
+        productNutrientSnapshot.onProductChanged(ProductChangedEvent.of(ProductChangeType.CREATED,
+                createDummyProduct(5L, "tofu", "3.00", 76.0, 8.0, 4.8)));
+        assertEquals(4, productNutrientSnapshot.size());
+        release.countDown();
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (productNutrientSnapshot.size() != 3 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals("chicken,lentils,tofu", namesOf(productNutrientSnapshot.query(new NutrientQuery())));
+    }
+
+    private static String namesOf(NutrientQueryResult result) {
+        return result.getItems().stream().map(ProductNutrientRow::getName).collect(Collectors.joining(","));
+    }
+
+}
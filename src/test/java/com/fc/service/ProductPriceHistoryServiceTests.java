@@ -0,0 +1,115 @@
+package com.fc.service;
+
+import com.fc.exception.InvalidTimeRangeException;
+import com.fc.model.Product;
+import com.fc.model.ProductPriceAsOfDTO;
+import com.fc.model.ProductPriceHistory;
+import com.fc.model.ProductPriceHistoryPage;
+import com.fc.repository.ProductPriceHistoryRepository;
+import com.fc.repository.ProductRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static com.fc.utils.ProductTestUtils.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+public class ProductPriceHistoryServiceTests {
+
+    @Autowired
+    ProductRepository productRepository;
+
+    @Autowired
+    ProductPriceHistoryRepository productPriceHistoryRepository;
+
+    ProductService productService;
+
+    ProductPriceHistoryService productPriceHistoryService;
+
+    @BeforeEach
+    void init() {
+        productService = new ProductService(productRepository);
+        productPriceHistoryService = new ProductPriceHistoryService(productPriceHistoryRepository);
+    }
+
+    @Test
+    void shouldRecordEveryPriceOfTheProduct() throws InterruptedException {
+        Long id = productService.createNewProduct(createDummyProduct(null, "apple", "apple", BigDecimal.ONE)).getId();
+        // the dates are stored in milliseconds
+        Thread.sleep(2);
+        Instant changeDate = productService.changePrice(id, BigDecimal.TEN).getUpdateDate();
+        Thread.sleep(2);
+        productService.updateProduct(createDummyProduct(id, "apple", "green apple", BigDecimal.TEN), id);
+        productService.updateProduct(createDummyProduct(id, "apple", "green apple", new BigDecimal(5)), id);
+
+        assertEquals(Arrays.asList("1", "10", "5"), pricesOf(productPriceHistoryService.getPriceHistory(id, null, null, null, null).getItems()));
+        assertEquals(Arrays.asList("10"), pricesOf(productPriceHistoryService.getPriceHistory(id, changeDate, changeDate.plusMillis(1), null, null).getItems()));
+
+        ProductPriceHistoryPage firstPage = productPriceHistoryService.getPriceHistory(id, null, null, null, 2);
+        assertEquals(Arrays.asList("1", "10"), pricesOf(firstPage.getItems()));
+        ProductPriceHistoryPage lastPage = productPriceHistoryService.getPriceHistory(id, null, null, firstPage.getNextCursor(), 2);
+        assertEquals(Arrays.asList("5"), pricesOf(lastPage.getItems()));
+        assertNull(lastPage.getNextCursor());
+    }
+
+    @Test
+    void shouldPageThroughTheEntriesOfTheSameTime() {
+        Instant validFrom = Instant.parse("2023-01-01T00:00:00Z");
+        for (int price = 1; price <= 5; price++) {
+            productPriceHistoryRepository.save(new ProductPriceHistory(1L, new BigDecimal(price), validFrom));
+        }
+
+        List<String> prices = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            ProductPriceHistoryPage page = productPriceHistoryService.getPriceHistory(1L, validFrom, null, cursor, 2);
+            prices.addAll(pricesOf(page.getItems()));
+            cursor = page.getNextCursor();
+            pages++;
+        } while (cursor != null && pages < 10);
+
+        assertEquals(Arrays.asList("1", "2", "3", "4", "5"), prices);
+        assertEquals(3, pages);
+    }
+
+    @Test
+    void shouldReturnThePricesOfManyProductsAsOfAPointInTime() throws InterruptedException {
+        Long appleId = productService.createNewProduct(createDummyProduct(null, "apple", "apple", BigDecimal.ONE)).getId();
+        Long pearId = productService.createNewProduct(createDummyProduct(null, "pear", "pear", new BigDecimal(2))).getId();
+        Thread.sleep(2);
+        Instant at = Product.currentTimestamp();
+        Thread.sleep(2);
+        productService.changePrice(appleId, BigDecimal.TEN);
+        Thread.sleep(2);
+        Long plumId = productService.createNewProduct(createDummyProduct(null, "plum", "plum", new BigDecimal(3))).getId();
+
+        List<ProductPriceHistory> pastPrices = productPriceHistoryService.getPricesAsOf(new ProductPriceAsOfDTO(Arrays.asList(pearId, appleId, plumId), at));
+        assertEquals(Arrays.asList(pearId, appleId), pastPrices.stream().map(ProductPriceHistory::getProductId).collect(Collectors.toList()));
+        assertEquals(Arrays.asList("2", "1"), pricesOf(pastPrices));
+
+        List<ProductPriceHistory> currentPrices = productPriceHistoryService.getPricesAsOf(new ProductPriceAsOfDTO(Arrays.asList(appleId, pearId, plumId), null));
+        assertEquals(Arrays.asList("10", "2", "3"), pricesOf(currentPrices));
+    }
+
+    @Test
+    void shouldRejectAnEmptyTimeRange() {
+        Instant now = Instant.now();
+
+        assertThrows(InvalidTimeRangeException.class, () -> productPriceHistoryService.getPriceHistory(1L, now, now, null, null));
+    }
+
+    private static List<String> pricesOf(List<ProductPriceHistory> prices) {
+        return prices.stream().map(price -> price.getPrice().stripTrailingZeros().toPlainString()).collect(Collectors.toList());
+    }
+
+}
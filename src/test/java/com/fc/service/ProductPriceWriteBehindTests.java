@@ -0,0 +1,180 @@
+package com.fc.service;
+
+import com.fc.config.CacheConfig;
+import com.fc.event.ProductChangedEvent;
+import com.fc.exception.ProductNotFoundException;
+import com.fc.model.Product;
+import com.fc.model.ProductFilter;
+import com.fc.model.ProductSummaryPage;
+import com.fc.repository.ProductPriceHistoryRepository;
+import com.fc.repository.ProductRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.cache.CacheType;
+import org.springframework.boot.test.autoconfigure.core.AutoConfigureCache;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.fc.utils.ProductTestUtils.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@Import({CacheConfig.class, ProductService.class, ProductPriceWriteBehind.class})
+@AutoConfigureCache(cacheProvider = CacheType.CAFFEINE)
+@TestPropertySource(properties = {"fc.product.price-write-behind.enabled=true",
+        // the tests flush explicitly
+        "fc.product.price-write-behind.flush-interval-millis=3600000",
+        "fc.product.price-write-behind.max-staleness-millis=7200000"})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+public class ProductPriceWriteBehindTests {
+
+    @Autowired
+    ProductService productService;
+
+    @Autowired
+    ProductPriceWriteBehind priceWriteBehind;
+
+    @Autowired
+    ProductRepository productRepository;
+
+    @Autowired
+    ProductPriceHistoryRepository productPriceHistoryRepository;
+
+    @Autowired
+    CacheManager cacheManager;
+
+    Long productId;
+
+    @BeforeEach
+    void init() {
+        productId = productRepository.save(createDummyProduct(null, "name1", "desc1", BigDecimal.ONE)).getId();
+    }
+
+    @AfterEach
+    void destroyAll() {
+        productRepository.deleteAll();
+        productPriceHistoryRepository.deleteAll();
+    }
+
+    @Test
+    void shouldWriteTheCoalescedPriceChangesOnceWithTheFlush() {
+        productService.changePrice(productId, new BigDecimal("2.00"));
+        productService.changePrice(productId, new BigDecimal("3.00"));
+        Product changed = productService.changePrice(productId, new BigDecimal("4.00"));
+
+        assertEquals(0, BigDecimal.ONE.compareTo(productRepository.findById(productId).orElseThrow().getPrice()));
+        assertEquals(0, new BigDecimal("4.00").compareTo(productService.getOneProduct(productId).getPrice()));
+        assertEquals(0, new BigDecimal("4.00").compareTo(productService.getAllProducts().get(0).getPrice()));
+
+        assertEquals(1, priceWriteBehind.flush());
+
+        Product written = productRepository.findById(productId).orElseThrow();
+        assertEquals(0, new BigDecimal("4.00").compareTo(written.getPrice()));
+        assertEquals(changed.getVersion(), written.getVersion());
+        assertEquals(1, productPriceHistoryRepository.count());
+        assertEquals(0, new BigDecimal("4.00").compareTo(productService.getOneProduct(productId).getPrice()));
+    }
+
+    @Test
+    void shouldShowTheWrittenPricesInTheListingsByPrice() {
+        productService.changePrice(productId, BigDecimal.TEN);
+
+        // the filter and the order still see the written price, the page shows the same
+        ProductSummaryPage byPrice = productService.getProductSummaries(new ProductFilter(null, null, new BigDecimal("2.00")), "price", null, 10);
+        assertEquals(0, BigDecimal.ONE.compareTo(byPrice.getItems().get(0).getPrice()));
+        ProductSummaryPage byId = productService.getProductSummaries(new ProductFilter(null, null, null), "id", null, 10);
+        assertEquals(0, BigDecimal.TEN.compareTo(byId.getItems().get(0).getPrice()));
+    }
+
+    @Test
+    void shouldFlushThePendingPriceBeforeTheUpdate() {
+        productService.changePrice(productId, BigDecimal.TEN);
+
+        productService.updateProduct(createDummyProduct("name1", "updated", new BigDecimal("5.00")), productId);
+
+        assertEquals(0, priceWriteBehind.flush());
+        Product written = productRepository.findById(productId).orElseThrow();
+        assertEquals(0, new BigDecimal("5.00").compareTo(written.getPrice()));
+        assertEquals(2, productPriceHistoryRepository.count());
+    }
+
+    @Test
+    void shouldRejectThePriceOfAMissingProduct() {
+        assertThrows(ProductNotFoundException.class, () -> productService.changePrice(404L, BigDecimal.TEN));
+    }
+
+    @Test
+    void shouldDropThePendingPriceOfADeletedProduct() {
+        productService.changePrice(productId, BigDecimal.TEN);
+        productRepository.deleteById(productId);
+
+        assertEquals(0, priceWriteBehind.flush());
+        assertEquals(0, productPriceHistoryRepository.count());
+    }
+
+    @Test
+    void shouldWriteThroughWhenNoFlushSucceededForTheMaxStaleness() throws Exception {
+        AtomicLong now = new AtomicLong();
+        ProductPriceWriteBehind writeBehind = new ProductPriceWriteBehind(productRepository, cacheManager, event -> { },
+                3_600_000, 7_200_000, 100, now::get);
+        try {
+            assertTrue(writeBehind.isAccepting());
+
+            now.addAndGet(TimeUnit.HOURS.toNanos(3));
+            assertFalse(writeBehind.isAccepting());
+
+            writeBehind.flush();
+            assertTrue(writeBehind.isAccepting());
+        } finally {
+            writeBehind.destroy();
+        }
+    }
+
+    @Test
+    void shouldPublishTheWrittenPricesInOneEvent() throws Exception {
+        List<ProductChangedEvent> events = new ArrayList<>();
+        ProductPriceWriteBehind writeBehind = new ProductPriceWriteBehind(productRepository, cacheManager,
+                event -> events.add((ProductChangedEvent) event), 3_600_000, 7_200_000, 100, System::nanoTime);
+        try {
+            Long otherId = productRepository.save(createDummyProduct(null, "name2", "desc2", BigDecimal.ONE)).getId();
+            writeBehind.changePrice(productId, BigDecimal.TEN, id -> productRepository.findById(id).orElseThrow());
+            writeBehind.changePrice(otherId, new BigDecimal("2.00"), id -> productRepository.findById(id).orElseThrow());
+
+            assertEquals(2, writeBehind.flush());
+
+            assertEquals(1, events.size());
+            assertEquals(Map.of(productId, BigDecimal.TEN, otherId, new BigDecimal("2.00")), events.get(0).getPrices());
+        } finally {
+            writeBehind.destroy();
+        }
+    }
+
+    @Test
+    void shouldWriteThroughWhenTheMaxPendingProductsAreReached() throws Exception {
+        ProductPriceWriteBehind writeBehind = new ProductPriceWriteBehind(productRepository, cacheManager, event -> { },
+                3_600_000, 7_200_000, 1, System::nanoTime);
+        try {
+            writeBehind.changePrice(productId, BigDecimal.TEN, id -> productRepository.findById(id).orElseThrow());
+
+            assertFalse(writeBehind.isAccepting());
+        } finally {
+            writeBehind.destroy();
+        }
+    }
+
+}
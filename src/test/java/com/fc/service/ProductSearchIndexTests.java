@@ -0,0 +1,140 @@
+package com.fc.service;
+
+import com.fc.event.ProductChangeType;
+import com.fc.event.ProductChangedEvent;
+import com.fc.model.Product;
+import com.fc.model.ProductSearchHit;
+import com.fc.repository.ProductRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import static com.fc.utils.ProductTestUtils.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+
+@ExtendWith(MockitoExtension.class)
+public class ProductSearchIndexTests {
+
+    @Mock
+    ProductRepository productRepository;
+
+    ProductSearchIndex productSearchIndex;
+
+    @BeforeEach
+    void init() {
+        doAnswer(invocation -> {
+            Consumer<Product> consumer = invocation.getArgument(0);
+            consumer.accept(createDummyProduct(1L, "Cheddar cheese", "Aged cow milk cheese", BigDecimal.TEN));
+            consumer.accept(createDummyProduct(2L, "Cherry tomatoes", "Sweet small tomatoes", BigDecimal.ONE));
+            consumer.accept(createDummyProduct(3L, "Crème fraîche", "Soured cream", BigDecimal.ONE));
+            consumer.accept(createDummyProduct(4L, "Tomato sauce", "Made with cheese and basil", BigDecimal.ONE));
+            return null;
+        }).when(productRepository).streamAllOrderedById(any());
+
+        productSearchIndex = new ProductSearchIndex(productRepository);
+        productSearchIndex.rebuild();
+    }
+
+    @AfterEach
+    void destroy() {
+        productSearchIndex.destroy();
+    }
+
+    @Test
+    void shouldFindThePrefixMatchesAndRankTheNameMatchesFirst() {
+        assertEquals("Cheddar cheese,Tomato sauce", namesOf(productSearchIndex.search("chees", 10)));
+        assertEquals("Cheddar cheese,Cherry tomatoes", namesOf(productSearchIndex.search("che", 2)));
+    }
+
+    @Test
+    void shouldFindTheSubstringAndTypoMatches() {
+        assertEquals("Tomato sauce,Cherry tomatoes", namesOf(productSearchIndex.search("mato", 10)));
+        assertEquals("Tomato sauce", namesOf(productSearchIndex.search("tomatto sauce", 10)));
+    }
+
+    @Test
+    void shouldIgnoreTheCaseAndTheDiacritics() {
+        assertEquals("Crème fraîche", namesOf(productSearchIndex.search("CREME FRAICHE", 10)));
+    }
+
+    @Test
+    void shouldRequireEveryWordAndApplyTheLimit() {
+        assertEquals("Tomato sauce", namesOf(productSearchIndex.search("cheese basil", 10)));
+        assertEquals(1, productSearchIndex.search("tomato", 1).size());
+        assertTrue(productSearchIndex.search("  ", 10).isEmpty());
+    }
+
+    @Test
+    void shouldRankByTheScoreOfEveryWordWhenTheBestMatchOfOneWordComesFirst() {
+        // the exact name match of "tomato" is found first, but the cherry tomatoes match both words in the name
+        assertEquals("Cherry tomatoes,Tomato sauce", namesOf(productSearchIndex.search("tomato che", 10)));
+        assertEquals("Cherry tomatoes", namesOf(productSearchIndex.search("tomato che", 1)));
+    }
+
+    @Test
+    void shouldApplyTheProductChanges() {
+        productSearchIndex.onProductChanged(ProductChangedEvent.of(ProductChangeType.CREATED,
+                createDummyProduct(5L, "Goat cheese", "Soft", BigDecimal.ONE)));
+        productSearchIndex.onProductChanged(ProductChangedEvent.of(ProductChangeType.UPDATED,
+                createDummyProduct(1L, "Gouda", "Dutch", BigDecimal.ONE)));
+        productSearchIndex.onProductChanged(new ProductChangedEvent(ProductChangeType.DELETED, 4L, null));
+
+        List<ProductSearchHit> hits = productSearchIndex.search("cheese", 10);
+
+        assertEquals("Goat cheese", namesOf(hits));
+        assertEquals("Gouda", namesOf(productSearchIndex.search("goud", 10)));
+        assertTrue(productSearchIndex.search("cheddar", 10).isEmpty());
+    }
+
+    @Test
+    void shouldKeepTheIndexWhenTheRebuildFails() {
+        doThrow(new IllegalStateException("connection lost")).when(productRepository).streamAllOrderedById(any());
+
+        assertThrows(IllegalStateException.class, () -> productSearchIndex.rebuild());
+
+        assertEquals("Cheddar cheese,Tomato sauce", namesOf(productSearchIndex.search("chees", 10)));
+    }
+
+    @Test
+    void shouldRebuildInTheBackgroundAndKeepTheChangesReceivedMeanwhile() throws Exception {
+        CountDownLatch reading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            Consumer<Product> consumer = invocation.getArgument(0);
+            reading.countDown();
+            assertTrue(release.await(5, TimeUnit.SECONDS));
+            consumer.accept(createDummyProduct(1L, "Cheddar cheese", "Aged cow milk cheese", BigDecimal.TEN));
+            return null;
+        }).when(productRepository).streamAllOrderedById(any());
+
+        productSearchIndex.onProductChanged(ProductChangedEvent.allProducts(ProductChangeType.UPDATED));
+        assertTrue(reading.await(5, TimeUnit.SECONDS));
+        productSearchIndex.onProductChanged(ProductChangedEvent.of(ProductChangeType.CREATED,
+                createDummyProduct(5L, "Goat cheese", "Soft", BigDecimal.ONE)));
+        release.countDown();
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (productSearchIndex.search("sauce", 10).size() != 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals("Goat cheese,Cheddar cheese", namesOf(productSearchIndex.search("cheese", 10)));
+    }
+
+    private static String namesOf(List<ProductSearchHit> hits) {
+        return hits.stream().map(ProductSearchHit::getName).collect(Collectors.joining(","));
+    }
+
+}
@@ -0,0 +1,85 @@
+package com.fc.service;
+
+import com.fc.exception.ProductUpdateConflictException;
+import com.fc.model.Product;
+import com.fc.repository.ProductRepository;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+
+import java.math.BigDecimal;
+import java.util.Optional;
+
+import static com.fc.utils.ProductTestUtils.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class ProductServiceConflictTests {
+
+    @Mock
+    ProductRepository productRepository;
+
+    ProductService productService;
+
+    SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void init() {
+        meterRegistry = new SimpleMeterRegistry();
+        Metrics.addRegistry(meterRegistry);
+        productService = new ProductService(productRepository, 3, 1);
+
+        when(productRepository.findById(1L)).thenAnswer(invocation ->
+                Optional.of(createDummyProduct(1L, "apple", "apple", BigDecimal.ONE)));
+    }
+
+    @AfterEach
+    void tearDown() {
+        Metrics.removeRegistry(meterRegistry);
+    }
+
+    @Test
+    void shouldRetryTheUpdateWhenTheProductWasChangedConcurrently() {
+        Product newProduct = createDummyProduct(1L, "apple", "green apple", BigDecimal.ONE);
+        when(productRepository.saveAndFlush(any()))
+                .thenThrow(new ObjectOptimisticLockingFailureException(Product.class, 1L))
+                .thenAnswer(invocation -> invocation.getArgument(0));
+
+        Product updatedProduct = productService.updateProduct(newProduct, 1L);
+
+        assertEquals("green apple", updatedProduct.getDescription());
+        verify(productRepository, times(2)).findById(1L);
+        assertEquals(1, conflicts("updateProduct", "retried"));
+    }
+
+    @Test
+    void shouldGiveUpTheUpdateAfterTheMaxAttempts() {
+        when(productRepository.saveAndRecordPrice(any())).thenThrow(new ObjectOptimisticLockingFailureException(Product.class, 1L));
+
+        ProductUpdateConflictException exception = assertThrows(ProductUpdateConflictException.class, () ->
+                productService.changePrice(1L, BigDecimal.TEN));
+
+        assertEquals("The product with id: 1 was changed concurrently and could not be saved after 3 attempts.", exception.getMessage());
+        verify(productRepository, times(3)).saveAndRecordPrice(any());
+        assertEquals(2, conflicts("changePrice", "retried"));
+        assertEquals(1, conflicts("changePrice", "exhausted"));
+    }
+
+    private double conflicts(String operation, String outcome) {
+        return meterRegistry.get(ProductService.CONFLICT_METRIC)
+                .tag("operation", operation)
+                .tag("outcome", outcome)
+                .counter().count();
+    }
+
+}
@@ -1,19 +1,32 @@
 package com.fc.service;
 
+import com.fc.event.ProductChangeType;
+import com.fc.event.ProductChangedEvent;
 import com.fc.exception.*;
 import com.fc.model.Product;
+import com.fc.model.ProductCatalogVersion;
+import com.fc.model.ProductFilter;
+import com.fc.model.ProductPage;
+import com.fc.model.ProductSummary;
+import com.fc.model.ProductSummaryPage;
 import com.fc.model.ProductType;
 import com.fc.repository.ProductRepository;
+import com.fc.util.CursorUtil;
+import com.fc.util.ETagUtil;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
 
 import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.stream.Collectors;
 
 import org.junit.jupiter.api.Test;
 import org.springframework.test.annotation.DirtiesContext;
@@ -32,6 +45,9 @@ public class ProductServiceTests {
     @Autowired
     private ProductRepository productRepository;
 
+    @Autowired
+    private TestEntityManager entityManager;
+
     @BeforeEach
     void init() {
         List<Product> productList = Arrays.asList(
@@ -193,4 +209,140 @@ public class ProductServiceTests {
         assertEquals("desc2", product.getDescription());
     }
 
+    @Test
+    void shouldReturnProductPagesWhenFollowTheNextCursor() {
+        ProductPage firstPage = productService.getProductPage(null, 2);
+
+        assertEquals(2, firstPage.getItems().size());
+        assertEquals("name1", firstPage.getItems().get(0).getName());
+        assertEquals("name2", firstPage.getItems().get(1).getName());
+        assertNotNull(firstPage.getNextCursor());
+
+        ProductPage lastPage = productService.getProductPage(firstPage.getNextCursor(), 2);
+
+        assertEquals(1, lastPage.getItems().size());
+        assertEquals("name3", lastPage.getItems().get(0).getName());
+        assertNull(lastPage.getNextCursor());
+    }
+
+    @Test
+    void shouldReturnInvalidCursorExceptionWhenGetProductPage() {
+        InvalidCursorException exception = assertThrows(InvalidCursorException.class, () -> {
+            productService.getProductPage("not a cursor", 2);
+        });
+
+        assertEquals(InvalidCursorException.class, exception.getClass());
+    }
+
+    @Test
+    void shouldReturnTheFilteredProductSummariesOrderedByPrice() {
+        Product soft = createDummyProduct(null, "soft", "desc", BigDecimal.ONE);
+        soft.setProductType(ProductType.SOFT);
+        productRepository.save(soft);
+        ProductFilter filter = new ProductFilter(ProductType.HARD, BigDecimal.ZERO, BigDecimal.TEN);
+
+        ProductSummaryPage firstPage = productService.getProductSummaries(filter, "price,desc", null, 2);
+
+        assertEquals(List.of("name2", "name3"), names(firstPage.getItems()));
+        assertNotNull(firstPage.getNextCursor());
+
+        ProductSummaryPage lastPage = productService.getProductSummaries(filter, "price,desc", firstPage.getNextCursor(), 2);
+
+        assertEquals(List.of("name1"), names(lastPage.getItems()));
+        assertNull(lastPage.getNextCursor());
+        assertEquals(List.of("name2", "soft"), names(productService.getProductSummaries(
+                new ProductFilter(null, BigDecimal.ONE, null), "id", null, 10).getItems()));
+        assertEquals(List.of("soft"), names(productService.getProductSummaries(
+                new ProductFilter(ProductType.SOFT, null, null), null, null, null).getItems()));
+    }
+
+    @Test
+    void shouldRejectTheInvalidProductListingParameters() {
+        assertThrows(InvalidPriceRangeException.class, () -> productService.getProductSummaries(
+                new ProductFilter(null, BigDecimal.TEN, BigDecimal.ONE), null, null, null));
+        InvalidProductSortException exception = assertThrows(InvalidProductSortException.class, () ->
+                productService.getProductSummaries(new ProductFilter(null, null, null), "name", null, null));
+        assertEquals("The sort is not supported: name. Please use one of: id, price, price,asc, price,desc", exception.getMessage());
+        assertThrows(InvalidCursorException.class, () -> productService.getProductSummaries(
+                new ProductFilter(null, null, null), "price", CursorUtil.encode(1L), null));
+    }
+
+    @Test
+    void shouldUseTheTypeAndPriceIndexForTheFilteredListing() {
+        Object plan = entityManager.getEntityManager().createNativeQuery("explain select id, name, price, product_type"
+                + " from product where product_type = 0 and price >= 1 and price <= 5 order by price, id")
+                .getSingleResult();
+
+        assertThat(plan.toString()).containsIgnoringCase("idx_product_type_price");
+    }
+
+    @Test
+    void shouldStreamAllProductsOrderedById() {
+        List<String> names = new ArrayList<>();
+
+        productService.streamAllProducts(product -> names.add(product.getName()));
+
+        assertEquals(List.of("name1", "name2", "name3"), names);
+    }
+
+    @Test
+    void shouldSetTheDatesWhenCreateNewProduct() {
+        final Instant start = Product.currentTimestamp();
+        Product product = createDummyProduct(null, "dated", "desc", BigDecimal.ONE);
+        product.setCreateDate(Instant.EPOCH);
+        product.setUpdateDate(null);
+
+        Product createdProduct = productService.createNewProduct(product);
+
+        assertFalse(createdProduct.getCreateDate().isBefore(start));
+        assertEquals(createdProduct.getCreateDate(), createdProduct.getUpdateDate());
+    }
+
+    @Test
+    void shouldChangeTheCatalogVersionWhenAProductIsWritten() throws InterruptedException {
+        ProductCatalogVersion initialVersion = productService.getCatalogVersion();
+        assertEquals(3, initialVersion.getCount());
+
+        // the dates are stored in milliseconds
+        Thread.sleep(5);
+        Product updatedProduct = productService.updateProduct(createDummyProduct(2L, "updatedName", "updatedDesc", BigDecimal.ONE), 2L);
+        ProductCatalogVersion updatedVersion = productService.getCatalogVersion();
+
+        assertTrue(updatedProduct.getUpdateDate().isAfter(updatedProduct.getCreateDate()));
+        assertEquals(updatedProduct.getUpdateDate(), updatedVersion.getLastModified());
+
+        productService.deleteProduct(1L);
+
+        assertEquals(2, productService.getCatalogVersion().getCount());
+    }
+
+    @Test
+    void shouldChangeTheCatalogVersionWhenAChangeIsCommitted() {
+        // a write which was stamped before the last update but committed after it
+        ProductCatalogVersion initialVersion = productService.getCatalogVersion();
+
+        productService.onProductChanged(new ProductChangedEvent(ProductChangeType.UPDATED, 1L, null));
+        ProductCatalogVersion committedVersion = productService.getCatalogVersion();
+
+        assertEquals(initialVersion.getLastModified(), committedVersion.getLastModified());
+        assertNotEquals(ETagUtil.of(initialVersion), ETagUtil.of(committedVersion));
+    }
+
+    @Test
+    void shouldUpdateTheProductOnlyAtTheExpectedVersion() {
+        final long version = productService.getOneProduct(2L).getVersion();
+
+        Product updatedProduct = productService.updateProduct(createDummyProduct(2L, "updatedName", "updatedDesc", BigDecimal.ONE), 2L, version);
+        assertEquals(version + 1, updatedProduct.getVersion());
+
+        Exception exception = assertThrows(ProductVersionMismatchException.class, () ->
+                productService.changePrice(2L, BigDecimal.TEN, version));
+        assertEquals("The product with id: 2 is not at the expected version " + version
+                + ". Please reload the product and retry the change.", exception.getMessage());
+    }
+
+    private static List<String> names(List<ProductSummary> products) {
+        return products.stream().map(ProductSummary::getName).collect(Collectors.toList());
+    }
+
 }
@@ -32,4 +32,12 @@ public class ProductTestUtils {
         );
     }
 
+    public static Product createDummyProduct(Long id, String name, String price, Double calories, Double protein, Double fat) {
+        Product product = createDummyProduct(id, name, name, price == null ? null : new BigDecimal(price));
+        product.setCalories(calories);
+        product.setProtein(protein);
+        product.setFat(fat);
+        return product;
+    }
+
 }